@@ -0,0 +1,160 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// AnelTrechos.java
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fila circular de tamanho fixo que liga duas etapas do pipeline (ModoPipeline): uma thread produz
+ * trechos e outra os consome, na mesma ordem
+ *
+ * Os trechos e os seus vetores são alocados uma vez, na criação, e reaproveitados a cada volta: o
+ * produtor preenche o próximo trecho livre (reservar/publicar) e o consumidor devolve o trecho quando
+ * termina de usá-lo (consumir/liberar). Com a fila cheia, o produtor espera (contrapressão); com a
+ * fila vazia, o consumidor espera
+ *
+ * Feita para exatamente um produtor e um consumidor. Um erro em qualquer etapa (falhar) acorda as
+ * duas threads, que recebem uma IOException na próxima chamada
+ */
+public class AnelTrechos {
+
+    /**
+     * Um trecho da fila: o vetor e a quantidade de dados válidos nele
+     */
+    static class Trecho {
+        final byte[] dados;
+        int tamanho; // Bytes válidos em dados
+        long bits;   // Bits válidos, quando o trecho guarda dados codificados
+
+        Trecho(int capacidade) {
+            dados = new byte[capacidade];
+        }
+    }
+
+    private final Trecho[] trechos;
+    private final ReentrantLock trava = new ReentrantLock();
+    private final Condition naoCheio = trava.newCondition();
+    private final Condition naoVazio = trava.newCondition();
+    private long publicados;  // Trechos publicados pelo produtor desde a criação
+    private long liberados;   // Trechos liberados pelo consumidor desde a criação
+    private boolean fechado;  // O produtor não publica mais trechos
+    private Throwable falha;
+
+    /**
+     * @param profundidade A quantidade de trechos da fila
+     * @param capacidade O tamanho do vetor de cada trecho, em bytes
+     */
+    public AnelTrechos(int profundidade, int capacidade) {
+        if (profundidade < 1) throw new IllegalArgumentException("A fila precisa de pelo menos um trecho");
+        trechos = new Trecho[profundidade];
+        for (int i = 0; i < profundidade; i++) {
+            trechos[i] = new Trecho(capacidade);
+        }
+    }
+
+    /**
+     * Produtor: o próximo trecho livre, esperando enquanto a fila estiver cheia
+     * O trecho só fica visível para o consumidor depois de publicar()
+     * @return O trecho a ser preenchido
+     */
+    Trecho reservar() throws IOException {
+        trava.lock();
+        try {
+            while (publicados - liberados == trechos.length && falha == null) {
+                naoCheio.await();
+            }
+            verificarFalha();
+            return trechos[(int) (publicados % trechos.length)];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipeline interrompido");
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Produtor: entrega ao consumidor o trecho obtido por reservar()
+    void publicar() {
+        trava.lock();
+        try {
+            publicados++;
+            naoVazio.signal();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Produtor: não há mais trechos; o consumidor recebe null depois do último
+    void fechar() {
+        trava.lock();
+        try {
+            fechado = true;
+            naoVazio.signal();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Consumidor: o próximo trecho publicado, esperando enquanto a fila estiver vazia
+     * O trecho continua com o consumidor até liberar()
+     * @return O trecho, ou null se o produtor fechou a fila e todos os trechos já foram consumidos
+     */
+    Trecho consumir() throws IOException {
+        trava.lock();
+        try {
+            while (liberados == publicados && !fechado && falha == null) {
+                naoVazio.await();
+            }
+            verificarFalha();
+            return liberados == publicados ? null : trechos[(int) (liberados % trechos.length)];
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Pipeline interrompido");
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    // Consumidor: devolve ao produtor o trecho obtido por consumir()
+    void liberar() {
+        trava.lock();
+        try {
+            liberados++;
+            naoCheio.signal();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    /**
+     * Interrompe a fila por um erro: as threads que esperam são acordadas e as próximas chamadas
+     * de reservar() e consumir() lançam IOException
+     * @param erro O erro que interrompeu o pipeline
+     */
+    void falhar(Throwable erro) {
+        trava.lock();
+        try {
+            if (falha == null) falha = erro;
+            naoCheio.signalAll();
+            naoVazio.signalAll();
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private void verificarFalha() throws IOException {
+        if (falha != null) throw new IOException("Pipeline interrompido por um erro em outra etapa", falha);
+    }
+}
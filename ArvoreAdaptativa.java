@@ -0,0 +1,193 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ArvoreAdaptativa.java
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Árvore de Huffman adaptativa (algoritmo FGK), atualizada a cada caractere
+ * O compressor e o descompressor começam com a mesma árvore (apenas o nó NYT, "ainda não
+ * transmitido") e fazem as mesmas atualizações na mesma ordem, então nenhuma tabela precisa ser
+ * gravada e os dados podem ser codificados em uma única passagem, sem conhecer a entrada inteira
+ *
+ * - Um caractere já visto é codificado pelo caminho da raiz até a sua folha ('0' esquerda, '1' direita)
+ * - Um caractere novo é codificado pelo caminho até o NYT seguido dos seus 9 bits; o NYT se divide
+ *   em um novo NYT (à esquerda) e a folha do caractere (à direita)
+ * - O símbolo SIMBOLO_FIM (256) marca o fim dos dados, já que o tamanho pode não ser conhecido
+ *
+ * Os nós ficam em vetores, numerados de forma que o número cresce com o peso e a raiz tem o maior
+ * número (propriedade de irmãos). Antes de incrementar o peso de um nó, ele troca de lugar com o nó
+ * de maior número que tem o mesmo peso (exceto o próprio pai), o que mantém essa propriedade
+ * Trocar dois nós de lugar é trocar o conteúdo das posições: os pais continuam ligados às posições
+ * Os dois filhos de um nó ficam sempre em posições vizinhas, o da esquerda em uma posição par e o da
+ * direita na seguinte (ímpar): o lado de um nó é a paridade da sua posição, sem consulta aos vetores
+ */
+public class ArvoreAdaptativa {
+
+    // Símbolo que marca o fim dos dados (os caracteres vão de 0 a 255)
+    public static final int SIMBOLO_FIM = 256;
+    // Quantidade de bits com que um símbolo novo é gravado depois do caminho até o NYT
+    public static final int BITS_SIMBOLO = 9;
+
+    private static final int SIMBOLOS = 257;
+    // Folhas: os 257 símbolos e o NYT
+    private static final int NOS = 2 * (SIMBOLOS + 1) - 1;
+    private static final int RAIZ = NOS - 1;
+    private static final int SEM_NO = -1;
+
+    private final long[] pesos = new long[NOS];
+    private final int[] pai = new int[NOS];
+    private final int[] esquerda = new int[NOS];  // Filho da esquerda (o da direita é o seguinte); SEM_NO nas folhas
+    private final int[] simbolos = new int[NOS];  // Símbolo de cada folha
+    private final int[] folhas = new int[SIMBOLOS]; // Posição da folha de cada símbolo, ou SEM_NO
+    private int nyt = RAIZ;
+
+    // Bits do caminho de um nó até a raiz (a profundidade é sempre menor que a quantidade de nós)
+    private final int[] caminho = new int[NOS];
+
+    // Cria a árvore inicial, em que a raiz é o NYT
+    public ArvoreAdaptativa() {
+        reiniciar();
+    }
+
+    // Volta à árvore inicial, para reaproveitar o objeto em outro fluxo de dados
+    public final void reiniciar() {
+        Arrays.fill(pesos, 0);
+        Arrays.fill(folhas, SEM_NO);
+        nyt = RAIZ;
+        pai[RAIZ] = SEM_NO;
+        esquerda[RAIZ] = SEM_NO;
+    }
+
+    /**
+     * Grava o código atual de um símbolo e atualiza a árvore
+     * @param simbolo O caractere (0 a 255) ou SIMBOLO_FIM
+     * @param escritor O destino dos bits
+     */
+    public void codificar(int simbolo, EscritorBits escritor) {
+        int folha = folhas[simbolo];
+        if (folha != SEM_NO) {
+            escreverCaminho(folha, escritor);
+        } else {
+            escreverCaminho(nyt, escritor);
+            escritor.escrever(simbolo, BITS_SIMBOLO);
+        }
+        atualizar(simbolo);
+    }
+
+    /**
+     * Lê um símbolo descendo a árvore bit a bit e atualiza a árvore da mesma forma que o compressor
+     * @param leitor A origem dos bits
+     * @return O caractere lido (0 a 255) ou SIMBOLO_FIM
+     */
+    public int decodificar(LeitorBits leitor) throws IOException {
+        int no = RAIZ;
+        while (esquerda[no] != SEM_NO) {
+            no = esquerda[no] + leitor.lerBit();
+        }
+        int simbolo;
+        if (no == nyt) {
+            simbolo = leitor.lerBits(BITS_SIMBOLO);
+            if (simbolo > SIMBOLO_FIM || folhas[simbolo] != SEM_NO) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+        } else {
+            simbolo = simbolos[no];
+        }
+        atualizar(simbolo);
+        return simbolo;
+    }
+
+    // Grava o caminho da raiz até o nó ('0' esquerda, '1' direita)
+    private void escreverCaminho(int no, EscritorBits escritor) {
+        // Subindo da folha até a raiz, cada bit entra à esquerda dos anteriores: o código já sai na ordem
+        long bits = 0;
+        int profundidade = 0;
+        int x = no;
+        for (; x != RAIZ && profundidade < EscritorBits.MAX_BITS_CODIGO; x = pai[x]) {
+            bits |= (long) (x & 1) << profundidade++; // Posição ímpar: filho da direita
+        }
+        if (x == RAIZ) {
+            escritor.escrever(bits, profundidade);
+        } else {
+            escreverCaminhoLongo(no, escritor);
+        }
+    }
+
+    // Caminhos maiores que MAX_BITS_CODIGO (árvores muito desiguais): gravados em grupos
+    private void escreverCaminhoLongo(int no, EscritorBits escritor) {
+        int profundidade = 0;
+        for (int x = no; x != RAIZ; x = pai[x]) {
+            caminho[profundidade++] = x & 1;
+        }
+        // O caminho foi montado da folha para a raiz: os bits são gravados do último para o primeiro
+        while (profundidade > 0) {
+            int quantidade = Math.min(profundidade, EscritorBits.MAX_BITS_CODIGO);
+            long bits = 0;
+            for (int i = 0; i < quantidade; i++) {
+                bits = (bits << 1) | caminho[--profundidade];
+            }
+            escritor.escrever(bits, quantidade);
+        }
+    }
+
+    // Soma 1 ao peso da folha do símbolo e de todos os seus ancestrais, trocando nós quando necessário
+    private void atualizar(int simbolo) {
+        int no = folhas[simbolo];
+        if (no == SEM_NO) {
+            // O NYT vira um nó interno: à esquerda o novo NYT, à direita a folha do novo símbolo
+            int antigo = nyt;
+            no = antigo - 1;
+            nyt = antigo - 2;
+            esquerda[antigo] = nyt;
+            pai[no] = antigo;
+            pai[nyt] = antigo;
+            esquerda[no] = SEM_NO;
+            esquerda[nyt] = SEM_NO;
+            simbolos[no] = simbolo;
+            folhas[simbolo] = no;
+        }
+        while (no != SEM_NO) {
+            // Líder do bloco: o nó de maior número com o mesmo peso
+            int lider = no;
+            while (lider < RAIZ && pesos[lider + 1] == pesos[no]) lider++;
+            if (lider != no && lider != pai[no]) {
+                trocar(no, lider);
+                no = lider;
+            }
+            pesos[no]++;
+            no = pai[no];
+        }
+    }
+
+    // Troca as subárvores das posições a e b (que têm o mesmo peso)
+    private void trocar(int a, int b) {
+        int temp = esquerda[a];
+        esquerda[a] = esquerda[b];
+        esquerda[b] = temp;
+        temp = simbolos[a];
+        simbolos[a] = simbolos[b];
+        simbolos[b] = temp;
+        religar(a);
+        religar(b);
+    }
+
+    // Atualiza as referências para o conteúdo que acabou de chegar à posição
+    private void religar(int no) {
+        if (esquerda[no] == SEM_NO) {
+            folhas[simbolos[no]] = no;
+        } else {
+            pai[esquerda[no]] = no;
+            pai[esquerda[no] + 1] = no;
+        }
+    }
+}
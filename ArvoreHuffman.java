@@ -0,0 +1,240 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ArvoreHuffman.java
+
+/**
+ * Árvore de Huffman em vetores de tipos primitivos, sem objetos No
+ * Cada nó é um índice: as folhas são os nós 0 a n - 1 (na ordem dos caracteres) e cada junção
+ * cria o próximo nó interno (n, n + 1, ..., 2n - 2); a raiz é sempre o último nó criado
+ * Os filhos ficam nos vetores esquerda/direita e a frequência de cada nó em pesos
+ *
+ * O Min-Heap é um vetor de chaves long = peso << 9 | índice do nó (até 511 nós), então cada
+ * comparação lê só o próprio vetor do heap. As chaves são comparadas apenas pelo peso e as
+ * operações são as mesmas do MinHeap (inserir com sift-up, removerMin trocando a raiz pelo último
+ * e sift-down): os empates são resolvidos da mesma forma e a árvore gerada é idêntica
+ *
+ * Os vetores têm o tamanho do maior alfabeto (256 folhas), então o mesmo objeto pode ser reaproveitado
+ * para várias tabelas de frequência com reiniciar(), sem alocar nada (ver HuffmanCodec)
+ */
+public class ArvoreHuffman {
+
+    private static final int TAMANHO_ASCII = 256;
+    // Bits da chave do heap reservados para o índice do nó (2 x 256 - 1 = 511 nós)
+    private static final int BITS_INDICE = 9;
+    private static final long MASCARA_INDICE = (1L << BITS_INDICE) - 1;
+    // Maior peso que cabe na chave sem perder o sinal (2^54 - 1, ou 16 PB de dados)
+    private static final long MAIOR_PESO = Long.MAX_VALUE >>> BITS_INDICE;
+
+    private int quantidadeFolhas;
+    // Caractere de cada folha
+    private final int[] simbolos = new int[TAMANHO_ASCII];
+    // Frequência de cada nó (folha ou interno)
+    private final long[] pesos = new long[2 * TAMANHO_ASCII - 1];
+    // Filhos da esquerda e da direita de cada nó interno (índice - quantidadeFolhas)
+    private final int[] esquerda = new int[TAMANHO_ASCII - 1];
+    private final int[] direita = new int[TAMANHO_ASCII - 1];
+    private int quantidadeNos;
+    private int raiz = -1;
+
+    // Min-Heap de chaves (peso << BITS_INDICE | nó)
+    private final long[] heap = new long[TAMANHO_ASCII];
+    private int tamanhoHeap;
+
+    // Código e comprimento de cada nó, usados por gerarCodigos()
+    private final long[] codigoNo = new long[2 * TAMANHO_ASCII - 1];
+    private final int[] comprimentoNo = new int[2 * TAMANHO_ASCII - 1];
+
+    /**
+     * Cria uma árvore vazia, a ser preenchida por reiniciar()
+     */
+    public ArvoreHuffman() {
+    }
+
+    /**
+     * Cria uma folha para cada caractere presente e as insere no Min-Heap (ETAPA 2)
+     * @param tabelaFrequencia A tabela de frequência dos dados
+     * @throws IllegalArgumentException Se o total de caracteres não cabe na chave do heap (2^54)
+     */
+    public ArvoreHuffman(long[] tabelaFrequencia) {
+        reiniciar(tabelaFrequencia);
+    }
+
+    /**
+     * Descarta a árvore atual e recomeça a ETAPA 2 com outra tabela de frequência
+     * @param tabelaFrequencia A tabela de frequência dos dados
+     * @throws IllegalArgumentException Se o total de caracteres não cabe na chave do heap (2^54)
+     */
+    public final void reiniciar(long[] tabelaFrequencia) {
+        int n = 0;
+        long total = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (tabelaFrequencia[i] > 0) n++;
+            total += tabelaFrequencia[i];
+        }
+        // O peso da raiz é o total de caracteres; todos os pesos precisam caber na chave do heap
+        if (total > MAIOR_PESO) {
+            throw new IllegalArgumentException("Dados com mais de " + MAIOR_PESO + " caracteres");
+        }
+        quantidadeFolhas = n;
+        quantidadeNos = 0;
+        tamanhoHeap = 0;
+        raiz = -1;
+
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (tabelaFrequencia[i] > 0) {
+                simbolos[quantidadeNos] = i;
+                pesos[quantidadeNos] = tabelaFrequencia[i];
+                inserir(quantidadeNos++);
+            }
+        }
+    }
+
+    /**
+     * Constrói a árvore (ETAPA 3): junta os dois nós de menor peso até sobrar apenas a raiz
+     */
+    public void construir() {
+        while (tamanhoHeap > 1) {
+            int menor = (int) (removerMin() & MASCARA_INDICE);
+            int segundo = (int) (removerMin() & MASCARA_INDICE);
+            int pai = quantidadeNos++;
+            esquerda[pai - quantidadeFolhas] = menor;
+            direita[pai - quantidadeFolhas] = segundo;
+            pesos[pai] = pesos[menor] + pesos[segundo];
+            inserir(pai);
+        }
+        if (tamanhoHeap == 1) raiz = (int) (removerMin() & MASCARA_INDICE);
+    }
+
+    /**
+     * Gera o código de cada caractere percorrendo a árvore (ETAPA 4), sem recursão
+     * Como os nós internos são criados depois dos filhos, basta percorrê-los da raiz (último nó)
+     * para trás: quando um nó é visitado, o seu código já foi definido pelo pai
+     * @param codigos O vetor onde os bits de cada código serão armazenados
+     * @param comprimentos O vetor onde o tamanho (em bits) de cada código será armazenado
+     */
+    public void gerarCodigos(long[] codigos, int[] comprimentos) {
+        if (raiz < 0) return;
+        codigoNo[raiz] = 0;
+        comprimentoNo[raiz] = 0;
+        for (int no = raiz; no >= quantidadeFolhas; no--) {
+            int comprimento = comprimentoNo[no] + 1;
+            // O acumulador de 64 bits do EscritorBits não comporta códigos maiores que este limite
+            if (comprimento > EscritorBits.MAX_BITS_CODIGO) {
+                throw new IllegalStateException("Código de Huffman maior que " + EscritorBits.MAX_BITS_CODIGO + " bits");
+            }
+            int esq = esquerda[no - quantidadeFolhas];
+            int dir = direita[no - quantidadeFolhas];
+            codigoNo[esq] = codigoNo[no] << 1;       // '0' para a esquerda
+            codigoNo[dir] = (codigoNo[no] << 1) | 1; // '1' para a direita
+            comprimentoNo[esq] = comprimento;
+            comprimentoNo[dir] = comprimento;
+        }
+        for (int folha = 0; folha < quantidadeFolhas; folha++) {
+            codigos[simbolos[folha]] = codigoNo[folha];
+            comprimentos[simbolos[folha]] = comprimentoNo[folha];
+        }
+    }
+
+    // Insere um nó no heap e o sobe enquanto for menor que o pai
+    private void inserir(int no) {
+        int indiceAtual = tamanhoHeap++;
+        heap[indiceAtual] = (pesos[no] << BITS_INDICE) | no;
+        while (indiceAtual > 0) {
+            int indicePai = (indiceAtual - 1) / 2;
+            if (menor(heap[indiceAtual], heap[indicePai])) {
+                trocar(indiceAtual, indicePai);
+                indiceAtual = indicePai;
+            } else {
+                break;
+            }
+        }
+    }
+
+    // Remove a chave de menor peso: a última chave vai para a raiz e desce até a sua posição
+    private long removerMin() {
+        long min = heap[0];
+        long ultimo = heap[--tamanhoHeap];
+        if (tamanhoHeap > 0) {
+            heap[0] = ultimo;
+            int indice = 0;
+            while (true) {
+                int menor = indice;
+                int esq = 2 * indice + 1;
+                int dir = 2 * indice + 2;
+                if (esq < tamanhoHeap && menor(heap[esq], heap[menor])) menor = esq;
+                if (dir < tamanhoHeap && menor(heap[dir], heap[menor])) menor = dir;
+                if (menor == indice) break;
+                trocar(indice, menor);
+                indice = menor;
+            }
+        }
+        return min;
+    }
+
+    // Compara duas chaves só pelo peso, como No.compareTo (o índice não desempata)
+    private static boolean menor(long a, long b) {
+        return (a >>> BITS_INDICE) < (b >>> BITS_INDICE);
+    }
+
+    private void trocar(int i, int j) {
+        long temp = heap[i];
+        heap[i] = heap[j];
+        heap[j] = temp;
+    }
+
+    /**
+     * Representação do Min-Heap na ordem do vetor, no mesmo formato de MinHeap.getHeapAsList()
+     * @return Por exemplo: [No('a', 3), No('b', 5)]
+     */
+    public String heapComoTexto() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < tamanhoHeap; i++) {
+            if (i > 0) sb.append(", ");
+            int no = (int) (heap[i] & MASCARA_INDICE);
+            if (isFolha(no)) {
+                sb.append("No('").append((char) simbolos[no]).append("', ").append(pesos[no]).append(')');
+            } else {
+                sb.append("No(interno, ").append(pesos[no]).append(')');
+            }
+        }
+        return sb.append(']').toString();
+    }
+
+    // Indica se não há nenhum caractere (dados vazios)
+    public boolean isVazia() {
+        return quantidadeFolhas == 0;
+    }
+
+    // A raiz da árvore, depois de construir() (-1 se não há caracteres)
+    public int getRaiz() {
+        return raiz;
+    }
+
+    public boolean isFolha(int no) {
+        return no < quantidadeFolhas;
+    }
+
+    public int getSimbolo(int folha) {
+        return simbolos[folha];
+    }
+
+    public long getPeso(int no) {
+        return pesos[no];
+    }
+
+    public int getEsquerda(int no) {
+        return esquerda[no - quantidadeFolhas];
+    }
+
+    public int getDireita(int no) {
+        return direita[no - quantidadeFolhas];
+    }
+}
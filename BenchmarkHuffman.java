@@ -0,0 +1,424 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// BenchmarkHuffman.java
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Medição de desempenho de cada etapa da compressão e da descompressão, separadamente
+ *
+ * Cada etapa é executada sobre conjuntos de dados gerados (texto, código-fonte, caractere único,
+ * aleatório uniforme e distribuição desigual) em vários tamanhos. Para cada combinação:
+ * - aquecimento: a etapa é repetida até o JIT compilar o código (não entra na medição)
+ * - medição: várias rodadas de tempo fixo; o resultado é a mediana das rodadas
+ * - alocação: bytes alocados pela thread por operação (com.sun.management.ThreadMXBean)
+ * A etapa "arvore-primitiva" (ArvoreHuffman: heap, árvore e códigos) é a versão usada pelo programa;
+ * "minheap-inserir-remover", "arvore" e "tabela-codigos" medem a versão com objetos No
+ * "adaptativo-codificacao" e "adaptativo-decodificacao" medem o modo -a inteiro (ModoAdaptativo e
+ * HuffmanInputStream); "codec-compressao" e "codec-descompressao" medem a API de biblioteca
+ * (HuffmanCodec) reaproveitando o mesmo codec e os mesmos vetores: a alocação por operação deve ser 0;
+ * "codec-intercalado" lê os dados em 4 fluxos intercalados (-c --intercalado); "pool-emprestar-devolver"
+ * mede o conjunto de buffers (PoolBuffers) usado pelo servidor e por -c/-d
+ * "contexto-compressao" e "contexto-descompressao" medem o modo de ordem 1 (--contexto), para comparar
+ * com as duas anteriores (a taxa de compressão das duas ordens é mostrada por -c --contexto --verbose)
+ * "decodificacao" usa a tabela de vários caracteres por consulta e "decodificacao-simples", um caractere
+ * por consulta; fora do modo --csv, cada corpus mostra também quantos caracteres cada consulta rendeu
+ * "contagem-escalar" e "contagem-vetorial" medem cada versão do laço da contagem de frequência, e
+ * "juntar-escalar" e "juntar-vetorial", a soma das 4 tabelas (Kernels); as vetoriais só aparecem com
+ * --add-modules jdk.incubator.vector, e "frequencia" usa a versão escolhida (mostrada antes das medições)
+ * Com --arquivo, o corpus é um arquivo real (inteiro), no lugar dos corpora gerados
+ * A impressão no console fica fora das medições, ao contrário do tempo mostrado por -c e -d
+ *
+ * Uso: java BenchmarkHuffman [--csv] [--tamanhos <KB,KB,...>] [--corpus <nome,...>] [--etapas <nome,...>]
+ *                            [--arquivo <caminho>]
+ */
+public class BenchmarkHuffman {
+
+    private static final int TAMANHO_ASCII = 256;
+    private static final long NANOS_AQUECIMENTO = 500_000_000L; // 0,5 s por etapa
+    private static final long NANOS_RODADA = 100_000_000L;      // 0,1 s por rodada de medição
+    private static final int RODADAS = 7;
+
+    private static final String[] CORPORA = {"texto", "codigo", "unico", "aleatorio", "desigual"};
+    private static final int[] TAMANHOS_PADRAO_KB = {64, 1024, 16384};
+
+    // Os resultados das etapas são acumulados aqui, para que o JIT não elimine o trabalho medido
+    private static long sumidouro;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    /**
+     * Uma etapa medida: executa a operação uma vez e devolve um valor qualquer do resultado
+     */
+    private interface Etapa {
+        long executar() throws IOException;
+    }
+
+    /**
+     * Dados preparados para um corpus: a saída de cada etapa é a entrada da seguinte
+     */
+    private static class Preparado {
+        final byte[] dados;
+        final long[] frequencias;
+        final No raiz;
+        final long[] codigos = new long[TAMANHO_ASCII];
+        final int[] comprimentos = new int[TAMANHO_ASCII];
+        final boolean[] presentes;
+        final byte[] comprimidos;
+        final byte[] cabecalho;
+        final TabelaDecodificacao tabela;
+        final TabelaDecodificacao tabelaSimples;
+        final byte[] restaurados;
+        final byte[] comprimidosAdaptativo;
+        final HuffmanCodec codec = new HuffmanCodec();
+        final byte[] arquivoComprimido;
+
+        Preparado(byte[] dados) throws IOException {
+            this.dados = dados;
+            frequencias = Huffman.construirTabelaFrequencia(dados);
+            raiz = Huffman.construirArvoreHuffman(Huffman.construirMinHeap(frequencias));
+            Huffman.gerarCodigosCanonicos(frequencias, codigos, comprimentos, Huffman.SEM_LIMITE);
+            presentes = Huffman.caracteresPresentes(frequencias);
+            comprimidos = Huffman.codificarDados(dados, frequencias, codigos, comprimentos);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            CodigoCanonico.escrever(new DataOutputStream(bytes), comprimentos, presentes);
+            cabecalho = bytes.toByteArray();
+            tabela = CodigoCanonico.criarTabela(comprimentos, presentes);
+            tabelaSimples = CodigoCanonico.criarTabela(comprimentos, presentes);
+            tabelaSimples.setUsarMulti(false);
+            restaurados = new byte[dados.length];
+            bytes.reset();
+            ModoAdaptativo.comprimir(new ByteArrayInputStream(dados), bytes);
+            comprimidosAdaptativo = bytes.toByteArray();
+            arquivoComprimido = new byte[HuffmanCodec.tamanhoMaximoComprimido(dados.length)];
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean csv = false;
+        int[] tamanhos = TAMANHOS_PADRAO_KB;
+        List<String> corpora = Arrays.asList(CORPORA);
+        List<String> filtroEtapas = null;
+        String arquivo = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--csv")) {
+                csv = true;
+            } else if (args[i].equals("--tamanhos") && i + 1 < args.length) {
+                tamanhos = Arrays.stream(args[++i].split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (args[i].equals("--corpus") && i + 1 < args.length) {
+                corpora = Arrays.asList(args[++i].split(","));
+            } else if (args[i].equals("--etapas") && i + 1 < args.length) {
+                filtroEtapas = Arrays.asList(args[++i].split(","));
+            } else if (args[i].equals("--arquivo") && i + 1 < args.length) {
+                arquivo = args[++i];
+            } else {
+                System.out.println("Uso: java BenchmarkHuffman [--csv] [--tamanhos <KB,KB,...>] [--corpus <nome,...>] [--etapas <nome,...>] [--arquivo <caminho>]");
+                System.out.println("Corpora: " + String.join(", ", CORPORA));
+                return;
+            }
+        }
+
+        if (!csv) System.out.println("Kernels: " + Kernels.ATUAL.getNome());
+        if (csv) {
+            System.out.println("corpus,tamanho_kb,etapa,mb_por_s,ns_por_op,bytes_alocados_por_op");
+        } else {
+            System.out.printf("%-10s %9s  %-22s %10s %14s %16s%n", "corpus", "tamanho", "etapa", "MB/s", "ns/op", "alocado/op");
+        }
+        if (arquivo != null) {
+            byte[] dados = Files.readAllBytes(Paths.get(arquivo));
+            String nome = Paths.get(arquivo).getFileName().toString();
+            imprimir(new Preparado(dados), nome, dados.length >> 10, filtroEtapas, csv);
+        } else {
+            for (String corpus : corpora) {
+                for (int tamanhoKb : tamanhos) {
+                    imprimir(new Preparado(gerarCorpus(corpus, tamanhoKb << 10)), corpus, tamanhoKb, filtroEtapas, csv);
+                }
+            }
+        }
+        if (sumidouro == 42) System.out.println(); // Só para o resultado ser usado
+    }
+
+    /**
+     * Mede as etapas de um corpus e imprime uma linha por etapa
+     * @param p Os dados e os resultados intermediários do corpus
+     * @param corpus O nome do corpus (ou do arquivo)
+     * @param tamanhoKb O tamanho dos dados, em KB
+     * @param filtro Os nomes das etapas a medir (null para todas)
+     * @param csv true para imprimir em CSV
+     */
+    private static void imprimir(Preparado p, String corpus, int tamanhoKb, List<String> filtro, boolean csv)
+            throws IOException {
+        for (String[] linha : medirEtapas(p, filtro)) {
+            if (csv) {
+                System.out.println(corpus + "," + tamanhoKb + "," + String.join(",", linha));
+            } else {
+                System.out.printf("%-10s %6d KB  %-22s %10s %14s %16s%n", corpus, tamanhoKb,
+                        linha[0], linha[1], linha[2], linha[3]);
+            }
+        }
+        if (!csv && p.dados.length > 0 && (filtro == null || filtro.contains("decodificacao"))) {
+            System.out.printf(Locale.ROOT, "%-10s %6d KB  caracteres por consulta: %.2f%n", corpus, tamanhoKb,
+                    p.tabela.caracteresPorConsulta(p.comprimidos, 0, p.dados.length));
+        }
+    }
+
+    /**
+     * Mede cada etapa do pipeline para um corpus já preparado
+     * @param p Os dados e os resultados intermediários do corpus
+     * @param filtro Os nomes das etapas a medir (null para todas)
+     * @return Uma linha por etapa: nome, MB/s, ns/op e bytes alocados por operação
+     */
+    private static List<String[]> medirEtapas(Preparado p, List<String> filtro) throws IOException {
+        int n = p.dados.length;
+        List<String[]> linhas = new ArrayList<>();
+        // Etapas que percorrem os dados têm vazão em MB/s; as que dependem só do alfabeto, não (bytes = 0)
+        medir(linhas, filtro, "frequencia", n, () -> Huffman.construirTabelaFrequencia(p.dados)[0]);
+        try (Histograma histograma = new Histograma(Runtime.getRuntime().availableProcessors())) {
+            medir(linhas, filtro, "frequencia-paralela", n, () -> {
+                long[] freq = new long[TAMANHO_ASCII];
+                histograma.acumular(p.dados, n, freq);
+                return freq[0];
+            });
+        }
+        // Cada versão dos laços da contagem (Kernels), com as mesmas tabelas reaproveitadas
+        int[] tabelas = new int[Histograma.TAMANHO_TABELAS];
+        long[] freqKernels = new long[TAMANHO_ASCII];
+        for (Kernels kernels : new Kernels[]{Kernels.ESCALAR, Kernels.VETORIAL}) {
+            if (kernels == null) continue; // Sem o módulo jdk.incubator.vector
+            String versao = kernels == Kernels.ESCALAR ? "escalar" : "vetorial";
+            medir(linhas, filtro, "contagem-" + versao, n, () -> {
+                Arrays.fill(tabelas, 0);
+                kernels.contar(p.dados, 0, n, tabelas);
+                return tabelas[0];
+            });
+            medir(linhas, filtro, "juntar-" + versao, 0, () -> {
+                kernels.juntar(tabelas, freqKernels);
+                return freqKernels[0];
+            });
+        }
+        medir(linhas, filtro, "minheap-inserir-remover", 0, () -> {
+            MinHeap heap = new MinHeap();
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                if (p.frequencias[i] > 0) heap.inserir(new No((char) i, p.frequencias[i]));
+            }
+            long soma = 0;
+            while (!heap.isEmpty()) soma += heap.removerMin().getFrequencia();
+            return soma;
+        });
+        medir(linhas, filtro, "arvore", 0,
+                () -> Huffman.construirArvoreHuffman(Huffman.construirMinHeap(p.frequencias)).getFrequencia());
+        medir(linhas, filtro, "arvore-primitiva", 0, () -> {
+            ArvoreHuffman arvore = new ArvoreHuffman(p.frequencias);
+            arvore.construir();
+            long[] codigos = new long[TAMANHO_ASCII];
+            int[] comprimentos = new int[TAMANHO_ASCII];
+            arvore.gerarCodigos(codigos, comprimentos);
+            return comprimentos[p.dados[0] & 0xFF];
+        });
+        medir(linhas, filtro, "tabela-codigos", 0, () -> {
+            long[] codigos = new long[TAMANHO_ASCII];
+            int[] comprimentos = new int[TAMANHO_ASCII];
+            Huffman.gerarTabelaCodigos(p.raiz, 0L, 0, codigos, comprimentos);
+            return comprimentos[p.dados[0] & 0xFF];
+        });
+        medir(linhas, filtro, "package-merge-11", 0,
+                () -> CodigoLimitado.calcularComprimentos(p.frequencias, 11)[p.dados[0] & 0xFF]);
+        medir(linhas, filtro, "codificacao", n,
+                () -> Huffman.codificarDados(p.dados, p.frequencias, p.codigos, p.comprimentos).length);
+        medir(linhas, filtro, "cabecalho-escrita", 0, () -> {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            CodigoCanonico.escrever(new DataOutputStream(bytes), p.comprimentos, p.presentes);
+            return bytes.size();
+        });
+        medir(linhas, filtro, "cabecalho-leitura", 0, () -> {
+            int[] comprimentos = new int[TAMANHO_ASCII];
+            CodigoCanonico.ler(new DataInputStream(new ByteArrayInputStream(p.cabecalho)), comprimentos, new boolean[TAMANHO_ASCII]);
+            return comprimentos[p.dados[0] & 0xFF];
+        });
+        medir(linhas, filtro, "tabela-decodificacao", 0,
+                () -> CodigoCanonico.criarTabela(p.comprimentos, p.presentes).hashCode());
+        medir(linhas, filtro, "decodificacao", n, () -> {
+            p.tabela.decodificar(p.comprimidos, 0, p.comprimidos.length, 8, p.restaurados, 0, n);
+            return p.restaurados[n - 1];
+        });
+        if (!Arrays.equals(p.dados, p.restaurados) && (filtro == null || filtro.contains("decodificacao"))) {
+            throw new IllegalStateException("A decodificação não restaurou os dados originais");
+        }
+        medir(linhas, filtro, "decodificacao-simples", n, () -> {
+            p.tabelaSimples.decodificar(p.comprimidos, 0, p.comprimidos.length, 8, p.restaurados, 0, n);
+            return p.restaurados[n - 1];
+        });
+        if (!Arrays.equals(p.dados, p.restaurados) && (filtro == null || filtro.contains("decodificacao-simples"))) {
+            throw new IllegalStateException("A decodificação simples não restaurou os dados originais");
+        }
+        // Modo adaptativo (-a): a árvore é atualizada a cada caractere, para comparar com as etapas estáticas
+        medir(linhas, filtro, "adaptativo-codificacao", n,
+                () -> ModoAdaptativo.comprimir(new ByteArrayInputStream(p.dados), OutputStream.nullOutputStream()).bytesSaida);
+        medir(linhas, filtro, "adaptativo-decodificacao", n, () -> {
+            HuffmanInputStream entrada = new HuffmanInputStream(new ByteArrayInputStream(p.comprimidosAdaptativo), p.codec);
+            long restaurados = 0;
+            int lidos;
+            while ((lidos = entrada.read(p.restaurados, 0, n)) > 0) restaurados += lidos;
+            return restaurados;
+        });
+        // API de biblioteca: o mesmo codec e os mesmos vetores a cada operação
+        int[] tamanhoComprimido = {p.codec.comprimir(p.dados, 0, n, p.arquivoComprimido, 0)};
+        medir(linhas, filtro, "codec-compressao", n, () -> {
+            tamanhoComprimido[0] = p.codec.comprimir(p.dados, 0, n, p.arquivoComprimido, 0);
+            return tamanhoComprimido[0];
+        });
+        medir(linhas, filtro, "codec-descompressao", n,
+                () -> p.codec.descomprimir(p.arquivoComprimido, 0, tamanhoComprimido[0], p.restaurados, 0));
+        if (!Arrays.equals(p.dados, p.restaurados) && (filtro == null || filtro.contains("codec-descompressao"))) {
+            throw new IllegalStateException("HuffmanCodec não restaurou os dados originais");
+        }
+        // Conjunto de buffers: um vetor do tamanho dos dados emprestado e devolvido (só o nó da fila é alocado)
+        PoolBuffers pool = new PoolBuffers(PoolBuffers.LIMITE_PADRAO);
+        medir(linhas, filtro, "pool-emprestar-devolver", 0, () -> {
+            byte[] vetor = pool.emprestar(n);
+            pool.devolver(vetor);
+            return vetor.length;
+        });
+        // Fluxos intercalados: a mesma tabela, com 4 códigos decodificados por volta do laço
+        HuffmanCodec codecIntercalado = new HuffmanCodec();
+        codecIntercalado.setIntercalado(true);
+        byte[] comprimidoIntercalado = codecIntercalado.comprimir(p.dados);
+        medir(linhas, filtro, "codec-intercalado", n,
+                () -> codecIntercalado.descomprimir(comprimidoIntercalado, 0, comprimidoIntercalado.length, p.restaurados, 0));
+        if (!Arrays.equals(p.dados, p.restaurados) && (filtro == null || filtro.contains("codec-intercalado"))) {
+            throw new IllegalStateException("Os fluxos intercalados não restauraram os dados originais");
+        }
+        // Ordem 1: uma tabela por contexto (ou a compartilhada), escolhida pelo caractere anterior
+        byte[] comprimidoContexto = ModoContexto.comprimir(p.dados, Huffman.SEM_LIMITE, null).comprimido;
+        medir(linhas, filtro, "contexto-compressao", n,
+                () -> ModoContexto.comprimir(p.dados, Huffman.SEM_LIMITE, null).comprimido.length);
+        medir(linhas, filtro, "contexto-descompressao", n,
+                () -> p.codec.descomprimir(comprimidoContexto, 0, comprimidoContexto.length, p.restaurados, 0));
+        if (!Arrays.equals(p.dados, p.restaurados) && (filtro == null || filtro.contains("contexto-descompressao"))) {
+            throw new IllegalStateException("O modo de contexto não restaurou os dados originais");
+        }
+        return linhas;
+    }
+
+    /**
+     * Aquece e mede uma etapa, acrescentando o resultado em linhas
+     * @param linhas A lista de resultados
+     * @param filtro Os nomes das etapas a medir (null para todas)
+     * @param nome O nome da etapa
+     * @param bytesPorOperacao Bytes de entrada processados por operação (0 se não se aplica)
+     * @param etapa A operação medida
+     */
+    private static void medir(List<String[]> linhas, List<String> filtro, String nome, long bytesPorOperacao,
+                              Etapa etapa) {
+        if (filtro != null && !filtro.contains(nome)) return;
+        try {
+            // Aquecimento: repete a etapa por um tempo fixo, sem medir
+            long limite = System.nanoTime() + NANOS_AQUECIMENTO;
+            while (System.nanoTime() < limite) sumidouro += etapa.executar();
+
+            double[] nanosPorOperacao = new double[RODADAS];
+            long operacoesTotais = 0;
+            long alocadoAntes = THREADS.getCurrentThreadAllocatedBytes();
+            for (int r = 0; r < RODADAS; r++) {
+                long operacoes = 0;
+                long inicio = System.nanoTime();
+                long agora;
+                do {
+                    sumidouro += etapa.executar();
+                    operacoes++;
+                    agora = System.nanoTime();
+                } while (agora - inicio < NANOS_RODADA);
+                nanosPorOperacao[r] = (double) (agora - inicio) / operacoes;
+                operacoesTotais += operacoes;
+            }
+            long alocado = THREADS.getCurrentThreadAllocatedBytes() - alocadoAntes;
+
+            Arrays.sort(nanosPorOperacao);
+            double mediana = nanosPorOperacao[RODADAS / 2];
+            String vazao = bytesPorOperacao == 0 ? "-"
+                    : String.format(Locale.ROOT, "%.1f", bytesPorOperacao / mediana * 1e9 / (1 << 20));
+            linhas.add(new String[]{nome, vazao, String.format(Locale.ROOT, "%.0f", mediana),
+                    String.valueOf(alocado / operacoesTotais)});
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Gera um conjunto de dados de teste (sempre o mesmo para o mesmo nome e tamanho)
+     * @param nome texto, codigo, unico, aleatorio ou desigual
+     * @param tamanho O tamanho em bytes
+     * @return Os dados gerados
+     */
+    static byte[] gerarCorpus(String nome, int tamanho) {
+        Random random = new Random(tamanho);
+        byte[] dados = new byte[tamanho];
+        switch (nome) {
+            case "texto":
+                preencherComPalavras(dados, random, new String[]{
+                        "the", "of", "and", "to", "in", "a", "is", "that", "for", "it", "as", "was", "with",
+                        "be", "by", "on", "not", "he", "this", "are", "or", "his", "from", "at", "which",
+                        "but", "have", "an", "had", "they", "you", "were", "their", "one", "all", "we",
+                        "compression", "algorithm", "frequency", "Huffman", "tree", "code", "file", "data",
+                        "The", "Which", "However,", "therefore", "between", "during", "without", "\n"});
+                break;
+            case "codigo":
+                preencherComPalavras(dados, random, new String[]{
+                        "public", "static", "void", "int", "long", "byte[]", "return", "if", "for", "while",
+                        "(", ")", "{", "}\n", ";\n", "=", "==", "+=", "++", "<", "0", "1", "i", "j", "n",
+                        "dados", "tabela", "codigos[simbolo]", "comprimentos[i]", "new", "final", "    ",
+                        "        ", "//", "Huffman.", "escritor.escrever(", "throws IOException", "\n"});
+                break;
+            case "unico":
+                Arrays.fill(dados, (byte) 'A');
+                break;
+            case "aleatorio":
+                random.nextBytes(dados);
+                break;
+            case "desigual":
+                // Distribuição geométrica: cada caractere é metade mais provável que o anterior
+                for (int i = 0; i < tamanho; i++) {
+                    dados[i] = (byte) Math.min(255, Long.numberOfTrailingZeros(random.nextLong() | Long.MIN_VALUE));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Corpus desconhecido: " + nome);
+        }
+        return dados;
+    }
+
+    // Preenche os dados com palavras sorteadas; as primeiras da lista são mais frequentes (lei de Zipf)
+    private static void preencherComPalavras(byte[] dados, Random random, String[] palavras) {
+        int posicao = 0;
+        while (posicao < dados.length) {
+            int indice = (int) (palavras.length * Math.pow(random.nextDouble(), 2));
+            byte[] palavra = (palavras[indice] + " ").getBytes();
+            int quantidade = Math.min(palavra.length, dados.length - posicao);
+            System.arraycopy(palavra, 0, dados, posicao, quantidade);
+            posicao += quantidade;
+        }
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ClienteHuffman.java
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Cliente do servidor local (java -jar huffman.jar --serve), para usar o servidor e medir a sua carga
+ *
+ * - -c / -d: envia o conteúdo de um arquivo e grava a resposta (comprimida ou restaurada)
+ * - -c / -d com --caminhos: envia só os caminhos, e o próprio servidor lê e grava os arquivos
+ * - --carga: várias conexões, cada uma em uma thread virtual, repetem a mesma requisição; mostra a
+ *   vazão e os percentis de latência medidos no cliente (ida e volta) e depois as estatísticas do servidor
+ * - --estatisticas: mostra as estatísticas do servidor
+ *
+ * Uso: java ClienteHuffman <endereco> -c|-d [--caminhos] <entrada> <saida>
+ *      java ClienteHuffman <endereco> --carga <arquivo> [--conexoes <n>] [--requisicoes <n>] [--descomprimir]
+ *      java ClienteHuffman <endereco> --estatisticas
+ */
+public class ClienteHuffman implements Closeable {
+
+    private final SocketChannel canal;
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private byte[] resposta = new byte[0]; // Reaproveitado entre as respostas
+    private int tamanhoResposta;
+
+    /**
+     * Conecta ao servidor
+     * @param endereco A porta de localhost ou o caminho do socket Unix
+     */
+    public ClienteHuffman(String endereco) throws IOException {
+        canal = ServidorHuffman.conectar(endereco);
+        in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(canal), ServidorHuffman.TAMANHO_BUFFER));
+        out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal), ServidorHuffman.TAMANHO_BUFFER));
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            imprimirUso();
+            return;
+        }
+        String endereco = args[0];
+        String comando = args[1];
+        try {
+            if (comando.equals("--estatisticas")) {
+                try (ClienteHuffman cliente = new ClienteHuffman(endereco)) {
+                    System.out.println(cliente.estatisticas());
+                }
+            } else if (comando.equals("--carga") && args.length >= 3) {
+                int conexoes = 4;
+                int requisicoes = 1000;
+                boolean descomprimir = false;
+                for (int i = 3; i < args.length; i++) {
+                    if (args[i].equals("--conexoes") && i + 1 < args.length) {
+                        conexoes = Integer.parseInt(args[++i]);
+                    } else if (args[i].equals("--requisicoes") && i + 1 < args.length) {
+                        requisicoes = Integer.parseInt(args[++i]);
+                    } else if (args[i].equals("--descomprimir")) {
+                        descomprimir = true;
+                    } else {
+                        imprimirUso();
+                        return;
+                    }
+                }
+                if (conexoes < 1 || requisicoes < 1) {
+                    System.out.println("Conexões e requisições devem ser positivas");
+                    return;
+                }
+                System.out.println(carga(endereco, Path.of(args[2]), conexoes, requisicoes, descomprimir));
+                try (ClienteHuffman cliente = new ClienteHuffman(endereco)) {
+                    System.out.println(cliente.estatisticas());
+                }
+            } else if ((comando.equals("-c") || comando.equals("-d")) && args.length >= 4) {
+                boolean caminhos = args[2].equals("--caminhos");
+                if (caminhos && args.length < 5) {
+                    imprimirUso();
+                    return;
+                }
+                Path entrada = Path.of(args[args.length - 2]);
+                Path saida = Path.of(args[args.length - 1]);
+                try (ClienteHuffman cliente = new ClienteHuffman(endereco)) {
+                    if (caminhos) {
+                        long[] tamanhos = cliente.processarArquivo(comando.equals("-c"), entrada, saida);
+                        System.out.printf("{\"bytes_entrada\":%d,\"bytes_saida\":%d}%n", tamanhos[0], tamanhos[1]);
+                    } else {
+                        byte[] dados = Files.readAllBytes(entrada);
+                        int n = cliente.requisitar(comando.equals("-c") ? ServidorHuffman.COMPRIMIR : ServidorHuffman.DESCOMPRIMIR,
+                                dados, dados.length);
+                        try (OutputStream arquivo = Files.newOutputStream(saida)) {
+                            arquivo.write(cliente.getResposta(), 0, n);
+                        }
+                        System.out.printf("{\"bytes_entrada\":%d,\"bytes_saida\":%d}%n", dados.length, n);
+                    }
+                }
+            } else {
+                imprimirUso();
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Valor numérico inválido: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Erro: " + e.getMessage());
+        }
+    }
+
+    private static void imprimirUso() {
+        System.out.println("Uso: java ClienteHuffman <endereco> -c|-d [--caminhos] <entrada> <saida>");
+        System.out.println("     java ClienteHuffman <endereco> --carga <arquivo> [--conexoes <n>] [--requisicoes <n>] [--descomprimir]");
+        System.out.println("     java ClienteHuffman <endereco> --estatisticas");
+        System.out.println("<endereco>: a porta de localhost ou o caminho do socket Unix usados em --serve");
+    }
+
+    /**
+     * Envia uma requisição e espera a resposta
+     * @param operacao ServidorHuffman.COMPRIMIR, DESCOMPRIMIR, ...
+     * @param dados Os dados da requisição
+     * @param tamanho Quantos bytes de "dados" enviar
+     * @return O tamanho da resposta, que fica em getResposta()
+     * @throws IOException Se o servidor respondeu com um erro (a mensagem é a do servidor)
+     */
+    public int requisitar(byte operacao, byte[] dados, int tamanho) throws IOException {
+        out.writeByte(operacao);
+        out.writeInt(tamanho);
+        out.write(dados, 0, tamanho);
+        out.flush();
+
+        byte situacao = in.readByte();
+        tamanhoResposta = in.readInt();
+        if (tamanhoResposta < 0 || tamanhoResposta > ServidorHuffman.MAIOR_QUADRO) {
+            throw new IOException("Resposta inválida do servidor");
+        }
+        if (resposta.length < tamanhoResposta) resposta = new byte[tamanhoResposta];
+        in.readFully(resposta, 0, tamanhoResposta);
+        if (situacao != ServidorHuffman.OK) {
+            throw new IOException(new String(resposta, 0, tamanhoResposta, StandardCharsets.UTF_8));
+        }
+        return tamanhoResposta;
+    }
+
+    // O vetor com a última resposta (os bytes válidos são os primeiros, ver requisitar())
+    public byte[] getResposta() {
+        return resposta;
+    }
+
+    /**
+     * Pede ao servidor que comprima ou descomprima um arquivo, gravando o resultado em outro
+     * Os caminhos são enviados como absolutos, já que o servidor pode estar em outro diretório
+     * @return Os bytes lidos e gravados pelo servidor
+     */
+    public long[] processarArquivo(boolean comprimir, Path entrada, Path saida) throws IOException {
+        byte[] caminhos = (entrada.toAbsolutePath() + "\0" + saida.toAbsolutePath()).getBytes(StandardCharsets.UTF_8);
+        requisitar(comprimir ? ServidorHuffman.COMPRIMIR_ARQUIVO : ServidorHuffman.DESCOMPRIMIR_ARQUIVO,
+                caminhos, caminhos.length);
+        DataInputStream tamanhos = new DataInputStream(new ByteArrayInputStream(resposta, 0, tamanhoResposta));
+        return new long[]{tamanhos.readLong(), tamanhos.readLong()};
+    }
+
+    // As estatísticas do servidor, em uma linha JSON
+    public String estatisticas() throws IOException {
+        int n = requisitar(ServidorHuffman.ESTATISTICAS, new byte[0], 0);
+        return new String(resposta, 0, n, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Teste de carga: "conexoes" conexões ao mesmo tempo, cada uma com "requisicoes" requisições seguidas
+     * A primeira resposta de cada conexão é conferida (a ida e volta precisa restaurar o arquivo)
+     * @param endereco A porta de localhost ou o caminho do socket Unix
+     * @param arquivo O arquivo enviado em todas as requisições
+     * @param conexoes Quantas conexões (threads virtuais) ao mesmo tempo
+     * @param requisicoes Quantas requisições por conexão
+     * @param descomprimir Se true, mede a descompressão (o arquivo é comprimido uma vez antes)
+     * @return Uma linha JSON com a vazão e as latências medidas no cliente
+     */
+    static String carga(String endereco, Path arquivo, int conexoes, int requisicoes, boolean descomprimir)
+            throws IOException {
+        byte[] original = Files.readAllBytes(arquivo);
+        byte[] enviado = descomprimir ? new HuffmanCodec().comprimir(original) : original;
+        byte operacao = descomprimir ? ServidorHuffman.DESCOMPRIMIR : ServidorHuffman.COMPRIMIR;
+        Latencias latencias = new Latencias();
+
+        long inicio = System.nanoTime();
+        try (ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor()) {
+            List<Future<Void>> tarefas = new ArrayList<>();
+            for (int c = 0; c < conexoes; c++) {
+                tarefas.add(threads.submit(() -> {
+                    try (ClienteHuffman cliente = new ClienteHuffman(endereco)) {
+                        for (int r = 0; r < requisicoes; r++) {
+                            long antes = System.nanoTime();
+                            int n = cliente.requisitar(operacao, enviado, enviado.length);
+                            latencias.registrar(System.nanoTime() - antes);
+                            if (r == 0) conferir(cliente, original, descomprimir, n);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<Void> tarefa : tarefas) {
+                tarefa.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Teste de carga interrompido", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Erro no teste de carga", e.getCause());
+        }
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+
+        long total = (long) conexoes * requisicoes;
+        return String.format(Locale.ROOT,
+                "{\"cliente\":\"carga\",\"operacao\":\"%s\",\"bytes_requisicao\":%d,\"conexoes\":%d,\"requisicoes\":%d,"
+                        + "\"segundos\":%.3f,\"req_por_s\":%.1f,\"mb_por_s\":%.1f,\"latencia\":%s}",
+                descomprimir ? "descompressao" : "compressao", enviado.length, conexoes, total, segundos,
+                total / segundos, total * (double) original.length / segundos / (1 << 20), latencias.comoJson());
+    }
+
+    // Confere se a resposta restaura o arquivo original (descomprimindo localmente, na compressão)
+    private static void conferir(ClienteHuffman cliente, byte[] original, boolean descomprimido, int n) throws IOException {
+        byte[] restaurado = descomprimido ? Arrays.copyOf(cliente.getResposta(), n)
+                : new HuffmanCodec().descomprimir(Arrays.copyOf(cliente.getResposta(), n));
+        if (!Arrays.equals(original, restaurado)) {
+            throw new IOException("A resposta do servidor não restaura o arquivo original");
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// CodigoCanonico.java
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Códigos de Huffman canônicos
+ * Em um código canônico, os códigos são atribuídos em ordem (comprimento, caractere), então
+ * basta conhecer o comprimento do código de cada caractere para recriar todos os códigos
+ * Isso permite gravar no cabeçalho apenas os comprimentos, em vez da tabela de frequência inteira
+ *
+ * Formato da tabela de comprimentos no cabeçalho:
+ * - 1 byte: quantidade de caracteres presentes - 1
+ * - Caracteres presentes: lista de bytes (até 32 caracteres) ou mapa de 256 bits (32 bytes)
+ * - 1 byte: bits usados por comprimento (4 se todos os códigos têm até 15 bits, senão 6)
+ * - Os comprimentos, na ordem dos caracteres, empacotados com essa quantidade de bits
+ *
+ * A tabela é gravada e lida em vetores de bytes (sem alocação, usado por HuffmanCodec); as versões
+ * com DataOutputStream e DataInputStream passam por um vetor do tamanho máximo da tabela
+ */
+public class CodigoCanonico {
+
+    private static final int TAMANHO_ASCII = 256;
+    // Até esta quantidade de caracteres, a lista explícita é menor que o mapa de bits
+    private static final int LIMITE_LISTA = 32;
+    private static final int TAMANHO_MAPA = TAMANHO_ASCII / 8;
+    // Maior tabela possível: quantidade, mapa de bits, bits por comprimento e 256 comprimentos de 6 bits
+    public static final int TAMANHO_MAXIMO = 1 + TAMANHO_MAPA + 1 + TAMANHO_ASCII * 6 / 8;
+
+    /**
+     * Gera os códigos canônicos a partir dos comprimentos
+     * @param comprimentos O tamanho (em bits) do código de cada caractere; 0 indica caractere ausente
+     * @return Os bits do código de cada caractere, alinhados à direita
+     */
+    public static long[] gerarCodigos(int[] comprimentos) {
+        long[] codigos = new long[TAMANHO_ASCII];
+        gerarCodigos(comprimentos, codigos);
+        return codigos;
+    }
+
+    /**
+     * Gera os códigos canônicos a partir dos comprimentos, no vetor informado
+     * @param comprimentos O tamanho (em bits) do código de cada caractere; 0 indica caractere ausente
+     * @param codigos O vetor onde os bits de cada código serão armazenados (0 para os ausentes)
+     */
+    public static void gerarCodigos(int[] comprimentos, long[] codigos) {
+        // Bit c ligado: existe algum código de c bits (os comprimentos vão até 56, então cabem em um long)
+        long usados = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            usados |= 1L << comprimentos[i];
+        }
+        usados &= ~1L; // Comprimento 0: caractere ausente
+
+        Arrays.fill(codigos, 0, TAMANHO_ASCII, 0);
+        long codigo = 0;
+        int comprimentoAnterior = 0;
+        // Percorre os caracteres por ordem de comprimento e, em caso de empate, por ordem do caractere
+        // (só os comprimentos usados, em vez de todos os 56)
+        while (usados != 0) {
+            int comprimento = Long.numberOfTrailingZeros(usados);
+            usados &= usados - 1;
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                if (comprimentos[i] == comprimento) {
+                    codigo <<= (comprimento - comprimentoAnterior);
+                    codigos[i] = codigo++;
+                    comprimentoAnterior = comprimento;
+                }
+            }
+        }
+    }
+
+    /**
+     * Cria o decodificador por tabelas diretamente a partir dos comprimentos, sem árvore
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
+     * @param presentes Quais caracteres aparecem no arquivo (necessário quando só há um, de 0 bits)
+     * @return As tabelas de consulta prontas para decodificar
+     */
+    public static TabelaDecodificacao criarTabela(int[] comprimentos, boolean[] presentes) {
+        TabelaDecodificacao tabela = new TabelaDecodificacao();
+        preencherTabela(comprimentos, presentes, new long[TAMANHO_ASCII], tabela);
+        return tabela;
+    }
+
+    /**
+     * Remonta um decodificador já existente a partir dos comprimentos (sem alocar, depois da primeira vez)
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
+     * @param presentes Quais caracteres aparecem no arquivo
+     * @param codigos Vetor de trabalho, onde os códigos canônicos são gerados
+     * @param tabela O decodificador a ser remontado
+     */
+    public static void preencherTabela(int[] comprimentos, boolean[] presentes, long[] codigos, TabelaDecodificacao tabela) {
+        int quantidade = 0;
+        int ultimo = -1;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (presentes[i]) {
+                quantidade++;
+                ultimo = i;
+            }
+        }
+        if (quantidade == 1) {
+            tabela.reconstruirParaSimboloUnico(ultimo);
+            return;
+        }
+        gerarCodigos(comprimentos, codigos);
+        tabela.reconstruir(codigos, comprimentos);
+    }
+
+    /**
+     * Quantidade de bytes que escrever() vai gravar
+     * @param comprimentos O tamanho do código de cada caractere
+     * @param presentes Quais caracteres aparecem no arquivo (pelo menos um)
+     * @return O tamanho da tabela, em bytes (no máximo TAMANHO_MAXIMO)
+     */
+    public static int tamanho(int[] comprimentos, boolean[] presentes) {
+        int quantidade = 0;
+        int maiorComprimento = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (presentes[i]) {
+                quantidade++;
+                maiorComprimento = Math.max(maiorComprimento, comprimentos[i]);
+            }
+        }
+        int bitsPorComprimento = maiorComprimento <= 15 ? 4 : 6;
+        return 1 + (quantidade <= LIMITE_LISTA ? quantidade : TAMANHO_MAPA) + 1
+                + (quantidade * bitsPorComprimento + 7) / 8;
+    }
+
+    /**
+     * Grava a tabela de comprimentos de forma compacta
+     * @param out O stream de saída
+     * @param comprimentos O tamanho do código de cada caractere
+     * @param presentes Quais caracteres aparecem no arquivo (pelo menos um)
+     */
+    public static void escrever(DataOutputStream out, int[] comprimentos, boolean[] presentes) throws IOException {
+        byte[] tabela = new byte[TAMANHO_MAXIMO];
+        out.write(tabela, 0, escrever(tabela, 0, comprimentos, presentes));
+    }
+
+    /**
+     * Grava a tabela de comprimentos de forma compacta em um vetor
+     * @param destino O vetor de saída (com pelo menos tamanho() bytes livres a partir de "posicao")
+     * @param posicao A primeira posição do vetor a ser preenchida
+     * @param comprimentos O tamanho do código de cada caractere
+     * @param presentes Quais caracteres aparecem no arquivo (pelo menos um)
+     * @return A posição seguinte ao último byte gravado
+     */
+    public static int escrever(byte[] destino, int posicao, int[] comprimentos, boolean[] presentes) {
+        int quantidade = 0;
+        int maiorComprimento = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (presentes[i]) {
+                quantidade++;
+                maiorComprimento = Math.max(maiorComprimento, comprimentos[i]);
+            }
+        }
+        destino[posicao++] = (byte) (quantidade - 1);
+
+        // Quais caracteres estão presentes: lista explícita ou mapa de bits, o que for menor
+        if (quantidade <= LIMITE_LISTA) {
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                if (presentes[i]) destino[posicao++] = (byte) i;
+            }
+        } else {
+            Arrays.fill(destino, posicao, posicao + TAMANHO_MAPA, (byte) 0);
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                if (presentes[i]) destino[posicao + (i >>> 3)] |= (byte) (0x80 >>> (i & 7));
+            }
+            posicao += TAMANHO_MAPA;
+        }
+
+        // Os comprimentos, empacotados com 4 ou 6 bits cada (os bits mais recentes ficam à direita)
+        int bitsPorComprimento = maiorComprimento <= 15 ? 4 : 6;
+        destino[posicao++] = (byte) bitsPorComprimento;
+        int acumulador = 0;
+        int bitsPendentes = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (!presentes[i]) continue;
+            acumulador = (acumulador << bitsPorComprimento) | comprimentos[i];
+            bitsPendentes += bitsPorComprimento;
+            if (bitsPendentes >= 8) {
+                bitsPendentes -= 8;
+                destino[posicao++] = (byte) (acumulador >>> bitsPendentes);
+            }
+        }
+        if (bitsPendentes > 0) {
+            destino[posicao++] = (byte) (acumulador << (8 - bitsPendentes));
+        }
+        return posicao;
+    }
+
+    /**
+     * Lê a tabela de comprimentos gravada por escrever() e confere se ela forma um código válido
+     * @param in O stream de entrada, posicionado no início da tabela
+     * @param comprimentos O vetor (256 posições) que receberá o tamanho do código de cada caractere
+     * @param presentes O vetor (256 posições) que indicará quais caracteres aparecem no arquivo
+     */
+    public static void ler(DataInputStream in, int[] comprimentos, boolean[] presentes) throws IOException {
+        // Copia do stream exatamente os bytes da tabela, campo a campo, e os interpreta no vetor
+        byte[] tabela = new byte[TAMANHO_MAXIMO];
+        tabela[0] = in.readByte();
+        int quantidade = (tabela[0] & 0xFF) + 1;
+        int tamanhoPresentes = quantidade <= LIMITE_LISTA ? quantidade : TAMANHO_MAPA;
+        in.readFully(tabela, 1, tamanhoPresentes + 1);
+        int bitsPorComprimento = tabela[1 + tamanhoPresentes];
+        if (bitsPorComprimento != 4 && bitsPorComprimento != 6) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        int tamanho = 2 + tamanhoPresentes + (quantidade * bitsPorComprimento + 7) / 8;
+        in.readFully(tabela, 2 + tamanhoPresentes, tamanho - 2 - tamanhoPresentes);
+        ler(tabela, 0, tamanho, comprimentos, presentes);
+    }
+
+    /**
+     * Lê de um vetor a tabela de comprimentos gravada por escrever() e confere se ela forma um código válido
+     * @param dados O vetor com a tabela
+     * @param posicao A posição do início da tabela
+     * @param fim A posição seguinte ao último byte que pode ser lido
+     * @param comprimentos O vetor (256 posições) que receberá o tamanho do código de cada caractere
+     * @param presentes O vetor (256 posições) que indicará quais caracteres aparecem no arquivo
+     * @return A posição seguinte ao último byte da tabela
+     */
+    public static int ler(byte[] dados, int posicao, int fim, int[] comprimentos, boolean[] presentes) throws IOException {
+        Arrays.fill(comprimentos, 0, TAMANHO_ASCII, 0);
+        Arrays.fill(presentes, 0, TAMANHO_ASCII, false);
+        exigir(posicao + 1, fim);
+        int quantidade = (dados[posicao++] & 0xFF) + 1;
+
+        if (quantidade <= LIMITE_LISTA) {
+            exigir(posicao + quantidade, fim);
+            for (int k = 0; k < quantidade; k++) {
+                int caractere = dados[posicao++] & 0xFF;
+                // Na lista, cada caractere aparece uma vez, em ordem crescente
+                if (presentes[caractere]) {
+                    throw new IOException("Formato de arquivo inválido ou corrompido");
+                }
+                presentes[caractere] = true;
+            }
+        } else {
+            exigir(posicao + TAMANHO_MAPA, fim);
+            int marcados = 0;
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                presentes[i] = (dados[posicao + (i >>> 3)] & (0x80 >>> (i & 7))) != 0;
+                if (presentes[i]) marcados++;
+            }
+            if (marcados != quantidade) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            posicao += TAMANHO_MAPA;
+        }
+
+        exigir(posicao + 1, fim);
+        int bitsPorComprimento = dados[posicao++];
+        if (bitsPorComprimento != 4 && bitsPorComprimento != 6) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        int inicioComprimentos = posicao;
+        posicao += (quantidade * bitsPorComprimento + 7) / 8;
+        exigir(posicao, fim);
+        int bit = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (!presentes[i]) continue;
+            int valor = 0;
+            for (int k = 0; k < bitsPorComprimento; k++, bit++) {
+                valor = (valor << 1) | ((dados[inicioComprimentos + (bit >>> 3)] >>> (7 - (bit & 7))) & 1);
+            }
+            comprimentos[i] = valor;
+        }
+
+        validar(comprimentos, presentes, quantidade);
+        return posicao;
+    }
+
+    // Confere se a tabela não passa do fim dos dados disponíveis
+    private static void exigir(int posicao, int fim) throws IOException {
+        if (posicao > fim) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+    }
+
+    /**
+     * Confere se os comprimentos lidos formam um código de prefixo completo (soma de Kraft = 1)
+     * Um arquivo corrompido poderia gerar tabelas de decodificação inconsistentes
+     */
+    private static void validar(int[] comprimentos, boolean[] presentes, int quantidade) throws IOException {
+        if (quantidade == 1) return; // Caractere único: código de 0 bits
+        long soma = 0;
+        long total = 1L << EscritorBits.MAX_BITS_CODIGO;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (!presentes[i]) continue;
+            if (comprimentos[i] < 1 || comprimentos[i] > EscritorBits.MAX_BITS_CODIGO) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            soma += total >>> comprimentos[i];
+        }
+        if (soma != total) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// CodigoLimitado.java
+
+import java.util.Arrays;
+
+/**
+ * Comprimentos de código com um tamanho máximo, pelo algoritmo package-merge
+ * A árvore de Huffman não limita a profundidade: distribuições muito desiguais geram códigos
+ * longos, que não cabem em uma única consulta da TabelaDecodificacao (11 bits)
+ * O package-merge encontra, entre todos os códigos de prefixo com no máximo L bits, o de menor
+ * tamanho total (soma de frequência x comprimento), ou seja, o ótimo com o limite
+ *
+ * Funcionamento, com os caracteres ordenados por frequência:
+ * - Há uma lista por comprimento, de L até 1; a lista L contém apenas os caracteres
+ * - A lista j é a junção (ordenada) dos caracteres com os "pacotes" formados por pares
+ *   consecutivos da lista j + 1 (a frequência do pacote é a soma do par)
+ * - Os 2n - 2 primeiros itens da lista 1 são escolhidos; cada vez que um caractere aparece
+ *   entre os itens escolhidos (diretamente ou dentro de um pacote), o seu código ganha 1 bit
+ */
+public class CodigoLimitado {
+
+    private static final int TAMANHO_ASCII = 256;
+
+    /**
+     * Calcula os comprimentos ótimos com no máximo maxBits bits
+     * @param tabelaFrequencia A tabela de frequência dos dados
+     * @param maxBits O maior comprimento de código permitido
+     * @return O comprimento do código de cada caractere (0 para os ausentes)
+     */
+    public static int[] calcularComprimentos(long[] tabelaFrequencia, int maxBits) {
+        // Caracteres presentes, em ordem crescente de frequência (empate: ordem do caractere)
+        int n = 0;
+        long[] ordenados = new long[TAMANHO_ASCII];
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            if (tabelaFrequencia[i] > 0) {
+                ordenados[n++] = (tabelaFrequencia[i] << 8) | i;
+            }
+        }
+        ordenados = Arrays.copyOf(ordenados, n);
+        Arrays.sort(ordenados);
+
+        int[] comprimentos = new int[TAMANHO_ASCII];
+        if (n <= 1) return comprimentos; // Nenhum ou um caractere: código de 0 bits
+        // Com L bits cabem no máximo 2^L caracteres (com 8 bits ou mais, cabem todos os 256)
+        if (maxBits < 1 || (maxBits < 8 && n > (1 << maxBits))) {
+            throw new IllegalArgumentException("Códigos de até " + maxBits + " bits não comportam " + n + " caracteres");
+        }
+
+        long[] folhas = new long[n];
+        for (int i = 0; i < n; i++) folhas[i] = ordenados[i] >>> 8;
+
+        // Para cada lista, guarda se cada item é um pacote (true) ou um caractere (false)
+        boolean[][] ehPacote = new boolean[maxBits + 1][];
+        long[] anterior = folhas.clone();
+        ehPacote[maxBits] = new boolean[n];
+        for (int j = maxBits - 1; j >= 1; j--) {
+            int pacotes = anterior.length / 2;
+            long[] lista = new long[n + pacotes];
+            boolean[] tipo = new boolean[n + pacotes];
+            int f = 0, p = 0, k = 0;
+            while (f < n || p < pacotes) {
+                long pesoPacote = p < pacotes ? anterior[2 * p] + anterior[2 * p + 1] : Long.MAX_VALUE;
+                // Em caso de empate, o caractere vem antes do pacote
+                if (f < n && folhas[f] <= pesoPacote) {
+                    lista[k++] = folhas[f++];
+                } else {
+                    tipo[k] = true;
+                    lista[k++] = pesoPacote;
+                    p++;
+                }
+            }
+            ehPacote[j] = tipo;
+            anterior = lista;
+        }
+
+        // Percorre as listas de 1 até L contando quantos itens são usados em cada uma
+        int usados = 2 * n - 2;
+        for (int j = 1; j <= maxBits && usados > 0; j++) {
+            int caracteres = 0;
+            int pacotes = 0;
+            for (int k = 0; k < usados; k++) {
+                if (ehPacote[j][k]) pacotes++;
+                else caracteres++;
+            }
+            // Os caracteres de uma lista aparecem em ordem de frequência: os "caracteres" primeiros ganham 1 bit
+            for (int i = 0; i < caracteres; i++) {
+                comprimentos[(int) (ordenados[i] & 0xFF)]++;
+            }
+            usados = 2 * pacotes;
+        }
+        return comprimentos;
+    }
+
+    // Maior comprimento de código da tabela
+    static int maiorComprimento(int[] comprimentos) {
+        int maior = 0;
+        for (int c : comprimentos) maior = Math.max(maior, c);
+        return maior;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// EscritorBits.java
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Empacota códigos de Huffman (bits + comprimento) diretamente em um vetor de bytes
+ * Os bits são acumulados em um long de 64 bits e descarregados de 8 em 8 no buffer,
+ * evitando a montagem de uma String com um caractere por bit
+ */
+public class EscritorBits {
+
+    // Maior código aceito por escrita: com até 7 bits pendentes, o acumulador de 64 bits comporta 57 novos
+    // (o limite usado é 56, que também é o mínimo garantido pelo leitor da TabelaDecodificacao após uma recarga)
+    public static final int MAX_BITS_CODIGO = 56;
+
+    private byte[] buffer;        // Vetor de saída onde os bytes completos são gravados
+    private int posicao;          // Próxima posição livre no buffer
+    private long acumulador;      // Bits ainda não descarregados (os mais recentes ficam à direita)
+    private int bitsPendentes;    // Quantidade de bits válidos no acumulador (sempre < 8 entre escritas)
+
+    /**
+     * Cria um escritor que grava no vetor informado a partir de uma posição inicial
+     * @param buffer O vetor de saída, já com o tamanho final dos dados comprimidos
+     * @param posicaoInicial A primeira posição do vetor a ser preenchida
+     */
+    public EscritorBits(byte[] buffer, int posicaoInicial) {
+        reiniciar(buffer, posicaoInicial);
+    }
+
+    /**
+     * Volta ao estado inicial, gravando em outro vetor (permite reaproveitar o mesmo escritor, ver HuffmanCodec)
+     * @param buffer O vetor de saída
+     * @param posicaoInicial A primeira posição do vetor a ser preenchida
+     */
+    public final void reiniciar(byte[] buffer, int posicaoInicial) {
+        this.buffer = buffer;
+        this.posicao = posicaoInicial;
+        this.acumulador = 0;
+        this.bitsPendentes = 0;
+    }
+
+    /**
+     * Acrescenta um código ao fluxo de bits, do bit mais significativo para o menos significativo
+     * @param codigo Os bits do código, alinhados à direita
+     * @param comprimento A quantidade de bits do código (no máximo MAX_BITS_CODIGO)
+     */
+    public void escrever(long codigo, int comprimento) {
+        acumulador = (acumulador << comprimento) | codigo;
+        bitsPendentes += comprimento;
+        // Descarrega todos os bytes completos que se formaram no acumulador
+        while (bitsPendentes >= 8) {
+            bitsPendentes -= 8;
+            buffer[posicao++] = (byte) (acumulador >>> bitsPendentes);
+        }
+    }
+
+    /**
+     * Grava os bits que sobraram no último byte, alinhados à esquerda e completados com zeros
+     * (o formato antigo alinhava esses bits à direita e guardava a quantidade em um byte de padding;
+     * no formato canônico o decodificador sabe quantos caracteres ler e dispensa essa informação)
+     */
+    public void completarByte() {
+        if (bitsPendentes > 0) {
+            buffer[posicao++] = (byte) (acumulador << (8 - bitsPendentes));
+            bitsPendentes = 0;
+        }
+    }
+
+    /**
+     * Grava no stream os bytes completos do buffer e volta a preenchê-lo desde o início
+     * Permite usar um buffer de tamanho fixo para uma saída de qualquer tamanho (modo stream)
+     * Os bits pendentes continuam no acumulador e seguem para o próximo descarregamento
+     * @param destino O stream de saída
+     */
+    public void descarregar(OutputStream destino) throws IOException {
+        destino.write(buffer, 0, posicao);
+        posicao = 0;
+    }
+
+    // Retorna a próxima posição livre do buffer (ou seja, quantos bytes já foram ocupados)
+    public int getPosicao() {
+        return posicao;
+    }
+
+    // Quantos bits do último byte ainda não foram gravados no buffer (de 0 a 7)
+    public int getBitsPendentes() {
+        return bitsPendentes;
+    }
+}
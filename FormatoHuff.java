@@ -0,0 +1,173 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// FormatoHuff.java
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * Constantes e início do cabeçalho do formato .huff (versão 2, canônico)
+ *
+ * Início comum a todos os arquivos:
+ * - 4 bytes: "HUFF"
+ * - 1 byte: versão
+ * - 1 byte: flags (indicam como o restante do arquivo está organizado)
+ * - 8 bytes: tamanho do arquivo original
+ *
+ * Sem flags, segue uma única tabela de comprimentos (CodigoCanonico) e os dados comprimidos
+ * Com FLAG_BLOCOS, segue o tamanho dos blocos (int) e os blocos, cada um com sua própria tabela
+ * (com FLAG_BLOCOS e TAMANHO_DESCONHECIDO, gerado por HuffmanOutputStream, cada bloco grava também o
+ * seu tamanho original e um bloco de tamanho 0 marca o fim, ver ModoBlocos)
+ * Com FLAG_INDICE, o arquivo termina com o índice dos blocos (IndiceBlocos)
+ * Com FLAG_ADAPTATIVO, o tamanho é TAMANHO_DESCONHECIDO e seguem os códigos do Huffman adaptativo,
+ * terminados por um símbolo de fim (ModoAdaptativo)
+ * Com FLAG_CONTEXTO, seguem as tabelas de ordem 1 (uma por contexto ou compartilhada, ver ModoContexto)
+ * e os dados comprimidos
+ * Com FLAG_MODELO, segue só o identificador (int) de um modelo treinado no lugar da tabela, e os dados
+ * comprimidos com os códigos do modelo (ModeloHuffman)
+ * Com FLAG_ARMAZENADO, seguem os dados originais, sem compressão (ver armazenar); com FLAG_BLOCOS e
+ * FLAG_ARMAZENADO, os blocos cujo tamanho comprimido é igual ao original estão armazenados assim
+ * Com FLAG_SINCRONIA (só na tabela única), o arquivo termina com os pontos de sincronização
+ * (PontosSincronia), que permitem restaurar um trecho sem decodificar o que vem antes dele
+ * Com FLAG_INTERCALADO (só na tabela única), os dados são divididos em FLUXOS_INTERCALADOS fluxos (o
+ * caractere i vai para o fluxo i % 4): depois da tabela, o tamanho em bytes de cada fluxo (int) e os
+ * fluxos, um depois do outro, cada um completado até o byte (ver TabelaDecodificacao.decodificarIntercalado)
+ */
+public class FormatoHuff {
+
+    public static final int MAGIA = 0x48554646; // "HUFF"
+    public static final int VERSAO_CANONICA = 2;
+    // Os arquivos do formato antigo (versão 1) começam com a assinatura da serialização Java
+    public static final int MAGIA_SERIALIZACAO = 0xACED;
+
+    // O arquivo é dividido em blocos independentes, cada um com sua própria tabela de códigos
+    public static final int FLAG_BLOCOS = 0x01;
+    // Há um índice dos blocos no final do arquivo, que permite decodificá-los em paralelo
+    public static final int FLAG_INDICE = 0x02;
+    // Huffman adaptativo, em uma única passagem: não há tabela e o tamanho original não é gravado
+    public static final int FLAG_ADAPTATIVO = 0x04;
+    // Huffman de ordem 1: a tabela de códigos de cada caractere é escolhida pelo caractere anterior
+    public static final int FLAG_CONTEXTO = 0x08;
+    // Os códigos são os de um modelo treinado (--train), identificado no cabeçalho no lugar da tabela
+    public static final int FLAG_MODELO = 0x10;
+    // Dados incompressíveis (aleatórios, já comprimidos, criptografados) armazenados como estão
+    public static final int FLAG_ARMAZENADO = 0x20;
+    // Os dados comprimidos são seguidos dos pontos de sincronização (-c --sincronia, extração com -x)
+    public static final int FLAG_SINCRONIA = 0x40;
+    // Os dados são divididos em fluxos intercalados, decodificados juntos (-c --intercalado)
+    public static final int FLAG_INTERCALADO = 0x80;
+
+    // Quantidade de fluxos de FLAG_INTERCALADO
+    public static final int FLUXOS_INTERCALADOS = 4;
+
+    // Valor do campo de tamanho quando a entrada tinha tamanho desconhecido (pipe, entrada padrão)
+    public static final long TAMANHO_DESCONHECIDO = -1;
+
+    // Tamanho do início do cabeçalho: assinatura, versão, flags e tamanho original
+    public static final int TAMANHO_INICIO = 14;
+
+    // A compressão precisa ganhar mais que 1/64 (~1,6%) do tamanho original; senão, os dados são armazenados
+    private static final int FRACAO_GANHO_MINIMO = 64;
+
+    // Campos int e long lidos e gravados direto em vetores de bytes, na mesma ordem do DataOutputStream
+    private static final VarHandle INT_BE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Escreve o início do cabeçalho
+     * @param out O stream de saída
+     * @param flags As flags que descrevem o restante do arquivo
+     * @param tamanhoOriginal O tamanho do arquivo original, em bytes
+     */
+    public static void escreverInicio(DataOutputStream out, int flags, long tamanhoOriginal) throws IOException {
+        out.writeInt(MAGIA);
+        out.writeByte(VERSAO_CANONICA);
+        out.writeByte(flags);
+        out.writeLong(tamanhoOriginal);
+    }
+
+    /**
+     * Escreve o início do cabeçalho em um vetor de bytes (mesmos bytes da versão com DataOutputStream)
+     * @param destino O vetor de saída (com pelo menos TAMANHO_INICIO bytes livres)
+     * @param posicao A primeira posição do vetor a ser preenchida
+     * @param flags As flags que descrevem o restante do arquivo
+     * @param tamanhoOriginal O tamanho do arquivo original, em bytes
+     * @return A posição seguinte ao cabeçalho
+     */
+    public static int escreverInicio(byte[] destino, int posicao, int flags, long tamanhoOriginal) {
+        escreverInt(destino, posicao, MAGIA);
+        destino[posicao + 4] = VERSAO_CANONICA;
+        destino[posicao + 5] = (byte) flags;
+        LONG_BE.set(destino, posicao + 6, tamanhoOriginal);
+        return posicao + TAMANHO_INICIO;
+    }
+
+    /**
+     * Confere a assinatura e a versão e lê as flags do início do cabeçalho gravado em um vetor
+     * O tamanho original fica nos 8 bytes seguintes (ver lerTamanho)
+     * @param dados O vetor com o arquivo comprimido
+     * @param posicao A posição do início do arquivo
+     * @param fim A posição seguinte ao último byte que pode ser lido
+     * @return As flags gravadas no arquivo
+     */
+    public static int lerFlags(byte[] dados, int posicao, int fim) throws IOException {
+        if (fim - posicao < TAMANHO_INICIO || lerInt(dados, posicao) != MAGIA || dados[posicao + 4] != VERSAO_CANONICA) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        return dados[posicao + 5] & 0xFF;
+    }
+
+    /**
+     * Decide, antes da codificação, se os dados devem ser armazenados sem compressão
+     * O tamanho comprimido vem das frequências e dos comprimentos dos códigos (tabela + bits de cada
+     * caractere), então os dados incompressíveis não chegam a ser codificados
+     * Dados armazenados nunca ficam maiores que o original, e dados comprimidos ficam sempre menores:
+     * em um bloco, tamanho comprimido igual ao original indica um bloco armazenado
+     * @param tamanhoComprimido O tamanho da tabela de comprimentos e dos dados comprimidos, em bytes
+     * @param tamanhoOriginal O tamanho dos dados originais, em bytes
+     * @return true se o ganho da compressão não passa do mínimo
+     */
+    public static boolean armazenar(long tamanhoComprimido, long tamanhoOriginal) {
+        return tamanhoOriginal > 0 && tamanhoOriginal - tamanhoComprimido <= tamanhoOriginal / FRACAO_GANHO_MINIMO;
+    }
+
+    // Tamanho original gravado no início do cabeçalho que começa na posição informada
+    public static long lerTamanho(byte[] dados, int posicao) {
+        return (long) LONG_BE.get(dados, posicao + 6);
+    }
+
+    // Grava um int (4 bytes, do mais significativo para o menos significativo) no vetor
+    public static void escreverInt(byte[] destino, int posicao, int valor) {
+        INT_BE.set(destino, posicao, valor);
+    }
+
+    // Lê um int gravado por escreverInt() ou por DataOutputStream.writeInt()
+    public static int lerInt(byte[] dados, int posicao) {
+        return (int) INT_BE.get(dados, posicao);
+    }
+
+    /**
+     * Confere a assinatura e a versão e lê as flags do cabeçalho
+     * O próximo campo do stream é o tamanho original (long)
+     * @param in O stream posicionado no início do arquivo
+     * @return As flags gravadas no arquivo
+     */
+    public static int lerFlags(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIA || in.readUnsignedByte() != VERSAO_CANONICA) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        return in.readUnsignedByte();
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// Histograma.java
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Contagem de frequência dos bytes (ETAPA 1) em paralelo
+ *
+ * Com uma única tabela, bytes iguais em sequência incrementam sempre o mesmo contador e cada
+ * incremento precisa esperar o anterior ser gravado. Por isso cada contagem usa 4 tabelas
+ * intercaladas (o byte i vai para a tabela i % 4), somadas no final
+ * Além disso, os dados são divididos em fatias contadas por threads diferentes, cada uma com
+ * as suas próprias tabelas, e os resultados das fatias são somados à tabela de frequência
+ * Cada chamada conta no máximo um vetor (menos de 2 GB), então as tabelas internas são int;
+ * a tabela de frequência é long, porque acumula as contagens de arquivos de qualquer tamanho
+ * Os laços de contagem de vetores de bytes ficam em Kernels (versão escalar ou vetorial)
+ */
+public class Histograma implements AutoCloseable {
+
+    private static final int TAMANHO_ASCII = 256;
+    private static final int TABELAS = 4;
+    // Tamanho do vetor das 4 tabelas intercaladas, para quem reaproveita o vetor entre contagens
+    static final int TAMANHO_TABELAS = TABELAS * TAMANHO_ASCII;
+    // Fatias menores que isso não compensam o custo de distribuir o trabalho entre threads
+    static final int MENOR_FATIA = 256 << 10; // 256 KB
+
+    private final ForkJoinPool pool;
+    private final int paralelismo;
+
+    /**
+     * Cria o contador com a quantidade de threads informada
+     * @param paralelismo Quantidade de threads usadas na contagem (1 = sem threads extras)
+     */
+    public Histograma(int paralelismo) {
+        this.paralelismo = paralelismo;
+        this.pool = paralelismo > 1 ? new ForkJoinPool(paralelismo) : null;
+    }
+
+    /**
+     * Soma à tabela de frequência as ocorrências de um trecho de bytes, dividido em fatias paralelas
+     * @param dados O vetor de bytes
+     * @param tamanho Quantos bytes do vetor são válidos
+     * @param freq A tabela de frequência a ser atualizada
+     */
+    public void acumular(byte[] dados, int tamanho, long[] freq) {
+        int fatias = quantidadeFatias(tamanho);
+        if (fatias == 1) {
+            acumular(dados, 0, tamanho, freq);
+            return;
+        }
+        List<ForkJoinTask<long[]>> tarefas = new ArrayList<>();
+        for (int k = 0; k < fatias; k++) {
+            int inicio = (int) ((long) tamanho * k / fatias);
+            int fim = (int) ((long) tamanho * (k + 1) / fatias);
+            tarefas.add(pool.submit(() -> {
+                long[] parcial = new long[TAMANHO_ASCII];
+                acumular(dados, inicio, fim, parcial);
+                return parcial;
+            }));
+        }
+        somar(tarefas, freq);
+    }
+
+    /**
+     * Mesma contagem de acumular(byte[]...), lendo de um ByteBuffer (por exemplo, um arquivo mapeado)
+     * @param dados O buffer, lido por posição absoluta (a posição do buffer não é alterada)
+     * @param tamanho Quantos bytes do buffer são válidos, a partir do índice 0
+     * @param freq A tabela de frequência a ser atualizada
+     */
+    public void acumular(ByteBuffer dados, int tamanho, long[] freq) {
+        int fatias = quantidadeFatias(tamanho);
+        if (fatias == 1) {
+            acumular(dados, 0, tamanho, freq);
+            return;
+        }
+        List<ForkJoinTask<long[]>> tarefas = new ArrayList<>();
+        for (int k = 0; k < fatias; k++) {
+            int inicio = (int) ((long) tamanho * k / fatias);
+            int fim = (int) ((long) tamanho * (k + 1) / fatias);
+            tarefas.add(pool.submit(() -> {
+                long[] parcial = new long[TAMANHO_ASCII];
+                acumular(dados, inicio, fim, parcial);
+                return parcial;
+            }));
+        }
+        somar(tarefas, freq);
+    }
+
+    // Cada thread recebe pelo menos MENOR_FATIA bytes
+    private int quantidadeFatias(int tamanho) {
+        if (pool == null) return 1;
+        return Math.max(1, Math.min(paralelismo, tamanho / MENOR_FATIA));
+    }
+
+    // Espera as fatias terminarem e soma as contagens parciais
+    private static void somar(List<ForkJoinTask<long[]>> tarefas, long[] freq) {
+        for (ForkJoinTask<long[]> tarefa : tarefas) {
+            long[] parcial = tarefa.join();
+            for (int s = 0; s < TAMANHO_ASCII; s++) {
+                freq[s] += parcial[s];
+            }
+        }
+    }
+
+    /**
+     * Conta um trecho na thread atual, com as 4 tabelas intercaladas
+     * @param dados O vetor de bytes
+     * @param inicio A posição do primeiro byte do trecho
+     * @param fim A posição logo após o último byte do trecho
+     * @param freq A tabela de frequência a ser atualizada
+     */
+    static void acumular(byte[] dados, int inicio, int fim, long[] freq) {
+        acumular(dados, inicio, fim, freq, new int[TAMANHO_TABELAS]);
+    }
+
+    /**
+     * Conta um trecho na thread atual usando um vetor de tabelas já existente (sem alocar, ver HuffmanCodec)
+     * @param dados O vetor de bytes
+     * @param inicio A posição do primeiro byte do trecho
+     * @param fim A posição logo após o último byte do trecho
+     * @param freq A tabela de frequência a ser atualizada
+     * @param tabelas Vetor de trabalho com TAMANHO_TABELAS posições (o conteúdo anterior é descartado)
+     */
+    static void acumular(byte[] dados, int inicio, int fim, long[] freq, int[] tabelas) {
+        // As 4 tabelas ficam lado a lado no mesmo vetor: tabela k = posições [256k, 256k + 255]
+        Arrays.fill(tabelas, 0);
+        Kernels.ATUAL.contar(dados, inicio, fim, tabelas);
+        Kernels.ATUAL.juntar(tabelas, freq);
+    }
+
+    // Mesmo laço da versão escalar de Kernels.contar(), sobre um ByteBuffer
+    // (no JDK 21, a Vector API só lê um ByteBuffer por MemorySegment, ainda em preview)
+    static void acumular(ByteBuffer dados, int inicio, int fim, long[] freq) {
+        int[] tabelas = new int[TAMANHO_TABELAS];
+        int i = inicio;
+        for (; i + 3 < fim; i += 4) {
+            tabelas[dados.get(i) & 0xFF]++;
+            tabelas[256 + (dados.get(i + 1) & 0xFF)]++;
+            tabelas[512 + (dados.get(i + 2) & 0xFF)]++;
+            tabelas[768 + (dados.get(i + 3) & 0xFF)]++;
+        }
+        for (; i < fim; i++) {
+            tabelas[dados.get(i) & 0xFF]++;
+        }
+        Kernels.ATUAL.juntar(tabelas, freq);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdown();
+    }
+}
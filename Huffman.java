@@ -14,6 +14,11 @@
 // @return = descrever o que o método retorna como resultado
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
 
 /**
@@ -25,118 +30,1114 @@ public class Huffman {
     // Define o tamanho da tabela ASCII padrão (0-255) para a contagem de frequências
     private static final int TAMANHO_ASCII = 256;
 
+    // Tamanho dos blocos lidos do arquivo no modo stream (a memória usada não depende do arquivo)
+    private static final int TAMANHO_BUFFER_STREAM = 1 << 16;
+    // Maior vetor de bytes que a JVM consegue criar; arquivos maiores são processados em trechos
+    private static final long MAIOR_VETOR = Integer.MAX_VALUE - 8;
+    // Valor de --max-bits que indica códigos sem limite de comprimento (árvore de Huffman pura)
+    public static final int SEM_LIMITE = 0;
+    // Nome de arquivo que indica a entrada padrão (stdin) ou a saída padrão (stdout)
+    private static final String PADRAO = "-";
+
     /**
      * Ponto de entrada do programa (método main)
      * Responsável por interpretar os argumentos da linha de comando e chamar o método correto
-     * @param args Argumentos da linha de comando (-c ou -d, arquivo de entrada, arquivo de saída)
+     * Sem --verbose, a única saída é uma linha JSON com os tempos de cada etapa (ver Metricas)
+     * Quando os dados vão para a saída padrão ("-"), a linha JSON é impressa na saída de erros
+     * @param args Argumentos da linha de comando (-c, -a ou -d, opções, arquivo de entrada, arquivo de saída),
+     *             --serve, opções e endereço, --train, opções, arquivos de amostra e arquivo do modelo,
+     *             ou -x, opções, início e tamanho do trecho, arquivo comprimido e arquivo de saída
      */
     public static void main(String[] args) {
+        if (args.length >= 2 && args[0].equals("--serve")) {
+            servir(args);
+            return;
+        }
+        if (args.length >= 3 && args[0].equals("--train")) {
+            treinar(args);
+            return;
+        }
+        if (args.length >= 5 && args[0].equals("-x")) {
+            extrair(args);
+            return;
+        }
+
         // Valida se o número de argumentos está correto
-        if (args.length != 3) {
-            System.out.println("Uso incorreto. Comandos:");
-            System.out.println("Para comprimir: java -jar huffman.jar -c <arquivo_original> <arquivo_comprimido>");
-            System.out.println("Para descomprimir: java -jar huffman.jar -d <arquivo_comprimido> <arquivo_restaurado>");
+        if (args.length < 3) {
+            imprimirUso();
             return; // Encerra o programa se os argumentos estiverem errados
         }
 
-        // Armazena os argumentos em variáveis
+        // Armazena os argumentos em variáveis (os dois últimos são sempre os arquivos)
         String opcao = args[0];
-        String arquivoEntrada = args[1];
-        String arquivoSaida = args[2];
+        String arquivoEntrada = args[args.length - 2];
+        String arquivoSaida = args[args.length - 1];
+
+        // Opções extras, entre o comando e os arquivos
+        Opcoes opcoes = new Opcoes();
+        boolean modoStream = false;
+        boolean modoContexto = false;
+        int tamanhoBloco = 0; // 0 = sem divisão em blocos
+        int intervaloSincronia = 0; // 0 = sem pontos de sincronização
+        try {
+            for (int i = 1; i < args.length - 2; i++) {
+                if (args[i].equals("--stream")) {
+                    modoStream = true;
+                } else if (args[i].equals("--contexto")) {
+                    modoContexto = true;
+                } else if (args[i].equals("--intercalado")) {
+                    opcoes.intercalado = true;
+                } else if (args[i].equals("--mmap")) {
+                    opcoes.mapear = true;
+                } else if (args[i].equals("--pipeline")) {
+                    opcoes.pipeline = true;
+                } else if (args[i].equals("--trecho") && i + 1 < args.length - 2) {
+                    opcoes.tamanhoTrecho = Integer.parseInt(args[++i]) << 10; // Informado em KB
+                } else if (args[i].equals("--fila") && i + 1 < args.length - 2) {
+                    opcoes.profundidadeFila = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--verbose")) {
+                    opcoes.verbose = true;
+                } else if (args[i].equals("--blocos") && i + 1 < args.length - 2) {
+                    tamanhoBloco = Integer.parseInt(args[++i]) << 10; // Informado em KB
+                } else if (args[i].equals("--sincronia") && i + 1 < args.length - 2) {
+                    intervaloSincronia = Integer.parseInt(args[++i]) << 10; // Informado em KB
+                } else if (args[i].equals("--threads") && i + 1 < args.length - 2) {
+                    opcoes.threads = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--max-bits") && i + 1 < args.length - 2) {
+                    opcoes.maxBits = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--model") && i + 1 < args.length - 2) {
+                    opcoes.modelo = args[++i];
+                } else {
+                    System.out.println("Opção inválida: " + args[i]);
+                    imprimirUso();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Valor numérico inválido: " + e.getMessage());
+            return;
+        }
+        if (tamanhoBloco < 0 || intervaloSincronia < 0 || opcoes.threads < 1) {
+            System.out.println("Tamanho de bloco, intervalo de sincronização e quantidade de threads devem ser positivos");
+            return;
+        }
+        if (opcoes.tamanhoTrecho < 1 || opcoes.tamanhoTrecho > ModoPipeline.MAIOR_TRECHO || opcoes.profundidadeFila < 1) {
+            System.out.println("O trecho do pipeline deve ter de 1 a " + (ModoPipeline.MAIOR_TRECHO >> 10)
+                    + " KB e a fila, pelo menos 1 trecho");
+            return;
+        }
+        if (opcoes.maxBits < 0 || opcoes.maxBits > EscritorBits.MAX_BITS_CODIGO) {
+            System.out.println("O limite de bits deve ser 0 (sem limite) ou estar entre 1 e " + EscritorBits.MAX_BITS_CODIGO);
+            return;
+        }
+        // Cada modo grava um formato próprio ou lê o arquivo do seu jeito, então no máximo um pode ser escolhido
+        // (sem esta conferência, o primeiro da ordem de decisão abaixo seria usado e os outros, ignorados)
+        List<String> modos = new ArrayList<>();
+        boolean pipePadrao = arquivoEntrada.equals(PADRAO) || arquivoSaida.equals(PADRAO);
+        if (opcao.equals("-d")) {
+            if (opcoes.mapear) modos.add("--mmap");
+            if (opcoes.pipeline) modos.add("--pipeline");
+            if (pipePadrao && !modos.isEmpty()) modos.add("\"-\" (entrada ou saída padrão)");
+        } else {
+            if (opcao.equals("-a")) modos.add("-a");
+            if (opcoes.modelo != null) modos.add("--model");
+            if (modoContexto) modos.add("--contexto");
+            if (opcoes.intercalado) modos.add("--intercalado");
+            if (intervaloSincronia > 0) modos.add("--sincronia");
+            if (tamanhoBloco > 0) modos.add("--blocos");
+            if (opcoes.mapear) modos.add("--mmap");
+            if (opcoes.pipeline) modos.add("--pipeline");
+            // A compressão por pipe já é um stream; -a também lê a entrada padrão
+            if (modoStream && !pipePadrao) modos.add("--stream");
+            if (pipePadrao && !opcao.equals("-a") && !modos.isEmpty()) modos.add("\"-\" (entrada ou saída padrão)");
+        }
+        if (modos.size() > 1) {
+            System.out.println("Opções incompatíveis: " + String.join(", ", modos) + " (escolha só um modo)");
+            return;
+        }
 
         try {
             // Decide qual método chamar com base na opção (-c ou -d)
+            Metricas metricas;
             if (opcao.equals("-c")) {
-                comprimir(arquivoEntrada, arquivoSaida);
+                if (opcoes.modelo != null) {
+                    metricas = comprimirModelo(arquivoEntrada, arquivoSaida, opcoes);
+                } else if (arquivoEntrada.equals(PADRAO) || arquivoSaida.equals(PADRAO)) {
+                    metricas = comprimirPadrao(arquivoEntrada, arquivoSaida, opcoes);
+                } else if (modoContexto) {
+                    metricas = comprimirContexto(arquivoEntrada, arquivoSaida, opcoes);
+                } else if (opcoes.intercalado) {
+                    metricas = comprimirIntercalado(arquivoEntrada, arquivoSaida, opcoes);
+                } else if (intervaloSincronia > 0) {
+                    metricas = comprimirSincronia(arquivoEntrada, arquivoSaida, intervaloSincronia, opcoes);
+                } else if (tamanhoBloco > 0) {
+                    metricas = comprimirBlocos(arquivoEntrada, arquivoSaida, tamanhoBloco, opcoes);
+                } else if (opcoes.mapear) {
+                    metricas = comprimirMapeado(arquivoEntrada, arquivoSaida, opcoes);
+                } else if (opcoes.pipeline) {
+                    metricas = comprimirPipeline(arquivoEntrada, arquivoSaida, opcoes);
+                } else if (modoStream) {
+                    metricas = comprimirStream(arquivoEntrada, arquivoSaida, opcoes);
+                } else {
+                    metricas = comprimir(arquivoEntrada, arquivoSaida, opcoes);
+                }
+            } else if (opcao.equals("-a")) {
+                metricas = comprimirAdaptativo(arquivoEntrada, arquivoSaida, opcoes);
             } else if (opcao.equals("-d")) {
-                descomprimir(arquivoEntrada, arquivoSaida);
+                if (arquivoEntrada.equals(PADRAO) || arquivoSaida.equals(PADRAO)) {
+                    metricas = descomprimirPadrao(arquivoEntrada, arquivoSaida, opcoes);
+                } else {
+                    metricas = descomprimir(arquivoEntrada, arquivoSaida, opcoes);
+                }
             } else {
                 System.out.println("Opção inválida: " + opcao);
+                return;
             }
+            (arquivoSaida.equals(PADRAO) ? System.err : System.out).println(metricas.comoJson());
         } catch (IOException e) {
             // Captura possíveis erros de leitura ou escrita de arquivos
             System.err.println("Erro ao processar o arquivo: " + e.getMessage());
             e.printStackTrace();
+        } catch (IllegalArgumentException e) {
+            // Limite de bits pequeno demais para a quantidade de caracteres do arquivo
+            System.err.println("Erro: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Modo --serve: servidor local de compressão (ServidorHuffman), atendido até o processo ser encerrado
+     * @param args --serve, [--max-bits <n>], [--pool <MB>] e o endereço (porta de localhost ou caminho de socket Unix)
+     */
+    private static void servir(String[] args) {
+        int maxBits = SEM_LIMITE;
+        long limitePool = PoolBuffers.LIMITE_PADRAO;
+        try {
+            for (int i = 1; i < args.length - 1; i++) {
+                if (args[i].equals("--max-bits") && i + 1 < args.length - 1) {
+                    maxBits = Integer.parseInt(args[++i]);
+                } else if (args[i].equals("--pool") && i + 1 < args.length - 1) {
+                    limitePool = Long.parseLong(args[++i]) << 20;
+                } else {
+                    System.out.println("Opção inválida: " + args[i]);
+                    imprimirUso();
+                    return;
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Valor numérico inválido: " + e.getMessage());
+            return;
+        }
+        if (maxBits < 0 || maxBits > EscritorBits.MAX_BITS_CODIGO) {
+            System.out.println("O limite de bits deve ser 0 (sem limite) ou estar entre 1 e " + EscritorBits.MAX_BITS_CODIGO);
+            return;
+        }
+        if (limitePool < 0) {
+            System.out.println("O limite do conjunto de buffers (--pool) não pode ser negativo");
+            return;
+        }
+        try {
+            ServidorHuffman.executar(args[args.length - 1], maxBits, limitePool);
+        } catch (IOException e) {
+            System.err.println("Erro ao abrir o servidor: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Modo --train: monta um modelo (ModeloHuffman) com as frequências de arquivos de amostra
+     * @param args --train, [--max-bits <n>], os arquivos de amostra e o arquivo do modelo a ser gravado
+     */
+    private static void treinar(String[] args) {
+        int maxBits = SEM_LIMITE;
+        List<String> amostras = new ArrayList<>();
+        try {
+            for (int i = 1; i < args.length - 1; i++) {
+                if (args[i].equals("--max-bits") && i + 1 < args.length - 1) {
+                    maxBits = Integer.parseInt(args[++i]);
+                } else {
+                    amostras.add(args[i]);
+                }
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Valor numérico inválido: " + e.getMessage());
+            return;
+        }
+        if (amostras.isEmpty()) {
+            imprimirUso();
+            return;
+        }
+        if (maxBits < 0 || maxBits > EscritorBits.MAX_BITS_CODIGO) {
+            System.out.println("O limite de bits deve ser 0 (sem limite) ou estar entre 1 e " + EscritorBits.MAX_BITS_CODIGO);
+            return;
+        }
+        try {
+            ModeloHuffman modelo = ModeloHuffman.treinar(amostras, maxBits);
+            modelo.salvar(args[args.length - 1]);
+            System.out.printf("{\"modelo\":\"%08x\",\"arquivos\":%d,\"bytes_amostra\":%d,\"maior_codigo\":%d}%n",
+                    modelo.getId(), amostras.size(), modelo.getBytesAmostra(), modelo.getMaiorComprimento());
+        } catch (IOException e) {
+            System.err.println("Erro ao treinar o modelo: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Modo -x: extrai um trecho do arquivo original sem descomprimir o arquivo inteiro (ModoExtracao)
+     * @param args -x, [--model <arq>], início e tamanho do trecho, arquivo comprimido e arquivo de saída
+     */
+    private static void extrair(String[] args) {
+        Opcoes opcoes = new Opcoes();
+        long inicio;
+        long quantidade;
+        try {
+            for (int i = 1; i < args.length - 4; i++) {
+                if (args[i].equals("--model") && i + 1 < args.length - 4) {
+                    opcoes.modelo = args[++i];
+                } else {
+                    System.out.println("Opção inválida: " + args[i]);
+                    imprimirUso();
+                    return;
+                }
+            }
+            inicio = Long.parseLong(args[args.length - 4]);
+            quantidade = Long.parseLong(args[args.length - 3]);
+        } catch (NumberFormatException e) {
+            System.out.println("Valor numérico inválido: " + e.getMessage());
+            return;
+        }
+        String arquivoSaida = args[args.length - 1];
+        try {
+            Metricas metricas = extrair(args[args.length - 2], arquivoSaida, inicio, quantidade, opcoes);
+            (arquivoSaida.equals(PADRAO) ? System.err : System.out).println(metricas.comoJson());
+        } catch (IOException e) {
+            System.err.println("Erro ao processar o arquivo: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            System.err.println("Erro: " + e.getMessage());
         }
     }
 
+    // Mostra os comandos aceitos pelo programa
+    private static void imprimirUso() {
+        System.out.println("Uso incorreto. Comandos:");
+        System.out.println("Para comprimir: java -jar huffman.jar -c [opções] <arquivo_original> <arquivo_comprimido>");
+        System.out.println("Para descomprimir: java -jar huffman.jar -d [--threads <n>] [--mmap] [--pipeline] [--model <arq>] [--verbose] <arquivo_comprimido> <arquivo_restaurado>");
+        System.out.println("Huffman adaptativo, em uma passagem: java -jar huffman.jar -a [--verbose] <arquivo_original> <arquivo_comprimido>");
+        System.out.println("  (em -c, -a e -d, \"-\" indica a entrada ou a saída padrão; -c por pipe grava blocos de 1 MB)");
+        System.out.println("Servidor local, sem reiniciar a JVM a cada arquivo: java -jar huffman.jar --serve [--max-bits <n>] [--pool <MB>] <porta | socket>");
+        System.out.println("  (clientes: java -cp huffman.jar ClienteHuffman <porta | socket> ...)");
+        System.out.println("Treinar um modelo: java -jar huffman.jar --train [--max-bits <n>] <amostra>... <modelo>");
+        System.out.println("Extrair um trecho: java -jar huffman.jar -x [--model <arq>] <inicio> <tamanho> <arquivo_comprimido> <arquivo_saida>");
+        System.out.println("  (sem decodificar o que vem antes do trecho em arquivos de --sincronia, --blocos ou armazenados)");
+        System.out.println("Opções de compressão:");
+        System.out.println("  --stream        lê o arquivo em duas passagens com buffers fixos (memória constante)");
+        System.out.println("  --mmap          lê e grava por arquivos mapeados em memória (também vale para -d)");
+        System.out.println("  --pipeline      lê, codifica e grava ao mesmo tempo, em threads ligadas por filas (também vale para -d)");
+        System.out.println("                  --trecho <KB> tamanho de cada trecho (padrão: 1024), --fila <n> trechos por fila (padrão: 4)");
+        System.out.println("  --blocos <KB>   divide o arquivo em blocos independentes, comprimidos em paralelo");
+        System.out.println("                  (ex.: --blocos 4096 para blocos de 4 MB)");
+        System.out.println("  --sincronia <KB> grava um ponto de sincronização a cada <KB> KB originais, para -x");
+        System.out.println("  --contexto      Huffman de ordem 1: tabelas escolhidas pelo caractere anterior");
+        System.out.println("                  (maior taxa em texto e código-fonte; o arquivo é lido inteiro)");
+        System.out.println("  --intercalado   grava os dados em 4 fluxos intercalados, decodificados juntos (-d mais rápido)");
+        System.out.println("  --model <arq>   usa um modelo de --train (uma passagem, sem tabela no arquivo), se ele servir");
+        System.out.println("                  para o início do arquivo; também vale para -d");
+        System.out.println("  --threads <n>   quantidade de threads da análise de frequência, do modo em blocos e dos codificadores do pipeline");
+        System.out.println("                  (padrão: núcleos disponíveis)");
+        System.out.println("  --max-bits <n>  limita o comprimento dos códigos a n bits (package-merge)");
+        System.out.println("                  (0 = sem limite, o padrão; ou de 1 a " + EscritorBits.MAX_BITS_CODIGO + ")");
+        System.out.println("  --verbose       mostra a tabela de frequência, o Min-Heap, a árvore, os códigos e o resumo");
+        System.out.println("Os modos (--stream, --mmap, --pipeline, --blocos, --sincronia, --contexto, --intercalado, --model e");
+        System.out.println("\"-\") não se combinam entre si; --threads, --max-bits e --verbose valem para todos");
+        System.out.println("Sem --verbose, o programa mostra só uma linha JSON com o tempo de cada etapa");
+    }
+
     // --- LÓGICA DE COMPRESSÃO ---
 
+    /**
+     * Organiza todas as etapas do processo de compressão, com as opções padrão
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimir(String arquivoEntrada, String arquivoSaida) throws IOException {
+        return comprimir(arquivoEntrada, arquivoSaida, new Opcoes());
+    }
+
     /**
      * Organiza todas as etapas do processo de compressão
      * @param arquivoEntrada Caminho do arquivo a ser comprimido
      * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes Threads da análise de frequência, limite de bits e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
      */
-    public static void comprimir(String arquivoEntrada, String arquivoSaida) throws IOException {
-        long tempoInicio = System.nanoTime(); // Marca o início da contagem de tempo
+    public static Metricas comprimir(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        // Um arquivo maior que um vetor não pode ser lido de uma vez: usa o modo stream (mesmo resultado)
+        if (new File(arquivoEntrada).length() > MAIOR_VETOR) {
+            return comprimirStream(arquivoEntrada, arquivoSaida, opcoes);
+        }
+        Metricas metricas = new Metricas("compressao", "normal");
+        metricas.iniciarEtapa();
+        if (!opcoes.verbose && new File(arquivoEntrada).length() <= MAIOR_VETOR - FormatoHuff.TAMANHO_INICIO - CodigoCanonico.TAMANHO_MAXIMO) {
+            return comprimirCodec(arquivoEntrada, arquivoSaida, opcoes, metricas);
+        }
 
         // Lê todos os bytes do arquivo de uma vez para a memória
-        byte[] dadosArquivo = new FileInputStream(arquivoEntrada).readAllBytes();
-        
-        // ETAPA 1: Análise de Frequência
-        int[] tabelaFrequencia = construirTabelaFrequencia(dadosArquivo);
-        System.out.println("ETAPA 1: Tabela de Frequencia de Caracteres");
-        imprimirTabelaFrequencia(tabelaFrequencia);
+        byte[] dadosArquivo;
+        try (FileInputStream fis = new FileInputStream(arquivoEntrada)) {
+            dadosArquivo = fis.readAllBytes();
+        }
+        metricas.terminarEtapa("leitura");
+
+        // ETAPA 1: Análise de Frequência (fatias do arquivo contadas em paralelo)
+        long[] tabelaFrequencia = new long[TAMANHO_ASCII];
+        try (Histograma histograma = new Histograma(opcoes.threads)) {
+            histograma.acumular(dadosArquivo, dadosArquivo.length, tabelaFrequencia);
+        }
+        metricas.terminarEtapa("frequencia");
+        if (opcoes.verbose) {
+            System.out.println("ETAPA 1: Tabela de Frequencia de Caracteres");
+            imprimirTabelaFrequencia(tabelaFrequencia);
+        }
+
+        // ETAPAS 2 a 4: Min-Heap, Árvore de Huffman e Tabela de Códigos
+        // Cada código é guardado como bits (alinhados à direita) + quantidade de bits
+        long[] codigos = new long[TAMANHO_ASCII];
+        int[] comprimentos = new int[TAMANHO_ASCII];
+        construirCodigos(tabelaFrequencia, codigos, comprimentos, opcoes, metricas);
+        if (FormatoHuff.armazenar(tamanhoCodificado(tabelaFrequencia, comprimentos), dadosArquivo.length)) {
+            armazenar(arquivoEntrada, arquivoSaida, dadosArquivo.length, opcoes, metricas);
+            return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+        }
+
+        // ETAPA 5: Codificação dos Dados e Escrita do Arquivo
+        metricas.iniciarEtapa();
+        byte[] dadosComprimidos = codificarDados(dadosArquivo, tabelaFrequencia, codigos, comprimentos);
+        metricas.terminarEtapa("codificacao");
+        escreverArquivoComprimido(arquivoSaida, dadosArquivo.length, tabelaFrequencia, comprimentos, dadosComprimidos);
+        metricas.terminarEtapa("escrita");
+
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Leitura e etapas 1 a 5 do modo normal pela API de biblioteca (HuffmanCodec), com os mesmos tempos por etapa
+     * O modo --verbose usa o caminho acima, que imprime a tabela, o Min-Heap e a árvore entre as etapas
+     * O arquivo e o resultado ficam em vetores do conjunto compartilhado (PoolBuffers.COMPARTILHADO),
+     * devolvidos no final: chamadas seguintes no mesmo processo não alocam vetores do tamanho do arquivo
+     * @param metricas Onde o tempo de cada etapa é registrado
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    private static Metricas comprimirCodec(String arquivoEntrada, String arquivoSaida, Opcoes opcoes,
+                                           Metricas metricas) throws IOException {
+        try (Histograma histograma = new Histograma(opcoes.threads)) {
+            HuffmanCodec codec = new HuffmanCodec(opcoes.maxBits, histograma, metricas);
+            codec.setIntercalado(opcoes.intercalado);
+            codec.setPool(PoolBuffers.COMPARTILHADO);
+            try {
+                byte[] dadosArquivo;
+                int tamanho;
+                try (FileChannel canal = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ)) {
+                    tamanho = (int) canal.size();
+                    dadosArquivo = codec.bufferOriginal(tamanho);
+                    IndiceBlocos.lerCompleto(canal, ByteBuffer.wrap(dadosArquivo, 0, tamanho), 0);
+                }
+                metricas.terminarEtapa("leitura");
+
+                byte[] dadosComprimidos = codec.bufferComprimido(HuffmanCodec.tamanhoMaximoComprimido(tamanho));
+                int tamanhoComprimido = codec.comprimir(dadosArquivo, 0, tamanho, dadosComprimidos, 0);
+                try (FileOutputStream fos = new FileOutputStream(arquivoSaida)) {
+                    fos.write(dadosComprimidos, 0, tamanhoComprimido);
+                }
+                metricas.terminarEtapa("escrita");
+            } finally {
+                codec.liberarBuffers();
+            }
+        }
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão em fluxos intercalados (--intercalado, FLAG_INTERCALADO): a mesma tabela do modo normal,
+     * com o caractere i gravado no fluxo i % 4, para que a descompressão decodifique os quatro fluxos juntos
+     * O arquivo é lido inteiro e comprimido por HuffmanCodec
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes Threads da análise de frequência, limite de bits e modo --verbose (só o resumo)
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirIntercalado(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        if (new File(arquivoEntrada).length() > MAIOR_VETOR - FormatoHuff.TAMANHO_INICIO - CodigoCanonico.TAMANHO_MAXIMO) {
+            throw new IOException("O modo --intercalado lê o arquivo inteiro, que não cabe em um vetor (use -c sem --intercalado)");
+        }
+        Metricas metricas = new Metricas("compressao", "intercalado");
+        metricas.iniciarEtapa();
+        return comprimirCodec(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão com Huffman de ordem 1 (--contexto, ver ModoContexto)
+     * O arquivo é lido inteiro; se as tabelas por contexto não compensarem, o resultado é o do modo normal
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes O limite de bits e o modo --verbose (que compara o tamanho com o da ordem 0)
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirContexto(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        if (new File(arquivoEntrada).length() > MAIOR_VETOR) {
+            throw new IOException("O modo --contexto lê o arquivo inteiro, que não cabe em um vetor (use -c sem --contexto)");
+        }
+        Metricas metricas = new Metricas("compressao", "contexto");
+        metricas.iniciarEtapa();
+        byte[] dadosArquivo;
+        try (FileInputStream fis = new FileInputStream(arquivoEntrada)) {
+            dadosArquivo = fis.readAllBytes();
+        }
+        metricas.terminarEtapa("leitura");
+
+        ModoContexto.Resultado resultado = ModoContexto.comprimir(dadosArquivo, opcoes.maxBits, metricas);
+        try (FileOutputStream fos = new FileOutputStream(arquivoSaida)) {
+            fos.write(resultado.comprimido);
+        }
+        metricas.terminarEtapa("escrita");
+        if (opcoes.verbose) {
+            System.out.println("Contextos usados: " + resultado.contextosUsados + ", com tabela própria: "
+                    + resultado.tabelasProprias);
+            System.out.println("Ordem 0: " + resultado.tamanhoOrdem0 + " bytes | ordem 1: " + resultado.tamanhoOrdem1
+                    + " bytes" + (resultado.contexto ? "" : " (não compensa: gravado no formato de -c)"));
+        }
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão com um modelo treinado (--model, ver ModeloHuffman)
+     * Lê o início do arquivo e, se o modelo servir para ele, codifica tudo em uma única passagem, sem
+     * análise de frequência nem árvore; caso contrário, comprime no modo normal, com a tabela do arquivo
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes O arquivo do modelo, o limite de bits (da tabela própria) e o modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirModelo(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        if (arquivoEntrada.equals(PADRAO) || arquivoSaida.equals(PADRAO)) {
+            throw new IOException("--model precisa de arquivos: o tamanho original é gravado no início do cabeçalho");
+        }
+        Metricas metricas = new Metricas("compressao", "modelo");
+        metricas.iniciarEtapa();
+        ModeloHuffman modelo = ModeloHuffman.carregar(opcoes.modelo);
+        boolean compensa;
+        long gravados = 0;
+        try (FileChannel canal = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ)) {
+            long tamanho = canal.size();
+            byte[] amostra = new byte[ModeloHuffman.TAMANHO_AMOSTRA];
+            int lidos = ModeloHuffman.lerAmostra(canal, tamanho, amostra);
+            metricas.terminarEtapa("leitura");
+            compensa = modelo.compensa(amostra, lidos, tamanho, opcoes.maxBits);
+            metricas.terminarEtapa("verificacao");
+            if (compensa) {
+                // Uma amostra do tamanho do arquivo já é o arquivo inteiro; senão, lê desde o início
+                int inicio = tamanho <= amostra.length ? lidos : 0;
+                // Mais que isso, o formato normal certamente é menor
+                long limite = FormatoHuff.TAMANHO_INICIO + CodigoCanonico.TAMANHO_MAXIMO + tamanho;
+                try (OutputStream out = new BufferedOutputStream(new FileOutputStream(arquivoSaida))) {
+                    gravados = modelo.comprimir(amostra, inicio, Channels.newInputStream(canal), tamanho, out, limite);
+                }
+                compensa = gravados >= 0;
+                metricas.terminarEtapa("codificacao");
+            }
+        }
+        if (opcoes.verbose) {
+            System.out.printf("Modelo %08x: %s%n", modelo.getId(), compensa ? "usado (uma passagem, sem tabela no arquivo)"
+                    : gravados < 0 ? "interrompido, a amostra não representava o arquivo (modo normal)"
+                    : "não serve para este arquivo (modo normal)");
+        }
+        if (!compensa) {
+            return comprimir(arquivoEntrada, arquivoSaida, opcoes);
+        }
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão em modo stream: o arquivo nunca é carregado inteiro na memória
+     * A 1ª passagem lê o arquivo em blocos para montar a tabela de frequência, e a 2ª passagem
+     * lê de novo, codifica cada bloco e grava a saída por um buffer de tamanho fixo
+     * O arquivo gerado é idêntico ao do modo normal
+     * O cabeçalho pode ser gravado antes dos dados porque só depende das frequências
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirStream(String arquivoEntrada, String arquivoSaida) throws IOException {
+        return comprimirStream(arquivoEntrada, arquivoSaida, new Opcoes());
+    }
+
+    /**
+     * Compressão em modo stream, com as opções informadas
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes Threads da análise de frequência, limite de bits e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirStream(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "stream");
+
+        // ETAPAS 1 a 4: Análise de Frequência (1ª passagem pelo arquivo), Min-Heap, Árvore e Tabela de Códigos
+        PrimeiraPassagem passagem = primeiraPassagem(arquivoEntrada, arquivoSaida, false, opcoes, metricas);
+        if (passagem.armazenado) {
+            return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+        }
+        long tamanhoOriginal = passagem.tamanhoOriginal;
+        long[] codigos = passagem.codigos;
+        int[] comprimentos = passagem.comprimentos;
+
+        // ETAPA 5: Codificação dos Dados e Escrita do Arquivo (2ª passagem pelo arquivo)
+        metricas.iniciarEtapa();
+        byte[] bufferEntrada = new byte[TAMANHO_BUFFER_STREAM];
+        byte[] bufferSaida = new byte[tamanhoBufferSaida(comprimentos, TAMANHO_BUFFER_STREAM)];
+
+        try (FileInputStream fis = new FileInputStream(arquivoEntrada);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivoSaida)))) {
+            escreverCabecalho(out, tamanhoOriginal, passagem.tabelaFrequencia, comprimentos);
+
+            EscritorBits escritor = new EscritorBits(bufferSaida, 0);
+            long lidosTotal = 0;
+            int lidos;
+            while ((lidos = fis.read(bufferEntrada)) > 0) {
+                codificar(bufferEntrada, 0, lidos, codigos, comprimentos, escritor);
+                // Grava os bytes completos e reaproveita o buffer no próximo bloco
+                escritor.descarregar(out);
+                lidosTotal += lidos;
+            }
+            // O cabeçalho já foi gravado com o tamanho da 1ª passagem
+            if (lidosTotal != tamanhoOriginal) {
+                throw new IOException("O arquivo foi alterado durante a compressão");
+            }
+            escritor.completarByte();
+            escritor.descarregar(out);
+        }
+        // Leitura, codificação e escrita acontecem intercaladas, então são medidas juntas
+        metricas.terminarEtapa("codificacao");
+
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão em pipeline (-c --pipeline): as duas passagens do modo stream, com a leitura do disco
+     * em uma thread separada e, na 2ª passagem, a codificação dividida entre --threads codificadores e a
+     * escrita sobreposta a elas (ver ModoPipeline)
+     * O arquivo gerado é idêntico ao do modo normal
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes Threads, tamanho do trecho, profundidade das filas, limite de bits e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirPipeline(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "pipeline");
+
+        // ETAPAS 1 a 4: Análise de Frequência (1ª passagem, contada enquanto o próximo trecho é lido),
+        // Min-Heap, Árvore de Huffman e Tabela de Códigos
+        PrimeiraPassagem passagem = primeiraPassagem(arquivoEntrada, arquivoSaida, true, opcoes, metricas);
+        if (passagem.armazenado) {
+            return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+        }
+
+        // ETAPA 5: Codificação dos Dados e Escrita do Arquivo (2ª passagem, leitura e escrita sobrepostas)
+        metricas.iniciarEtapa();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivoSaida)))) {
+            escreverCabecalho(out, passagem.tamanhoOriginal, passagem.tabelaFrequencia, passagem.comprimentos);
+            long lidos = ModoPipeline.codificar(arquivoEntrada, out, passagem.codigos, passagem.comprimentos,
+                    opcoes.tamanhoTrecho, opcoes.profundidadeFila, opcoes.threads);
+            if (lidos != passagem.tamanhoOriginal) {
+                throw new IOException("O arquivo foi alterado durante a compressão");
+            }
+        }
+        metricas.terminarEtapa("codificacao");
+
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão com pontos de sincronização (-c --sincronia): o modo stream, com uma tabela única, que
+     * registra a cada "intervalo" bytes originais em que bit começa o próximo código (PontosSincronia)
+     * Os pontos ficam no final do arquivo, e com eles um trecho pode ser extraído (-x) sem decodificar
+     * o que vem antes; -d lê o arquivo como um .huff comum
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param intervalo Quantos bytes originais separam dois pontos
+     * @param opcoes Threads da análise de frequência, limite de bits e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirSincronia(String arquivoEntrada, String arquivoSaida, int intervalo,
+                                              Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "sincronia");
+
+        // ETAPAS 1 a 4: Análise de Frequência (1ª passagem pelo arquivo, como no modo stream), Min-Heap,
+        // Árvore de Huffman e Tabela de Códigos
+        // Um arquivo armazenado já permite extrair qualquer trecho direto da sua posição
+        PrimeiraPassagem passagem = primeiraPassagem(arquivoEntrada, arquivoSaida, false, opcoes, metricas);
+        if (passagem.armazenado) {
+            return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+        }
+        long tamanhoOriginal = passagem.tamanhoOriginal;
+        long[] codigos = passagem.codigos;
+        int[] comprimentos = passagem.comprimentos;
+
+        // ETAPA 5: Codificação dos Dados (2ª passagem), com um ponto no início de cada intervalo
+        // As leituras param no limite de cada intervalo, para que o ponto seja registrado antes do código seguinte
+        metricas.iniciarEtapa();
+        byte[] bufferEntrada = new byte[TAMANHO_BUFFER_STREAM];
+        byte[] bufferSaida = new byte[tamanhoBufferSaida(comprimentos, TAMANHO_BUFFER_STREAM)];
+        PontosSincronia pontos = new PontosSincronia(intervalo);
+
+        try (FileInputStream fis = new FileInputStream(arquivoEntrada);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivoSaida)))) {
+            FormatoHuff.escreverInicio(out, FormatoHuff.FLAG_SINCRONIA, tamanhoOriginal);
+            long inicioDados = FormatoHuff.TAMANHO_INICIO;
+            if (tamanhoOriginal > 0) {
+                boolean[] presentes = caracteresPresentes(passagem.tabelaFrequencia);
+                CodigoCanonico.escrever(out, comprimentos, presentes);
+                inicioDados += CodigoCanonico.tamanho(comprimentos, presentes);
+            }
+
+            EscritorBits escritor = new EscritorBits(bufferSaida, 0);
+            long bytesGravados = 0; // Bytes completos já descarregados do escritor
+            long lidosTotal = 0;
+            while (lidosTotal < tamanhoOriginal) {
+                int noIntervalo = (int) (lidosTotal % intervalo);
+                if (noIntervalo == 0) {
+                    pontos.adicionar(((bytesGravados + escritor.getPosicao()) << 3) + escritor.getBitsPendentes());
+                }
+                int limite = (int) Math.min(Math.min(bufferEntrada.length, intervalo - noIntervalo),
+                        tamanhoOriginal - lidosTotal);
+                int lidos = fis.readNBytes(bufferEntrada, 0, limite);
+                if (lidos == 0) {
+                    throw new IOException("O arquivo foi alterado durante a compressão");
+                }
+                codificar(bufferEntrada, 0, lidos, codigos, comprimentos, escritor);
+                bytesGravados += escritor.getPosicao();
+                escritor.descarregar(out);
+                lidosTotal += lidos;
+            }
+            if (fis.read() != -1) {
+                throw new IOException("O arquivo foi alterado durante a compressão");
+            }
+            escritor.completarByte();
+            bytesGravados += escritor.getPosicao();
+            escritor.descarregar(out);
+            pontos.escrever(out, inicioDados + bytesGravados);
+        }
+        metricas.terminarEtapa("codificacao");
+        if (opcoes.verbose) {
+            System.out.printf("%nPontos de sincronizacao: %d (um a cada %d bytes)%n", pontos.getQuantidade(), intervalo);
+        }
+
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão lendo o arquivo mapeado em memória (FileChannel.map)
+     * As duas passagens do modo stream (frequência e codificação) leem direto do arquivo mapeado,
+     * sem copiar o conteúdo para vetores da JVM
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param opcoes Threads da análise de frequência, limite de bits e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirMapeado(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "mmap");
+        metricas.iniciarEtapa();
+
+        long[] tabelaFrequencia;
+        long[] codigos = new long[TAMANHO_ASCII];
+        int[] comprimentos = new int[TAMANHO_ASCII];
+        try (FileChannel canal = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ)) {
+            // ETAPA 1: Análise de Frequência
+            tabelaFrequencia = ModoMapeado.construirTabelaFrequencia(canal, opcoes.threads);
+            metricas.terminarEtapa("frequencia");
+            if (opcoes.verbose) {
+                System.out.println("ETAPA 1: Tabela de Frequencia de Caracteres");
+                imprimirTabelaFrequencia(tabelaFrequencia);
+            }
+
+            // ETAPAS 2 a 4: Min-Heap, Árvore de Huffman e Tabela de Códigos
+            construirCodigos(tabelaFrequencia, codigos, comprimentos, opcoes, metricas);
+            if (FormatoHuff.armazenar(tamanhoCodificado(tabelaFrequencia, comprimentos), canal.size())) {
+                armazenar(arquivoEntrada, arquivoSaida, canal.size(), opcoes, metricas);
+                return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+            }
+
+            // ETAPA 5: Codificação dos Dados e Escrita do Arquivo
+            metricas.iniciarEtapa();
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivoSaida)))) {
+                escreverCabecalho(out, canal.size(), tabelaFrequencia, comprimentos);
+                ModoMapeado.codificar(canal, codigos, comprimentos, out);
+            }
+            metricas.terminarEtapa("codificacao");
+        }
+
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão em blocos: cada bloco tem a sua própria árvore e é codificado em paralelo
+     * Como a tabela de cada bloco se adapta às estatísticas locais, arquivos com trechos de
+     * naturezas diferentes (texto, binário, ...) tendem a comprimir melhor
+     * As etapas de cada bloco acontecem ao mesmo tempo em threads diferentes, então são medidas juntas
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param tamanhoBloco Tamanho de cada bloco, em bytes
+     * @param opcoes Threads da codificação, limite de bits e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirBlocos(String arquivoEntrada, String arquivoSaida, int tamanhoBloco,
+                                           Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "blocos");
+        metricas.iniciarEtapa();
+
+        ModoBlocos.Resultado resultado = ModoBlocos.comprimir(arquivoEntrada, arquivoSaida, tamanhoBloco,
+                opcoes.threads, opcoes.maxBits);
+        metricas.terminarEtapa("blocos");
+
+        if (opcoes.verbose) {
+            System.out.printf("Blocos de %d KB: %d (com %d threads)\n", tamanhoBloco >> 10, resultado.quantidadeBlocos, opcoes.threads);
+            if (opcoes.maxBits != SEM_LIMITE) {
+                imprimirPerdaLimite(resultado.bitsSemLimite, resultado.bitsComLimite);
+            }
+        }
+        return finalizarCompressao(arquivoEntrada, arquivoSaida, opcoes, metricas);
+    }
+
+    /**
+     * Compressão com Huffman adaptativo (ModoAdaptativo): uma única passagem, sem tabela de frequência
+     * A entrada e a saída podem ser a entrada e a saída padrão ("-"), por exemplo em um pipe
+     * Leitura, codificação e escrita acontecem intercaladas, então são medidas juntas
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido, ou "-"
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado, ou "-"
+     * @param opcoes O modo --verbose (o resumo não é impresso quando a saída é a saída padrão)
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirAdaptativo(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "adaptativo");
+        metricas.iniciarEtapa();
+        ModoAdaptativo.Resultado resultado;
+        try (InputStream in = abrirEntrada(arquivoEntrada);
+             OutputStream out = abrirSaida(arquivoSaida)) {
+            resultado = ModoAdaptativo.comprimir(in, out);
+        }
+        metricas.terminarEtapa("codificacao");
+        metricas.registrarTamanhos(resultado.bytesEntrada, resultado.bytesSaida);
+        if (opcoes.verbose && !arquivoSaida.equals(PADRAO)) {
+            imprimirResumo(metricas);
+        }
+        return metricas;
+    }
+
+    /**
+     * Compressão lendo ou gravando pela entrada ou saída padrão ("-"), por HuffmanOutputStream
+     * O tamanho da entrada não é conhecido: os dados são comprimidos em blocos com árvores próprias,
+     * e, lendo da entrada padrão, um bloco incompleto é gravado sempre que a entrada precisaria esperar
+     * (baixa latência em pipes). Lendo de um arquivo, a saída só é terminada no fim: um arquivo que
+     * cabe em um bloco gera o mesmo .huff do modo normal
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido, ou "-"
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado, ou "-"
+     * @param opcoes O limite de bits
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas comprimirPadrao(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("compressao", "pipe");
+        metricas.iniciarEtapa();
+        long bytesEntrada;
+        long bytesSaida;
+        try (InputStream in = abrirEntrada(arquivoEntrada);
+             HuffmanOutputStream out = new HuffmanOutputStream(abrirSaida(arquivoSaida), new HuffmanCodec(opcoes.maxBits))) {
+            bytesEntrada = copiar(in, arquivoEntrada.equals(PADRAO) ? in : null, out);
+            out.finish();
+            bytesSaida = out.getBytesGravados();
+        }
+        metricas.terminarEtapa("codificacao");
+        metricas.registrarTamanhos(bytesEntrada, bytesSaida);
+        return metricas;
+    }
+
+    /**
+     * Copia um stream para outro, descarregando a saída sempre que a entrada precisaria esperar
+     * @param in O stream lido até o fim
+     * @param origem O stream cujo available() indica se a próxima leitura esperaria (null: não descarrega)
+     * @param out O stream de saída
+     * @return Quantos bytes foram copiados
+     */
+    private static long copiar(InputStream in, InputStream origem, OutputStream out) throws IOException {
+        byte[] buffer = new byte[TAMANHO_BUFFER_STREAM];
+        long total = 0;
+        int lidos;
+        while ((lidos = in.read(buffer)) >= 0) {
+            out.write(buffer, 0, lidos);
+            total += lidos;
+            if (origem != null && origem.available() == 0) out.flush();
+        }
+        return total;
+    }
+
+    // Abre um arquivo para leitura ou, com "-", a entrada padrão
+    private static InputStream abrirEntrada(String arquivo) throws IOException {
+        return new BufferedInputStream(arquivo.equals(PADRAO) ? System.in : new FileInputStream(arquivo));
+    }
+
+    // Abre um arquivo para escrita ou, com "-", a saída padrão
+    private static OutputStream abrirSaida(String arquivo) throws IOException {
+        return new BufferedOutputStream(arquivo.equals(PADRAO) ? System.out : new FileOutputStream(arquivo));
+    }
+
+    /**
+     * Resultado da 1ª passagem dos modos que leem o arquivo duas vezes (stream, sincronia e pipeline)
+     */
+    private static final class PrimeiraPassagem {
+        final long[] tabelaFrequencia = new long[TAMANHO_ASCII];
+        final long[] codigos = new long[TAMANHO_ASCII];
+        final int[] comprimentos = new int[TAMANHO_ASCII];
+        long tamanhoOriginal;
+        boolean armazenado; // O arquivo já foi gravado sem compressão (FormatoHuff.armazenar)
+    }
+
+    /**
+     * 1ª passagem dos modos que leem o arquivo duas vezes: conta as frequências em blocos (ou em trechos
+     * lidos por outra thread, no pipeline) e monta os códigos (ETAPAS 1 a 4)
+     * Se a compressão não compensa, o arquivo já é gravado armazenado, e a 2ª passagem não acontece
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido (só gravado aqui se for armazenado)
+     * @param emPipeline Se true, a leitura usa o pipeline (ModoPipeline.contarFrequencias)
+     * @param opcoes Threads da análise de frequência, limite de bits, trechos do pipeline e modo --verbose
+     * @param metricas Onde o tempo de cada etapa é registrado
+     * @return As frequências, o tamanho original e os códigos
+     */
+    private static PrimeiraPassagem primeiraPassagem(String arquivoEntrada, String arquivoSaida, boolean emPipeline,
+                                                     Opcoes opcoes, Metricas metricas) throws IOException {
+        PrimeiraPassagem passagem = new PrimeiraPassagem();
+        metricas.iniciarEtapa();
+        try (Histograma histograma = new Histograma(opcoes.threads)) {
+            if (emPipeline) {
+                passagem.tamanhoOriginal = ModoPipeline.contarFrequencias(arquivoEntrada, passagem.tabelaFrequencia,
+                        histograma, opcoes.tamanhoTrecho, opcoes.profundidadeFila);
+            } else {
+                // O buffer tem uma fatia por thread, para que cada leitura seja contada em paralelo
+                byte[] buffer = new byte[Math.max(TAMANHO_BUFFER_STREAM, opcoes.threads * Histograma.MENOR_FATIA)];
+                try (FileInputStream fis = new FileInputStream(arquivoEntrada)) {
+                    int lidos;
+                    while ((lidos = fis.readNBytes(buffer, 0, buffer.length)) > 0) {
+                        histograma.acumular(buffer, lidos, passagem.tabelaFrequencia);
+                        passagem.tamanhoOriginal += lidos;
+                    }
+                }
+            }
+        }
+        metricas.terminarEtapa("frequencia");
+        if (opcoes.verbose) {
+            System.out.println("ETAPA 1: Tabela de Frequencia de Caracteres");
+            imprimirTabelaFrequencia(passagem.tabelaFrequencia);
+        }
+
+        construirCodigos(passagem.tabelaFrequencia, passagem.codigos, passagem.comprimentos, opcoes, metricas);
+        if (FormatoHuff.armazenar(tamanhoCodificado(passagem.tabelaFrequencia, passagem.comprimentos),
+                passagem.tamanhoOriginal)) {
+            armazenar(arquivoEntrada, arquivoSaida, passagem.tamanhoOriginal, opcoes, metricas);
+            passagem.armazenado = true;
+        }
+        return passagem;
+    }
+
+    /**
+     * Tamanho de um buffer de saída que comporta "n" bytes codificados com o maior código
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
+     * @param n A quantidade de bytes originais
+     * @return O tamanho do buffer, em bytes
+     */
+    static int tamanhoBufferSaida(int[] comprimentos, int n) {
+        int maiorComprimento = 0;
+        for (int c : comprimentos) maiorComprimento = Math.max(maiorComprimento, c);
+        return (int) ((long) n * maiorComprimento / 8) + 8;
+    }
+
+    // Tamanho da tabela de comprimentos e dos dados comprimidos (sem o início do cabeçalho)
+    private static long tamanhoCodificado(long[] tabelaFrequencia, int[] comprimentos) {
+        return CodigoCanonico.tamanho(comprimentos, caracteresPresentes(tabelaFrequencia))
+                + (calcularTotalBits(tabelaFrequencia, comprimentos) + 7) / 8;
+    }
+
+    /**
+     * Grava o arquivo sem compressão (FLAG_ARMAZENADO), quando o ganho da compressão não compensa
+     * (FormatoHuff.armazenar): os dados não são codificados, e os bytes originais são copiados pelo
+     * sistema operacional (FileChannel.transferTo), sem passar pela memória da JVM
+     * @param arquivoEntrada Caminho do arquivo original
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param tamanhoOriginal O tamanho do arquivo original
+     * @param opcoes O modo --verbose
+     * @param metricas Onde o tempo da cópia é registrado
+     */
+    private static void armazenar(String arquivoEntrada, String arquivoSaida, long tamanhoOriginal, Opcoes opcoes,
+                                  Metricas metricas) throws IOException {
+        if (opcoes.verbose) {
+            System.out.println("A compressão não compensa: o arquivo é armazenado sem compressão");
+        }
+        metricas.iniciarEtapa();
+        try (FileChannel entrada = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ);
+             FileChannel saida = FileChannel.open(Paths.get(arquivoSaida), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer inicio = ByteBuffer.allocate(FormatoHuff.TAMANHO_INICIO);
+            FormatoHuff.escreverInicio(inicio.array(), 0, FormatoHuff.FLAG_ARMAZENADO, tamanhoOriginal);
+            while (inicio.hasRemaining()) saida.write(inicio);
+            transferir(entrada, 0, tamanhoOriginal, saida);
+        }
+        metricas.terminarEtapa("copia");
+    }
+
+    // Copia "quantidade" bytes de um canal, a partir de "posicao", para a posição atual de outro canal
+    private static void transferir(FileChannel entrada, long posicao, long quantidade, FileChannel saida) throws IOException {
+        while (quantidade > 0) {
+            long copiados = entrada.transferTo(posicao, quantidade, saida);
+            if (copiados <= 0) throw new EOFException("Fim inesperado do arquivo");
+            posicao += copiados;
+            quantidade -= copiados;
+        }
+    }
+
+    // Registra os tamanhos dos arquivos e, no modo --verbose, imprime o resumo da compressão
+    private static Metricas finalizarCompressao(String arquivoEntrada, String arquivoSaida, Opcoes opcoes,
+                                                Metricas metricas) {
+        metricas.registrarTamanhos(new File(arquivoEntrada).length(), new File(arquivoSaida).length());
+        if (opcoes.verbose) {
+            imprimirResumo(metricas);
+        }
+        return metricas;
+    }
 
-        // ETAPA 2: Criação do Min-Heap
-        MinHeap minHeap = construirMinHeap(tabelaFrequencia);
-        System.out.println("\nETAPA 2: Min-Heap Inicial (Vetor)");
-        System.out.println(minHeap.getHeapAsList());
+    /**
+     * Executa as etapas 2, 3 e 4: cria o Min-Heap, constrói a árvore e gera a tabela de códigos
+     * A árvore define apenas o comprimento de cada código; os códigos gravados são os canônicos,
+     * que o descompressor recria só com os comprimentos
+     * @param tabelaFrequencia A tabela de frequência do arquivo
+     * @param codigos O vetor onde os bits de cada código serão armazenados
+     * @param comprimentos O vetor onde o tamanho (em bits) de cada código será armazenado
+     * @param opcoes O limite de bits e o modo --verbose
+     * @param metricas Onde o tempo de cada etapa é registrado (a impressão fica fora da medição)
+     */
+    private static void construirCodigos(long[] tabelaFrequencia, long[] codigos, int[] comprimentos, Opcoes opcoes,
+                                         Metricas metricas) {
+        // ETAPA 2: Criação do Min-Heap (de índices de nós, ver ArvoreHuffman)
+        metricas.iniciarEtapa();
+        ArvoreHuffman arvore = new ArvoreHuffman(tabelaFrequencia);
+        metricas.terminarEtapa("heap");
+        if (opcoes.verbose) {
+            System.out.println("\nETAPA 2: Min-Heap Inicial (Vetor)");
+            System.out.println(arvore.heapComoTexto());
+        }
+        if (arvore.isVazia()) return; // Arquivo vazio: não há árvore nem códigos
 
         // ETAPA 3: Construção da Árvore de Huffman
-        No raiz = construirArvoreHuffman(minHeap);
-        System.out.println("\nETAPA 3: Arvore de Huffman");
-        imprimirArvore(raiz, "");
+        metricas.iniciarEtapa();
+        arvore.construir();
+        metricas.terminarEtapa("arvore");
+        if (opcoes.verbose) {
+            System.out.println("\nETAPA 3: Arvore de Huffman");
+            imprimirArvore(arvore, arvore.getRaiz(), "");
+        }
 
-        // ETAPA 4: Geração da Tabela de Códigos
-        String[] tabelaCodigos = new String[TAMANHO_ASCII];
-        gerarTabelaCodigos(raiz, "", tabelaCodigos);
-        System.out.println("\nETAPA 4: Tabela de Codigos de Huffman");
-        imprimirTabelaCodigos(tabelaCodigos, tabelaFrequencia);
+        // ETAPA 4: Geração da Tabela de Códigos (comprimentos da árvore, códigos canônicos)
+        metricas.iniciarEtapa();
+        arvore.gerarCodigos(codigos, comprimentos);
+        int maiorSemLimite = CodigoLimitado.maiorComprimento(comprimentos);
+        long bitsSemLimite = calcularTotalBits(tabelaFrequencia, comprimentos);
+        boolean limitado = limitarComprimentos(tabelaFrequencia, comprimentos, opcoes.maxBits);
+        CodigoCanonico.gerarCodigos(comprimentos, codigos);
+        metricas.terminarEtapa("codigos");
+        if (opcoes.verbose) {
+            if (limitado) {
+                System.out.printf("\nComprimentos limitados a %d bits por package-merge (sem limite: %d bits)\n",
+                        opcoes.maxBits, maiorSemLimite);
+                imprimirPerdaLimite(bitsSemLimite, calcularTotalBits(tabelaFrequencia, comprimentos));
+            }
+            System.out.println("\nETAPA 4: Tabela de Codigos de Huffman");
+            imprimirTabelaCodigos(codigos, comprimentos, tabelaFrequencia);
+        }
+    }
 
-        // ETAPA 5: Codificação dos Dados e Escrita do Arquivo
-        byte[] dadosComprimidos = codificarDados(dadosArquivo, tabelaCodigos);
-        escreverArquivoComprimido(arquivoSaida, tabelaFrequencia, dadosComprimidos);
-        
-        long tempoFim = System.nanoTime(); // Marca o fim da contagem de tempo
-        
-        // ETAPA 5 (final): Imprime o resumo da compressão
-        System.out.println("\nETAPA 5: Resumo da Compressao");
-        File original = new File(arquivoEntrada);
-        File comprimido = new File(arquivoSaida);
-        long tamanhoOriginal = original.length();
-        long tamanhoComprimido = comprimido.length();
-        // Fórmula da taxa de compressão
-        double taxaCompressao = 100.0 * (1.0 - (double)tamanhoComprimido / tamanhoOriginal);
+    /**
+     * Gera os comprimentos (pela árvore de Huffman) e os códigos canônicos, sem imprimir nada
+     * Usado pelos modos que constroem uma árvore por bloco
+     * @param tabelaFrequencia A tabela de frequência dos dados
+     * @param codigos O vetor onde os bits de cada código serão armazenados
+     * @param comprimentos O vetor onde o tamanho (em bits) de cada código será armazenado
+     * @param maxBits O maior comprimento de código permitido (SEM_LIMITE para a árvore de Huffman pura)
+     * @return O total de bits dos dados com os códigos da árvore, sem limite (para medir a perda do limite)
+     */
+    static long gerarCodigosCanonicos(long[] tabelaFrequencia, long[] codigos, int[] comprimentos, int maxBits) {
+        ArvoreHuffman arvore = new ArvoreHuffman(tabelaFrequencia);
+        if (arvore.isVazia()) return 0;
+        arvore.construir();
+        arvore.gerarCodigos(codigos, comprimentos);
+        long bitsSemLimite = calcularTotalBits(tabelaFrequencia, comprimentos);
+        limitarComprimentos(tabelaFrequencia, comprimentos, maxBits);
+        CodigoCanonico.gerarCodigos(comprimentos, codigos);
+        return bitsSemLimite;
+    }
 
-        System.out.printf("Tamanho original...: %d bytes\n", tamanhoOriginal);
-        System.out.printf("Tamanho comprimido.: %d bytes\n", tamanhoComprimido);
-        System.out.printf("Taxa de compressao.: %.2f%%\n", taxaCompressao);
-        System.out.printf("Tempo de compressao: %.3f ms\n", (tempoFim - tempoInicio) / 1e6);
+    /**
+     * Troca os comprimentos da árvore pelos do package-merge quando algum código passa do limite
+     * Se a árvore já respeita o limite, os seus comprimentos são mantidos (já são os ótimos)
+     * @param tabelaFrequencia A tabela de frequência dos dados
+     * @param comprimentos Os comprimentos gerados pela árvore, substituídos se necessário
+     * @param maxBits O maior comprimento de código permitido (SEM_LIMITE para não limitar)
+     * @return true se os comprimentos foram substituídos
+     */
+    static boolean limitarComprimentos(long[] tabelaFrequencia, int[] comprimentos, int maxBits) {
+        if (maxBits == SEM_LIMITE || CodigoLimitado.maiorComprimento(comprimentos) <= maxBits) {
+            return false;
+        }
+        int[] limitados = CodigoLimitado.calcularComprimentos(tabelaFrequencia, maxBits);
+        System.arraycopy(limitados, 0, comprimentos, 0, TAMANHO_ASCII);
+        return true;
+    }
+
+    // Mostra quanto os dados comprimidos cresceram por causa do limite de comprimento
+    private static void imprimirPerdaLimite(long bitsSemLimite, long bitsComLimite) {
+        double perda = bitsSemLimite == 0 ? 0 : 100.0 * (bitsComLimite - bitsSemLimite) / bitsSemLimite;
+        System.out.printf("Dados comprimidos: %d bits sem limite, %d bits com limite (+%.3f%%)\n",
+                bitsSemLimite, bitsComLimite, perda);
     }
 
     /**
      * Lê os bytes do arquivo e conta a frequência de cada um
      * @param dados os bytes do arquivo original
-     * @return um vetor de inteiros onde o índice é o código ASCII e o valor é a frequência
+     * @return um vetor onde o índice é o código ASCII e o valor é a frequência (long: mais de 2^31 ocorrências)
      */
-    private static int[] construirTabelaFrequencia(byte[] dados) {
-        int[] freq = new int[TAMANHO_ASCII];
-        // Para cada byte no arquivo
-        for (byte b : dados) {
-            // Incrementa a contagem para o caractere correspondente
-            // `b & 0xFF` converte o byte (que pode ser negativo) para um int de 0 a 255
-            freq[b & 0xFF]++;
-        }
+    static long[] construirTabelaFrequencia(byte[] dados) {
+        long[] freq = new long[TAMANHO_ASCII];
+        acumularFrequencias(dados, dados.length, freq);
         return freq;
     }
 
+    /**
+     * Soma à tabela de frequência as ocorrências de um bloco de bytes, na thread atual
+     * Usado pelo modo em blocos, em que os blocos já são processados em paralelo
+     * @param dados O bloco de bytes lido
+     * @param tamanho Quantos bytes do bloco são válidos
+     * @param freq A tabela de frequência a ser atualizada
+     */
+    static void acumularFrequencias(byte[] dados, int tamanho, long[] freq) {
+        // Contagem com tabelas intercaladas (ver Histograma)
+        Histograma.acumular(dados, 0, tamanho, freq);
+    }
+
+    /*
+     * Versão da árvore com objetos (MinHeap de No): a compressão e a descompressão usam ArvoreHuffman,
+     * que gera a mesma árvore sem alocar um objeto por nó. Estes métodos continuam disponíveis para
+     * comparação (BenchmarkHuffman mede as duas versões)
+     */
+
     /**
      * Cria um Min-Heap e o popula com nós-folha para cada caractere presente no arquivo
      * @param tabelaFrequencia o vetor de frequências gerado
      * @return um Min-Heap pronto para a construção da árvore
      */
-    private static MinHeap construirMinHeap(int[] tabelaFrequencia) {
+    static MinHeap construirMinHeap(long[] tabelaFrequencia) {
         MinHeap minHeap = new MinHeap();
         // Itera por toda a tabela ASCII
         for (int i = 0; i < TAMANHO_ASCII; i++) {
@@ -154,7 +1155,7 @@ public class Huffman {
      * @param minHeap A fila de prioridades com os nós-folha
      * @return A raiz da Árvore de Huffman completa
      */
-    private static No construirArvoreHuffman(MinHeap minHeap) {
+    static No construirArvoreHuffman(MinHeap minHeap) {
         // O processo continua enquanto houver mais de um nó no heap
         while (minHeap.tamanho() > 1) {
             // Remove os dois nós de menor frequência
@@ -162,7 +1163,7 @@ public class Huffman {
             No direita = minHeap.removerMin();
             
             // Cria um novo nó interno com a soma das frequências dos filhos
-            int freqSoma = esquerda.getFrequencia() + direita.getFrequencia();
+            long freqSoma = esquerda.getFrequencia() + direita.getFrequencia();
             No pai = new No(freqSoma, esquerda, direita);
             
             // Insere o novo nó interno de volta no heap
@@ -175,169 +1176,471 @@ public class Huffman {
     /**
      * Percorre a Árvore de Huffman recursivamente para gerar os códigos binários
      * @param no O nó atual na recursão (começa com a raiz)
-     * @param codigo O código binário acumulado até o momento
-     * @param tabelaCodigos O vetor de Strings onde os códigos finais serão armazenados
+     * @param codigo Os bits do código acumulado até o momento, alinhados à direita
+     * @param comprimento A quantidade de bits do código acumulado
+     * @param codigos O vetor onde os bits de cada código serão armazenados
+     * @param comprimentos O vetor onde o tamanho (em bits) de cada código será armazenado
      */
-    private static void gerarTabelaCodigos(No no, String codigo, String[] tabelaCodigos) {
+    static void gerarTabelaCodigos(No no, long codigo, int comprimento, long[] codigos, int[] comprimentos) {
         if (no == null) return;
         
         // Se for um nó folha, encontramos um caractere
         if (no.isFolha()) {
             // Armazena o código acumulado na posição do caractere
-            tabelaCodigos[no.getCaractere()] = codigo;
+            codigos[no.getCaractere()] = codigo;
+            comprimentos[no.getCaractere()] = comprimento;
         } else {
+            // O acumulador de 64 bits do EscritorBits não comporta códigos maiores que este limite
+            if (comprimento + 1 > EscritorBits.MAX_BITS_CODIGO) {
+                throw new IllegalStateException("Código de Huffman maior que " + EscritorBits.MAX_BITS_CODIGO + " bits");
+            }
             // Se for um nó interno, continua a recursão
             // Adiciona '0' ao código e desce para a esquerda
-            gerarTabelaCodigos(no.getEsquerda(), codigo + "0", tabelaCodigos);
+            gerarTabelaCodigos(no.getEsquerda(), codigo << 1, comprimento + 1, codigos, comprimentos);
             // Adiciona '1' ao código e desce para a direita
-            gerarTabelaCodigos(no.getDireita(), codigo + "1", tabelaCodigos);
+            gerarTabelaCodigos(no.getDireita(), (codigo << 1) | 1, comprimento + 1, codigos, comprimentos);
         }
     }
 
     /**
      * Converte os dados originais em uma sequência de bytes comprimidos
+     * Os bits de cada código são empacotados diretamente no vetor de saída pelo EscritorBits
      * @param dadosOriginais Os bytes do arquivo original
-     * @param tabelaCodigos A tabela de mapeamento de caracteres para códigos binários
+     * @param tabelaFrequencia As frequências usadas para calcular o tamanho exato da saída
+     * @param codigos Os bits do código de cada caractere
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
      * @return Um vetor de bytes representando os dados comprimidos
      */
-    private static byte[] codificarDados(byte[] dadosOriginais, String[] tabelaCodigos) {
-        // StringBuilder é eficiente para concatenar muitas strings
-        StringBuilder sb = new StringBuilder();
-        // Monta uma única string gigante com todos os bits do arquivo
-        for (byte b : dadosOriginais) {
-            sb.append(tabelaCodigos[b & 0xFF]);
-        }
+    static byte[] codificarDados(byte[] dadosOriginais, long[] tabelaFrequencia, long[] codigos, int[] comprimentos) {
+        // O total de bits é conhecido antes da codificação: soma de frequência x tamanho do código
+        long totalBits = calcularTotalBits(tabelaFrequencia, comprimentos);
+        byte[] saida = new byte[(int) ((totalBits + 7) / 8)];
 
-        String bitString = sb.toString();
-        int tamanho = bitString.length();
-        
-        // Usa ByteArrayOutputStream para construir o array de bytes de saída
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
-        // Armazena o número de bits "úteis" no último byte
-        // Se o total de bits for múltiplo de 8, o padding é 8, senão é o resto
-        int padding = tamanho % 8;
-        if (padding == 0) padding = 8;
-        baos.write((byte) padding);
+        // Empacota o código de cada byte do arquivo no vetor de saída
+        EscritorBits escritor = new EscritorBits(saida, 0);
+        codificar(dadosOriginais, 0, dadosOriginais.length, codigos, comprimentos, escritor);
+        escritor.completarByte();
+
+        return saida;
+    }
+
+    /**
+     * Empacota os códigos de um trecho de bytes no EscritorBits
+     * @param dados O vetor com os bytes originais
+     * @param inicio A posição do primeiro byte do trecho
+     * @param fim A posição seguinte ao último byte do trecho
+     * @param codigos Os bits do código de cada caractere
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
+     * @param escritor O destino dos bits
+     */
+    static void codificar(byte[] dados, int inicio, int fim, long[] codigos, int[] comprimentos, EscritorBits escritor) {
+        for (int i = inicio; i < fim; i++) {
+            int simbolo = dados[i] & 0xFF;
+            escritor.escrever(codigos[simbolo], comprimentos[simbolo]);
+        }
+    }
 
-        // Itera pela string de bits, agrupando de 8 em 8
-        for (int i = 0; i < tamanho; i += 8) {
-            // Pega uma substring de até 8 bits
-            String byteString = (i + 8 <= tamanho) ? bitString.substring(i, i + 8) : bitString.substring(i);
-            // Converte a string binária para um valor inteiro
-            int valorByte = Integer.parseInt(byteString, 2);
-            // Escreve o byte no stream de saída
-            baos.write(valorByte);
+    /**
+     * Codifica um a cada "passo" caracteres de dados[inicio..fim), a partir do primeiro
+     * Usado nos fluxos intercalados (FLAG_INTERCALADO): o fluxo k recebe os caracteres k, k + 4, k + 8...
+     */
+    static void codificar(byte[] dados, int inicio, int fim, int passo, long[] codigos, int[] comprimentos,
+                          EscritorBits escritor) {
+        for (int i = inicio; i < fim; i += passo) {
+            int simbolo = dados[i] & 0xFF;
+            escritor.escrever(codigos[simbolo], comprimentos[simbolo]);
         }
+    }
 
-        return baos.toByteArray();
+    // Total de bits dos dados codificados: soma de frequência x tamanho do código de cada caractere
+    static long calcularTotalBits(long[] tabelaFrequencia, int[] comprimentos) {
+        long totalBits = 0;
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            totalBits += tabelaFrequencia[i] * comprimentos[i];
+        }
+        return totalBits;
     }
 
     /**
-     * Escreve o cabeçalho (tabela de frequência) e os dados comprimidos no arquivo de saída
+     * Escreve o cabeçalho e os dados comprimidos no arquivo de saída
      * @param nomeArquivo O caminho do arquivo de saída
-     * @param tabelaFrequencia O cabeçalho a ser escrito
+     * @param tamanhoOriginal O tamanho do arquivo original, em bytes
+     * @param tabelaFrequencia A tabela de frequência (indica quais caracteres estão presentes)
+     * @param comprimentos O tamanho do código de cada caractere, gravado no cabeçalho
      * @param dadosComprimidos Os bytes comprimidos
      */
-    private static void escreverArquivoComprimido(String nomeArquivo, int[] tabelaFrequencia, byte[] dadosComprimidos) throws IOException {
-        // ObjectOutputStream permite escrever objetos Java diretamente em um arquivo (neste caso, o vetor de int)
-        try (ObjectOutputStream oos = new ObjectOutputStream(new FileOutputStream(nomeArquivo))) {
-            oos.writeObject(tabelaFrequencia); // Escreve o cabeçalho
-            oos.write(dadosComprimidos);       // Escreve os dados comprimidos
+    private static void escreverArquivoComprimido(String nomeArquivo, long tamanhoOriginal, long[] tabelaFrequencia,
+                                                  int[] comprimentos, byte[] dadosComprimidos) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(nomeArquivo)))) {
+            escreverCabecalho(out, tamanhoOriginal, tabelaFrequencia, comprimentos);
+            out.write(dadosComprimidos); // Escreve os dados comprimidos
+        }
+    }
+
+    /**
+     * Escreve o cabeçalho do formato canônico
+     * Em vez da tabela de frequência serializada (mais de 1 KB), grava apenas os comprimentos
+     * dos códigos dos caracteres presentes, de forma compacta (ver CodigoCanonico)
+     * @param out O stream de saída
+     * @param tamanhoOriginal O tamanho do arquivo original, em bytes
+     * @param tabelaFrequencia A tabela de frequência (indica quais caracteres estão presentes)
+     * @param comprimentos O tamanho do código de cada caractere
+     */
+    private static void escreverCabecalho(DataOutputStream out, long tamanhoOriginal, long[] tabelaFrequencia,
+                                          int[] comprimentos) throws IOException {
+        FormatoHuff.escreverInicio(out, 0, tamanhoOriginal);
+        // Um arquivo vazio não tem tabela de comprimentos
+        if (tamanhoOriginal > 0) {
+            CodigoCanonico.escrever(out, comprimentos, caracteresPresentes(tabelaFrequencia));
         }
     }
 
+    // Indica quais caracteres aparecem no arquivo (frequência > 0)
+    static boolean[] caracteresPresentes(long[] tabelaFrequencia) {
+        boolean[] presentes = new boolean[TAMANHO_ASCII];
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            presentes[i] = tabelaFrequencia[i] > 0;
+        }
+        return presentes;
+    }
+
     // --- LÓGICA DE DESCOMPRESSÃO ---
 
     /**
-     * Orquestra todas as etapas do processo de descompressão
+     * Orquestra todas as etapas do processo de descompressão, com as opções padrão
+     * Aceita tanto o formato canônico quanto o formato antigo (tabela de frequência serializada)
      * @param arquivoEntrada Caminho do arquivo .huff
      * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
      */
-    public static void descomprimir(String arquivoEntrada, String arquivoSaida) throws IOException {
-        long tempoInicio = System.nanoTime(); // Marca o início do tempo
-        
-        // ObjectInputStream permite ler objetos Java de um arquivo
-        try (ObjectInputStream ois = new ObjectInputStream(new FileInputStream(arquivoEntrada))) {
-            // 1 Lê o cabeçalho (a tabela de frequência) do arquivo
-            int[] tabelaFrequencia = (int[]) ois.readObject();
+    public static Metricas descomprimir(String arquivoEntrada, String arquivoSaida) throws IOException {
+        return descomprimir(arquivoEntrada, arquivoSaida, new Opcoes());
+    }
 
-            // 2 Reconstrói a Árvore de Huffman a partir da tabela de frequência
-            MinHeap minHeap = construirMinHeap(tabelaFrequencia);
-            No raiz = construirArvoreHuffman(minHeap);
+    /**
+     * Orquestra a descompressão com as opções informadas
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     * @param opcoes Threads da decodificação dos blocos, arquivos mapeados (--mmap), pipeline (--pipeline) e modo --verbose
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas descomprimir(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas;
+        byte[] dadosDescomprimidos = null;
+        boolean comIndice = false;
+        boolean mapeado = false;
+        boolean armazenado = false;
+        boolean canonico = false;
+        boolean emPipeline = false;
+        long tamanhoArmazenado = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(arquivoEntrada)))) {
+            // 1 Identifica o formato pelos primeiros bytes do arquivo
+            in.mark(FormatoHuff.TAMANHO_INICIO);
+            int assinatura = in.readUnsignedShort();
+            in.reset();
 
-            // 3 Lê o restante do arquivo, que são os dados comprimidos
-            byte[] dadosComprimidos = ois.readAllBytes();
-            
-            // 4 Decodifica os dados usando a árvore
-            byte[] dadosDescomprimidos = decodificarDados(raiz, dadosComprimidos);
+            if (assinatura == FormatoHuff.MAGIA_SERIALIZACAO) {
+                metricas = new Metricas("descompressao", "antigo");
+                metricas.iniciarEtapa();
+                dadosDescomprimidos = lerFormatoAntigo(in);
+                metricas.terminarEtapa("decodificacao");
+            } else {
+                in.mark(FormatoHuff.TAMANHO_INICIO);
+                int flags = FormatoHuff.lerFlags(in);
+                long tamanhoOriginal = in.readLong();
+                in.reset();
+                // Com o índice de blocos, a descompressão é feita em paralelo direto no arquivo de saída
+                comIndice = (flags & FormatoHuff.FLAG_INDICE) != 0;
+                boolean emBlocos = (flags & FormatoHuff.FLAG_BLOCOS) != 0;
+                boolean adaptativo = (flags & FormatoHuff.FLAG_ADAPTATIVO) != 0;
+                // Dados que não cabem em um vetor (nem em um único mapeamento) são decodificados em trechos
+                boolean grande = tamanhoOriginal > MAIOR_VETOR || new File(arquivoEntrada).length() > MAIOR_VETOR;
+                mapeado = opcoes.mapear && (flags & ~FormatoHuff.FLAG_SINCRONIA) == 0 && !grande;
+                boolean contexto = (flags & FormatoHuff.FLAG_CONTEXTO) != 0;
+                boolean comModelo = (flags & FormatoHuff.FLAG_MODELO) != 0;
+                boolean intercalado = (flags & FormatoHuff.FLAG_INTERCALADO) != 0;
+                // Arquivo inteiro armazenado sem compressão: só uma cópia, feita pelo sistema operacional
+                armazenado = (flags & FormatoHuff.FLAG_ARMAZENADO) != 0 && !emBlocos;
+                tamanhoArmazenado = tamanhoOriginal;
+                // --pipeline vale para os formatos decodificados em sequência (sem índice, mapeamento ou cópia)
+                emPipeline = opcoes.pipeline && !comIndice && !mapeado && !armazenado;
+                String modo = emPipeline ? "pipeline" : comIndice ? "blocos" : emBlocos ? "blocos-sequencial" : adaptativo ? "adaptativo"
+                        : armazenado ? "armazenado" : grande ? "stream" : contexto ? "contexto" : comModelo ? "modelo"
+                        : intercalado ? "intercalado" : "normal";
+                metricas = new Metricas("descompressao", opcoes.mapear && (comIndice || mapeado) ? modo + "-mmap" : modo);
+                metricas.iniciarEtapa();
+                if (!comIndice && !mapeado && !armazenado && !emPipeline) {
+                    if (emBlocos || adaptativo || grande) {
+                        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(arquivoSaida))) {
+                            descomprimirStream(in, out, criarCodec(opcoes));
+                        }
+                        metricas.terminarEtapa("decodificacao");
+                    } else {
+                        canonico = true;
+                    }
+                }
+            }
+        }
 
+        if (comIndice) {
+            ModoBlocos.descomprimirParalelo(arquivoEntrada, arquivoSaida, opcoes.threads, opcoes.mapear);
+            metricas.terminarEtapa("decodificacao");
+        } else if (mapeado) {
+            // Tabela única com --mmap: decodifica de arquivo mapeado para arquivo mapeado
+            ModoMapeado.descomprimir(arquivoEntrada, arquivoSaida);
+            metricas.terminarEtapa("decodificacao");
+        } else if (armazenado) {
+            copiarArmazenado(arquivoEntrada, arquivoSaida, tamanhoArmazenado);
+            metricas.terminarEtapa("copia");
+        } else if (emPipeline) {
+            ModoPipeline.descomprimir(arquivoEntrada, arquivoSaida, criarCodec(opcoes), opcoes.tamanhoTrecho,
+                    opcoes.profundidadeFila);
+            metricas.terminarEtapa("decodificacao");
+        } else if (canonico) {
+            descomprimirCanonico(arquivoEntrada, arquivoSaida, metricas, criarCodec(opcoes));
+        } else if (dadosDescomprimidos != null) {
             // 5 Escreve os dados originais no arquivo de saída
+            metricas.iniciarEtapa();
             try (FileOutputStream fos = new FileOutputStream(arquivoSaida)) {
                 fos.write(dadosDescomprimidos);
             }
-        } catch (ClassNotFoundException e) {
-            // Erro caso o arquivo não contenha um objeto válido
-            throw new IOException("Formato de arquivo inválido ou corrompido", e);
+            metricas.terminarEtapa("escrita");
         }
-        
-        long tempoFim = System.nanoTime(); // Marca o fim do tempo
-        System.out.println("Arquivo descomprimido com sucesso!");
-        System.out.printf("Tempo de descompressão: %.3f ms\n", (tempoFim - tempoInicio) / 1e6);
+
+        metricas.registrarTamanhos(new File(arquivoEntrada).length(), new File(arquivoSaida).length());
+        if (opcoes.verbose) {
+            System.out.println("Arquivo descomprimido com sucesso!");
+            System.out.printf("Tempo de descompressão: %.3f ms\n", metricas.getTotalNanos() / 1e6);
+        }
+        return metricas;
     }
 
     /**
-     * Converte os dados comprimidos de volta aos dados originais usando a Árvore de Huffman
-     * @param raiz A raiz da árvore reconstruída
-     * @param dadosComprimidos Os bytes lidos do arquivo .huff
-     * @return Um vetor de bytes com os dados originais
+     * Restaura um arquivo armazenado sem compressão (FLAG_ARMAZENADO): copia os bytes que seguem o
+     * início do cabeçalho com FileChannel.transferTo
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     * @param tamanhoOriginal O tamanho gravado no cabeçalho
      */
-    private static byte[] decodificarDados(No raiz, byte[] dadosComprimidos) {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        
-        // O primeiro byte dos dados comprimidos é a informação de padding
-        int paddingBits = dadosComprimidos[0];
-        if (paddingBits == 0) paddingBits = 8; // Se era múltiplo de 8, o padding é 8
-        
-        // Monta a string de bits a partir dos bytes lidos
-        StringBuilder bitString = new StringBuilder();
-        for (int i = 1; i < dadosComprimidos.length; i++) {
-            // Converte o byte para sua representação binária em string
-            String s = Integer.toBinaryString(dadosComprimidos[i] & 0xFF);
-            
-            // Adiciona zeros à esquerda para garantir que cada byte gere 8 bits
-            // Exceto o último byte, que usa a informação de padding
-            if (i < dadosComprimidos.length -1 || paddingBits == 8) {
-                 s = String.format("%8s", s).replace(' ', '0');
-            } else {
-                 s = String.format("%" + paddingBits + "s", s).replace(' ', '0');
+    private static void copiarArmazenado(String arquivoEntrada, String arquivoSaida, long tamanhoOriginal) throws IOException {
+        try (FileChannel entrada = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ);
+             FileChannel saida = FileChannel.open(Paths.get(arquivoSaida), StandardOpenOption.WRITE,
+                     StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            if (tamanhoOriginal < 0 || entrada.size() - FormatoHuff.TAMANHO_INICIO < tamanhoOriginal) {
+                throw new EOFException("Fim inesperado dos dados comprimidos");
             }
-            bitString.append(s);
+            transferir(entrada, FormatoHuff.TAMANHO_INICIO, tamanhoOriginal, saida);
         }
+    }
+
+    /**
+     * Descomprime um arquivo do formato canônico: cabeçalho compacto seguido dos dados comprimidos
+     * As tabelas de decodificação são montadas direto dos comprimentos, sem Min-Heap nem árvore
+     * (ver HuffmanCodec). O arquivo comprimido e os dados restaurados ficam em vetores do conjunto
+     * compartilhado (PoolBuffers.COMPARTILHADO), devolvidos no final
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     * @param metricas Onde os tempos de leitura, decodificação e escrita são registrados
+     * @param codec O codec (com o modelo de --model, se informado)
+     */
+    private static void descomprimirCanonico(String arquivoEntrada, String arquivoSaida, Metricas metricas,
+                                             HuffmanCodec codec) throws IOException {
+        codec.setPool(PoolBuffers.COMPARTILHADO);
+        try {
+            byte[] arquivoComprimido;
+            int tamanho;
+            try (FileChannel canal = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ)) {
+                tamanho = (int) canal.size();
+                arquivoComprimido = codec.bufferComprimido(tamanho);
+                IndiceBlocos.lerCompleto(canal, ByteBuffer.wrap(arquivoComprimido, 0, tamanho), 0);
+            }
+            metricas.terminarEtapa("leitura");
 
-        // Percorre a árvore de acordo com a string de bits
-        No noAtual = raiz;
-        for (int i = 0; i < bitString.length(); i++) {
-            // Se o bit for '0', vai para a esquerda
-            if (bitString.charAt(i) == '0') {
-                noAtual = noAtual.getEsquerda();
-            } else { // Se for '1', vai para a direita
-                noAtual = noAtual.getDireita();
+            long tamanhoOriginal = HuffmanCodec.tamanhoOriginal(arquivoComprimido, 0, tamanho);
+            if (tamanhoOriginal < 0 || tamanhoOriginal > MAIOR_VETOR) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
             }
+            codec.verificarTamanhoOriginal(arquivoComprimido, 0, tamanho, tamanhoOriginal);
+            byte[] dados = codec.bufferOriginal((int) tamanhoOriginal);
+            int restaurados = codec.descomprimir(arquivoComprimido, 0, tamanho, dados, 0);
+            metricas.terminarEtapa("decodificacao");
 
-            // Se chegou a uma folha, um caractere foi decodificado
-            if (noAtual.isFolha()) {
-                baos.write(noAtual.getCaractere());
-                // Volta para a raiz para decodificar o próximo caractere
-                noAtual = raiz;
+            try (FileOutputStream fos = new FileOutputStream(arquivoSaida)) {
+                fos.write(dados, 0, restaurados);
             }
+            metricas.terminarEtapa("escrita");
+        } finally {
+            codec.liberarBuffers();
+        }
+    }
+
+    /**
+     * Descomprime lendo ou gravando pela entrada ou saída padrão ("-"), por HuffmanInputStream
+     * Aceita todos os formatos da versão 2 (-c, --contexto, --blocos, -a e -c por pipe); os caracteres são
+     * gravados à medida que são decodificados, e a saída é descarregada antes de esperar pela entrada
+     * @param arquivoEntrada Caminho do arquivo .huff, ou "-"
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado, ou "-"
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas descomprimirPadrao(String arquivoEntrada, String arquivoSaida) throws IOException {
+        return descomprimirPadrao(arquivoEntrada, arquivoSaida, new Opcoes());
+    }
+
+    /**
+     * Descomprime pela entrada ou saída padrão, com as opções informadas
+     * @param arquivoEntrada Caminho do arquivo .huff, ou "-"
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado, ou "-"
+     * @param opcoes O arquivo do modelo (--model)
+     * @return O tempo de cada etapa e os tamanhos de entrada e saída
+     */
+    public static Metricas descomprimirPadrao(String arquivoEntrada, String arquivoSaida, Opcoes opcoes) throws IOException {
+        Metricas metricas = new Metricas("descompressao", "pipe");
+        metricas.iniciarEtapa();
+        long bytesEntrada;
+        long bytesSaida;
+        try (HuffmanInputStream in = new HuffmanInputStream(abrirEntrada(arquivoEntrada), criarCodec(opcoes));
+             OutputStream out = abrirSaida(arquivoSaida)) {
+            bytesSaida = copiar(in, in, out);
+            bytesEntrada = in.getBytesLidos();
         }
-        return baos.toByteArray();
+        metricas.terminarEtapa("decodificacao");
+        metricas.registrarTamanhos(bytesEntrada, bytesSaida);
+        return metricas;
+    }
+
+    /**
+     * Extrai o trecho [inicio, inicio + quantidade) do arquivo original (-x), por ModoExtracao
+     * Os bytes de entrada registrados são só os lidos do arquivo comprimido
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo onde o trecho é gravado, ou "-"
+     * @param inicio A posição do trecho no arquivo original
+     * @param quantidade O tamanho do trecho (encurtado no fim do arquivo original)
+     * @param opcoes O arquivo do modelo (--model)
+     * @return O tempo da extração e os tamanhos de entrada e saída
+     */
+    public static Metricas extrair(String arquivoEntrada, String arquivoSaida, long inicio, long quantidade,
+                                   Opcoes opcoes) throws IOException {
+        try (ModoExtracao extracao = new ModoExtracao(arquivoEntrada, criarCodec(opcoes))) {
+            Metricas metricas = new Metricas("extracao", extracao.getModo());
+            metricas.iniciarEtapa();
+            long gravados;
+            try (OutputStream out = abrirSaida(arquivoSaida)) {
+                gravados = extracao.extrair(inicio, quantidade, out);
+            }
+            metricas.terminarEtapa("decodificacao");
+            metricas.registrarTamanhos(extracao.getBytesLidos(), gravados);
+            return metricas;
+        }
+    }
+
+    /**
+     * Descomprime gravando os dados originais direto no stream de saída (HuffmanInputStream)
+     * Usado com arquivos em blocos sem índice (um bloco na memória por vez), com o modo adaptativo e
+     * com dados maiores que um vetor: a tabela única é decodificada em trechos de tamanho fixo
+     * @param in O stream posicionado no início do arquivo
+     * @param out O stream onde os dados originais são gravados
+     * @param codec O codec (com o modelo de --model, se informado)
+     */
+    private static void descomprimirStream(InputStream in, OutputStream out, HuffmanCodec codec) throws IOException {
+        new HuffmanInputStream(in, codec).transferTo(out);
+    }
+
+    // Codec da descompressão, com o modelo de --model (se informado)
+    private static HuffmanCodec criarCodec(Opcoes opcoes) throws IOException {
+        HuffmanCodec codec = new HuffmanCodec();
+        if (opcoes.modelo != null) codec.setModelo(ModeloHuffman.carregar(opcoes.modelo));
+        return codec;
+    }
+
+    /**
+     * Lê um arquivo do formato antigo, em que a tabela de frequência foi gravada com ObjectOutputStream
+     * A árvore é reconstruída pelas frequências e os dados começam com um byte de padding
+     * @param in O stream posicionado no início do arquivo
+     * @return Os dados originais
+     */
+    private static byte[] lerFormatoAntigo(InputStream in) throws IOException {
+        // ObjectInputStream permite ler objetos Java de um arquivo
+        ObjectInputStream ois = new ObjectInputStream(in);
+        try {
+            // 2 Lê o cabeçalho (a tabela de frequência, gravada com int) do arquivo
+            int[] frequenciasGravadas = (int[]) ois.readObject();
+            if (frequenciasGravadas.length != TAMANHO_ASCII) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            long[] tabelaFrequencia = new long[TAMANHO_ASCII];
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                tabelaFrequencia[i] = frequenciasGravadas[i];
+            }
+
+            // 3 Reconstrói a Árvore de Huffman a partir da tabela de frequência
+            // Os códigos do formato antigo são os da própria árvore (não canônicos)
+            ArvoreHuffman arvore = new ArvoreHuffman(tabelaFrequencia);
+            arvore.construir();
+            long[] codigos = new long[TAMANHO_ASCII];
+            int[] comprimentos = new int[TAMANHO_ASCII];
+            arvore.gerarCodigos(codigos, comprimentos);
+
+            // A soma das frequências é exatamente a quantidade de caracteres do arquivo original
+            long totalCaracteres = 0;
+            for (long f : tabelaFrequencia) {
+                totalCaracteres += f;
+            }
+
+            // 4 Lê o restante do arquivo, que são os dados comprimidos
+            byte[] dadosComprimidos = ois.readAllBytes();
+
+            // O primeiro byte dos dados comprimidos é a informação de padding
+            int paddingBits = dadosComprimidos[0];
+            if (paddingBits == 0) paddingBits = 8; // Se era múltiplo de 8, o padding é 8
+
+            // Se a raiz já é uma folha, o arquivo tem um único caractere e nenhum bit foi gravado
+            int raiz = arvore.getRaiz();
+            TabelaDecodificacao tabela = arvore.isFolha(raiz)
+                    ? TabelaDecodificacao.paraSimboloUnico(arvore.getSimbolo(raiz))
+                    : new TabelaDecodificacao(codigos, comprimentos);
+            return decodificarDados(tabela, dadosComprimidos, 1, paddingBits, totalCaracteres);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            // Erro caso o arquivo não contenha um objeto válido
+            throw new IOException("Formato de arquivo inválido ou corrompido", e);
+        }
+    }
+
+    /**
+     * Converte os dados comprimidos de volta aos dados originais usando tabelas de consulta
+     * Os bits são lidos direto do vetor comprimido e vários bits são resolvidos por consulta,
+     * em vez de descer a árvore um bit por vez
+     * @param tabela As tabelas de consulta montadas a partir dos códigos
+     * @param dadosComprimidos Os bytes comprimidos lidos do arquivo .huff
+     * @param inicio A posição do primeiro byte de dados
+     * @param bitsUltimoByte Quantos bits do último byte são úteis
+     * @param tamanhoOriginal A quantidade de caracteres do arquivo original
+     * @return Um vetor de bytes com os dados originais
+     */
+    private static byte[] decodificarDados(TabelaDecodificacao tabela, byte[] dadosComprimidos, int inicio,
+                                           int bitsUltimoByte, long tamanhoOriginal) {
+        // A saída é criada já com o tamanho final
+        byte[] saida = new byte[(int) tamanhoOriginal];
+        tabela.decodificar(dadosComprimidos, inicio, dadosComprimidos.length, bitsUltimoByte, saida, 0, saida.length);
+        return saida;
     }
     
     // --- MÉTODOS DE IMPRESSÃO PARA O CONSOLE ---
 
-    private static void imprimirTabelaFrequencia(int[] tabela) {
+    // ETAPA 5 (final): Imprime o resumo da compressão
+    private static void imprimirResumo(Metricas metricas) {
+        System.out.println("\nETAPA 5: Resumo da Compressao");
+        long tamanhoOriginal = metricas.getBytesEntrada();
+        long tamanhoComprimido = metricas.getBytesSaida();
+        // Fórmula da taxa de compressão
+        double taxaCompressao = 100.0 * (1.0 - (double)tamanhoComprimido / tamanhoOriginal);
+
+        System.out.printf("Tamanho original...: %d bytes\n", tamanhoOriginal);
+        System.out.printf("Tamanho comprimido.: %d bytes\n", tamanhoComprimido);
+        System.out.printf("Taxa de compressao.: %.2f%%\n", taxaCompressao);
+        System.out.printf("Tempo de compressao: %.3f ms\n", metricas.getTotalNanos() / 1e6);
+    }
+
+    private static void imprimirTabelaFrequencia(long[] tabela) {
         for (int i = 0; i < TAMANHO_ASCII; i++) {
             if (tabela[i] > 0) {
                 System.out.printf("Caractere '%c' (ASCII: %d): %d\n", (char) i, i, tabela[i]);
@@ -345,24 +1648,33 @@ public class Huffman {
         }
     }
 
-    private static void imprimirArvore(No no, String prefixo) {
-        if (no == null) return;
+    private static void imprimirArvore(ArvoreHuffman arvore, int no, String prefixo) {
+        if (no < 0) return;
         
-        boolean isFolha = no.isFolha();
-        String caractere = isFolha ? "'" + no.getCaractere() + "'" : "RAIZ/Nó";
-        System.out.println(prefixo + "-> (" + caractere + ", " + no.getFrequencia() + ")");
+        boolean isFolha = arvore.isFolha(no);
+        String caractere = isFolha ? "'" + (char) arvore.getSimbolo(no) + "'" : "RAIZ/Nó";
+        System.out.println(prefixo + "-> (" + caractere + ", " + arvore.getPeso(no) + ")");
         
         if (!isFolha) {
-            imprimirArvore(no.getEsquerda(), prefixo + "  |--(0)");
-            imprimirArvore(no.getDireita(), prefixo + "  |--(1)");
+            imprimirArvore(arvore, arvore.getEsquerda(no), prefixo + "  |--(0)");
+            imprimirArvore(arvore, arvore.getDireita(no), prefixo + "  |--(1)");
         }
     }
 
-    private static void imprimirTabelaCodigos(String[] tabelaCodigos, int[] tabelaFrequencia) {
+    private static void imprimirTabelaCodigos(long[] codigos, int[] comprimentos, long[] tabelaFrequencia) {
         for (int i = 0; i < TAMANHO_ASCII; i++) {
             if (tabelaFrequencia[i] > 0) {
-                System.out.printf("Caractere '%c': %s\n", (char) i, tabelaCodigos[i]);
+                System.out.printf("Caractere '%c': %s\n", (char) i, codigoComoTexto(codigos[i], comprimentos[i]));
             }
         }
     }
+
+    // Monta a representação em '0'/'1' de um código, apenas para impressão
+    private static String codigoComoTexto(long codigo, int comprimento) {
+        StringBuilder sb = new StringBuilder(comprimento);
+        for (int bit = comprimento - 1; bit >= 0; bit--) {
+            sb.append(((codigo >>> bit) & 1) == 0 ? '0' : '1');
+        }
+        return sb.toString();
+    }
 }
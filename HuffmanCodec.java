@@ -0,0 +1,724 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// HuffmanCodec.java
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Compressão e descompressão em memória, para usar o Huffman como biblioteca (sem arquivos e sem uma
+ * JVM nova por arquivo)
+ *
+ * comprimir() gera um .huff completo no formato canônico (FormatoHuff sem flags): cabeçalho, tabela de
+ * comprimentos e dados, os mesmos bytes gerados por "-c"; dados em que a compressão não compensa são
+ * armazenados como estão (FLAG_ARMAZENADO), sem codificação. descomprimir() lê esse formato e os formatos
+ * em blocos (--blocos e HuffmanOutputStream) e de contexto (--contexto, ModoContexto); o modo adaptativo
+ * (-a) é lido por HuffmanInputStream. Arquivos comprimidos com um modelo treinado (--model) precisam
+ * do mesmo modelo, informado por setModelo(). Com setIntercalado(true), comprimir() divide os dados
+ * em fluxos intercalados (FLAG_INTERCALADO), que descomprimir() decodifica juntos
+ *
+ * As tabelas (frequências, árvore, códigos e tabela de decodificação) pertencem ao codec e são
+ * reaproveitadas a cada chamada: entre vetores ou ByteBuffers do chamador, o mesmo codec não aloca
+ * memória depois das primeiras chamadas. ByteBuffers sem vetor acessível (diretos ou somente leitura)
+ * são copiados para vetores internos, que só crescem quando chega uma mensagem maior que as anteriores
+ * HuffmanOutputStream e HuffmanInputStream também podem receber um codec, para reaproveitar os buffers
+ * Com setPool(), esses vetores vêm de um conjunto de buffers compartilhado (PoolBuffers) e voltam para
+ * ele em liberarBuffers(): vários codecs dividem os mesmos vetores, até o limite do conjunto
+ *
+ * Um codec não pode ser usado por duas threads, nem por dois streams, ao mesmo tempo: use um por thread
+ */
+public class HuffmanCodec {
+
+    private static final int TAMANHO_ASCII = 256;
+    // Maior vetor de bytes que a JVM consegue criar
+    private static final long MAIOR_VETOR = Integer.MAX_VALUE - 8;
+    // Campos de cada bloco do formato em blocos de tamanho desconhecido: tamanho comprimido e original
+    static final int CAMPOS_BLOCO = 8;
+
+    private final int maxBits;
+    private final Histograma histograma; // Contagem em fatias paralelas (programa de linha de comando), ou null
+    private final Metricas metricas;     // Tempo de cada etapa (programa de linha de comando), ou null
+
+    private final long[] frequencias = new long[TAMANHO_ASCII];
+    private final int[] tabelasContagem = new int[Histograma.TAMANHO_TABELAS];
+    private final ArvoreHuffman arvore = new ArvoreHuffman();
+    private final long[] codigos = new long[TAMANHO_ASCII];
+    private final int[] comprimentos = new int[TAMANHO_ASCII];
+    private final boolean[] presentes = new boolean[TAMANHO_ASCII];
+    private final EscritorBits escritor = new EscritorBits(new byte[0], 0);
+    private final TabelaDecodificacao tabela = new TabelaDecodificacao();
+    private ArvoreAdaptativa arvoreAdaptativa; // Criada no primeiro arquivo do modo adaptativo
+    private ModeloHuffman modelo;              // Modelo dos arquivos com FLAG_MODELO, ou null
+    private boolean armazenar;                 // O último analisar() decidiu armazenar os dados sem compressão
+    private boolean intercalado;               // comprimir() grava os dados em fluxos intercalados
+    private final int[] limitesFluxos = new int[FormatoHuff.FLUXOS_INTERCALADOS + 1];
+
+    // Vetores de trabalho para dados originais e dados comprimidos (ByteBuffers sem vetor e streams)
+    private static final byte[] VAZIO = new byte[0];
+    private byte[] bufferOriginal = VAZIO;
+    private byte[] bufferComprimido = VAZIO;
+    private PoolBuffers pool; // De onde vêm os vetores de trabalho, ou null (alocados pelo codec)
+
+    // Codec com códigos de Huffman sem limite de comprimento
+    public HuffmanCodec() {
+        this(Huffman.SEM_LIMITE);
+    }
+
+    /**
+     * @param maxBits O maior comprimento de código permitido (Huffman.SEM_LIMITE para a árvore de Huffman pura)
+     */
+    public HuffmanCodec(int maxBits) {
+        this(maxBits, null, null);
+    }
+
+    /**
+     * Codec usado pelo programa de linha de comando
+     * @param maxBits O maior comprimento de código permitido
+     * @param histograma Contador usado quando os dados começam na posição 0 (fatias em paralelo), ou null
+     * @param metricas Onde o tempo de cada etapa da compressão é registrado, ou null
+     */
+    HuffmanCodec(int maxBits, Histograma histograma, Metricas metricas) {
+        if (maxBits < 0 || maxBits > EscritorBits.MAX_BITS_CODIGO) {
+            throw new IllegalArgumentException("O limite de bits deve ser 0 (sem limite) ou estar entre 1 e " + EscritorBits.MAX_BITS_CODIGO);
+        }
+        this.maxBits = maxBits;
+        this.histograma = histograma;
+        this.metricas = metricas;
+    }
+
+    /**
+     * Maior tamanho possível do resultado de comprimir() para dados de "tamanho" bytes
+     * No total, os códigos de Huffman nunca ocupam mais bits que 8 por caractere (o código de 8 bits
+     * também é um código de prefixo, e o de Huffman é o menor), então basta somar o cabeçalho
+     * @param tamanho O tamanho dos dados originais
+     * @return O tamanho que o destino precisa ter
+     */
+    public static int tamanhoMaximoComprimido(int tamanho) {
+        long maximo = (long) FormatoHuff.TAMANHO_INICIO + CodigoCanonico.TAMANHO_MAXIMO + tamanho;
+        if (tamanho < 0 || maximo > MAIOR_VETOR) {
+            throw new IllegalArgumentException("Tamanho inválido para um vetor: " + tamanho);
+        }
+        return (int) maximo;
+    }
+
+    /**
+     * Liga ou desliga os fluxos intercalados (FLAG_INTERCALADO) nos próximos comprimir()
+     * A decodificação fica mais rápida, ao custo de 16 bytes de tamanhos e até 3 bytes de preenchimento;
+     * o formato em blocos (HuffmanOutputStream) não é afetado
+     * @param intercalado true para dividir os dados em FormatoHuff.FLUXOS_INTERCALADOS fluxos
+     */
+    public void setIntercalado(boolean intercalado) {
+        this.intercalado = intercalado;
+    }
+
+    /**
+     * Faz os vetores de trabalho virem de um conjunto de buffers (PoolBuffers), em vez de serem alocados
+     * pelo codec; liberarBuffers() os devolve ao conjunto entre um arquivo e outro
+     * @param pool O conjunto, ou null para o codec alocar os seus próprios vetores
+     */
+    public void setPool(PoolBuffers pool) {
+        liberarBuffers();
+        this.pool = pool;
+    }
+
+    /**
+     * Solta os vetores de trabalho: com um conjunto de buffers, eles são devolvidos a ele; sem, ficam para o GC
+     * Os vetores obtidos de bufferOriginal() e bufferComprimido() não podem mais ser usados
+     */
+    public void liberarBuffers() {
+        if (pool != null) {
+            pool.devolver(bufferOriginal);
+            pool.devolver(bufferComprimido);
+        }
+        bufferOriginal = VAZIO;
+        bufferComprimido = VAZIO;
+    }
+
+    // Maior tamanho de um bloco do formato em blocos de tamanho desconhecido (ver comprimirBloco)
+    static int tamanhoMaximoBloco(int tamanho) {
+        return CAMPOS_BLOCO + CodigoCanonico.TAMANHO_MAXIMO + tamanho;
+    }
+
+    // --- COMPRESSÃO ---
+
+    /**
+     * Comprime os dados de um vetor
+     * @param dados Os dados originais
+     * @return O arquivo comprimido, com o tamanho exato
+     */
+    public byte[] comprimir(byte[] dados) {
+        long tamanhoComprimido = analisar(dados, 0, dados.length, intercalado);
+        byte[] resultado = new byte[(int) tamanhoComprimido];
+        int gravados = escreverComprimido(dados, 0, dados.length, resultado, 0);
+        // Nos fluxos intercalados, analisar() devolve um limite: cada fluxo pode completar um byte a menos
+        return gravados < resultado.length ? Arrays.copyOf(resultado, gravados) : resultado;
+    }
+
+    /**
+     * Comprime um trecho de um vetor para outro vetor, sem alocar memória
+     * @param origem O vetor com os dados originais
+     * @param inicio A posição do primeiro byte dos dados
+     * @param tamanho Quantos bytes comprimir
+     * @param destino O vetor onde o arquivo comprimido é gravado (tamanhoMaximoComprimido() sempre basta)
+     * @param inicioDestino A primeira posição de "destino" a ser preenchida
+     * @return Quantos bytes foram gravados em "destino"
+     * @throws IndexOutOfBoundsException Se os dados comprimidos não cabem no destino (nada é gravado)
+     */
+    public int comprimir(byte[] origem, int inicio, int tamanho, byte[] destino, int inicioDestino) {
+        Objects.checkFromIndexSize(inicio, tamanho, origem.length);
+        long tamanhoComprimido = analisar(origem, inicio, tamanho, intercalado);
+        Objects.checkFromIndexSize(inicioDestino, tamanhoComprimido, destino.length);
+        return escreverComprimido(origem, inicio, tamanho, destino, inicioDestino);
+    }
+
+    /**
+     * Comprime os bytes de "origem" (da posição até o limite) para "destino", a partir da sua posição
+     * As posições dos dois buffers avançam; os dados não precisam estar em vetores (buffers diretos)
+     * @param origem Os dados originais
+     * @param destino Onde o arquivo comprimido é gravado (tamanhoMaximoComprimido() sempre basta)
+     * @return Quantos bytes foram gravados em "destino"
+     * @throws BufferOverflowException Se os dados comprimidos não cabem no destino (nenhum buffer é alterado)
+     */
+    public int comprimir(ByteBuffer origem, ByteBuffer destino) {
+        int tamanho = origem.remaining();
+        byte[] dados;
+        int inicio;
+        if (origem.hasArray()) {
+            dados = origem.array();
+            inicio = origem.arrayOffset() + origem.position();
+        } else {
+            dados = bufferOriginal(tamanho);
+            origem.get(origem.position(), dados, 0, tamanho);
+            inicio = 0;
+        }
+        long tamanhoComprimido = analisar(dados, inicio, tamanho, intercalado);
+        if (tamanhoComprimido > destino.remaining()) {
+            throw new BufferOverflowException();
+        }
+
+        int gravados;
+        if (destino.hasArray()) {
+            gravados = escreverComprimido(dados, inicio, tamanho, destino.array(), destino.arrayOffset() + destino.position());
+        } else {
+            byte[] saida = bufferComprimido((int) tamanhoComprimido);
+            gravados = escreverComprimido(dados, inicio, tamanho, saida, 0);
+            destino.put(destino.position(), saida, 0, gravados);
+        }
+        origem.position(origem.limit());
+        destino.position(destino.position() + gravados);
+        return gravados;
+    }
+
+    /**
+     * ETAPAS 1 a 4: conta as frequências do trecho e gera os códigos canônicos
+     * Pelo tamanho que os códigos teriam, decide também se os dados serão armazenados sem compressão
+     * @param intercalar Se os dados serão gravados em fluxos intercalados
+     * @return O tamanho exato do arquivo comprimido (nos fluxos intercalados, o maior tamanho possível)
+     */
+    private long analisar(byte[] dados, int inicio, int tamanho, boolean intercalar) {
+        Arrays.fill(frequencias, 0);
+        if (histograma != null && inicio == 0) {
+            histograma.acumular(dados, tamanho, frequencias);
+        } else {
+            Histograma.acumular(dados, inicio, inicio + tamanho, frequencias, tabelasContagem);
+        }
+        medir("frequencia");
+        construirCodigos();
+        armazenar = false;
+        if (tamanho == 0) return FormatoHuff.TAMANHO_INICIO;
+        long tamanhoCodificado = CodigoCanonico.tamanho(comprimentos, presentes)
+                + (Huffman.calcularTotalBits(frequencias, comprimentos) + 7) / 8;
+        if (intercalar) {
+            // Os tamanhos dos fluxos e, no máximo, um byte de preenchimento a mais em cada fluxo
+            tamanhoCodificado += 4 * FormatoHuff.FLUXOS_INTERCALADOS + FormatoHuff.FLUXOS_INTERCALADOS - 1;
+        }
+        armazenar = FormatoHuff.armazenar(tamanhoCodificado, tamanho);
+        return FormatoHuff.TAMANHO_INICIO + (armazenar ? tamanho : tamanhoCodificado);
+    }
+
+    // ETAPAS 2 a 4 sobre as frequências contadas: Min-Heap, árvore, comprimentos e códigos canônicos
+    private void construirCodigos() {
+        Arrays.fill(comprimentos, 0);
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            presentes[i] = frequencias[i] > 0;
+        }
+        arvore.reiniciar(frequencias);
+        medir("heap");
+        if (arvore.isVazia()) return; // Dados vazios: não há árvore nem códigos
+
+        arvore.construir();
+        medir("arvore");
+        arvore.gerarCodigos(codigos, comprimentos);
+        Huffman.limitarComprimentos(frequencias, comprimentos, maxBits);
+        CodigoCanonico.gerarCodigos(comprimentos, codigos);
+        medir("codigos");
+    }
+
+    /**
+     * ETAPA 5: grava o cabeçalho, a tabela de comprimentos e os dados codificados (depois de analisar)
+     * @return Quantos bytes foram gravados
+     */
+    private int escreverComprimido(byte[] origem, int inicio, int tamanho, byte[] destino, int inicioDestino) {
+        boolean intercalar = intercalado && !armazenar && tamanho > 0;
+        int flags = armazenar ? FormatoHuff.FLAG_ARMAZENADO : intercalar ? FormatoHuff.FLAG_INTERCALADO : 0;
+        int posicao = FormatoHuff.escreverInicio(destino, inicioDestino, flags, tamanho);
+        if (armazenar) {
+            System.arraycopy(origem, inicio, destino, posicao, tamanho);
+            posicao += tamanho;
+        } else if (intercalar) {
+            posicao = codificarIntercalado(origem, inicio, tamanho, destino, posicao);
+        } else if (tamanho > 0) {
+            posicao = codificar(origem, inicio, tamanho, destino, posicao);
+        }
+        medir("codificacao");
+        return posicao - inicioDestino;
+    }
+
+    // Grava a tabela de comprimentos e os códigos dos dados; devolve a posição seguinte ao último byte
+    private int codificar(byte[] origem, int inicio, int tamanho, byte[] destino, int posicao) {
+        posicao = CodigoCanonico.escrever(destino, posicao, comprimentos, presentes);
+        escritor.reiniciar(destino, posicao);
+        Huffman.codificar(origem, inicio, inicio + tamanho, codigos, comprimentos, escritor);
+        escritor.completarByte();
+        return escritor.getPosicao();
+    }
+
+    // Grava a tabela, o tamanho de cada fluxo intercalado e os fluxos; devolve a posição seguinte ao último byte
+    private int codificarIntercalado(byte[] origem, int inicio, int tamanho, byte[] destino, int posicao) {
+        final int fluxos = FormatoHuff.FLUXOS_INTERCALADOS;
+        posicao = CodigoCanonico.escrever(destino, posicao, comprimentos, presentes);
+        int tamanhos = posicao;
+        posicao += 4 * fluxos;
+        for (int k = 0; k < fluxos; k++) {
+            escritor.reiniciar(destino, posicao);
+            Huffman.codificar(origem, inicio + k, inicio + tamanho, fluxos, codigos, comprimentos, escritor);
+            escritor.completarByte();
+            FormatoHuff.escreverInt(destino, tamanhos + 4 * k, escritor.getPosicao() - posicao);
+            posicao = escritor.getPosicao();
+        }
+        return posicao;
+    }
+
+    /**
+     * Comprime um bloco do formato em blocos de tamanho desconhecido (HuffmanOutputStream):
+     * tamanho comprimido (int), tamanho original (int), tabela de comprimentos e dados
+     * Se a compressão não compensar, o bloco é armazenado: os dois tamanhos iguais e os dados originais
+     * @param origem O vetor com o bloco, a partir da posição 0
+     * @param tamanho O tamanho do bloco (maior que 0)
+     * @param destino O vetor de saída, com pelo menos tamanhoMaximoBloco(tamanho) bytes livres
+     * @param posicao A primeira posição de "destino" a ser preenchida
+     * @return Quantos bytes foram gravados
+     */
+    int comprimirBloco(byte[] origem, int tamanho, byte[] destino, int posicao) {
+        analisar(origem, 0, tamanho, false);
+        int fim;
+        if (armazenar) {
+            System.arraycopy(origem, 0, destino, posicao + CAMPOS_BLOCO, tamanho);
+            fim = posicao + CAMPOS_BLOCO + tamanho;
+        } else {
+            fim = codificar(origem, 0, tamanho, destino, posicao + CAMPOS_BLOCO);
+        }
+        FormatoHuff.escreverInt(destino, posicao, fim - posicao - CAMPOS_BLOCO);
+        FormatoHuff.escreverInt(destino, posicao + 4, tamanho);
+        return fim - posicao;
+    }
+
+    // --- DESCOMPRESSÃO ---
+
+    /**
+     * Tamanho dos dados originais de um arquivo comprimido, lido do cabeçalho
+     * No formato em blocos de tamanho desconhecido, soma os tamanhos gravados em cada bloco
+     * @param comprimido O vetor com o arquivo comprimido
+     * @param inicio A posição do início do arquivo
+     * @param tamanho O tamanho do arquivo comprimido
+     * @return O tamanho original, ou FormatoHuff.TAMANHO_DESCONHECIDO no modo adaptativo
+     */
+    public static long tamanhoOriginal(byte[] comprimido, int inicio, int tamanho) throws IOException {
+        Objects.checkFromIndexSize(inicio, tamanho, comprimido.length);
+        int fim = inicio + tamanho;
+        int flags = FormatoHuff.lerFlags(comprimido, inicio, fim);
+        long tamanhoOriginal = FormatoHuff.lerTamanho(comprimido, inicio);
+        if (tamanhoOriginal != FormatoHuff.TAMANHO_DESCONHECIDO || (flags & FormatoHuff.FLAG_BLOCOS) == 0) {
+            return tamanhoOriginal;
+        }
+        // Os blocos são conferidos como em descomprimirBlocos(), para que a soma seja a mesma da decodificação
+        int posicao = inicio + FormatoHuff.TAMANHO_INICIO;
+        int tamanhoBloco = lerInt(comprimido, posicao, fim);
+        posicao += 4;
+        long total = 0;
+        while (true) {
+            int tamanhoComprimido = lerInt(comprimido, posicao, fim);
+            if (tamanhoComprimido == 0) return total;
+            int tamanhoDescomprimido = lerInt(comprimido, posicao + 4, fim);
+            posicao += CAMPOS_BLOCO;
+            if (tamanhoComprimido < 0 || tamanhoComprimido > fim - posicao
+                    || tamanhoDescomprimido <= 0 || tamanhoDescomprimido > tamanhoBloco) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            total += tamanhoDescomprimido;
+            posicao += tamanhoComprimido;
+        }
+    }
+
+    /**
+     * Descomprime um arquivo comprimido inteiro
+     * @param comprimido O arquivo comprimido
+     * @return Os dados originais
+     */
+    public byte[] descomprimir(byte[] comprimido) throws IOException {
+        long tamanho = tamanhoOriginal(comprimido, 0, comprimido.length);
+        if (tamanho == FormatoHuff.TAMANHO_DESCONHECIDO) {
+            throw new IOException("Arquivos do modo adaptativo (-a) são lidos por HuffmanInputStream");
+        }
+        if (tamanho < 0 || tamanho > MAIOR_VETOR) {
+            throw new IOException("Os dados originais não cabem em um vetor (use HuffmanInputStream)");
+        }
+        verificarTamanhoOriginal(comprimido, 0, comprimido.length, tamanho);
+        byte[] resultado;
+        try {
+            resultado = new byte[(int) tamanho];
+        } catch (OutOfMemoryError e) {
+            // Um arquivo válido com um único caractere descreve muitos dados em poucos bytes
+            throw new IOException("Os dados originais (" + tamanho + " bytes) não cabem na memória (use HuffmanInputStream)");
+        }
+        descomprimir(comprimido, 0, comprimido.length, resultado, 0);
+        return resultado;
+    }
+
+    /**
+     * Confere, antes de alocar o vetor de saída, se os dados comprimidos comportam o tamanho original
+     * do cabeçalho; assim um cabeçalho corrompido não provoca uma alocação enorme. Os limites são:
+     * - armazenado: o tamanho dos dados
+     * - codificado: 8 caracteres por byte, porque cada código tem pelo menos 1 bit (sem limite se
+     *   alguma tabela tiver um único caractere, cujo código tem 0 bits)
+     * - blocos: a soma dos tamanhos dos blocos presentes (no formato de tamanho desconhecido, a soma já
+     *   vem de tamanhoOriginal(), que confere cada bloco)
+     * @param comprimido O vetor com o arquivo comprimido
+     * @param inicio A posição do início do arquivo
+     * @param tamanho O tamanho do arquivo comprimido
+     * @param tamanhoOriginal O tamanho original, de tamanhoOriginal()
+     * @throws IOException Se o tamanho original não cabe nos dados comprimidos
+     */
+    void verificarTamanhoOriginal(byte[] comprimido, int inicio, int tamanho, long tamanhoOriginal) throws IOException {
+        if (tamanhoOriginal > maiorTamanhoOriginal(comprimido, inicio, inicio + tamanho)) {
+            throw new IOException("Formato de arquivo inválido ou corrompido: o tamanho original não cabe nos dados comprimidos");
+        }
+    }
+
+    // O maior tamanho original que os dados comprimidos em origem[inicio..fim) comportam (ver verificarTamanhoOriginal)
+    private long maiorTamanhoOriginal(byte[] origem, int inicio, int fim) throws IOException {
+        int flags = FormatoHuff.lerFlags(origem, inicio, fim);
+        long tamanhoOriginal = FormatoHuff.lerTamanho(origem, inicio);
+        int posicao = inicio + FormatoHuff.TAMANHO_INICIO;
+        if ((flags & FormatoHuff.FLAG_BLOCOS) != 0) {
+            return somarBlocos(origem, posicao, fim, tamanhoOriginal);
+        }
+        if ((flags & FormatoHuff.FLAG_ARMAZENADO) != 0) {
+            return fim - posicao;
+        }
+        if (tamanhoOriginal <= 0) return 0;
+        boolean semBits;
+        if ((flags & FormatoHuff.FLAG_MODELO) != 0) {
+            semBits = tabelaModelo(lerInt(origem, posicao, fim)).getMaiorComprimento() == 0;
+            posicao += ModeloHuffman.TAMANHO_ID;
+        } else if ((flags & FormatoHuff.FLAG_CONTEXTO) != 0) {
+            ModoContexto.Tabelas tabelas = new ModoContexto.Tabelas();
+            posicao = tabelas.ler(origem, posicao, fim);
+            semBits = tabelas.algumaSemBits;
+        } else {
+            posicao = lerTabela(origem, posicao, fim);
+            semBits = tabela.getMaiorComprimento() == 0;
+        }
+        return semBits ? MAIOR_VETOR : 8L * Math.max(0, fim - posicao);
+    }
+
+    // Soma o tamanho original dos blocos presentes (cada um com no máximo o tamanho do bloco)
+    private static long somarBlocos(byte[] origem, int posicao, int fim, long tamanhoOriginal) throws IOException {
+        if (tamanhoOriginal == FormatoHuff.TAMANHO_DESCONHECIDO) return MAIOR_VETOR;
+        int tamanhoBloco = lerInt(origem, posicao, fim);
+        posicao += 4;
+        if (tamanhoBloco <= 0) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        long total = 0;
+        while (total < tamanhoOriginal && fim - posicao >= 4) {
+            int tamanhoComprimido = FormatoHuff.lerInt(origem, posicao);
+            posicao += 4;
+            if (tamanhoComprimido <= 0 || tamanhoComprimido > fim - posicao) break;
+            total += tamanhoBloco;
+            posicao += tamanhoComprimido;
+        }
+        return total;
+    }
+
+    /**
+     * Descomprime um arquivo gravado em um trecho de vetor para outro vetor, sem alocar memória
+     * @param origem O vetor com o arquivo comprimido
+     * @param inicio A posição do início do arquivo
+     * @param tamanho O tamanho do arquivo comprimido
+     * @param destino O vetor onde os dados originais são gravados (ver tamanhoOriginal())
+     * @param inicioDestino A primeira posição de "destino" a ser preenchida
+     * @return Quantos bytes foram gravados em "destino"
+     * @throws IndexOutOfBoundsException Se os dados originais não cabem no destino
+     */
+    public int descomprimir(byte[] origem, int inicio, int tamanho, byte[] destino, int inicioDestino) throws IOException {
+        Objects.checkFromIndexSize(inicio, tamanho, origem.length);
+        Objects.checkFromIndexSize(inicioDestino, 0, destino.length);
+        int fim = inicio + tamanho;
+        int flags = FormatoHuff.lerFlags(origem, inicio, fim);
+        long tamanhoOriginal = FormatoHuff.lerTamanho(origem, inicio);
+        int posicao = inicio + FormatoHuff.TAMANHO_INICIO;
+
+        if ((flags & FormatoHuff.FLAG_ADAPTATIVO) != 0) {
+            throw new IOException("Arquivos do modo adaptativo (-a) são lidos por HuffmanInputStream");
+        }
+        boolean armazenado = (flags & FormatoHuff.FLAG_ARMAZENADO) != 0;
+        if ((flags & FormatoHuff.FLAG_BLOCOS) != 0) {
+            return descomprimirBlocos(origem, posicao, fim, tamanhoOriginal, armazenado, destino, inicioDestino);
+        }
+        if (tamanhoOriginal < 0) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        Objects.checkFromIndexSize(inicioDestino, tamanhoOriginal, destino.length);
+        if (tamanhoOriginal == 0) return 0;
+        if (armazenado) {
+            if (tamanhoOriginal > fim - posicao) {
+                throw new IOException("Fim inesperado dos dados comprimidos");
+            }
+            System.arraycopy(origem, posicao, destino, inicioDestino, (int) tamanhoOriginal);
+            return (int) tamanhoOriginal;
+        }
+        if ((flags & FormatoHuff.FLAG_MODELO) != 0) {
+            TabelaDecodificacao tabelaModelo = tabelaModelo(lerInt(origem, posicao, fim));
+            posicao += ModeloHuffman.TAMANHO_ID;
+            long bitFinal = tabelaModelo.decodificarTrecho(origem, (long) posicao << 3, fim, 8, destino, inicioDestino,
+                    (int) tamanhoOriginal);
+            if (bitFinal > (long) fim << 3) {
+                throw new IOException("Fim inesperado dos dados comprimidos");
+            }
+            return (int) tamanhoOriginal;
+        }
+        if ((flags & FormatoHuff.FLAG_CONTEXTO) != 0) {
+            ModoContexto.descomprimir(origem, posicao, fim, destino, inicioDestino, (int) tamanhoOriginal);
+            return (int) tamanhoOriginal;
+        }
+        if ((flags & FormatoHuff.FLAG_INTERCALADO) != 0) {
+            decodificarIntercalado(origem, lerTabela(origem, posicao, fim), fim, destino, inicioDestino,
+                    (int) tamanhoOriginal);
+            return (int) tamanhoOriginal;
+        }
+        decodificarBloco(origem, posicao, fim, destino, inicioDestino, (int) tamanhoOriginal);
+        return (int) tamanhoOriginal;
+    }
+
+    /**
+     * Descomprime os bytes de "origem" (da posição até o limite) para "destino", a partir da sua posição
+     * As posições dos dois buffers avançam; os dados não precisam estar em vetores (buffers diretos)
+     * @param origem O arquivo comprimido
+     * @param destino Onde os dados originais são gravados
+     * @return Quantos bytes foram gravados em "destino"
+     * @throws BufferOverflowException Se os dados originais não cabem no destino (nenhum buffer é alterado)
+     */
+    public int descomprimir(ByteBuffer origem, ByteBuffer destino) throws IOException {
+        int tamanho = origem.remaining();
+        byte[] dados;
+        int inicio;
+        if (origem.hasArray()) {
+            dados = origem.array();
+            inicio = origem.arrayOffset() + origem.position();
+        } else {
+            dados = bufferComprimido(tamanho);
+            origem.get(origem.position(), dados, 0, tamanho);
+            inicio = 0;
+        }
+        long tamanhoOriginal = tamanhoOriginal(dados, inicio, tamanho);
+        if (tamanhoOriginal == FormatoHuff.TAMANHO_DESCONHECIDO) {
+            throw new IOException("Arquivos do modo adaptativo (-a) são lidos por HuffmanInputStream");
+        }
+        if (tamanhoOriginal > destino.remaining()) {
+            throw new BufferOverflowException();
+        }
+
+        int gravados;
+        if (destino.hasArray()) {
+            gravados = descomprimir(dados, inicio, tamanho, destino.array(), destino.arrayOffset() + destino.position());
+        } else {
+            byte[] saida = bufferOriginal((int) tamanhoOriginal);
+            gravados = descomprimir(dados, inicio, tamanho, saida, 0);
+            destino.put(destino.position(), saida, 0, gravados);
+        }
+        origem.position(origem.limit());
+        destino.position(destino.position() + gravados);
+        return gravados;
+    }
+
+    /**
+     * Lê os blocos (--blocos ou HuffmanOutputStream) a partir do campo "tamanho do bloco"
+     * O índice do final dos arquivos gerados por --blocos não é necessário: os blocos são lidos em sequência
+     * @param armazenados Se os blocos com tamanho comprimido igual ao original estão armazenados (FLAG_ARMAZENADO)
+     * @return Quantos bytes foram gravados em "destino"
+     */
+    private int descomprimirBlocos(byte[] origem, int posicao, int fim, long tamanhoOriginal, boolean armazenados,
+                                   byte[] destino, int inicioDestino) throws IOException {
+        int tamanhoBloco = lerInt(origem, posicao, fim);
+        posicao += 4;
+        boolean desconhecido = tamanhoOriginal == FormatoHuff.TAMANHO_DESCONHECIDO;
+        if (tamanhoBloco <= 0 || (tamanhoOriginal < 0 && !desconhecido)) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+
+        int saida = inicioDestino;
+        long restantes = tamanhoOriginal;
+        while (desconhecido || restantes > 0) {
+            int tamanhoComprimido = lerInt(origem, posicao, fim);
+            posicao += 4;
+            int tamanhoDescomprimido;
+            if (desconhecido) {
+                if (tamanhoComprimido == 0) break; // Marcador de fim
+                tamanhoDescomprimido = lerInt(origem, posicao, fim);
+                posicao += 4;
+                if (tamanhoDescomprimido <= 0 || tamanhoDescomprimido > tamanhoBloco) {
+                    throw new IOException("Formato de arquivo inválido ou corrompido");
+                }
+            } else {
+                tamanhoDescomprimido = (int) Math.min(tamanhoBloco, restantes);
+                restantes -= tamanhoDescomprimido;
+            }
+            if (tamanhoComprimido <= 0 || tamanhoComprimido > fim - posicao) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            Objects.checkFromIndexSize(saida, tamanhoDescomprimido, destino.length);
+            if (armazenados && tamanhoComprimido == tamanhoDescomprimido) {
+                System.arraycopy(origem, posicao, destino, saida, tamanhoDescomprimido);
+            } else {
+                decodificarBloco(origem, posicao, posicao + tamanhoComprimido, destino, saida, tamanhoDescomprimido);
+            }
+            posicao += tamanhoComprimido;
+            saida += tamanhoDescomprimido;
+        }
+        return saida - inicioDestino;
+    }
+
+    // Decodifica uma tabela de comprimentos seguida dos dados (origem[inicio..fim)) para o destino
+    private void decodificarBloco(byte[] origem, int inicio, int fim, byte[] destino, int inicioDestino,
+                                  int quantidade) throws IOException {
+        int inicioDados = lerTabela(origem, inicio, fim);
+        long bitFinal = tabela.decodificarTrecho(origem, (long) inicioDados << 3, fim, 8, destino, inicioDestino, quantidade);
+        if (bitFinal > (long) fim << 3) {
+            throw new IOException("Fim inesperado dos dados comprimidos");
+        }
+    }
+
+    /**
+     * Decodifica os fluxos intercalados (FLAG_INTERCALADO) com a tabela do último lerTabela()
+     * @param inicio A posição dos tamanhos dos fluxos, logo depois da tabela
+     * @param fim A posição seguinte ao último byte que pode ser lido
+     */
+    void decodificarIntercalado(byte[] origem, int inicio, int fim, byte[] destino, int inicioDestino,
+                                int quantidade) throws IOException {
+        final int fluxos = FormatoHuff.FLUXOS_INTERCALADOS;
+        long posicao = inicio + 4L * fluxos;
+        for (int k = 0; k < fluxos; k++) {
+            int tamanhoFluxo = lerInt(origem, inicio + 4 * k, fim);
+            if (tamanhoFluxo < 0 || posicao + tamanhoFluxo > fim) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            limitesFluxos[k] = (int) posicao;
+            posicao += tamanhoFluxo;
+        }
+        limitesFluxos[fluxos] = (int) posicao;
+        if (!tabela.decodificarIntercalado(origem, limitesFluxos, destino, inicioDestino, quantidade)) {
+            throw new IOException("Fim inesperado dos dados comprimidos");
+        }
+    }
+
+    /**
+     * Lê uma tabela de comprimentos e remonta a tabela de decodificação do codec
+     * @return A posição seguinte à tabela (o início dos dados comprimidos)
+     */
+    int lerTabela(byte[] dados, int posicao, int fim) throws IOException {
+        posicao = CodigoCanonico.ler(dados, posicao, fim, comprimentos, presentes);
+        CodigoCanonico.preencherTabela(comprimentos, presentes, codigos, tabela);
+        return posicao;
+    }
+
+    // Lê um int do vetor, conferindo se ele não passa do fim dos dados
+    private static int lerInt(byte[] dados, int posicao, int fim) throws IOException {
+        if (posicao + 4 > fim) {
+            throw new IOException("Fim inesperado dos dados comprimidos");
+        }
+        return FormatoHuff.lerInt(dados, posicao);
+    }
+
+    /**
+     * Informa o modelo treinado usado na descompressão de arquivos com FLAG_MODELO
+     * O modelo só é lido, então pode ser o mesmo em vários codecs
+     * @param modelo O modelo (ModeloHuffman.carregar), ou null
+     */
+    public void setModelo(ModeloHuffman modelo) {
+        this.modelo = modelo;
+    }
+
+    /**
+     * A tabela de decodificação do modelo com o identificador gravado no arquivo
+     * @param id O identificador lido do cabeçalho
+     */
+    TabelaDecodificacao tabelaModelo(int id) throws IOException {
+        if (modelo == null) {
+            throw new IOException(String.format("O arquivo foi comprimido com o modelo %08x (informe o modelo com --model)", id));
+        }
+        modelo.conferir(id);
+        return modelo.getTabela();
+    }
+
+    // --- ESTADO COMPARTILHADO COM OS STREAMS ---
+
+    // A tabela montada pelo último lerTabela()
+    TabelaDecodificacao getTabela() {
+        return tabela;
+    }
+
+    // A árvore do modo adaptativo, no estado inicial
+    ArvoreAdaptativa arvoreAdaptativa() {
+        if (arvoreAdaptativa == null) {
+            arvoreAdaptativa = new ArvoreAdaptativa();
+        } else {
+            arvoreAdaptativa.reiniciar();
+        }
+        return arvoreAdaptativa;
+    }
+
+    // Vetor de trabalho para dados originais com pelo menos "tamanho" bytes (o conteúdo anterior pode se perder)
+    byte[] bufferOriginal(int tamanho) {
+        if (bufferOriginal.length < tamanho) bufferOriginal = trocar(bufferOriginal, tamanho);
+        return bufferOriginal;
+    }
+
+    // Vetor de trabalho para dados comprimidos com pelo menos "tamanho" bytes (o conteúdo anterior pode se perder)
+    byte[] bufferComprimido(int tamanho) {
+        if (bufferComprimido.length < tamanho) bufferComprimido = trocar(bufferComprimido, tamanho);
+        return bufferComprimido;
+    }
+
+    // Troca um vetor de trabalho pequeno demais por um maior (do conjunto de buffers, se houver)
+    private byte[] trocar(byte[] atual, int tamanho) {
+        if (pool == null) return new byte[tamanho];
+        pool.devolver(atual);
+        return pool.emprestar(tamanho);
+    }
+
+    private void medir(String etapa) {
+        if (metricas != null) metricas.terminarEtapa(etapa);
+    }
+}
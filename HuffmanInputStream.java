@@ -0,0 +1,394 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// HuffmanInputStream.java
+
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * InputStream que descomprime um arquivo .huff à medida que é lido, como GZIPInputStream
+ * Aceita todos os formatos da versão 2: tabela única (-c), blocos (--blocos e HuffmanOutputStream),
+ * Huffman adaptativo (-a), de contexto (--contexto) e com modelo (--model, informado ao codec); os dados
+ * nunca ficam inteiros na memória
+ *
+ * - Tabela única: os bits passam por uma janela de tamanho fixo e cada leitura decodifica só os
+ *   caracteres que certamente cabem nos bits da janela (bits disponíveis / maior código)
+ * - Contexto: como a tabela única, com a tabela de cada código escolhida pelo caractere anterior
+ * - Blocos: um bloco comprimido por vez fica na janela, com a sua tabela
+ * - Adaptativo: decodifica bit a bit e devolve o que já tiver sido decodificado quando a entrada
+ *   precisaria esperar (ex.: um pipe em que o compressor ainda não gravou o resto)
+ * - Armazenado (FLAG_ARMAZENADO): os dados passam direto do stream de baixo, sem janela; os blocos
+ *   armazenados são copiados da janela
+ * - Intercalado (FLAG_INTERCALADO): os fluxos só podem ser decodificados juntos, então são lidos
+ *   inteiros e decodificados de uma vez (é o único formato que fica inteiro na memória)
+ *
+ * O stream de baixo é lido de forma adiantada (em blocos): bytes gravados depois do arquivo
+ * comprimido podem ser consumidos
+ */
+public class HuffmanInputStream extends FilterInputStream {
+
+    private static final int TAMANHO_JANELA = 1 << 18;
+
+    private static final int CABECALHO = 0;   // O cabeçalho ainda não foi lido
+    private static final int CANONICO = 1;    // Tabela única
+    private static final int BLOCOS = 2;      // Blocos com tamanho original conhecido (--blocos)
+    private static final int BLOCOS_STREAM = 3; // Blocos de tamanho desconhecido (HuffmanOutputStream)
+    private static final int ADAPTATIVO = 4;
+    private static final int FIM = 5;
+    private static final int CONTEXTO = 6;    // Tabelas de ordem 1 (--contexto)
+    private static final int ARMAZENADO = 7;  // Dados sem compressão, lidos direto do stream de baixo
+    private static final int INTERCALADO = 8; // Fluxos intercalados, já decodificados na janela
+
+    private final HuffmanCodec codec;
+    private byte[] janela;
+    private int estado = CABECALHO;
+    private int validos;           // Bytes da janela lidos do stream
+    private long bit;              // Próximo bit a ser decodificado, a partir do início da janela
+    private boolean fimEntrada;    // Todos os bits do trecho atual já estão na janela
+    private long restantes;        // Caracteres do trecho atual (tabela única ou bloco) ainda não lidos
+    private long restantesBlocos;  // Caracteres dos blocos seguintes (--blocos)
+    private int tamanhoBloco;
+    private boolean blocosArmazenados; // Blocos com tamanho comprimido igual ao original estão armazenados
+    private boolean copiando;      // O bloco atual está armazenado: os bytes da janela são copiados
+    private TabelaDecodificacao tabela;
+    private int maiorComprimento;
+    private ModoContexto.Tabelas contextos;
+    private int anterior;          // Último caractere devolvido (o contexto do próximo, em CONTEXTO)
+    private LeitorBits leitor;
+    private ArvoreAdaptativa arvore;
+    private long bytesLidos;       // Bytes comprimidos lidos do stream de baixo
+    private final byte[] umByte = new byte[1];
+
+    // Stream com um codec próprio
+    public HuffmanInputStream(InputStream in) {
+        this(in, new HuffmanCodec());
+    }
+
+    /**
+     * @param in O stream com o arquivo comprimido
+     * @param codec O codec usado (tabelas e buffers), que não pode ser usado em outro lugar ao mesmo tempo
+     */
+    public HuffmanInputStream(InputStream in, HuffmanCodec codec) {
+        super(in);
+        this.codec = codec;
+    }
+
+    @Override
+    public int read() throws IOException {
+        int n = read(umByte, 0, 1);
+        return n < 0 ? -1 : umByte[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        Objects.checkFromIndexSize(off, len, b.length);
+        if (len == 0) return 0;
+        if (estado == CABECALHO) lerCabecalho();
+        if (estado == ADAPTATIVO) return lerAdaptativo(b, off, len);
+        if (estado == ARMAZENADO) return lerArmazenado(b, off, len);
+
+        while (restantes == 0) {
+            if (estado == FIM || !proximoBloco()) return -1;
+        }
+        int n = (int) Math.min(len, restantes);
+        if (copiando) {
+            System.arraycopy(janela, (int) (bit >>> 3), b, off, n);
+            bit += (long) n << 3;
+            restantes -= n;
+            return n;
+        }
+        if (!fimEntrada && maiorComprimento > 0) {
+            if (disponiveis() == 0) encher();
+            if (!fimEntrada) n = (int) Math.min(n, disponiveis());
+        }
+        if (estado == CONTEXTO) {
+            bit = TabelaDecodificacao.decodificarContexto(contextos.porContexto, anterior, janela, bit, validos, b, off, n);
+            anterior = b[off + n - 1] & 0xFF;
+        } else {
+            bit = tabela.decodificarTrecho(janela, bit, validos, 8, b, off, n);
+        }
+        if (fimEntrada && bit > (long) validos << 3) {
+            throw new EOFException("Fim inesperado dos dados comprimidos");
+        }
+        restantes -= n;
+        return n;
+    }
+
+    /**
+     * Quantos bytes podem ser lidos sem esperar pelo stream de baixo
+     * Conta só os caracteres que certamente cabem nos bits que já estão na janela
+     */
+    @Override
+    public int available() throws IOException {
+        if (estado == ARMAZENADO) return (int) Math.min(restantes, in.available());
+        if (estado != CANONICO && estado != CONTEXTO && estado != BLOCOS && estado != BLOCOS_STREAM
+                && estado != INTERCALADO) return 0;
+        long n = restantes;
+        if (!fimEntrada && maiorComprimento > 0) n = Math.min(n, disponiveis());
+        return (int) Math.min(n, Integer.MAX_VALUE);
+    }
+
+    // Os caracteres pulados também precisam ser decodificados, já que os códigos têm tamanhos variáveis
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] descartados = codec.bufferOriginal(Math.min(TAMANHO_JANELA, (int) Math.min(n, Integer.MAX_VALUE)));
+        long pulados = 0;
+        while (pulados < n) {
+            int lidos = read(descartados, 0, (int) Math.min(descartados.length, n - pulados));
+            if (lidos < 0) break;
+            pulados += lidos;
+        }
+        return pulados;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int limite) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("HuffmanInputStream não aceita mark/reset");
+    }
+
+    // Quantos bytes comprimidos já foram lidos do stream de baixo
+    public long getBytesLidos() {
+        return leitor != null ? bytesLidos + leitor.getBytesLidos() : bytesLidos;
+    }
+
+    // Lê o início do cabeçalho e prepara a leitura do formato indicado pelas flags
+    private void lerCabecalho() throws IOException {
+        janela = codec.bufferComprimido(TAMANHO_JANELA);
+        lerExatamente(0, FormatoHuff.TAMANHO_INICIO);
+        int flags = FormatoHuff.lerFlags(janela, 0, FormatoHuff.TAMANHO_INICIO);
+        long tamanhoOriginal = FormatoHuff.lerTamanho(janela, 0);
+
+        if ((flags & FormatoHuff.FLAG_ADAPTATIVO) != 0) {
+            leitor = new LeitorBits(in, janela);
+            arvore = codec.arvoreAdaptativa();
+            estado = ADAPTATIVO;
+        } else if ((flags & FormatoHuff.FLAG_BLOCOS) != 0) {
+            lerExatamente(0, 4);
+            tamanhoBloco = FormatoHuff.lerInt(janela, 0);
+            boolean desconhecido = tamanhoOriginal == FormatoHuff.TAMANHO_DESCONHECIDO;
+            if (tamanhoBloco <= 0 || (tamanhoOriginal < 0 && !desconhecido)) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            restantesBlocos = tamanhoOriginal;
+            blocosArmazenados = (flags & FormatoHuff.FLAG_ARMAZENADO) != 0;
+            estado = desconhecido ? BLOCOS_STREAM : BLOCOS;
+        } else {
+            if (tamanhoOriginal < 0) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            if ((flags & FormatoHuff.FLAG_ARMAZENADO) != 0) {
+                restantes = tamanhoOriginal;
+                estado = ARMAZENADO;
+                return;
+            }
+            boolean contexto = (flags & FormatoHuff.FLAG_CONTEXTO) != 0;
+            estado = contexto ? CONTEXTO : CANONICO;
+            if ((flags & FormatoHuff.FLAG_MODELO) != 0) {
+                // Sem tabela no arquivo: os códigos são os do modelo
+                lerExatamente(0, ModeloHuffman.TAMANHO_ID);
+                tabela = codec.tabelaModelo(FormatoHuff.lerInt(janela, 0));
+                maiorComprimento = tabela.getMaiorComprimento();
+                validos = 0;
+                bit = 0;
+                restantes = tamanhoOriginal;
+                if (tamanhoOriginal == 0) estado = FIM;
+                return;
+            }
+            if (tamanhoOriginal == 0) {
+                estado = FIM;
+                return;
+            }
+            // As tabelas têm no máximo TAMANHO_MAXIMO bytes (ou TAMANHO_MAXIMO_TABELAS, no modo de contexto)
+            validos = 0;
+            int tamanhoTabelas = contexto ? ModoContexto.TAMANHO_MAXIMO_TABELAS : CodigoCanonico.TAMANHO_MAXIMO;
+            while (validos < tamanhoTabelas && !fimEntrada) ler();
+            if (contexto) {
+                contextos = new ModoContexto.Tabelas();
+                bit = (long) contextos.ler(janela, 0, validos) << 3;
+                maiorComprimento = contextos.maiorComprimento;
+            } else {
+                bit = (long) codec.lerTabela(janela, 0, validos) << 3;
+                prepararTabela();
+            }
+            restantes = tamanhoOriginal;
+            if ((flags & FormatoHuff.FLAG_INTERCALADO) != 0) lerIntercalado();
+        }
+    }
+
+    /**
+     * Lê os fluxos intercalados inteiros (depois da tabela) e decodifica todos de uma vez
+     * A janela passa a ser o vetor decodificado, copiado para o leitor como um bloco armazenado
+     */
+    private void lerIntercalado() throws IOException {
+        int inicio = (int) (bit >>> 3);
+        int campos = 4 * FormatoHuff.FLUXOS_INTERCALADOS;
+        lerAte(inicio + campos);
+        long fim = inicio + campos;
+        for (int k = 0; k < FormatoHuff.FLUXOS_INTERCALADOS; k++) {
+            int tamanhoFluxo = FormatoHuff.lerInt(janela, inicio + 4 * k);
+            if (tamanhoFluxo < 0) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            fim += tamanhoFluxo;
+        }
+        if (fim > Integer.MAX_VALUE - 8 || restantes > Integer.MAX_VALUE - 8) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        lerAte((int) fim);
+
+        byte[] restaurado = new byte[(int) restantes];
+        codec.decodificarIntercalado(janela, inicio, (int) fim, restaurado, 0, restaurado.length);
+        janela = restaurado;
+        validos = restaurado.length;
+        bit = 0;
+        fimEntrada = true;
+        copiando = true;
+        estado = INTERCALADO;
+    }
+
+    // Lê o stream de baixo até a janela ter pelo menos "quantidade" bytes, aumentando a janela se preciso
+    private void lerAte(int quantidade) throws IOException {
+        if (janela.length < quantidade) janela = Arrays.copyOf(janela, quantidade);
+        while (validos < quantidade && !fimEntrada) ler();
+        if (validos < quantidade) {
+            throw new EOFException("Fim inesperado dos dados comprimidos");
+        }
+    }
+
+    /**
+     * Lê o próximo bloco inteiro para a janela e monta a sua tabela
+     * @return false se não há mais blocos
+     */
+    private boolean proximoBloco() throws IOException {
+        if (estado == CANONICO || estado == CONTEXTO || estado == INTERCALADO || (estado == BLOCOS && restantesBlocos == 0)) {
+            estado = FIM; // O índice do final dos arquivos de --blocos não é necessário
+            return false;
+        }
+        lerExatamente(0, 4);
+        int tamanhoComprimido = FormatoHuff.lerInt(janela, 0);
+        int tamanhoDescomprimido;
+        if (estado == BLOCOS_STREAM) {
+            if (tamanhoComprimido == 0) {
+                estado = FIM;
+                return false;
+            }
+            lerExatamente(0, 4);
+            tamanhoDescomprimido = FormatoHuff.lerInt(janela, 0);
+            if (tamanhoDescomprimido <= 0 || tamanhoDescomprimido > tamanhoBloco) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+        } else {
+            tamanhoDescomprimido = (int) Math.min(tamanhoBloco, restantesBlocos);
+            restantesBlocos -= tamanhoDescomprimido;
+        }
+        if (tamanhoComprimido <= 0 || tamanhoComprimido > HuffmanCodec.tamanhoMaximoBloco(tamanhoBloco)) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+
+        if (janela.length < tamanhoComprimido) janela = codec.bufferComprimido(tamanhoComprimido);
+        lerExatamente(0, tamanhoComprimido);
+        validos = tamanhoComprimido;
+        fimEntrada = true;
+        copiando = blocosArmazenados && tamanhoComprimido == tamanhoDescomprimido;
+        if (copiando) {
+            bit = 0;
+        } else {
+            bit = (long) codec.lerTabela(janela, 0, validos) << 3;
+            prepararTabela();
+        }
+        restantes = tamanhoDescomprimido;
+        return true;
+    }
+
+    private void prepararTabela() {
+        tabela = codec.getTabela();
+        maiorComprimento = tabela.getMaiorComprimento();
+    }
+
+    // Caracteres que certamente cabem nos bits da janela
+    private long disponiveis() {
+        return (((long) validos << 3) - bit) / maiorComprimento;
+    }
+
+    // Move os bytes não consumidos para o início da janela e lê até caber pelo menos um código
+    private void encher() throws IOException {
+        int consumidos = (int) (bit >>> 3);
+        System.arraycopy(janela, consumidos, janela, 0, validos - consumidos);
+        validos -= consumidos;
+        bit &= 7;
+        do {
+            ler();
+        } while (!fimEntrada && disponiveis() == 0);
+    }
+
+    // Uma leitura do stream de baixo para o fim da janela (devolve o que estiver disponível)
+    private void ler() throws IOException {
+        int lidos = in.read(janela, validos, janela.length - validos);
+        if (lidos < 0) {
+            fimEntrada = true;
+        } else {
+            validos += lidos;
+            bytesLidos += lidos;
+        }
+    }
+
+    // Lê exatamente "quantidade" bytes para a janela, a partir de "inicio"
+    private void lerExatamente(int inicio, int quantidade) throws IOException {
+        int lidos = in.readNBytes(janela, inicio, quantidade);
+        bytesLidos += lidos;
+        if (lidos < quantidade) {
+            throw new EOFException("Fim inesperado dos dados comprimidos");
+        }
+    }
+
+    // Dados armazenados: lê direto do stream de baixo, sem passar pela janela
+    private int lerArmazenado(byte[] b, int off, int len) throws IOException {
+        if (restantes == 0) {
+            estado = FIM;
+            return -1;
+        }
+        int n = in.read(b, off, (int) Math.min(len, restantes));
+        if (n < 0) {
+            throw new EOFException("Fim inesperado dos dados comprimidos");
+        }
+        bytesLidos += n;
+        restantes -= n;
+        return n;
+    }
+
+    // Modo adaptativo: decodifica até "len" caracteres, parando antes de esperar pelo stream de baixo
+    private int lerAdaptativo(byte[] b, int off, int len) throws IOException {
+        int i = 0;
+        while (i < len) {
+            if (i > 0 && leitor.precisaEsperar()) break;
+            int simbolo = arvore.decodificar(leitor);
+            if (simbolo == ArvoreAdaptativa.SIMBOLO_FIM) {
+                estado = FIM;
+                break;
+            }
+            b[off + i++] = (byte) simbolo;
+        }
+        return i == 0 && estado == FIM ? -1 : i;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// HuffmanOutputStream.java
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Objects;
+
+/**
+ * OutputStream que comprime tudo o que é gravado nele, como GZIPOutputStream
+ * Os bytes são acumulados em um bloco; cada bloco cheio recebe a sua própria árvore (HuffmanCodec)
+ *
+ * - Se tudo couber em um bloco e flush() não for chamado, o resultado é o formato canônico de "-c"
+ *   (mesmos bytes de HuffmanCodec.comprimir)
+ * - Caso contrário, o formato é o de blocos com tamanho desconhecido (FormatoHuff): cada bloco grava
+ *   os seus tamanhos comprimido e original, e um tamanho comprimido 0 marca o fim
+ *
+ * flush() grava o bloco incompleto (um bloco menor, com árvore própria): o leitor recebe tudo o que foi
+ * gravado até ali, ao custo de uma tabela a mais; finish() termina o arquivo sem fechar o stream de baixo
+ */
+public class HuffmanOutputStream extends FilterOutputStream {
+
+    public static final int TAMANHO_BLOCO_PADRAO = 1 << 20;
+
+    private final HuffmanCodec codec;
+    private final int tamanhoBloco;
+    private final byte[] bloco;
+    private int preenchidos;       // Bytes do bloco atual
+    private boolean iniciado;      // O cabeçalho do formato em blocos já foi gravado
+    private boolean terminado;
+    private boolean fechado;
+    private long bytesGravados;    // Bytes comprimidos gravados no stream de baixo
+
+    // Stream com um codec próprio e blocos de TAMANHO_BLOCO_PADRAO
+    public HuffmanOutputStream(OutputStream out) {
+        this(out, new HuffmanCodec());
+    }
+
+    /**
+     * @param out O stream onde o arquivo comprimido é gravado
+     * @param codec O codec usado (e os seus buffers), que não pode ser usado em outro lugar ao mesmo tempo
+     */
+    public HuffmanOutputStream(OutputStream out, HuffmanCodec codec) {
+        this(out, codec, TAMANHO_BLOCO_PADRAO);
+    }
+
+    /**
+     * @param out O stream onde o arquivo comprimido é gravado
+     * @param codec O codec usado (e os seus buffers), que não pode ser usado em outro lugar ao mesmo tempo
+     * @param tamanhoBloco Quantos bytes originais cada árvore cobre
+     */
+    public HuffmanOutputStream(OutputStream out, HuffmanCodec codec, int tamanhoBloco) {
+        super(out);
+        if (tamanhoBloco <= 0 || tamanhoBloco > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Tamanho de bloco inválido: " + tamanhoBloco);
+        }
+        this.codec = codec;
+        this.tamanhoBloco = tamanhoBloco;
+        this.bloco = codec.bufferOriginal(tamanhoBloco);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        garantirAberto();
+        if (preenchidos == tamanhoBloco) gravarBloco();
+        bloco[preenchidos++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        garantirAberto();
+        Objects.checkFromIndexSize(off, len, b.length);
+        while (len > 0) {
+            // O bloco cheio só é gravado quando chega o próximo byte: se ele for o último, finish()
+            // ainda pode gravar o formato canônico
+            if (preenchidos == tamanhoBloco) gravarBloco();
+            int n = Math.min(len, tamanhoBloco - preenchidos);
+            System.arraycopy(b, off, bloco, preenchidos, n);
+            preenchidos += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /**
+     * Grava o bloco incompleto e descarrega o stream de baixo
+     * O leitor consegue decodificar tudo o que foi gravado até aqui
+     */
+    @Override
+    public void flush() throws IOException {
+        if (!terminado && preenchidos > 0) gravarBloco();
+        out.flush();
+    }
+
+    /**
+     * Termina o arquivo comprimido sem fechar o stream de baixo
+     * Depois de finish(), nada mais pode ser gravado
+     */
+    public void finish() throws IOException {
+        if (terminado) return;
+        terminado = true;
+        if (!iniciado) {
+            // Um único bloco: formato canônico, com o tamanho no cabeçalho
+            byte[] destino = codec.bufferComprimido(HuffmanCodec.tamanhoMaximoComprimido(preenchidos));
+            int n = codec.comprimir(bloco, 0, preenchidos, destino, 0);
+            out.write(destino, 0, n);
+            bytesGravados += n;
+        } else {
+            if (preenchidos > 0) gravarBloco();
+            byte[] destino = codec.bufferComprimido(4);
+            FormatoHuff.escreverInt(destino, 0, 0); // Marcador de fim
+            out.write(destino, 0, 4);
+            bytesGravados += 4;
+        }
+        preenchidos = 0;
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fechado) return;
+        fechado = true;
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    // Quantos bytes comprimidos já foram gravados no stream de baixo
+    public long getBytesGravados() {
+        return bytesGravados;
+    }
+
+    // Comprime o bloco atual e grava no stream de baixo (com o cabeçalho, no primeiro bloco)
+    private void gravarBloco() throws IOException {
+        byte[] destino = codec.bufferComprimido(HuffmanCodec.tamanhoMaximoBloco(tamanhoBloco)
+                + FormatoHuff.TAMANHO_INICIO + 4);
+        int posicao = 0;
+        if (!iniciado) {
+            // Os blocos em que a compressão não compensa são armazenados (ver HuffmanCodec.comprimirBloco)
+            posicao = FormatoHuff.escreverInicio(destino, 0, FormatoHuff.FLAG_BLOCOS | FormatoHuff.FLAG_ARMAZENADO,
+                    FormatoHuff.TAMANHO_DESCONHECIDO);
+            FormatoHuff.escreverInt(destino, posicao, tamanhoBloco);
+            posicao += 4;
+            iniciado = true;
+        }
+        posicao += codec.comprimirBloco(bloco, preenchidos, destino, posicao);
+        out.write(destino, 0, posicao);
+        bytesGravados += posicao;
+        preenchidos = 0;
+    }
+
+    private void garantirAberto() throws IOException {
+        if (terminado) throw new IOException("O stream comprimido já foi terminado");
+    }
+}
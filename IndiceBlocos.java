@@ -0,0 +1,126 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// IndiceBlocos.java
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Índice dos blocos de um arquivo .huff comprimido em blocos
+ * Gravado no final do arquivo, registra onde cada bloco começa e quanto ele ocupa antes e
+ * depois da compressão, permitindo decodificar os blocos em qualquer ordem (e em paralelo)
+ *
+ * Formato (no final do arquivo):
+ * - Para cada bloco: posição no arquivo (long), tamanho comprimido (int), tamanho original (int)
+ * - Rodapé de 16 bytes: quantidade de blocos (int), posição do índice (long), "HIDX" (int)
+ */
+public class IndiceBlocos {
+
+    public static final int MAGIA_INDICE = 0x48494458; // "HIDX"
+    public static final int TAMANHO_RODAPE = 16;
+    static final int TAMANHO_ENTRADA = 16;
+
+    private long[] posicoes = new long[16];          // Onde começa cada bloco (tabela + dados)
+    private int[] tamanhosComprimidos = new int[16]; // Bytes ocupados por cada bloco no .huff
+    private int[] tamanhosOriginais = new int[16];   // Bytes de cada bloco depois de descomprimido
+    private int quantidade;
+
+    /**
+     * Registra um bloco no final do índice
+     * @param posicao A posição do bloco no arquivo comprimido
+     * @param tamanhoComprimido Quantos bytes o bloco ocupa no arquivo comprimido
+     * @param tamanhoOriginal Quantos bytes o bloco tem depois de descomprimido
+     */
+    public void adicionar(long posicao, int tamanhoComprimido, int tamanhoOriginal) {
+        if (quantidade == posicoes.length) {
+            posicoes = Arrays.copyOf(posicoes, quantidade * 2);
+            tamanhosComprimidos = Arrays.copyOf(tamanhosComprimidos, quantidade * 2);
+            tamanhosOriginais = Arrays.copyOf(tamanhosOriginais, quantidade * 2);
+        }
+        posicoes[quantidade] = posicao;
+        tamanhosComprimidos[quantidade] = tamanhoComprimido;
+        tamanhosOriginais[quantidade] = tamanhoOriginal;
+        quantidade++;
+    }
+
+    /**
+     * Grava o índice e o rodapé
+     * @param out O stream de saída, já posicionado depois do último bloco
+     * @param posicaoIndice A posição, no arquivo, em que o índice começa
+     */
+    public void escrever(DataOutputStream out, long posicaoIndice) throws IOException {
+        for (int i = 0; i < quantidade; i++) {
+            out.writeLong(posicoes[i]);
+            out.writeInt(tamanhosComprimidos[i]);
+            out.writeInt(tamanhosOriginais[i]);
+        }
+        out.writeInt(quantidade);
+        out.writeLong(posicaoIndice);
+        out.writeInt(MAGIA_INDICE);
+    }
+
+    /**
+     * Lê o índice do final de um arquivo comprimido em blocos
+     * @param canal O arquivo comprimido
+     * @return O índice com todos os blocos do arquivo
+     */
+    public static IndiceBlocos ler(FileChannel canal) throws IOException {
+        long tamanhoArquivo = canal.size();
+        if (tamanhoArquivo < TAMANHO_RODAPE) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        ByteBuffer rodape = ByteBuffer.allocate(TAMANHO_RODAPE);
+        lerCompleto(canal, rodape, tamanhoArquivo - TAMANHO_RODAPE);
+        int quantidade = rodape.getInt(0);
+        long posicaoIndice = rodape.getLong(4);
+        if (rodape.getInt(12) != MAGIA_INDICE || quantidade < 0
+                || posicaoIndice + (long) quantidade * TAMANHO_ENTRADA != tamanhoArquivo - TAMANHO_RODAPE) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+
+        ByteBuffer entradas = ByteBuffer.allocate(quantidade * TAMANHO_ENTRADA);
+        lerCompleto(canal, entradas, posicaoIndice);
+        entradas.flip();
+        IndiceBlocos indice = new IndiceBlocos();
+        for (int i = 0; i < quantidade; i++) {
+            indice.adicionar(entradas.getLong(), entradas.getInt(), entradas.getInt());
+        }
+        return indice;
+    }
+
+    // Lê do canal até preencher o buffer, a partir de uma posição (leitura posicional, segura entre threads)
+    static void lerCompleto(FileChannel canal, ByteBuffer buffer, long posicao) throws IOException {
+        while (buffer.hasRemaining()) {
+            int lidos = canal.read(buffer, posicao);
+            if (lidos < 0) throw new IOException("Fim inesperado do arquivo");
+            posicao += lidos;
+        }
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    public long getPosicao(int bloco) {
+        return posicoes[bloco];
+    }
+
+    public int getTamanhoComprimido(int bloco) {
+        return tamanhosComprimidos[bloco];
+    }
+
+    public int getTamanhoOriginal(int bloco) {
+        return tamanhosOriginais[bloco];
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// Kernels.java
+
+/**
+ * Laços internos da contagem de frequência (Histograma), em duas versões com o mesmo resultado:
+ * - escalar (esta classe): um byte por vez, com as 4 tabelas intercaladas
+ * - vetorial (KernelsVetoriais): Vector API (jdk.incubator.vector), com detecção de repetições
+ *
+ * A versão é escolhida uma vez, quando a classe é carregada (ATUAL). A vetorial só é usada se a classe
+ * KernelsVetoriais foi compilada e o módulo foi incluído na execução (ver comandos.txt):
+ *   java --add-modules jdk.incubator.vector -jar huffman.jar ...
+ * Sem isso, o programa usa a escalar. -Dhuffman.kernels=escalar força a escalar mesmo com o módulo
+ */
+public class Kernels {
+
+    private static final int TAMANHO_ASCII = 256;
+
+    // A versão escalar, sempre disponível
+    static final Kernels ESCALAR = new Kernels();
+    // A versão vetorial, ou null se o módulo ou a classe não estiverem disponíveis
+    static final Kernels VETORIAL = carregarVetorial();
+    // A versão usada pelo programa
+    static final Kernels ATUAL = VETORIAL == null || "escalar".equals(System.getProperty("huffman.kernels"))
+            ? ESCALAR : VETORIAL;
+
+    // Nome da versão, para as medições (BenchmarkHuffman)
+    public String getNome() {
+        return "escalar";
+    }
+
+    /**
+     * Soma às 4 tabelas intercaladas as ocorrências de um trecho (a tabela k fica nas posições
+     * [256k, 256k + 255]); cada byte é contado em uma das tabelas, e só a soma das 4 importa
+     * @param dados O vetor de bytes
+     * @param inicio A posição do primeiro byte do trecho
+     * @param fim A posição logo após o último byte do trecho
+     * @param tabelas As 4 tabelas (Histograma.TAMANHO_TABELAS posições)
+     */
+    void contar(byte[] dados, int inicio, int fim, int[] tabelas) {
+        int i = inicio;
+        for (; i + 3 < fim; i += 4) {
+            tabelas[dados[i] & 0xFF]++;
+            tabelas[256 + (dados[i + 1] & 0xFF)]++;
+            tabelas[512 + (dados[i + 2] & 0xFF)]++;
+            tabelas[768 + (dados[i + 3] & 0xFF)]++;
+        }
+        for (; i < fim; i++) {
+            tabelas[dados[i] & 0xFF]++;
+        }
+    }
+
+    /**
+     * Soma as 4 tabelas intercaladas na tabela de frequência
+     * O conteúdo das tabelas depois da chamada não é definido (a versão vetorial grava as somas nelas)
+     * @param tabelas As 4 tabelas preenchidas por contar()
+     * @param freq A tabela de frequência a ser atualizada
+     */
+    void juntar(int[] tabelas, long[] freq) {
+        for (int s = 0; s < TAMANHO_ASCII; s++) {
+            freq[s] += (long) tabelas[s] + tabelas[256 + s] + tabelas[512 + s] + tabelas[768 + s];
+        }
+    }
+
+    // Carrega KernelsVetoriais só se o módulo da Vector API estiver presente (senão a classe nem liga)
+    private static Kernels carregarVetorial() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) return null;
+        try {
+            Kernels vetorial = (Kernels) Class.forName("KernelsVetoriais").getDeclaredConstructor().newInstance();
+            return vetorial.isCompensa() ? vetorial : null;
+        } catch (ReflectiveOperationException | LinkageError | ClassCastException e) {
+            return null; // Classe não compilada ou módulo incompatível: fica a escalar
+        }
+    }
+
+    // Se a versão compensa nesta máquina (a vetorial precisa de registradores de pelo menos 128 bits)
+    boolean isCompensa() {
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// KernelsVetoriais.java
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Versão vetorial dos laços de Kernels, com a Vector API (jdk.incubator.vector)
+ * Só é compilada e carregada com o módulo incluído (--add-modules jdk.incubator.vector); o resultado
+ * é sempre igual ao da versão escalar
+ *
+ * - contar(): os dados são lidos em vetores do maior tamanho da máquina (32 bytes com AVX2). Um vetor
+ *   com todos os bytes iguais ao primeiro (uma repetição) soma o tamanho do vetor a um único contador;
+ *   os demais são contados byte a byte nas 4 tabelas, como na versão escalar. Em dados com repetições
+ *   longas, cada contador deixa de esperar o incremento anterior a cada byte
+ * - juntar(): as 4 tabelas são somadas vários contadores por vez
+ */
+public class KernelsVetoriais extends Kernels {
+
+    private static final int TAMANHO_ASCII = 256;
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+
+    @Override
+    public String getNome() {
+        return "vetorial (" + BYTES.vectorBitSize() + " bits)";
+    }
+
+    @Override
+    void contar(byte[] dados, int inicio, int fim, int[] tabelas) {
+        final int passo = BYTES.length();
+        final int limite = inicio + BYTES.loopBound(fim - inicio);
+        int i = inicio;
+        for (; i < limite; i += passo) {
+            byte primeiro = dados[i];
+            ByteVector v = ByteVector.fromArray(BYTES, dados, i);
+            if (v.compare(VectorOperators.NE, primeiro).anyTrue()) {
+                // Bytes diferentes no vetor: contagem escalar (o passo é múltiplo de 4)
+                for (int j = i; j < i + passo; j += 4) {
+                    tabelas[dados[j] & 0xFF]++;
+                    tabelas[256 + (dados[j + 1] & 0xFF)]++;
+                    tabelas[512 + (dados[j + 2] & 0xFF)]++;
+                    tabelas[768 + (dados[j + 3] & 0xFF)]++;
+                }
+            } else {
+                tabelas[primeiro & 0xFF] += passo; // Repetição: o vetor inteiro em um incremento
+            }
+        }
+        super.contar(dados, i, fim, tabelas); // Menos de um vetor no final
+    }
+
+    @Override
+    void juntar(int[] tabelas, long[] freq) {
+        // As somas ficam na primeira tabela; cada contagem tem menos de 2 GB, então cabem em int
+        for (int s = 0; s < TAMANHO_ASCII; s += INTS.length()) {
+            IntVector.fromArray(INTS, tabelas, s)
+                    .add(IntVector.fromArray(INTS, tabelas, 256 + s))
+                    .add(IntVector.fromArray(INTS, tabelas, 512 + s))
+                    .add(IntVector.fromArray(INTS, tabelas, 768 + s))
+                    .intoArray(tabelas, s);
+        }
+        for (int s = 0; s < TAMANHO_ASCII; s++) {
+            freq[s] += tabelas[s];
+        }
+    }
+
+    @Override
+    boolean isCompensa() {
+        // Sem registradores vetoriais, a Vector API cai em código genérico, mais lento que o escalar
+        return BYTES.vectorBitSize() >= 128 && TAMANHO_ASCII % INTS.length() == 0;
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// Latencias.java
+
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências (em nanossegundos), para calcular percentis sem guardar cada medida
+ * Cada potência de 2 é dividida em 16 faixas iguais: o percentil informado é o limite superior da
+ * faixa, no máximo 1/16 (6,25%) acima do valor real. Valores menores que 16 ns têm uma faixa cada
+ *
+ * Pode ser atualizado por várias threads ao mesmo tempo sem bloqueio (contadores atômicos): as
+ * threads virtuais do servidor não ficam presas a um monitor (synchronized) a cada requisição
+ */
+public class Latencias {
+
+    private static final int BITS_FAIXA = 4;
+    private static final int FAIXAS = 1 << BITS_FAIXA; // Faixas por potência de 2
+    private static final double[] PERCENTIS = {0.50, 0.90, 0.99, 0.999};
+    private static final String[] NOMES = {"p50_us", "p90_us", "p99_us", "p999_us"};
+
+    private final AtomicLongArray contagens = new AtomicLongArray((64 - BITS_FAIXA + 1) * FAIXAS);
+    private final LongAdder quantidade = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final LongAccumulator maximo = new LongAccumulator(Long::max, 0);
+
+    /**
+     * Registra uma medida
+     * @param nanos A latência, em nanossegundos
+     */
+    public void registrar(long nanos) {
+        if (nanos < 0) nanos = 0;
+        contagens.incrementAndGet(faixa(nanos));
+        quantidade.increment();
+        soma.add(nanos);
+        maximo.accumulate(nanos);
+    }
+
+    // Quantas medidas foram registradas
+    public long getQuantidade() {
+        return quantidade.sum();
+    }
+
+    /**
+     * Percentil das medidas registradas até agora
+     * @param p A fração das medidas (ex.: 0.99 para o p99)
+     * @return O limite superior da faixa do percentil, em nanossegundos (0 sem medidas)
+     */
+    public long percentil(double p) {
+        long total = getQuantidade();
+        if (total == 0) return 0;
+        long alvo = Math.max(1, (long) Math.ceil(p * total));
+        long acumulado = 0;
+        for (int i = 0; i < contagens.length(); i++) {
+            acumulado += contagens.get(i);
+            if (acumulado >= alvo) return Math.min(limiteSuperior(i), maximo.get());
+        }
+        return maximo.get();
+    }
+
+    /**
+     * Monta um objeto JSON com a quantidade, a média, os percentis e o máximo, em microssegundos:
+     * {"requisicoes":1000,"media_us":41.2,"p50_us":35.8,"p90_us":60.4,"p99_us":118.8,"p999_us":250.0,"max_us":312.5}
+     * @return O objeto JSON
+     */
+    public String comoJson() {
+        long total = getQuantidade();
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"requisicoes\":").append(total);
+        sb.append(",\"media_us\":").append(microssegundos(total == 0 ? 0 : soma.sum() / total));
+        for (int i = 0; i < PERCENTIS.length; i++) {
+            sb.append(",\"").append(NOMES[i]).append("\":").append(microssegundos(percentil(PERCENTIS[i])));
+        }
+        sb.append(",\"max_us\":").append(microssegundos(maximo.get()));
+        sb.append('}');
+        return sb.toString();
+    }
+
+    // Faixa de um valor: os 4 bits seguintes ao bit mais significativo escolhem a faixa dentro da potência
+    private static int faixa(long nanos) {
+        if (nanos < FAIXAS) return (int) nanos;
+        int expoente = 63 - Long.numberOfLeadingZeros(nanos);
+        int dentro = (int) (nanos >>> (expoente - BITS_FAIXA)) & (FAIXAS - 1);
+        return (expoente - BITS_FAIXA + 1) * FAIXAS + dentro;
+    }
+
+    // Maior valor que cai na faixa
+    private static long limiteSuperior(int faixa) {
+        if (faixa < FAIXAS) return faixa;
+        int deslocamento = faixa / FAIXAS - 1;
+        long inicio = (long) (FAIXAS + faixa % FAIXAS) << deslocamento;
+        return inicio + (1L << deslocamento) - 1;
+    }
+
+    // Nanossegundos em microssegundos, com 1 casa (ponto decimal, independente do idioma do sistema)
+    private static String microssegundos(long nanos) {
+        return String.format(Locale.ROOT, "%.1f", nanos / 1e3);
+    }
+}
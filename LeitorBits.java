@@ -0,0 +1,88 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// LeitorBits.java
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Lê um fluxo de bits de um InputStream, do bit mais significativo de cada byte para o menos significativo
+ * É o inverso do EscritorBits, para os decodificadores que descem uma árvore bit a bit (modo adaptativo)
+ * Os bytes são lidos em blocos com read(), que devolve o que já está disponível: em um pipe, a leitura
+ * não espera o buffer encher
+ */
+public class LeitorBits {
+
+    private final InputStream entrada;
+    private final byte[] buffer;
+    private int posicao;         // Próximo byte do buffer
+    private int limite;          // Quantidade de bytes válidos no buffer
+    private int atual;           // Byte em leitura
+    private int bitsRestantes;   // Bits de "atual" ainda não lidos
+    private long bytesLidos;
+
+    /**
+     * @param entrada O stream com os bits
+     * @param buffer O vetor onde os bytes lidos do stream são guardados (até buffer.length por leitura)
+     */
+    public LeitorBits(InputStream entrada, byte[] buffer) {
+        this.entrada = entrada;
+        this.buffer = buffer;
+    }
+
+    // Lê o próximo bit (0 ou 1)
+    public int lerBit() throws IOException {
+        if (bitsRestantes == 0) {
+            if (posicao == limite) recarregar();
+            atual = buffer[posicao++] & 0xFF;
+            bitsRestantes = 8;
+        }
+        return (atual >>> --bitsRestantes) & 1;
+    }
+
+    /**
+     * Lê um valor de vários bits, do mais significativo para o menos significativo
+     * @param quantidade Quantos bits ler (no máximo 31)
+     * @return O valor lido
+     */
+    public int lerBits(int quantidade) throws IOException {
+        int valor = 0;
+        for (int i = 0; i < quantidade; i++) {
+            valor = (valor << 1) | lerBit();
+        }
+        return valor;
+    }
+
+    /**
+     * Indica se o próximo bit depende de uma leitura do stream que teria de esperar por mais dados
+     * Permite parar a decodificação e entregar o que já foi decodificado (ex.: em um pipe)
+     * @return true se o buffer acabou e o stream não tem bytes disponíveis
+     */
+    public boolean precisaEsperar() throws IOException {
+        return bitsRestantes == 0 && posicao == limite && entrada.available() == 0;
+    }
+
+    // Quantos bytes já foram lidos do stream
+    public long getBytesLidos() {
+        return bytesLidos;
+    }
+
+    private void recarregar() throws IOException {
+        int lidos = entrada.read(buffer);
+        if (lidos <= 0) {
+            throw new EOFException("Fim inesperado dos dados comprimidos");
+        }
+        posicao = 0;
+        limite = lidos;
+        bytesLidos += lidos;
+    }
+}
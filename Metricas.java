@@ -0,0 +1,116 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// Metricas.java
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Tempos de cada etapa de uma compressão ou descompressão, com os tamanhos de entrada e saída
+ * Cada etapa é medida entre iniciarEtapa() e terminarEtapa(), de modo que a impressão no console
+ * (modo --verbose) feita entre as etapas não entra na contagem
+ * O resultado é emitido em uma única linha JSON, fácil de ser lida por outros programas
+ */
+public class Metricas {
+
+    private final String operacao; // "compressao", "descompressao" ou "extracao"
+    private final String modo;     // normal, stream, mmap, blocos, ...
+    // Nanossegundos gastos em cada etapa, na ordem em que as etapas aconteceram
+    private final Map<String, Long> etapas = new LinkedHashMap<>();
+    private long inicioEtapa;
+    private long bytesEntrada;
+    private long bytesSaida;
+
+    /**
+     * @param operacao "compressao", "descompressao" ou "extracao" (-x)
+     * @param modo O modo usado (normal, stream, mmap, blocos, ...)
+     */
+    public Metricas(String operacao, String modo) {
+        this.operacao = operacao;
+        this.modo = modo;
+    }
+
+    // Marca o início da próxima etapa
+    public void iniciarEtapa() {
+        inicioEtapa = System.nanoTime();
+    }
+
+    /**
+     * Soma à etapa o tempo desde o último iniciarEtapa() e já inicia a etapa seguinte
+     * @param etapa O nome da etapa (uma etapa repetida tem os tempos somados)
+     */
+    public void terminarEtapa(String etapa) {
+        long agora = System.nanoTime();
+        etapas.merge(etapa, agora - inicioEtapa, Long::sum);
+        inicioEtapa = agora;
+    }
+
+    /**
+     * Registra os tamanhos do arquivo lido e do arquivo gerado
+     * @param bytesEntrada Tamanho do arquivo de entrada, em bytes
+     * @param bytesSaida Tamanho do arquivo de saída, em bytes
+     */
+    public void registrarTamanhos(long bytesEntrada, long bytesSaida) {
+        this.bytesEntrada = bytesEntrada;
+        this.bytesSaida = bytesSaida;
+    }
+
+    // Soma dos tempos de todas as etapas, em nanossegundos
+    public long getTotalNanos() {
+        long total = 0;
+        for (long nanos : etapas.values()) total += nanos;
+        return total;
+    }
+
+    public long getBytesEntrada() {
+        return bytesEntrada;
+    }
+
+    public long getBytesSaida() {
+        return bytesSaida;
+    }
+
+    /**
+     * Monta a linha JSON, por exemplo:
+     * {"operacao":"compressao","modo":"normal","bytes_entrada":1060120,"bytes_saida":600248,
+     *  "total_ms":12.345,"mb_por_s":81.9,"etapas_ms":{"leitura":0.8,"frequencia":0.7,...}}
+     * A vazão é calculada sobre o tamanho dos dados originais (entrada na compressão, saída na descompressão e na extração)
+     * @return A linha JSON, sem quebra de linha no final
+     */
+    public String comoJson() {
+        long total = getTotalNanos();
+        long bytesOriginais = operacao.equals("compressao") ? bytesEntrada : bytesSaida;
+        double mbPorSegundo = total == 0 ? 0 : bytesOriginais / (total / 1e9) / (1 << 20);
+
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"operacao\":\"").append(operacao).append('"');
+        sb.append(",\"modo\":\"").append(modo).append('"');
+        sb.append(",\"bytes_entrada\":").append(bytesEntrada);
+        sb.append(",\"bytes_saida\":").append(bytesSaida);
+        sb.append(",\"total_ms\":").append(milissegundos(total));
+        sb.append(",\"mb_por_s\":").append(String.format(Locale.ROOT, "%.1f", mbPorSegundo));
+        sb.append(",\"etapas_ms\":{");
+        boolean primeira = true;
+        for (Map.Entry<String, Long> etapa : etapas.entrySet()) {
+            if (!primeira) sb.append(',');
+            sb.append('"').append(etapa.getKey()).append("\":").append(milissegundos(etapa.getValue()));
+            primeira = false;
+        }
+        sb.append("}}");
+        return sb.toString();
+    }
+
+    // Nanossegundos em milissegundos, com 3 casas (ponto decimal, independente do idioma do sistema)
+    private static String milissegundos(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModeloHuffman.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * Modelo de Huffman treinado (--train): uma tabela de códigos montada a partir de uma amostra de arquivos
+ * com a mesma distribuição de caracteres (logs de um mesmo formato, código-fonte, ...)
+ *
+ * Com um modelo (--model), a compressão pula a análise de frequência e a montagem da árvore: os dados
+ * são codificados em uma única passagem, com buffers fixos, e o cabeçalho grava só o identificador do
+ * modelo no lugar da tabela de comprimentos. Antes disso, uma verificação rápida conta as frequências de
+ * uma amostra do arquivo (FATIAS trechos espalhados, TAMANHO_AMOSTRA bytes no total) e compara os bits do
+ * modelo com os de uma tabela própria; se o modelo não servir, o arquivo é comprimido no formato normal,
+ * com a sua tabela. Se mesmo assim a codificação passar do tamanho máximo do formato normal (a amostra
+ * não representava o arquivo), ela é interrompida e o arquivo também volta para o formato normal
+ *
+ * Todos os 256 caracteres têm código no modelo (cada contagem do treino começa em 1), então qualquer
+ * arquivo pode ser codificado com ele. O modelo só é lido, então pode ser usado por várias threads
+ *
+ * Formato do arquivo de modelo:
+ * - 4 bytes: "HUFM"
+ * - 1 byte: versão
+ * - 4 bytes: identificador (CRC-32 da tabela de comprimentos), gravado também nos arquivos comprimidos
+ * - 8 bytes: tamanho da amostra usada no treino, em bytes
+ * - A tabela de comprimentos (CodigoCanonico)
+ *
+ * Formato do arquivo comprimido: o início do cabeçalho (FormatoHuff) com FLAG_MODELO e o tamanho
+ * original, o identificador do modelo (int) e os códigos dos dados
+ */
+public class ModeloHuffman {
+
+    private static final int TAMANHO_ASCII = 256;
+    private static final int MAGIA = 0x4855464D; // "HUFM"
+    private static final int VERSAO = 1;
+    // Bytes lidos na verificação rápida, em FATIAS trechos igualmente espaçados (e tamanho dos trechos
+    // da codificação)
+    static final int TAMANHO_AMOSTRA = 1 << 16;
+    private static final int FATIAS = 16;
+    // Quanto o modelo pode gastar a mais que uma tabela própria e ainda ser usado (ele dispensa a
+    // análise de frequência e a tabela no cabeçalho)
+    private static final double TOLERANCIA = 1.01;
+    // Identificador gravado no arquivo comprimido
+    static final int TAMANHO_ID = 4;
+    // Campos do arquivo de modelo antes da tabela: assinatura, versão, identificador e tamanho da amostra
+    private static final int TAMANHO_CABECALHO = 17;
+
+    private final int id;
+    private final long bytesAmostra;
+    private final int[] comprimentos = new int[TAMANHO_ASCII];
+    private final long[] codigos = new long[TAMANHO_ASCII];
+    private final int maiorComprimento;
+    private final TabelaDecodificacao tabela;
+
+    private ModeloHuffman(int[] comprimentos, long bytesAmostra) {
+        System.arraycopy(comprimentos, 0, this.comprimentos, 0, TAMANHO_ASCII);
+        CodigoCanonico.gerarCodigos(this.comprimentos, codigos);
+        this.bytesAmostra = bytesAmostra;
+        this.id = calcularId(this.comprimentos);
+        this.maiorComprimento = CodigoLimitado.maiorComprimento(this.comprimentos);
+        this.tabela = CodigoCanonico.criarTabela(this.comprimentos, todosPresentes());
+    }
+
+    /**
+     * Treina um modelo com as frequências de todos os arquivos da amostra
+     * @param arquivos Os arquivos da amostra
+     * @param maxBits O maior comprimento de código permitido (Huffman.SEM_LIMITE para a árvore pura)
+     * @return O modelo
+     */
+    public static ModeloHuffman treinar(List<String> arquivos, int maxBits) throws IOException {
+        long[] frequencias = new long[TAMANHO_ASCII];
+        Arrays.fill(frequencias, 1); // Todos os caracteres precisam de um código
+        byte[] buffer = new byte[TAMANHO_AMOSTRA];
+        int[] tabelas = new int[Histograma.TAMANHO_TABELAS];
+        long total = 0;
+        for (String arquivo : arquivos) {
+            try (InputStream in = new FileInputStream(arquivo)) {
+                int lidos;
+                while ((lidos = in.read(buffer)) > 0) {
+                    Histograma.acumular(buffer, 0, lidos, frequencias, tabelas);
+                    total += lidos;
+                }
+            }
+        }
+
+        ArvoreHuffman arvore = new ArvoreHuffman(frequencias);
+        arvore.construir();
+        int[] comprimentos = new int[TAMANHO_ASCII];
+        arvore.gerarCodigos(new long[TAMANHO_ASCII], comprimentos);
+        Huffman.limitarComprimentos(frequencias, comprimentos, maxBits);
+        return new ModeloHuffman(comprimentos, total);
+    }
+
+    /**
+     * Lê um modelo gravado por salvar()
+     * @param arquivo O arquivo do modelo
+     * @return O modelo
+     */
+    public static ModeloHuffman carregar(String arquivo) throws IOException {
+        byte[] dados;
+        try (InputStream in = new FileInputStream(arquivo)) {
+            dados = in.readNBytes(TAMANHO_CABECALHO + CodigoCanonico.TAMANHO_MAXIMO);
+        }
+        if (dados.length < TAMANHO_CABECALHO || FormatoHuff.lerInt(dados, 0) != MAGIA || dados[4] != VERSAO) {
+            throw new IOException("Arquivo de modelo inválido: " + arquivo);
+        }
+        int id = FormatoHuff.lerInt(dados, 5);
+        long bytesAmostra = ByteBuffer.wrap(dados).getLong(9);
+        int[] comprimentos = new int[TAMANHO_ASCII];
+        boolean[] presentes = new boolean[TAMANHO_ASCII];
+        CodigoCanonico.ler(dados, TAMANHO_CABECALHO, dados.length, comprimentos, presentes);
+        for (boolean presente : presentes) {
+            if (!presente) throw new IOException("Arquivo de modelo inválido: " + arquivo);
+        }
+        ModeloHuffman modelo = new ModeloHuffman(comprimentos, bytesAmostra);
+        if (modelo.id != id) {
+            throw new IOException("Arquivo de modelo corrompido: " + arquivo);
+        }
+        return modelo;
+    }
+
+    /**
+     * Grava o modelo em um arquivo
+     * @param arquivo O arquivo do modelo
+     */
+    public void salvar(String arquivo) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivo)))) {
+            out.writeInt(MAGIA);
+            out.writeByte(VERSAO);
+            out.writeInt(id);
+            out.writeLong(bytesAmostra);
+            CodigoCanonico.escrever(out, comprimentos, todosPresentes());
+        }
+    }
+
+    // Identificador do modelo: CRC-32 da tabela de comprimentos
+    private static int calcularId(int[] comprimentos) {
+        byte[] tabela = new byte[CodigoCanonico.TAMANHO_MAXIMO];
+        int tamanho = CodigoCanonico.escrever(tabela, 0, comprimentos, todosPresentes());
+        CRC32 crc = new CRC32();
+        crc.update(tabela, 0, tamanho);
+        return (int) crc.getValue();
+    }
+
+    private static boolean[] todosPresentes() {
+        boolean[] presentes = new boolean[TAMANHO_ASCII];
+        Arrays.fill(presentes, true);
+        return presentes;
+    }
+
+    // --- COMPRESSÃO ---
+
+    /**
+     * Lê a amostra da verificação rápida: o arquivo inteiro, se couber, ou FATIAS trechos igualmente
+     * espaçados, do início ao fim do arquivo (leituras posicionais, sem mover o canal)
+     * @param canal O arquivo
+     * @param tamanho O tamanho do arquivo
+     * @param amostra O vetor da amostra (TAMANHO_AMOSTRA bytes)
+     * @return Quantos bytes foram lidos
+     */
+    public static int lerAmostra(FileChannel canal, long tamanho, byte[] amostra) throws IOException {
+        if (tamanho <= amostra.length) {
+            lerTrecho(canal, 0, amostra, 0, (int) tamanho);
+            return (int) tamanho;
+        }
+        int fatia = amostra.length / FATIAS;
+        for (int k = 0; k < FATIAS; k++) {
+            lerTrecho(canal, (tamanho - fatia) * k / (FATIAS - 1), amostra, k * fatia, fatia);
+        }
+        return fatia * FATIAS;
+    }
+
+    private static void lerTrecho(FileChannel canal, long posicao, byte[] destino, int inicio, int quantidade)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(destino, inicio, quantidade);
+        while (buffer.hasRemaining()) {
+            if (canal.read(buffer, posicao + buffer.position() - inicio) < 0) {
+                throw new EOFException("O arquivo diminuiu durante a compressão");
+            }
+        }
+    }
+
+    /**
+     * Verificação rápida: o modelo serve para um arquivo com esta amostra?
+     * Compara os bits da amostra com o modelo e com uma tabela própria da amostra, projetados para o
+     * arquivo inteiro (a tabela própria custa também o seu espaço no cabeçalho)
+     * @param amostra A amostra do arquivo (ver lerAmostra)
+     * @param tamanhoAmostra Quantos bytes da amostra são válidos
+     * @param tamanhoTotal O tamanho do arquivo inteiro
+     * @param maxBits O limite de bits da tabela própria
+     * @return true se o modelo gasta no máximo TOLERANCIA vezes os bits da tabela própria
+     */
+    public boolean compensa(byte[] amostra, int tamanhoAmostra, long tamanhoTotal, int maxBits) {
+        if (tamanhoAmostra == 0) return false; // Arquivo vazio: o formato normal tem só o cabeçalho
+        long[] frequencias = new long[TAMANHO_ASCII];
+        Histograma.acumular(amostra, 0, tamanhoAmostra, frequencias);
+        ArvoreHuffman arvore = new ArvoreHuffman(frequencias);
+        arvore.construir();
+        int[] proprios = new int[TAMANHO_ASCII];
+        arvore.gerarCodigos(new long[TAMANHO_ASCII], proprios);
+        Huffman.limitarComprimentos(frequencias, proprios, maxBits);
+        boolean[] presentes = new boolean[TAMANHO_ASCII];
+        for (int i = 0; i < TAMANHO_ASCII; i++) {
+            presentes[i] = frequencias[i] > 0;
+        }
+
+        double escala = (double) tamanhoTotal / tamanhoAmostra;
+        double bitsModelo = Huffman.calcularTotalBits(frequencias, comprimentos) * escala + 8.0 * TAMANHO_ID;
+        double bitsProprios = Huffman.calcularTotalBits(frequencias, proprios) * escala
+                + 8.0 * CodigoCanonico.tamanho(proprios, presentes);
+        return bitsModelo <= bitsProprios * TOLERANCIA;
+    }
+
+    /**
+     * Comprime em uma única passagem com o modelo, com buffers de tamanho fixo
+     * @param buffer O vetor dos trechos lidos; os primeiros bytes dos dados podem já estar nele
+     * @param tamanhoInicio Quantos bytes do início dos dados já estão em "buffer" (0: nenhum)
+     * @param resto O stream com o restante dos dados
+     * @param tamanho O tamanho total dos dados (gravado no cabeçalho)
+     * @param out O stream onde o arquivo comprimido é gravado
+     * @param limite Quantos bytes podem ser gravados; ao passar do limite, a codificação é interrompida
+     * @return Quantos bytes foram gravados, ou -1 se a codificação foi interrompida
+     */
+    public long comprimir(byte[] buffer, int tamanhoInicio, InputStream resto, long tamanho, OutputStream out,
+                          long limite) throws IOException {
+        byte[] cabecalho = new byte[FormatoHuff.TAMANHO_INICIO + TAMANHO_ID];
+        FormatoHuff.escreverInicio(cabecalho, 0, FormatoHuff.FLAG_MODELO, tamanho);
+        FormatoHuff.escreverInt(cabecalho, FormatoHuff.TAMANHO_INICIO, id);
+        out.write(cabecalho);
+        long gravados = cabecalho.length;
+
+        // Cada trecho gera no máximo maiorComprimento bits por byte
+        EscritorBits escritor = new EscritorBits(new byte[buffer.length / 8 * maiorComprimento + 8], 0);
+        int lidos = tamanhoInicio;
+        long restantes = tamanho;
+        while (restantes > 0) {
+            if (lidos == 0) {
+                lidos = resto.readNBytes(buffer, 0, (int) Math.min(buffer.length, restantes));
+                if (lidos == 0) throw new EOFException("O arquivo diminuiu durante a compressão");
+            }
+            int usados = (int) Math.min(lidos, restantes);
+            Huffman.codificar(buffer, 0, usados, codigos, comprimentos, escritor);
+            gravados += escritor.getPosicao();
+            if (gravados > limite) return -1;
+            escritor.descarregar(out);
+            restantes -= usados;
+            lidos = 0;
+        }
+        escritor.completarByte();
+        gravados += escritor.getPosicao();
+        escritor.descarregar(out);
+        return gravados;
+    }
+
+    // --- DESCOMPRESSÃO ---
+
+    // Confere se o arquivo comprimido foi gerado com este modelo
+    void conferir(int idArquivo) throws IOException {
+        if (idArquivo != id) {
+            throw new IOException(String.format("O arquivo foi comprimido com o modelo %08x, e não com %08x", idArquivo, id));
+        }
+    }
+
+    // A tabela de decodificação do modelo (só leitura, compartilhada entre threads)
+    TabelaDecodificacao getTabela() {
+        return tabela;
+    }
+
+    // O identificador gravado nos arquivos comprimidos com este modelo
+    public int getId() {
+        return id;
+    }
+
+    // Tamanho da amostra usada no treino
+    public long getBytesAmostra() {
+        return bytesAmostra;
+    }
+
+    // O maior código do modelo, em bits
+    public int getMaiorComprimento() {
+        return maiorComprimento;
+    }
+}
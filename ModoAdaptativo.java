@@ -0,0 +1,81 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModoAdaptativo.java
+
+import java.io.*;
+
+/**
+ * Compressão em uma única passagem com Huffman adaptativo (ArvoreAdaptativa)
+ * Não há tabela de frequência: cada caractere é codificado com a árvore dos caracteres anteriores,
+ * então a entrada pode ser um pipe ou a entrada padrão, de tamanho desconhecido
+ * A memória usada é fixa (a árvore e os buffers) e a latência é limitada: a cada leitura da entrada,
+ * os bytes completos da saída são gravados e o stream de saída é descarregado (flush)
+ * A descompressão é feita por HuffmanInputStream, que decodifica os caracteres à medida que são lidos
+ *
+ * Formato: o início do cabeçalho (FormatoHuff) com FLAG_ADAPTATIVO e tamanho TAMANHO_DESCONHECIDO,
+ * seguido dos códigos, terminados pelo código de ArvoreAdaptativa.SIMBOLO_FIM e completados com zeros
+ */
+public class ModoAdaptativo {
+
+    private static final int TAMANHO_BUFFER = 1 << 16;
+    // Folga no buffer de saída para um código inteiro (caminho de até 257 bits + 9 bits do símbolo)
+    private static final int FOLGA = 72;
+
+    /**
+     * Quantidade de bytes lidos e gravados (os streams podem ser pipes, sem tamanho conhecido)
+     */
+    public static class Resultado {
+        public long bytesEntrada;
+        public long bytesSaida;
+    }
+
+    /**
+     * Comprime tudo o que for lido da entrada até o fim do stream
+     * @param entrada O stream com os dados originais
+     * @param saida O stream onde o arquivo comprimido é gravado
+     * @return Os bytes lidos e gravados
+     */
+    public static Resultado comprimir(InputStream entrada, OutputStream saida) throws IOException {
+        Resultado resultado = new Resultado();
+        DataOutputStream out = new DataOutputStream(saida);
+        FormatoHuff.escreverInicio(out, FormatoHuff.FLAG_ADAPTATIVO, FormatoHuff.TAMANHO_DESCONHECIDO);
+        resultado.bytesSaida = FormatoHuff.TAMANHO_INICIO;
+
+        ArvoreAdaptativa arvore = new ArvoreAdaptativa();
+        byte[] bufferEntrada = new byte[TAMANHO_BUFFER];
+        EscritorBits escritor = new EscritorBits(new byte[TAMANHO_BUFFER + FOLGA], 0);
+        int lidos;
+        while ((lidos = entrada.read(bufferEntrada)) >= 0) {
+            for (int i = 0; i < lidos; i++) {
+                arvore.codificar(bufferEntrada[i] & 0xFF, escritor);
+                if (escritor.getPosicao() >= TAMANHO_BUFFER) {
+                    resultado.bytesSaida += descarregar(escritor, out);
+                }
+            }
+            resultado.bytesEntrada += lidos;
+            // Grava o que já foi codificado antes de esperar a próxima leitura
+            resultado.bytesSaida += descarregar(escritor, out);
+            out.flush();
+        }
+        arvore.codificar(ArvoreAdaptativa.SIMBOLO_FIM, escritor);
+        escritor.completarByte();
+        resultado.bytesSaida += descarregar(escritor, out);
+        out.flush();
+        return resultado;
+    }
+
+    // Grava os bytes completos do escritor e devolve quantos foram gravados
+    private static int descarregar(EscritorBits escritor, OutputStream out) throws IOException {
+        int bytes = escritor.getPosicao();
+        escritor.descarregar(out);
+        return bytes;
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModoBlocos.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compressão em blocos independentes, processados em paralelo
+ * O arquivo é dividido em blocos de tamanho fixo e cada bloco passa pelas mesmas etapas da
+ * compressão normal (frequência, Min-Heap, árvore e códigos), com a sua própria tabela
+ * Os blocos são codificados em paralelo em um ForkJoinPool e gravados na ordem original
+ *
+ * Formato de cada bloco, depois do cabeçalho (FormatoHuff com FLAG_BLOCOS + tamanho do bloco):
+ * - 4 bytes: tamanho do bloco comprimido (tabela + dados)
+ * - Tabela de comprimentos (CodigoCanonico)
+ * - Dados comprimidos, com o último byte completado com zeros à direita
+ * Um bloco em que a compressão não compensa (FormatoHuff.armazenar) é gravado como está, sem tabela:
+ * o seu tamanho comprimido é igual ao original (o cabeçalho tem FLAG_ARMAZENADO)
+ * Depois do último bloco vem o índice (IndiceBlocos), usado na descompressão paralela
+ */
+public class ModoBlocos {
+
+    public static final int TAMANHO_BLOCO_PADRAO = 4 << 20; // 4 MB
+
+    /**
+     * Bloco já codificado: a tabela de comprimentos e os dados comprimidos
+     */
+    private static class BlocoCodificado {
+        final byte[] tabela;
+        final byte[] dados;
+        final int tamanhoOriginal;
+        final long bitsSemLimite; // Tamanho dos dados com os códigos da árvore, sem limite de comprimento
+        final long bitsComLimite; // Tamanho dos dados com os códigos usados
+
+        BlocoCodificado(byte[] tabela, byte[] dados, int tamanhoOriginal, long bitsSemLimite, long bitsComLimite) {
+            this.tabela = tabela;
+            this.dados = dados;
+            this.tamanhoOriginal = tamanhoOriginal;
+            this.bitsSemLimite = bitsSemLimite;
+            this.bitsComLimite = bitsComLimite;
+        }
+    }
+
+    /**
+     * Resumo da compressão em blocos: quantidade de blocos e o efeito do limite de comprimento
+     */
+    public static class Resultado {
+        public int quantidadeBlocos;
+        public long bitsSemLimite;
+        public long bitsComLimite;
+    }
+
+    /**
+     * Comprime um arquivo em blocos independentes, usando todos os núcleos disponíveis
+     * Apenas alguns blocos ficam na memória ao mesmo tempo (o dobro da quantidade de threads)
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param arquivoSaida Caminho do arquivo comprimido a ser gerado
+     * @param tamanhoBloco Tamanho de cada bloco, em bytes
+     * @param paralelismo Quantidade de threads usadas na codificação
+     * @param maxBits O maior comprimento de código permitido (Huffman.SEM_LIMITE para não limitar)
+     * @return A quantidade de blocos gravados e o total de bits com e sem o limite de comprimento
+     */
+    public static Resultado comprimir(String arquivoEntrada, String arquivoSaida, int tamanhoBloco, int paralelismo,
+                                      int maxBits) throws IOException {
+        long tamanhoOriginal = new File(arquivoEntrada).length();
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        Resultado resultado = new Resultado();
+
+        try (FileInputStream fis = new FileInputStream(arquivoEntrada);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(arquivoSaida)))) {
+            FormatoHuff.escreverInicio(out, FormatoHuff.FLAG_BLOCOS | FormatoHuff.FLAG_INDICE | FormatoHuff.FLAG_ARMAZENADO,
+                    tamanhoOriginal);
+            out.writeInt(tamanhoBloco);
+            // Posição atual no arquivo de saída (DataOutputStream.size() é int e estoura em 2 GB)
+            long posicao = FormatoHuff.TAMANHO_INICIO + 4;
+            IndiceBlocos indice = new IndiceBlocos();
+
+            // Blocos em codificação, na ordem em que devem ser gravados
+            ArrayDeque<ForkJoinTask<BlocoCodificado>> pendentes = new ArrayDeque<>();
+            long totalLido = 0;
+            while (true) {
+                byte[] bloco = fis.readNBytes(tamanhoBloco);
+                if (bloco.length == 0) break;
+                totalLido += bloco.length;
+                pendentes.add(pool.submit(() -> codificarBloco(bloco, maxBits)));
+
+                // Limita a quantidade de blocos na memória: grava o mais antigo antes de ler outro
+                if (pendentes.size() >= 2 * paralelismo) {
+                    posicao = escreverBloco(out, pendentes.poll().join(), posicao, indice, resultado);
+                }
+            }
+            while (!pendentes.isEmpty()) {
+                posicao = escreverBloco(out, pendentes.poll().join(), posicao, indice, resultado);
+            }
+
+            if (totalLido != tamanhoOriginal) {
+                throw new IOException("O arquivo foi alterado durante a compressão");
+            }
+            indice.escrever(out, posicao);
+            resultado.quantidadeBlocos = indice.getQuantidade();
+        } finally {
+            pool.shutdown();
+        }
+        return resultado;
+    }
+
+    /**
+     * Executa todas as etapas da compressão para um único bloco
+     * Se a compressão não compensar, o bloco não é codificado: a tabela fica vazia e os dados são os originais
+     * @param bloco Os bytes do bloco
+     * @param maxBits O maior comprimento de código permitido
+     * @return A tabela de comprimentos e os dados comprimidos do bloco
+     */
+    private static BlocoCodificado codificarBloco(byte[] bloco, int maxBits) {
+        try {
+            long[] tabelaFrequencia = Huffman.construirTabelaFrequencia(bloco);
+            long[] codigos = new long[256];
+            int[] comprimentos = new int[256];
+            long bitsSemLimite = Huffman.gerarCodigosCanonicos(tabelaFrequencia, codigos, comprimentos, maxBits);
+            long bitsComLimite = Huffman.calcularTotalBits(tabelaFrequencia, comprimentos);
+            boolean[] presentes = Huffman.caracteresPresentes(tabelaFrequencia);
+            if (FormatoHuff.armazenar(CodigoCanonico.tamanho(comprimentos, presentes) + (bitsComLimite + 7) / 8, bloco.length)) {
+                return new BlocoCodificado(new byte[0], bloco, bloco.length, bitsSemLimite, bitsComLimite);
+            }
+
+            ByteArrayOutputStream tabela = new ByteArrayOutputStream();
+            CodigoCanonico.escrever(new DataOutputStream(tabela), comprimentos, presentes);
+            byte[] dados = Huffman.codificarDados(bloco, tabelaFrequencia, codigos, comprimentos);
+            return new BlocoCodificado(tabela.toByteArray(), dados, bloco.length, bitsSemLimite, bitsComLimite);
+        } catch (IOException e) {
+            // Não acontece: a tabela é gravada em memória
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Grava um bloco já codificado, precedido do seu tamanho, e o registra no índice
+     * @param out O stream de saída
+     * @param bloco O bloco codificado
+     * @param posicao A posição atual no arquivo de saída
+     * @param indice O índice dos blocos
+     * @param resultado O resumo da compressão, onde os bits do bloco são somados
+     * @return A posição no arquivo de saída depois do bloco
+     */
+    private static long escreverBloco(DataOutputStream out, BlocoCodificado bloco, long posicao, IndiceBlocos indice,
+                                      Resultado resultado) throws IOException {
+        int tamanhoComprimido = bloco.tabela.length + bloco.dados.length;
+        out.writeInt(tamanhoComprimido);
+        out.write(bloco.tabela);
+        out.write(bloco.dados);
+        indice.adicionar(posicao + 4, tamanhoComprimido, bloco.tamanhoOriginal);
+        resultado.bitsSemLimite += bloco.bitsSemLimite;
+        resultado.bitsComLimite += bloco.bitsComLimite;
+        return posicao + 4 + tamanhoComprimido;
+    }
+
+    /**
+     * Descomprime em paralelo um arquivo que tem o índice de blocos
+     * O arquivo restaurado é criado já com o tamanho final e cada bloco é decodificado por uma
+     * thread e gravado diretamente na sua posição, sem depender dos blocos anteriores
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     * @param paralelismo Quantidade de threads usadas na decodificação
+     * @param mapear Se true, cada bloco é decodificado de uma região mapeada do arquivo comprimido
+     *               direto para a sua região mapeada do arquivo de saída (ModoMapeado)
+     */
+    public static void descomprimirParalelo(String arquivoEntrada, String arquivoSaida, int paralelismo, boolean mapear) throws IOException {
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try (FileChannel entrada = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ);
+             RandomAccessFile saida = new RandomAccessFile(arquivoSaida, "rw")) {
+            ByteBuffer inicio = ByteBuffer.allocate(FormatoHuff.TAMANHO_INICIO);
+            IndiceBlocos.lerCompleto(entrada, inicio, 0);
+            long tamanhoOriginal = inicio.getLong(6);
+            boolean armazenados = (inicio.get(5) & FormatoHuff.FLAG_ARMAZENADO) != 0;
+
+            IndiceBlocos indice = IndiceBlocos.ler(entrada);
+            saida.setLength(0);
+            saida.setLength(tamanhoOriginal);
+            FileChannel canalSaida = saida.getChannel();
+
+            // Cada bloco vira uma tarefa: a posição de saída é a soma dos tamanhos dos blocos anteriores
+            List<ForkJoinTask<Void>> tarefas = new ArrayList<>();
+            long posicaoSaida = 0;
+            for (int i = 0; i < indice.getQuantidade(); i++) {
+                final int bloco = i;
+                final long destino = posicaoSaida;
+                final boolean armazenado = armazenados && indice.getTamanhoComprimido(bloco) == indice.getTamanhoOriginal(bloco);
+                tarefas.add(pool.submit(() -> {
+                    if (armazenado && mapear) {
+                        ModoMapeado.copiarBloco(entrada, indice.getPosicao(bloco), canalSaida, destino,
+                                indice.getTamanhoOriginal(bloco));
+                        return null;
+                    }
+                    if (mapear) {
+                        ModoMapeado.decodificarBloco(entrada, indice.getPosicao(bloco), indice.getTamanhoComprimido(bloco),
+                                canalSaida, destino, indice.getTamanhoOriginal(bloco));
+                        return null;
+                    }
+                    ByteBuffer comprimido = ByteBuffer.allocate(indice.getTamanhoComprimido(bloco));
+                    IndiceBlocos.lerCompleto(entrada, comprimido, indice.getPosicao(bloco));
+                    ByteBuffer buffer;
+                    if (armazenado) {
+                        // Bloco armazenado: os bytes lidos já são os originais
+                        buffer = comprimido.flip();
+                    } else {
+                        byte[] restaurado = new byte[indice.getTamanhoOriginal(bloco)];
+                        decodificarBloco(comprimido.array(), restaurado, 0, restaurado.length);
+                        buffer = ByteBuffer.wrap(restaurado);
+                    }
+                    long posicao = destino;
+                    while (buffer.hasRemaining()) {
+                        posicao += canalSaida.write(buffer, posicao);
+                    }
+                    return null;
+                }));
+                posicaoSaida += indice.getTamanhoOriginal(bloco);
+            }
+            if (posicaoSaida != tamanhoOriginal) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+
+            for (ForkJoinTask<Void> tarefa : tarefas) {
+                try {
+                    tarefa.get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Descompressão interrompida");
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+                    throw new IOException("Erro ao decodificar bloco", e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Decodifica um bloco (tabela + dados) para um vetor de saída
+     * @param bloco O bloco comprimido, sem o campo de tamanho
+     * @param saida O vetor onde o bloco restaurado é gravado
+     * @param inicioSaida A posição de "saida" onde o bloco começa
+     * @param quantidade O tamanho do bloco descomprimido
+     */
+    static void decodificarBloco(byte[] bloco, byte[] saida, int inicioSaida, int quantidade) throws IOException {
+        ByteArrayInputStream bais = new ByteArrayInputStream(bloco);
+        int[] comprimentos = new int[256];
+        boolean[] presentes = new boolean[256];
+        CodigoCanonico.ler(new DataInputStream(bais), comprimentos, presentes);
+        TabelaDecodificacao tabela = CodigoCanonico.criarTabela(comprimentos, presentes);
+
+        // O que sobrou no stream depois da tabela são os dados comprimidos
+        int inicioDados = bloco.length - bais.available();
+        tabela.decodificar(bloco, inicioDados, bloco.length, 8, saida, inicioSaida, quantidade);
+    }
+}
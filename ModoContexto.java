@@ -0,0 +1,324 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModoContexto.java
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Huffman de ordem 1 (--contexto): o código de cada caractere depende do caractere anterior (o contexto)
+ * Em texto e código-fonte, o caractere seguinte é muito mais previsível quando se conhece o anterior
+ * (depois de "q" vem quase sempre "u", depois de ";" vem "\n"), então cada contexto pode ter uma árvore
+ * de Huffman própria, com códigos menores que os da tabela única de "-c"
+ *
+ * Uma tabela por contexto custa até CodigoCanonico.TAMANHO_MAXIMO bytes no cabeçalho, o que não compensa
+ * para contextos raros. Por isso os contextos são agrupados: cada um ganha uma tabela própria só quando
+ * os bits economizados pagam a sua tabela; os demais usam uma tabela compartilhada, montada pela soma
+ * das suas frequências. As árvores são as mesmas de "-c" (ArvoreHuffman, com o limite de --max-bits)
+ * Se a estimativa do resultado não for menor que a de "-c", o arquivo é gravado no formato canônico
+ *
+ * Formato: o início do cabeçalho (FormatoHuff) com FLAG_CONTEXTO e o tamanho original, seguido de:
+ * - 32 bytes: mapa de 256 bits dos contextos com tabela própria (bit 7 do primeiro byte = contexto 0)
+ * - A tabela compartilhada (CodigoCanonico), usada pelos contextos sem tabela própria
+ * - As tabelas próprias, na ordem dos contextos
+ * - Os códigos dos dados; o contexto do primeiro caractere é o caractere 0
+ *
+ * A decodificação continua por tabelas de consulta (TabelaDecodificacao.decodificarContexto): uma
+ * TabelaDecodificacao por tabela gravada, escolhida a cada caractere pelo caractere anterior
+ */
+public class ModoContexto {
+
+    private static final int TAMANHO_ASCII = 256;
+    private static final int TAMANHO_MAPA = TAMANHO_ASCII / 8;
+    // Maior tamanho do cabeçalho do modo: mapa, tabela compartilhada e uma tabela por contexto
+    static final int TAMANHO_MAXIMO_TABELAS = TAMANHO_MAPA + (TAMANHO_ASCII + 1) * CodigoCanonico.TAMANHO_MAXIMO;
+    // Rodadas de escolha dos contextos (cada rodada remonta a tabela compartilhada)
+    private static final int MAX_RODADAS = 4;
+
+    /**
+     * O arquivo comprimido e os números da escolha dos contextos (para o modo --verbose)
+     */
+    public static class Resultado {
+        public byte[] comprimido;
+        public boolean contexto;      // false: a ordem 1 não compensou e o arquivo está no formato canônico
+        public int contextosUsados;   // Contextos (caracteres seguidos de algum outro) que aparecem nos dados
+        public int tabelasProprias;   // Contextos com tabela própria
+        public long tamanhoOrdem0;    // Tamanho que o arquivo teria no formato canônico
+        public long tamanhoOrdem1;    // Tamanho estimado no formato de contexto
+    }
+
+    /**
+     * Comprime os dados com tabelas por contexto
+     * @param dados Os dados originais
+     * @param maxBits O maior comprimento de código permitido (Huffman.SEM_LIMITE para a árvore pura)
+     * @param metricas Onde o tempo de cada etapa é registrado, ou null
+     * @return O arquivo comprimido e os números da escolha dos contextos
+     */
+    public static Resultado comprimir(byte[] dados, int maxBits, Metricas metricas) {
+        Resultado resultado = new Resultado();
+
+        // ETAPA 1: frequência de cada par (anterior, caractere)
+        long[] frequencias = new long[TAMANHO_ASCII * TAMANHO_ASCII];
+        contar(dados, frequencias);
+        medir(metricas, "frequencia");
+
+        // ETAPAS 2 a 4: árvore de cada contexto e escolha dos que ganham tabela própria
+        long[] linha = new long[TAMANHO_ASCII];
+        long[] soma = new long[TAMANHO_ASCII];
+        boolean[] usado = new boolean[TAMANHO_ASCII];
+        for (int c = 0; c < TAMANHO_ASCII; c++) {
+            for (int s = 0; s < TAMANHO_ASCII; s++) {
+                long f = frequencias[(c << 8) | s];
+                soma[s] += f;
+                usado[c] |= f > 0;
+            }
+        }
+        Tabela ordem0 = new Tabela();
+        if (dados.length > 0) ordem0.montar(soma, maxBits);
+        resultado.tamanhoOrdem0 = dados.length == 0 ? FormatoHuff.TAMANHO_INICIO
+                : FormatoHuff.TAMANHO_INICIO + ordem0.tamanho + (ordem0.bits(soma) + 7) / 8;
+
+        // Custo (em bits) de cada contexto com a sua própria tabela, incluindo a tabela no cabeçalho
+        Tabela[] proprias = new Tabela[TAMANHO_ASCII];
+        long[] custoProprio = new long[TAMANHO_ASCII];
+        for (int c = 0; c < TAMANHO_ASCII; c++) {
+            if (!usado[c]) continue;
+            resultado.contextosUsados++;
+            System.arraycopy(frequencias, c << 8, linha, 0, TAMANHO_ASCII);
+            proprias[c] = new Tabela();
+            proprias[c].montar(linha, maxBits);
+            custoProprio[c] = proprias[c].bits(linha) + 8L * proprias[c].tamanho;
+        }
+
+        // Cada rodada remonta a tabela compartilhada com os contextos que ficaram sem tabela própria e
+        // decide de novo, contexto por contexto, qual tabela gasta menos bits
+        boolean[] proprio = new boolean[TAMANHO_ASCII];
+        Tabela compartilhada = new Tabela();
+        boolean mudou = true;
+        for (int rodada = 0; rodada < MAX_RODADAS && mudou; rodada++) {
+            montarCompartilhada(compartilhada, frequencias, usado, proprio, soma, maxBits);
+            mudou = false;
+            for (int c = 0; c < TAMANHO_ASCII; c++) {
+                if (!usado[c]) continue;
+                System.arraycopy(frequencias, c << 8, linha, 0, TAMANHO_ASCII);
+                boolean melhor = custoProprio[c] < compartilhada.custo(linha);
+                if (melhor != proprio[c]) {
+                    proprio[c] = melhor;
+                    mudou = true;
+                }
+            }
+        }
+        if (mudou) montarCompartilhada(compartilhada, frequencias, usado, proprio, soma, maxBits);
+
+        long totalBits = 0;
+        int tamanhoTabelas = TAMANHO_MAPA + compartilhada.tamanho;
+        for (int c = 0; c < TAMANHO_ASCII; c++) {
+            if (!usado[c]) continue;
+            System.arraycopy(frequencias, c << 8, linha, 0, TAMANHO_ASCII);
+            if (proprio[c]) {
+                resultado.tabelasProprias++;
+                totalBits += proprias[c].bits(linha);
+                tamanhoTabelas += proprias[c].tamanho;
+            } else {
+                totalBits += compartilhada.bits(linha);
+            }
+        }
+        resultado.tamanhoOrdem1 = FormatoHuff.TAMANHO_INICIO + tamanhoTabelas + (totalBits + 7) / 8;
+        medir(metricas, "codigos");
+
+        if (dados.length == 0 || resultado.tamanhoOrdem1 >= resultado.tamanhoOrdem0) {
+            // A ordem 1 não compensa (arquivos pequenos ou sem relação entre caracteres vizinhos)
+            resultado.comprimido = new HuffmanCodec(maxBits, null, metricas).comprimir(dados);
+            return resultado;
+        }
+
+        // ETAPA 5: cabeçalho, tabelas e códigos, escolhidos pelo caractere anterior
+        byte[] destino = new byte[(int) resultado.tamanhoOrdem1];
+        int posicao = FormatoHuff.escreverInicio(destino, 0, FormatoHuff.FLAG_CONTEXTO, dados.length);
+        for (int c = 0; c < TAMANHO_ASCII; c++) {
+            if (proprio[c]) destino[posicao + (c >>> 3)] |= (byte) (0x80 >>> (c & 7));
+        }
+        posicao += TAMANHO_MAPA;
+        posicao = CodigoCanonico.escrever(destino, posicao, compartilhada.comprimentos, compartilhada.presentes);
+        // Código e comprimento juntos em um long (código << 6 | comprimento): uma leitura por caractere,
+        // e metade da memória, em uma tabela de 65536 posições que não cabe no cache L1
+        long[] codigos = new long[TAMANHO_ASCII * TAMANHO_ASCII];
+        for (int c = 0; c < TAMANHO_ASCII; c++) {
+            Tabela tabela = proprio[c] ? proprias[c] : compartilhada;
+            if (proprio[c]) {
+                posicao = CodigoCanonico.escrever(destino, posicao, tabela.comprimentos, tabela.presentes);
+            }
+            for (int s = 0; s < TAMANHO_ASCII; s++) {
+                codigos[(c << 8) | s] = (tabela.codigos[s] << 6) | tabela.comprimentos[s];
+            }
+        }
+
+        EscritorBits escritor = new EscritorBits(destino, posicao);
+        codificar(dados, codigos, escritor);
+        escritor.completarByte();
+        medir(metricas, "codificacao");
+
+        resultado.comprimido = destino;
+        resultado.contexto = true;
+        return resultado;
+    }
+
+    // Conta cada par (anterior, caractere) na posição anterior * 256 + caractere
+    private static void contar(byte[] dados, long[] frequencias) {
+        int anterior = 0;
+        for (byte b : dados) {
+            int simbolo = b & 0xFF;
+            frequencias[(anterior << 8) | simbolo]++;
+            anterior = simbolo;
+        }
+    }
+
+    // Grava o código de cada caractere, pela tabela do caractere anterior (índices como em contar())
+    private static void codificar(byte[] dados, long[] codigos, EscritorBits escritor) {
+        int anterior = 0;
+        for (byte b : dados) {
+            int simbolo = b & 0xFF;
+            long codigo = codigos[(anterior << 8) | simbolo];
+            escritor.escrever(codigo >>> 6, (int) codigo & 0x3F);
+            anterior = simbolo;
+        }
+    }
+
+    // Monta a tabela compartilhada com as frequências dos contextos sem tabela própria
+    private static void montarCompartilhada(Tabela compartilhada, long[] frequencias, boolean[] usado,
+                                            boolean[] proprio, long[] soma, int maxBits) {
+        Arrays.fill(soma, 0);
+        boolean vazia = true;
+        for (int c = 0; c < TAMANHO_ASCII; c++) {
+            if (!usado[c] || proprio[c]) continue;
+            vazia = false;
+            for (int s = 0; s < TAMANHO_ASCII; s++) {
+                soma[s] += frequencias[(c << 8) | s];
+            }
+        }
+        if (vazia) {
+            // Todos os contextos têm tabela própria: a compartilhada (obrigatória no formato) fica com um caractere
+            soma[0] = 1;
+        }
+        compartilhada.montar(soma, maxBits);
+    }
+
+    /**
+     * Decodifica os dados de um arquivo do modo de contexto gravado em um vetor
+     * @param origem O vetor com o arquivo comprimido
+     * @param posicao A posição seguinte ao início do cabeçalho (o mapa dos contextos)
+     * @param fim A posição seguinte ao último byte do arquivo
+     * @param destino O vetor onde os dados originais são gravados
+     * @param inicioDestino A primeira posição de "destino" a ser preenchida
+     * @param quantidade O tamanho original
+     */
+    static void descomprimir(byte[] origem, int posicao, int fim, byte[] destino, int inicioDestino,
+                             int quantidade) throws IOException {
+        Tabelas tabelas = new Tabelas();
+        int inicioDados = tabelas.ler(origem, posicao, fim);
+        long bitFinal = TabelaDecodificacao.decodificarContexto(tabelas.porContexto, 0, origem,
+                (long) inicioDados << 3, fim, destino, inicioDestino, quantidade);
+        if (bitFinal > (long) fim << 3) {
+            throw new IOException("Fim inesperado dos dados comprimidos");
+        }
+    }
+
+    /**
+     * Uma tabela de códigos (de um contexto ou compartilhada) durante a compressão
+     */
+    private static class Tabela {
+        final long[] codigos = new long[TAMANHO_ASCII];
+        final int[] comprimentos = new int[TAMANHO_ASCII];
+        final boolean[] presentes = new boolean[TAMANHO_ASCII];
+        int tamanho; // Bytes da tabela no cabeçalho
+
+        // Monta a árvore, os comprimentos (limitados a maxBits) e os códigos canônicos das frequências
+        void montar(long[] frequencias, int maxBits) {
+            Arrays.fill(comprimentos, 0);
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                presentes[i] = frequencias[i] > 0;
+            }
+            ArvoreHuffman arvore = new ArvoreHuffman(frequencias);
+            arvore.construir();
+            arvore.gerarCodigos(codigos, comprimentos);
+            Huffman.limitarComprimentos(frequencias, comprimentos, maxBits);
+            CodigoCanonico.gerarCodigos(comprimentos, codigos);
+            tamanho = CodigoCanonico.tamanho(comprimentos, presentes);
+        }
+
+        // Bits dos códigos dos caracteres com essas frequências
+        long bits(long[] frequencias) {
+            return Huffman.calcularTotalBits(frequencias, comprimentos);
+        }
+
+        // Como bits(), mas Long.MAX_VALUE se algum caractere não tem código nesta tabela
+        long custo(long[] frequencias) {
+            for (int i = 0; i < TAMANHO_ASCII; i++) {
+                if (frequencias[i] > 0 && !presentes[i]) return Long.MAX_VALUE;
+            }
+            return bits(frequencias);
+        }
+    }
+
+    /**
+     * As tabelas de decodificação de um arquivo do modo de contexto, lidas do cabeçalho
+     * (usado por HuffmanCodec e por HuffmanInputStream)
+     */
+    static final class Tabelas {
+        // A tabela de cada contexto: própria, ou a compartilhada
+        final TabelaDecodificacao[] porContexto = new TabelaDecodificacao[TAMANHO_ASCII];
+        // O maior código de todas as tabelas (0 se todas têm um único caractere)
+        int maiorComprimento;
+        // Se alguma tabela tem um único caractere (código de 0 bits)
+        boolean algumaSemBits;
+
+        /**
+         * Lê o mapa dos contextos e as tabelas
+         * @param dados O vetor com o cabeçalho
+         * @param posicao A posição do mapa dos contextos
+         * @param fim A posição seguinte ao último byte que pode ser lido
+         * @return A posição seguinte à última tabela (o início dos dados comprimidos)
+         */
+        int ler(byte[] dados, int posicao, int fim) throws IOException {
+            if (fim - posicao < TAMANHO_MAPA) {
+                throw new IOException("Fim inesperado dos dados comprimidos");
+            }
+            int mapa = posicao;
+            posicao += TAMANHO_MAPA;
+            int[] comprimentos = new int[TAMANHO_ASCII];
+            boolean[] presentes = new boolean[TAMANHO_ASCII];
+            long[] codigos = new long[TAMANHO_ASCII];
+
+            TabelaDecodificacao compartilhada = new TabelaDecodificacao();
+            posicao = CodigoCanonico.ler(dados, posicao, fim, comprimentos, presentes);
+            CodigoCanonico.preencherTabela(comprimentos, presentes, codigos, compartilhada);
+            maiorComprimento = compartilhada.getMaiorComprimento();
+            algumaSemBits = maiorComprimento == 0;
+            for (int c = 0; c < TAMANHO_ASCII; c++) {
+                if ((dados[mapa + (c >>> 3)] & (0x80 >>> (c & 7))) == 0) {
+                    porContexto[c] = compartilhada;
+                    continue;
+                }
+                TabelaDecodificacao propria = new TabelaDecodificacao();
+                posicao = CodigoCanonico.ler(dados, posicao, fim, comprimentos, presentes);
+                CodigoCanonico.preencherTabela(comprimentos, presentes, codigos, propria);
+                maiorComprimento = Math.max(maiorComprimento, propria.getMaiorComprimento());
+                algumaSemBits |= propria.getMaiorComprimento() == 0;
+                porContexto[c] = propria;
+            }
+            return posicao;
+        }
+    }
+
+    private static void medir(Metricas metricas, String etapa) {
+        if (metricas != null) metricas.terminarEtapa(etapa);
+    }
+}
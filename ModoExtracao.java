@@ -0,0 +1,237 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModoExtracao.java
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Extração de um trecho do arquivo original (-x), sem restaurar o arquivo inteiro
+ * O custo depende do formato do .huff:
+ * - Pontos de sincronização (-c --sincronia): decodifica só os intervalos que contêm o trecho, cada
+ *   um a partir do seu ponto (PontosSincronia); o custo cresce com o trecho, não com o arquivo
+ * - Blocos com índice (--blocos): decodifica só os blocos que contêm o trecho (IndiceBlocos)
+ * - Armazenado (FLAG_ARMAZENADO): copia o trecho direto da posição correspondente
+ * - Demais formatos: decodifica desde o início e descarta o que vem antes do trecho (HuffmanInputStream)
+ */
+public class ModoExtracao implements Closeable {
+
+    private static final int TAMANHO_BUFFER = 1 << 16;
+
+    private final FileChannel canal;
+    private final HuffmanCodec codec;
+    private final int flags;
+    private final long tamanhoOriginal;
+    private long bytesLidos; // Bytes do arquivo comprimido lidos até agora
+
+    /**
+     * Abre o arquivo comprimido e lê o início do cabeçalho
+     * @param arquivo Caminho do arquivo .huff
+     * @param codec O codec usado na decodificação (com o modelo de --model, se informado)
+     */
+    public ModoExtracao(String arquivo, HuffmanCodec codec) throws IOException {
+        this.canal = FileChannel.open(Paths.get(arquivo), StandardOpenOption.READ);
+        this.codec = codec;
+        try {
+            ByteBuffer inicio = ByteBuffer.allocate(FormatoHuff.TAMANHO_INICIO);
+            IndiceBlocos.lerCompleto(canal, inicio, 0);
+            if ((inicio.getShort(0) & 0xFFFF) == FormatoHuff.MAGIA_SERIALIZACAO) {
+                throw new IOException("A extração não aceita o formato antigo: descomprima o arquivo com -d");
+            }
+            flags = FormatoHuff.lerFlags(inicio.array(), 0, FormatoHuff.TAMANHO_INICIO);
+            tamanhoOriginal = FormatoHuff.lerTamanho(inicio.array(), 0);
+            bytesLidos = FormatoHuff.TAMANHO_INICIO;
+        } catch (IOException e) {
+            canal.close();
+            throw e;
+        }
+    }
+
+    // Como o trecho é localizado, pelo formato do arquivo: sincronia, blocos, armazenado ou sequencial
+    public String getModo() {
+        if ((flags & FormatoHuff.FLAG_SINCRONIA) != 0) return "sincronia";
+        if ((flags & FormatoHuff.FLAG_INDICE) != 0) return "blocos";
+        if ((flags & FormatoHuff.FLAG_ARMAZENADO) != 0 && (flags & FormatoHuff.FLAG_BLOCOS) == 0) return "armazenado";
+        return "sequencial";
+    }
+
+    // Quantos bytes do arquivo comprimido foram lidos (cabeçalho, pontos ou índice, e dados)
+    public long getBytesLidos() {
+        return bytesLidos;
+    }
+
+    /**
+     * Grava no stream o trecho [inicio, inicio + quantidade) do arquivo original
+     * Um trecho que passa do fim do arquivo original é encurtado até o fim
+     * @param inicio A posição do primeiro byte do trecho no arquivo original
+     * @param quantidade O tamanho do trecho
+     * @param out O stream onde o trecho é gravado
+     * @return Quantos bytes foram gravados
+     */
+    public long extrair(long inicio, long quantidade, OutputStream out) throws IOException {
+        if (inicio < 0 || quantidade < 0) {
+            throw new IllegalArgumentException("O início e o tamanho do trecho não podem ser negativos");
+        }
+        if (tamanhoOriginal != FormatoHuff.TAMANHO_DESCONHECIDO) {
+            if (tamanhoOriginal < 0) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            if (inicio > tamanhoOriginal) {
+                throw new IOException(String.format("O trecho começa depois do fim do arquivo original (%d bytes)", tamanhoOriginal));
+            }
+            quantidade = Math.min(quantidade, tamanhoOriginal - inicio);
+        }
+        if (quantidade == 0) return 0;
+
+        if ((flags & FormatoHuff.FLAG_SINCRONIA) != 0) return extrairSincronia(inicio, quantidade, out);
+        if ((flags & FormatoHuff.FLAG_INDICE) != 0) return extrairBlocos(inicio, quantidade, out);
+        if ((flags & FormatoHuff.FLAG_ARMAZENADO) != 0 && (flags & FormatoHuff.FLAG_BLOCOS) == 0) {
+            return extrairArmazenado(inicio, quantidade, out);
+        }
+        return extrairSequencial(inicio, quantidade, out);
+    }
+
+    /**
+     * Tabela única com pontos de sincronização: cada intervalo que contém parte do trecho é lido e
+     * decodificado a partir do seu ponto; o último só até o fim do trecho
+     */
+    private long extrairSincronia(long inicio, long quantidade, OutputStream out) throws IOException {
+        PontosSincronia pontos = PontosSincronia.ler(canal);
+        bytesLidos += PontosSincronia.TAMANHO_RODAPE + (long) pontos.getQuantidade() * PontosSincronia.TAMANHO_ENTRADA;
+
+        // A tabela de comprimentos vem logo depois do início do cabeçalho
+        ByteBuffer tabela = ByteBuffer.allocate((int) Math.min(CodigoCanonico.TAMANHO_MAXIMO,
+                pontos.getPosicao() - FormatoHuff.TAMANHO_INICIO));
+        IndiceBlocos.lerCompleto(canal, tabela, FormatoHuff.TAMANHO_INICIO);
+        long inicioDados = FormatoHuff.TAMANHO_INICIO + codec.lerTabela(tabela.array(), 0, tabela.capacity());
+        bytesLidos += tabela.capacity();
+        TabelaDecodificacao decodificador = codec.getTabela();
+
+        int intervalo = pontos.getIntervalo();
+        long fim = inicio + quantidade;
+        byte[] restaurado = new byte[(int) Math.min(intervalo, quantidade + inicio % intervalo)];
+        ByteBuffer comprimido = ByteBuffer.allocate(0);
+        long gravados = 0;
+        for (long k = inicio / intervalo; k * intervalo < fim; k++) {
+            if (k >= pontos.getQuantidade()) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            // Os bits do intervalo k vão do seu ponto até o ponto seguinte (ou até o fim dos dados)
+            long bitInicial = pontos.getBit((int) k);
+            long bitFinal = k + 1 < pontos.getQuantidade() ? pontos.getBit((int) k + 1)
+                    : (pontos.getPosicao() - inicioDados) << 3;
+            long primeiroByte = bitInicial >>> 3;
+            long tamanhoTrecho = ((bitFinal + 7) >>> 3) - primeiroByte;
+            if (bitInicial < 0 || tamanhoTrecho < 0 || inicioDados + primeiroByte + tamanhoTrecho > pontos.getPosicao()) {
+                throw new IOException("Formato de arquivo inválido ou corrompido");
+            }
+            if (comprimido.capacity() < tamanhoTrecho) comprimido = ByteBuffer.allocate((int) tamanhoTrecho);
+            comprimido.clear().limit((int) tamanhoTrecho);
+            IndiceBlocos.lerCompleto(canal, comprimido, inicioDados + primeiroByte);
+            bytesLidos += tamanhoTrecho;
+
+            // Decodifica do início do intervalo até o fim do trecho (ou do intervalo) e grava só o trecho
+            long inicioIntervalo = k * intervalo;
+            int desde = (int) Math.max(0, inicio - inicioIntervalo);
+            int ate = (int) (Math.min(fim, inicioIntervalo + intervalo) - inicioIntervalo);
+            if (restaurado.length < ate) restaurado = new byte[intervalo];
+            long bitLido = decodificador.decodificarTrecho(comprimido.array(), bitInicial & 7, (int) tamanhoTrecho, 8,
+                    restaurado, 0, ate);
+            if (bitLido > tamanhoTrecho << 3) {
+                throw new IOException("Fim inesperado dos dados comprimidos");
+            }
+            out.write(restaurado, desde, ate - desde);
+            gravados += ate - desde;
+        }
+        return gravados;
+    }
+
+    // Blocos com índice: decodifica só os blocos que contêm parte do trecho (o último, só até o fim do trecho)
+    private long extrairBlocos(long inicio, long quantidade, OutputStream out) throws IOException {
+        IndiceBlocos indice = IndiceBlocos.ler(canal);
+        bytesLidos += IndiceBlocos.TAMANHO_RODAPE + (long) indice.getQuantidade() * IndiceBlocos.TAMANHO_ENTRADA;
+        boolean armazenados = (flags & FormatoHuff.FLAG_ARMAZENADO) != 0;
+
+        long fim = inicio + quantidade;
+        long inicioBloco = 0;
+        long gravados = 0;
+        for (int b = 0; b < indice.getQuantidade() && inicioBloco < fim; b++) {
+            int tamanhoBloco = indice.getTamanhoOriginal(b);
+            long fimBloco = inicioBloco + tamanhoBloco;
+            if (fimBloco > inicio) {
+                int tamanhoComprimido = indice.getTamanhoComprimido(b);
+                ByteBuffer comprimido = ByteBuffer.allocate(tamanhoComprimido);
+                IndiceBlocos.lerCompleto(canal, comprimido, indice.getPosicao(b));
+                bytesLidos += tamanhoComprimido;
+
+                int desde = (int) Math.max(0, inicio - inicioBloco);
+                int ate = (int) (Math.min(fim, fimBloco) - inicioBloco);
+                byte[] restaurado;
+                if (armazenados && tamanhoComprimido == tamanhoBloco) {
+                    restaurado = comprimido.array(); // Bloco armazenado: os bytes lidos já são os originais
+                } else {
+                    restaurado = new byte[ate];
+                    ModoBlocos.decodificarBloco(comprimido.array(), restaurado, 0, ate);
+                }
+                out.write(restaurado, desde, ate - desde);
+                gravados += ate - desde;
+            }
+            inicioBloco = fimBloco;
+        }
+        return gravados;
+    }
+
+    // Arquivo armazenado: o trecho é copiado da posição correspondente pelo sistema operacional
+    private long extrairArmazenado(long inicio, long quantidade, OutputStream out) throws IOException {
+        long posicao = FormatoHuff.TAMANHO_INICIO + inicio;
+        if (canal.size() < posicao + quantidade) {
+            throw new EOFException("Fim inesperado dos dados comprimidos");
+        }
+        out.flush();
+        WritableByteChannel saida = Channels.newChannel(out);
+        long restantes = quantidade;
+        while (restantes > 0) {
+            long copiados = canal.transferTo(posicao, restantes, saida);
+            if (copiados <= 0) throw new EOFException("Fim inesperado dos dados comprimidos");
+            posicao += copiados;
+            restantes -= copiados;
+        }
+        bytesLidos += quantidade;
+        return quantidade;
+    }
+
+    // Demais formatos: os códigos não têm pontos de reinício, então tudo antes do trecho é decodificado
+    private long extrairSequencial(long inicio, long quantidade, OutputStream out) throws IOException {
+        HuffmanInputStream in = new HuffmanInputStream(
+                new BufferedInputStream(Channels.newInputStream(canal.position(0)), TAMANHO_BUFFER), codec);
+        in.skipNBytes(inicio);
+        byte[] buffer = new byte[(int) Math.min(TAMANHO_BUFFER, quantidade)];
+        long gravados = 0;
+        while (gravados < quantidade) {
+            int lidos = in.read(buffer, 0, (int) Math.min(buffer.length, quantidade - gravados));
+            if (lidos < 0) break; // Tamanho desconhecido (-a, pipe): o trecho termina no fim do arquivo
+            out.write(buffer, 0, lidos);
+            gravados += lidos;
+        }
+        bytesLidos = in.getBytesLidos();
+        return gravados;
+    }
+
+    @Override
+    public void close() throws IOException {
+        canal.close();
+    }
+}
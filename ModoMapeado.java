@@ -0,0 +1,175 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModoMapeado.java
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Entrada e saída por arquivos mapeados em memória (FileChannel.map)
+ * Em vez de copiar o arquivo para vetores na memória da JVM (readAllBytes, ByteArrayOutputStream,
+ * toByteArray), o sistema operacional expõe o próprio arquivo como um ByteBuffer:
+ * - na compressão, a análise de frequência e a codificação leem direto do arquivo mapeado
+ * - na descompressão, os caracteres são decodificados direto para o arquivo de saída mapeado,
+ *   criado já com o tamanho final indicado no cabeçalho
+ */
+public class ModoMapeado {
+
+    // Um MappedByteBuffer é limitado a 2 GB; arquivos maiores são percorridos em janelas de 1 GB
+    private static final long TAMANHO_JANELA = 1L << 30;
+    // Quantos bytes de entrada são codificados antes de descarregar o buffer de saída
+    private static final int TAMANHO_TRECHO = 1 << 16;
+    // Maior cabeçalho possível: início + tabela (1 + 32 + 1 + 256 x 6 bits)
+    private static final int MAIOR_CABECALHO = FormatoHuff.TAMANHO_INICIO + 1 + 32 + 1 + 192;
+
+    /**
+     * ETAPA 1 lendo do arquivo mapeado: conta a frequência de cada byte
+     * @param canal O arquivo de entrada
+     * @param paralelismo Quantidade de threads usadas na contagem
+     * @return A tabela de frequência
+     */
+    public static long[] construirTabelaFrequencia(FileChannel canal, int paralelismo) throws IOException {
+        long[] freq = new long[256];
+        long tamanho = canal.size();
+        try (Histograma histograma = new Histograma(paralelismo)) {
+            for (long inicio = 0; inicio < tamanho; inicio += TAMANHO_JANELA) {
+                MappedByteBuffer janela = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(TAMANHO_JANELA, tamanho - inicio));
+                histograma.acumular(janela, janela.limit(), freq);
+            }
+        }
+        return freq;
+    }
+
+    /**
+     * ETAPA 5 lendo do arquivo mapeado: codifica o arquivo e grava os dados comprimidos
+     * Os bits passam por um buffer de saída de tamanho fixo, como no modo stream
+     * @param canal O arquivo de entrada
+     * @param codigos Os bits do código de cada caractere
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
+     * @param out O stream de saída, já com o cabeçalho gravado
+     */
+    public static void codificar(FileChannel canal, long[] codigos, int[] comprimentos, OutputStream out) throws IOException {
+        int maiorComprimento = 0;
+        for (int c : comprimentos) maiorComprimento = Math.max(maiorComprimento, c);
+        byte[] bufferSaida = new byte[(int) ((long) TAMANHO_TRECHO * maiorComprimento / 8) + 8];
+        EscritorBits escritor = new EscritorBits(bufferSaida, 0);
+
+        long tamanho = canal.size();
+        for (long inicio = 0; inicio < tamanho; inicio += TAMANHO_JANELA) {
+            MappedByteBuffer janela = canal.map(FileChannel.MapMode.READ_ONLY, inicio, Math.min(TAMANHO_JANELA, tamanho - inicio));
+            int limite = janela.limit();
+            for (int trecho = 0; trecho < limite; trecho += TAMANHO_TRECHO) {
+                int fim = Math.min(limite, trecho + TAMANHO_TRECHO);
+                for (int i = trecho; i < fim; i++) {
+                    int simbolo = janela.get(i) & 0xFF;
+                    escritor.escrever(codigos[simbolo], comprimentos[simbolo]);
+                }
+                escritor.descarregar(out);
+            }
+        }
+        escritor.completarByte();
+        escritor.descarregar(out);
+    }
+
+    /**
+     * Descomprime um arquivo de tabela única do formato canônico de arquivo mapeado para arquivo mapeado
+     * Os dados comprimidos são decodificados de uma só vez, então o arquivo comprimido e o restaurado
+     * precisam caber em um único mapeamento (2 GB); arquivos maiores usam a decodificação por streams
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     */
+    public static void descomprimir(String arquivoEntrada, String arquivoSaida) throws IOException {
+        try (FileChannel entrada = FileChannel.open(Paths.get(arquivoEntrada), StandardOpenOption.READ);
+             RandomAccessFile saida = new RandomAccessFile(arquivoSaida, "rw")) {
+            long tamanhoArquivo = entrada.size();
+            if (tamanhoArquivo > Integer.MAX_VALUE) {
+                throw new IOException("Arquivos acima de 2 GB não cabem em um único mapeamento");
+            }
+            MappedByteBuffer dados = entrada.map(FileChannel.MapMode.READ_ONLY, 0, tamanhoArquivo);
+
+            // O cabeçalho é lido por um DataInputStream sobre uma cópia dos primeiros bytes
+            byte[] inicio = new byte[(int) Math.min(MAIOR_CABECALHO, tamanhoArquivo)];
+            dados.get(0, inicio);
+            ByteArrayInputStream bais = new ByteArrayInputStream(inicio);
+            DataInputStream in = new DataInputStream(bais);
+            int flags = FormatoHuff.lerFlags(in);
+            if ((flags & ~FormatoHuff.FLAG_SINCRONIA) != 0) { // Os pontos de sincronização no final são ignorados
+                throw new IOException("Formato não suportado por ModoMapeado.descomprimir");
+            }
+            long tamanhoOriginal = in.readLong();
+            if (tamanhoOriginal > Integer.MAX_VALUE) {
+                throw new IOException("Arquivos acima de 2 GB não cabem em um único mapeamento");
+            }
+
+            // O arquivo de saída é criado já com o tamanho final e mapeado para escrita
+            saida.setLength(0);
+            saida.setLength(tamanhoOriginal);
+            if (tamanhoOriginal == 0) return;
+            MappedByteBuffer restaurado = saida.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, tamanhoOriginal);
+
+            int[] comprimentos = new int[256];
+            boolean[] presentes = new boolean[256];
+            CodigoCanonico.ler(in, comprimentos, presentes);
+            TabelaDecodificacao tabela = CodigoCanonico.criarTabela(comprimentos, presentes);
+            int inicioDados = inicio.length - bais.available();
+
+            tabela.decodificar(dados, inicioDados, (int) tamanhoArquivo, 8, restaurado, 0, (int) tamanhoOriginal);
+            restaurado.force();
+        }
+    }
+
+    /**
+     * Decodifica um bloco lendo de uma região mapeada do arquivo comprimido e gravando direto
+     * na sua região mapeada do arquivo de saída (usado pela descompressão paralela em blocos)
+     * @param entrada O arquivo comprimido
+     * @param posicao A posição do bloco (tabela + dados) no arquivo comprimido
+     * @param tamanhoComprimido Quantos bytes o bloco ocupa no arquivo comprimido
+     * @param saida O arquivo de saída, já com o tamanho final
+     * @param destino A posição do bloco no arquivo de saída
+     * @param tamanhoOriginal O tamanho do bloco descomprimido
+     */
+    public static void decodificarBloco(FileChannel entrada, long posicao, int tamanhoComprimido,
+                                        FileChannel saida, long destino, int tamanhoOriginal) throws IOException {
+        MappedByteBuffer bloco = entrada.map(FileChannel.MapMode.READ_ONLY, posicao, tamanhoComprimido);
+        MappedByteBuffer restaurado = saida.map(FileChannel.MapMode.READ_WRITE, destino, tamanhoOriginal);
+
+        // A tabela é lida de uma cópia dos primeiros bytes do bloco
+        byte[] inicio = new byte[Math.min(MAIOR_CABECALHO, tamanhoComprimido)];
+        bloco.get(0, inicio);
+        ByteArrayInputStream bais = new ByteArrayInputStream(inicio);
+        int[] comprimentos = new int[256];
+        boolean[] presentes = new boolean[256];
+        CodigoCanonico.ler(new DataInputStream(bais), comprimentos, presentes);
+        TabelaDecodificacao tabela = CodigoCanonico.criarTabela(comprimentos, presentes);
+        int inicioDados = inicio.length - bais.available();
+
+        tabela.decodificar(bloco, inicioDados, tamanhoComprimido, 8, restaurado, 0, tamanhoOriginal);
+    }
+
+    /**
+     * Copia um bloco armazenado (FLAG_ARMAZENADO) de uma região mapeada do arquivo comprimido para a
+     * sua região mapeada do arquivo de saída (usado pela descompressão paralela em blocos)
+     * @param entrada O arquivo comprimido
+     * @param posicao A posição do bloco no arquivo comprimido
+     * @param saida O arquivo de saída, já com o tamanho final
+     * @param destino A posição do bloco no arquivo de saída
+     * @param tamanho O tamanho do bloco (igual no arquivo comprimido e no restaurado)
+     */
+    public static void copiarBloco(FileChannel entrada, long posicao, FileChannel saida, long destino,
+                                   int tamanho) throws IOException {
+        MappedByteBuffer bloco = entrada.map(FileChannel.MapMode.READ_ONLY, posicao, tamanho);
+        MappedByteBuffer restaurado = saida.map(FileChannel.MapMode.READ_WRITE, destino, tamanho);
+        restaurado.put(0, bloco, 0, tamanho);
+    }
+}
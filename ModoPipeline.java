@@ -0,0 +1,394 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ModoPipeline.java
+
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compressão e descompressão em pipeline (--pipeline): leitura do disco, codificação e escrita
+ * acontecem ao mesmo tempo, em threads diferentes, ligadas por filas de tamanho fixo (AnelTrechos)
+ *
+ * Nos outros modos, o programa lê, depois codifica e depois grava, e o tempo total é a soma das três
+ * etapas. No pipeline, enquanto um trecho é codificado, o próximo já está sendo lido e o anterior
+ * gravado; em um disco lento o tempo total se aproxima do maior entre o tempo de E/S e o de CPU
+ * Quando uma etapa é mais lenta, as filas enchem e as outras esperam (contrapressão): a memória usada
+ * é só a das filas, alocadas uma vez, qualquer que seja o tamanho do arquivo
+ *
+ * Compressão (o arquivo gerado é idêntico ao do modo normal):
+ * - 1ª passagem: o leitor lê os trechos enquanto a thread que chamou conta as frequências
+ * - 2ª passagem: o leitor distribui os trechos entre os codificadores, em rodízio (o trecho i vai
+ *   para o codificador i % n); cada um codifica os seus trechos a partir do bit 0, em uma fila de
+ *   saída própria; o escritor (a thread que chamou) recolhe as filas no mesmo rodízio, o que mantém a
+ *   ordem do arquivo, e emenda os trechos deslocando os bits de cada um pelos bits que sobraram do
+ *   anterior
+ * Descompressão: leitor -> decodificador (a thread que chamou, por HuffmanInputStream) -> escritor
+ * A tabela única exige decodificar os bits em ordem, então há um só decodificador; a leitura e a
+ * escrita do disco é que deixam de esperar por ele
+ */
+public class ModoPipeline {
+
+    public static final int TAMANHO_TRECHO_PADRAO = 1 << 20; // 1 MB
+    public static final int PROFUNDIDADE_PADRAO = 4;         // Trechos em cada fila
+    // Maior trecho aceito: o trecho codificado (até MAX_BITS_CODIGO bits por byte) precisa caber em um vetor
+    public static final int MAIOR_TRECHO = 256 << 20; // 256 MB
+
+    // Leitura e escrita de 8 bytes por vez no deslocamento dos trechos codificados (o primeiro byte é o mais significativo)
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    /**
+     * Uma etapa executada em uma thread própria
+     */
+    private interface Etapa {
+        void executar() throws IOException;
+    }
+
+    /**
+     * As threads de um pipeline e o primeiro erro que aconteceu em qualquer uma delas
+     * Um erro interrompe todas as filas, para que nenhuma etapa fique esperando para sempre
+     */
+    private static class Etapas {
+        private final AnelTrechos[] filas;
+        private final List<Thread> threads = new ArrayList<>();
+        private Throwable erro;
+
+        Etapas(AnelTrechos... filas) {
+            this.filas = filas;
+        }
+
+        void iniciar(String nome, Etapa etapa) {
+            Thread thread = new Thread(() -> {
+                try {
+                    etapa.executar();
+                } catch (Throwable e) {
+                    falhar(e);
+                }
+            }, nome);
+            thread.setDaemon(true);
+            threads.add(thread);
+            thread.start();
+        }
+
+        synchronized void falhar(Throwable e) {
+            if (erro == null) erro = e;
+            for (AnelTrechos fila : filas) {
+                fila.falhar(e);
+            }
+        }
+
+        // Espera todas as threads terminarem e relança o primeiro erro
+        void esperar() throws IOException {
+            try {
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                falhar(e);
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Pipeline interrompido");
+            }
+            Throwable primeiro;
+            synchronized (this) {
+                primeiro = erro;
+            }
+            if (primeiro instanceof IOException) throw (IOException) primeiro;
+            if (primeiro instanceof RuntimeException) throw (RuntimeException) primeiro;
+            if (primeiro instanceof Error) throw (Error) primeiro;
+            if (primeiro != null) throw new IOException("Erro no pipeline", primeiro);
+        }
+    }
+
+    /**
+     * 1ª passagem da compressão: conta as frequências enquanto o arquivo é lido por outra thread
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param freq A tabela de frequência a ser preenchida
+     * @param histograma O contador usado em cada trecho
+     * @param tamanhoTrecho Tamanho de cada trecho, em bytes
+     * @param profundidade Quantidade de trechos da fila
+     * @return O tamanho do arquivo (bytes lidos)
+     */
+    public static long contarFrequencias(String arquivoEntrada, long[] freq, Histograma histograma, int tamanhoTrecho,
+                                         int profundidade) throws IOException {
+        validar(tamanhoTrecho, profundidade);
+        AnelTrechos lidos = new AnelTrechos(profundidade, tamanhoTrecho);
+        Etapas etapas = new Etapas(lidos);
+        long total = 0;
+        try (FileInputStream in = new FileInputStream(arquivoEntrada)) {
+            etapas.iniciar("huffman-leitor", () -> ler(in, lidos));
+            try {
+                AnelTrechos.Trecho trecho;
+                while ((trecho = lidos.consumir()) != null) {
+                    histograma.acumular(trecho.dados, trecho.tamanho, freq);
+                    total += trecho.tamanho;
+                    lidos.liberar();
+                }
+            } catch (Throwable e) {
+                etapas.falhar(e);
+            }
+            etapas.esperar();
+        }
+        return total;
+    }
+
+    /**
+     * 2ª passagem da compressão: lê, codifica e grava os dados ao mesmo tempo
+     * Os bits gravados são os mesmos de Huffman.codificar() no arquivo inteiro, seguidos de
+     * completarByte(); o cabeçalho já deve ter sido gravado em out
+     * Cada codificador tem duas filas, então a memória usada é de cerca de
+     * codificadores * profundidade * (tamanhoTrecho + tamanho do trecho codificado)
+     * @param arquivoEntrada Caminho do arquivo a ser comprimido
+     * @param out O stream de saída (não é fechado)
+     * @param codigos Os bits do código de cada caractere
+     * @param comprimentos O tamanho (em bits) do código de cada caractere
+     * @param tamanhoTrecho Tamanho de cada trecho, em bytes
+     * @param profundidade Quantidade de trechos de cada fila
+     * @param codificadores Quantidade de threads de codificação
+     * @return A quantidade de bytes originais lidos
+     */
+    public static long codificar(String arquivoEntrada, OutputStream out, long[] codigos, int[] comprimentos,
+                                 int tamanhoTrecho, int profundidade, int codificadores) throws IOException {
+        validar(tamanhoTrecho, profundidade);
+        if (codificadores < 1) throw new IllegalArgumentException("O pipeline precisa de pelo menos um codificador");
+        // Cada trecho de saída comporta um trecho de entrada inteiro codificado com o maior código
+        int capacidadeSaida = Huffman.tamanhoBufferSaida(comprimentos, tamanhoTrecho);
+
+        AnelTrechos[] lidos = new AnelTrechos[codificadores];
+        AnelTrechos[] codificados = new AnelTrechos[codificadores];
+        AnelTrechos[] todas = new AnelTrechos[2 * codificadores];
+        for (int i = 0; i < codificadores; i++) {
+            lidos[i] = todas[i] = new AnelTrechos(profundidade, tamanhoTrecho);
+            codificados[i] = todas[codificadores + i] = new AnelTrechos(profundidade, capacidadeSaida);
+        }
+        Etapas etapas = new Etapas(todas);
+        AtomicLong totalLido = new AtomicLong();
+        try (FileInputStream in = new FileInputStream(arquivoEntrada)) {
+            etapas.iniciar("huffman-leitor", () -> totalLido.set(ler(in, lidos)));
+            for (int i = 0; i < codificadores; i++) {
+                AnelTrechos entrada = lidos[i];
+                AnelTrechos saida = codificados[i];
+                etapas.iniciar("huffman-codificador-" + i, () -> codificarTrechos(entrada, saida, codigos, comprimentos));
+            }
+            try {
+                emendar(codificados, out);
+            } catch (Throwable e) {
+                etapas.falhar(e);
+            }
+            etapas.esperar();
+        }
+        return totalLido.get();
+    }
+
+    /**
+     * Descomprime um arquivo .huff da versão 2 lendo, decodificando e gravando ao mesmo tempo
+     * Aceita os mesmos formatos de HuffmanInputStream
+     * @param arquivoEntrada Caminho do arquivo .huff
+     * @param arquivoSaida Caminho do arquivo restaurado a ser gerado
+     * @param codec O codec (com o modelo de --model, se informado)
+     * @param tamanhoTrecho Tamanho de cada trecho, em bytes
+     * @param profundidade Quantidade de trechos de cada fila
+     */
+    public static void descomprimir(String arquivoEntrada, String arquivoSaida, HuffmanCodec codec, int tamanhoTrecho,
+                                    int profundidade) throws IOException {
+        validar(tamanhoTrecho, profundidade);
+        AnelTrechos comprimidos = new AnelTrechos(profundidade, tamanhoTrecho);
+        AnelTrechos originais = new AnelTrechos(profundidade, tamanhoTrecho);
+        Etapas etapas = new Etapas(comprimidos, originais);
+        try (FileInputStream in = new FileInputStream(arquivoEntrada);
+             FileOutputStream out = new FileOutputStream(arquivoSaida)) {
+            etapas.iniciar("huffman-leitor", () -> ler(in, comprimidos));
+            etapas.iniciar("huffman-escritor", () -> gravar(originais, out));
+            EntradaFila entrada = new EntradaFila(comprimidos);
+            try {
+                decodificar(new HuffmanInputStream(entrada, codec), originais);
+                // O que sobrar depois dos dados (pontos de sincronização) é lido e descartado
+                entrada.descartarResto();
+            } catch (Throwable e) {
+                etapas.falhar(e);
+            } finally {
+                originais.fechar();
+            }
+            etapas.esperar();
+        } finally {
+            codec.liberarBuffers();
+        }
+    }
+
+    private static void validar(int tamanhoTrecho, int profundidade) {
+        if (tamanhoTrecho < 1 || tamanhoTrecho > MAIOR_TRECHO) {
+            throw new IllegalArgumentException("O tamanho do trecho deve estar entre 1 byte e " + (MAIOR_TRECHO >> 20) + " MB");
+        }
+        if (profundidade < 1) throw new IllegalArgumentException("A fila do pipeline precisa de pelo menos um trecho");
+    }
+
+    // Leitor: lê o arquivo em trechos e os distribui entre as filas em rodízio (o trecho i vai para a fila i % n)
+    private static long ler(InputStream in, AnelTrechos... filas) throws IOException {
+        long total = 0;
+        try {
+            for (long i = 0; ; i++) {
+                AnelTrechos fila = filas[(int) (i % filas.length)];
+                AnelTrechos.Trecho trecho = fila.reservar();
+                int lidos = in.readNBytes(trecho.dados, 0, trecho.dados.length);
+                if (lidos == 0) break;
+                trecho.tamanho = lidos;
+                total += lidos;
+                fila.publicar();
+                if (lidos < trecho.dados.length) break; // readNBytes só lê menos no fim do arquivo
+            }
+        } finally {
+            for (AnelTrechos fila : filas) {
+                fila.fechar();
+            }
+        }
+        return total;
+    }
+
+    // Codificador: cada trecho é codificado a partir do bit 0; a quantidade exata de bits fica no trecho
+    private static void codificarTrechos(AnelTrechos entrada, AnelTrechos saida, long[] codigos, int[] comprimentos)
+            throws IOException {
+        try {
+            EscritorBits escritor = null;
+            AnelTrechos.Trecho lido;
+            while ((lido = entrada.consumir()) != null) {
+                AnelTrechos.Trecho codificado = saida.reservar();
+                if (escritor == null) {
+                    escritor = new EscritorBits(codificado.dados, 0);
+                } else {
+                    escritor.reiniciar(codificado.dados, 0);
+                }
+                Huffman.codificar(lido.dados, 0, lido.tamanho, codigos, comprimentos, escritor);
+                codificado.bits = 8L * escritor.getPosicao() + escritor.getBitsPendentes();
+                escritor.completarByte();
+                codificado.tamanho = escritor.getPosicao();
+                entrada.liberar();
+                saida.publicar();
+            }
+        } finally {
+            saida.fechar();
+        }
+    }
+
+    /**
+     * Escritor da compressão: recolhe os trechos codificados em rodízio e os grava como um fluxo único
+     * de bits. Os bits que sobram no último byte de um trecho (pendentes, alinhados à esquerda)
+     * continuam no primeiro byte do seguinte: cada byte x do trecho vira pendente | (x >>> k), e os
+     * seus k bits finais passam a ser os pendentes (o mesmo deslocamento é feito em palavras de 8 bytes)
+     * Sem bits pendentes, o trecho é gravado como está
+     */
+    private static void emendar(AnelTrechos[] filas, OutputStream out) throws IOException {
+        int pendente = 0;      // Os bits que sobraram, alinhados à esquerda
+        int bitsPendentes = 0; // Quantos são (de 0 a 7)
+        for (long i = 0; ; i++) {
+            AnelTrechos fila = filas[(int) (i % filas.length)];
+            AnelTrechos.Trecho trecho = fila.consumir();
+            if (trecho == null) break; // O trecho i não existe, então nenhum dos seguintes existe
+            byte[] dados = trecho.dados;
+            if (bitsPendentes > 0) {
+                // 8 bytes por vez: os k bits finais de cada palavra vão para o início da seguinte
+                long sobra = pendente >>> (8 - bitsPendentes); // Os bits pendentes, alinhados à direita
+                long mascara = (1L << bitsPendentes) - 1;
+                int j = 0;
+                for (; j + 8 <= trecho.tamanho; j += 8) {
+                    long x = (long) LONG_BE.get(dados, j);
+                    LONG_BE.set(dados, j, (sobra << (64 - bitsPendentes)) | (x >>> bitsPendentes));
+                    sobra = x & mascara;
+                }
+                pendente = (int) (sobra << (8 - bitsPendentes));
+                for (; j < trecho.tamanho; j++) {
+                    int x = dados[j] & 0xFF;
+                    dados[j] = (byte) (pendente | (x >>> bitsPendentes));
+                    pendente = (x << (8 - bitsPendentes)) & 0xFF;
+                }
+            } else {
+                pendente = 0;
+            }
+            long total = bitsPendentes + trecho.bits;
+            int completos = (int) (total >>> 3);
+            // Sem bits suficientes para completar o último byte, ele passa a ser o pendente
+            if (completos < trecho.tamanho) pendente = dados[completos] & 0xFF;
+            bitsPendentes = (int) (total & 7);
+            out.write(dados, 0, completos);
+            fila.liberar();
+        }
+        if (bitsPendentes > 0) out.write(pendente);
+    }
+
+    // Decodificador: preenche os trechos da fila com os dados originais
+    private static void decodificar(HuffmanInputStream in, AnelTrechos originais) throws IOException {
+        while (true) {
+            AnelTrechos.Trecho trecho = originais.reservar();
+            int lidos = in.readNBytes(trecho.dados, 0, trecho.dados.length);
+            if (lidos == 0) break;
+            trecho.tamanho = lidos;
+            originais.publicar();
+            if (lidos < trecho.dados.length) break;
+        }
+    }
+
+    // Escritor da descompressão: grava os trechos na ordem
+    private static void gravar(AnelTrechos originais, OutputStream out) throws IOException {
+        AnelTrechos.Trecho trecho;
+        while ((trecho = originais.consumir()) != null) {
+            out.write(trecho.dados, 0, trecho.tamanho);
+            originais.liberar();
+        }
+    }
+
+    /**
+     * Os trechos de uma fila lidos como um InputStream (a entrada do HuffmanInputStream)
+     */
+    private static class EntradaFila extends InputStream {
+        private final AnelTrechos fila;
+        private AnelTrechos.Trecho atual; // O trecho em uso, ainda não liberado
+        private int posicao;
+
+        EntradaFila(AnelTrechos fila) {
+            this.fila = fila;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return proximo() ? atual.dados[posicao++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int inicio, int quantidade) throws IOException {
+            if (quantidade == 0) return 0;
+            if (!proximo()) return -1;
+            int n = Math.min(quantidade, atual.tamanho - posicao);
+            System.arraycopy(atual.dados, posicao, b, inicio, n);
+            posicao += n;
+            return n;
+        }
+
+        // Lê até o fim, para que o leitor não fique esperando espaço na fila
+        void descartarResto() throws IOException {
+            while (proximo()) {
+                posicao = atual.tamanho;
+            }
+        }
+
+        // Garante um trecho com bytes ainda não lidos; false no fim da fila
+        private boolean proximo() throws IOException {
+            if (atual != null) {
+                if (posicao < atual.tamanho) return true;
+                fila.liberar();
+            }
+            atual = fila.consumir();
+            posicao = 0;
+            return atual != null;
+        }
+    }
+}
@@ -23,7 +23,7 @@ public class No implements Comparable<No>, Serializable {
     
     // Atributos do nó
     private final char caractere;       // Armazena o caractere (válido apenas para nós folha)
-    private final int frequencia;       // Frequência do caractere ou a soma das frequências dos filhos
+    private final long frequencia;      // Frequência do caractere ou a soma das frequências dos filhos
     private No esquerda;                // Referência para o filho da esquerda na árvore
     private No direita;                 // Referência para o filho da direita na árvore
 
@@ -34,7 +34,7 @@ public class No implements Comparable<No>, Serializable {
      * @param esquerda O nó filho da esquerda
      * @param direita O nó filho da direita
      */
-    public No(int frequencia, No esquerda, No direita) {
+    public No(long frequencia, No esquerda, No direita) {
         this.caractere = '\0'; // Caractere nulo ('\0') indica que este é um nó interno
         this.frequencia = frequencia;
         this.esquerda = esquerda;
@@ -47,7 +47,7 @@ public class No implements Comparable<No>, Serializable {
      * @param caractere O caractere que este nó representa
      * @param frequencia A frequência com que este caractere apareceu no arquivo
      */
-    public No(char caractere, int frequencia) {
+    public No(char caractere, long frequencia) {
         this.caractere = caractere;
         this.frequencia = frequencia;
         this.esquerda = null; // Nós folha não têm filhos
@@ -59,7 +59,7 @@ public class No implements Comparable<No>, Serializable {
         return caractere;
     }
 
-    public int getFrequencia() {
+    public long getFrequencia() {
         return frequencia;
     }
 
@@ -90,8 +90,8 @@ public class No implements Comparable<No>, Serializable {
      */
     @Override
     public int compareTo(No outroNo) {
-        // Usa o método estático da classe Integer para comparar os dois valores de frequência
-        return Integer.compare(this.frequencia, outroNo.frequencia);
+        // Usa o método estático da classe Long para comparar os dois valores de frequência
+        return Long.compare(this.frequencia, outroNo.frequencia);
     }
 
     /**
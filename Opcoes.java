@@ -0,0 +1,37 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// Opcoes.java
+
+/**
+ * Opções da linha de comando que valem para vários modos de compressão e descompressão
+ * Os valores padrão são os usados quando a opção não é informada
+ */
+public class Opcoes {
+
+    // Quantidade de threads da análise de frequência, do modo em blocos e da descompressão paralela
+    public int threads = Runtime.getRuntime().availableProcessors();
+    // O maior comprimento de código permitido (Huffman.SEM_LIMITE para a árvore de Huffman pura)
+    public int maxBits = Huffman.SEM_LIMITE;
+    // Se true, imprime as tabelas, o Min-Heap, a árvore e o resumo de cada etapa
+    public boolean verbose = false;
+    // Se true, a descompressão lê e grava por arquivos mapeados em memória
+    public boolean mapear = false;
+    // Arquivo de modelo treinado (--model), usado na compressão e na descompressão, ou null
+    public String modelo = null;
+    // Se true, a compressão divide os dados em fluxos intercalados (--intercalado)
+    public boolean intercalado = false;
+    // Se true, leitura, codificação e escrita acontecem ao mesmo tempo (--pipeline, ver ModoPipeline)
+    public boolean pipeline = false;
+    // Tamanho de cada trecho do pipeline, em bytes (--trecho, informado em KB)
+    public int tamanhoTrecho = ModoPipeline.TAMANHO_TRECHO_PADRAO;
+    // Quantidade de trechos de cada fila do pipeline (--fila)
+    public int profundidadeFila = ModoPipeline.PROFUNDIDADE_PADRAO;
+}
@@ -0,0 +1,124 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// PontosSincronia.java
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Pontos de sincronização de um arquivo .huff de tabela única (FLAG_SINCRONIA)
+ * A cada "intervalo" bytes originais, registra em que bit dos dados comprimidos começa o código do
+ * caractere seguinte. Com a tabela do cabeçalho, a decodificação pode começar em qualquer ponto, e
+ * um trecho do arquivo original é restaurado sem decodificar o que vem antes dele (ver ModoExtracao)
+ *
+ * Formato (no final do arquivo, depois dos dados comprimidos):
+ * - Para cada ponto: posição em bits, a partir do início dos dados comprimidos (long)
+ *   (o ponto k corresponde à posição k * intervalo do arquivo original; o ponto 0 é sempre 0)
+ * - Rodapé de 20 bytes: quantidade de pontos (int), intervalo (int), posição dos pontos (long), "HSYN" (int)
+ */
+public class PontosSincronia {
+
+    public static final int MAGIA_SINCRONIA = 0x4853594E; // "HSYN"
+    public static final int TAMANHO_RODAPE = 20;
+    static final int TAMANHO_ENTRADA = 8;
+
+    private final int intervalo;
+    private long[] bits = new long[16]; // Posição, em bits, de cada ponto
+    private int quantidade;
+    private long posicao;               // Posição dos pontos no arquivo (o fim dos dados comprimidos)
+
+    /**
+     * @param intervalo Quantos bytes originais separam dois pontos
+     */
+    public PontosSincronia(int intervalo) {
+        if (intervalo <= 0) {
+            throw new IllegalArgumentException("Intervalo de sincronização inválido: " + intervalo);
+        }
+        this.intervalo = intervalo;
+    }
+
+    /**
+     * Registra o próximo ponto
+     * @param bit A posição, em bits a partir do início dos dados comprimidos, do próximo código
+     */
+    public void adicionar(long bit) {
+        if (quantidade == bits.length) bits = Arrays.copyOf(bits, quantidade * 2);
+        bits[quantidade++] = bit;
+    }
+
+    /**
+     * Grava os pontos e o rodapé
+     * @param out O stream de saída, já posicionado depois dos dados comprimidos
+     * @param posicaoPontos A posição, no arquivo, em que os pontos começam
+     */
+    public void escrever(DataOutputStream out, long posicaoPontos) throws IOException {
+        for (int i = 0; i < quantidade; i++) {
+            out.writeLong(bits[i]);
+        }
+        out.writeInt(quantidade);
+        out.writeInt(intervalo);
+        out.writeLong(posicaoPontos);
+        out.writeInt(MAGIA_SINCRONIA);
+    }
+
+    /**
+     * Lê os pontos do final de um arquivo com FLAG_SINCRONIA
+     * @param canal O arquivo comprimido
+     * @return Os pontos do arquivo
+     */
+    public static PontosSincronia ler(FileChannel canal) throws IOException {
+        long tamanhoArquivo = canal.size();
+        if (tamanhoArquivo < TAMANHO_RODAPE) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+        ByteBuffer rodape = ByteBuffer.allocate(TAMANHO_RODAPE);
+        IndiceBlocos.lerCompleto(canal, rodape, tamanhoArquivo - TAMANHO_RODAPE);
+        int quantidade = rodape.getInt(0);
+        int intervalo = rodape.getInt(4);
+        long posicaoPontos = rodape.getLong(8);
+        if (rodape.getInt(16) != MAGIA_SINCRONIA || quantidade < 0 || intervalo <= 0
+                || posicaoPontos < FormatoHuff.TAMANHO_INICIO
+                || posicaoPontos + (long) quantidade * TAMANHO_ENTRADA != tamanhoArquivo - TAMANHO_RODAPE) {
+            throw new IOException("Formato de arquivo inválido ou corrompido");
+        }
+
+        ByteBuffer entradas = ByteBuffer.allocate(quantidade * TAMANHO_ENTRADA);
+        IndiceBlocos.lerCompleto(canal, entradas, posicaoPontos);
+        entradas.flip();
+        PontosSincronia pontos = new PontosSincronia(intervalo);
+        for (int i = 0; i < quantidade; i++) {
+            pontos.adicionar(entradas.getLong());
+        }
+        pontos.posicao = posicaoPontos;
+        return pontos;
+    }
+
+    public int getIntervalo() {
+        return intervalo;
+    }
+
+    public int getQuantidade() {
+        return quantidade;
+    }
+
+    // A posição, em bits a partir do início dos dados comprimidos, do ponto informado
+    public long getBit(int ponto) {
+        return bits[ponto];
+    }
+
+    // A posição dos pontos no arquivo, que é também o fim dos dados comprimidos (arquivos lidos por ler())
+    public long getPosicao() {
+        return posicao;
+    }
+}
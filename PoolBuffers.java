@@ -0,0 +1,167 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// PoolBuffers.java
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Conjunto de vetores de bytes reaproveitados entre compressões e descompressões
+ *
+ * Sem o conjunto, cada arquivo aloca vetores do tamanho do arquivo (entrada e saída). Vetores grandes
+ * vão direto para a geração antiga do heap e, em um processo que fica aberto (servidor, uso como
+ * biblioteca), provocam coletas completas. Com o conjunto, os vetores devolvidos ficam guardados e o
+ * próximo pedido de tamanho parecido reaproveita um deles
+ *
+ * Os tamanhos são divididos em classes de potências de 2, de 64 KB a 1 GB: um pedido recebe um vetor
+ * do tamanho da sua classe (até 2x o pedido). Pedidos acima de 1 GB não são guardados
+ * O total guardado não passa do limite; vetores devolvidos além dele são descartados (ficam para o GC)
+ *
+ * Pode ser usado por várias threads ao mesmo tempo, sem bloqueio
+ */
+public class PoolBuffers {
+
+    private static final int BITS_MENOR_CLASSE = 16; // 64 KB
+    private static final int BITS_MAIOR_CLASSE = 30; // 1 GB
+    private static final int CLASSES = BITS_MAIOR_CLASSE - BITS_MENOR_CLASSE + 1;
+    // Limite padrão do total guardado
+    public static final long LIMITE_PADRAO = 256L << 20; // 256 MB
+
+    // Conjunto usado pelo programa de linha de comando e pelas chamadas de Huffman.comprimir/descomprimir
+    public static final PoolBuffers COMPARTILHADO = new PoolBuffers(LIMITE_PADRAO);
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ConcurrentLinkedQueue<byte[]>[] livres = new ConcurrentLinkedQueue[CLASSES];
+    private final AtomicLong bytesGuardados = new AtomicLong();
+    private volatile long limite;
+
+    private final LongAdder acertos = new LongAdder();   // Pedidos atendidos por um vetor guardado
+    private final LongAdder faltas = new LongAdder();    // Pedidos que precisaram alocar um vetor novo
+    private final LongAdder descartes = new LongAdder(); // Vetores devolvidos e não guardados (limite ou tamanho)
+
+    /**
+     * @param limite O maior total, em bytes, de vetores guardados (0 = nenhum vetor é guardado)
+     */
+    public PoolBuffers(long limite) {
+        if (limite < 0) throw new IllegalArgumentException("O limite do conjunto de buffers não pode ser negativo");
+        this.limite = limite;
+        for (int c = 0; c < CLASSES; c++) {
+            livres[c] = new ConcurrentLinkedQueue<>();
+        }
+    }
+
+    /**
+     * Um vetor com pelo menos "tamanho" bytes, guardado ou novo (o conteúdo não é definido)
+     * O vetor deve ser devolvido por devolver() quando não for mais usado
+     * @param tamanho O tamanho mínimo
+     * @return O vetor
+     */
+    public byte[] emprestar(int tamanho) {
+        if (tamanho < 0) throw new IllegalArgumentException("Tamanho inválido para um vetor: " + tamanho);
+        int classe = classe(tamanho);
+        if (classe >= CLASSES) {
+            faltas.increment();
+            return new byte[tamanho];
+        }
+        byte[] vetor = livres[classe].poll();
+        if (vetor != null) {
+            bytesGuardados.addAndGet(-vetor.length);
+            acertos.increment();
+            return vetor;
+        }
+        faltas.increment();
+        return new byte[1 << (classe + BITS_MENOR_CLASSE)];
+    }
+
+    /**
+     * Devolve um vetor obtido por emprestar(); ele é guardado se couber no limite
+     * @param vetor O vetor (vetores vazios são ignorados)
+     */
+    public void devolver(byte[] vetor) {
+        if (vetor.length == 0) return;
+        int classe = classe(vetor.length);
+        // Só vetores do tamanho exato de uma classe (os de emprestar()) são guardados
+        if (classe >= CLASSES || vetor.length != 1 << (classe + BITS_MENOR_CLASSE)) {
+            descartes.increment();
+            return;
+        }
+        if (bytesGuardados.addAndGet(vetor.length) > limite) {
+            bytesGuardados.addAndGet(-vetor.length);
+            descartes.increment();
+            return;
+        }
+        livres[classe].offer(vetor);
+    }
+
+    /**
+     * O tamanho do vetor que emprestar() devolve para um pedido (o da classe, ou o próprio pedido acima de 1 GB)
+     * @param tamanho O tamanho pedido
+     * @return O tamanho do vetor
+     */
+    static int capacidade(int tamanho) {
+        int classe = classe(tamanho);
+        return classe >= CLASSES ? tamanho : 1 << (classe + BITS_MENOR_CLASSE);
+    }
+
+    // A menor classe que comporta o tamanho (CLASSES ou mais se passar da maior)
+    private static int classe(int tamanho) {
+        if (tamanho <= 1 << BITS_MENOR_CLASSE) return 0;
+        return 32 - Integer.numberOfLeadingZeros(tamanho - 1) - BITS_MENOR_CLASSE;
+    }
+
+    /**
+     * Altera o limite do total guardado; vetores guardados além do novo limite são descartados
+     * @param limite O maior total, em bytes
+     */
+    public void setLimite(long limite) {
+        if (limite < 0) throw new IllegalArgumentException("O limite do conjunto de buffers não pode ser negativo");
+        this.limite = limite;
+        for (int c = CLASSES - 1; c >= 0 && bytesGuardados.get() > limite; c--) {
+            byte[] vetor;
+            while (bytesGuardados.get() > limite && (vetor = livres[c].poll()) != null) {
+                bytesGuardados.addAndGet(-vetor.length);
+                descartes.increment();
+            }
+        }
+    }
+
+    public long getLimite() {
+        return limite;
+    }
+
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    public long getFaltas() {
+        return faltas.sum();
+    }
+
+    public long getDescartes() {
+        return descartes.sum();
+    }
+
+    // Total, em bytes, dos vetores guardados agora
+    public long getBytesGuardados() {
+        return bytesGuardados.get();
+    }
+
+    /**
+     * Os contadores em um objeto JSON:
+     * {"acertos":10,"faltas":2,"descartes":0,"bytes_guardados":...,"limite":...}
+     * @return O objeto JSON
+     */
+    public String comoJson() {
+        return "{\"acertos\":" + getAcertos() + ",\"faltas\":" + getFaltas() + ",\"descartes\":" + getDescartes()
+                + ",\"bytes_guardados\":" + getBytesGuardados() + ",\"limite\":" + limite + "}";
+    }
+}
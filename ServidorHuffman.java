@@ -0,0 +1,583 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// ServidorHuffman.java
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Servidor local de compressão (--serve): a JVM fica aberta e aquecida (JIT) entre os arquivos,
+ * então comprimir milhares de arquivos pequenos não paga a inicialização da JVM para cada um
+ *
+ * Escuta em localhost (TCP, endereço numérico = porta) ou em um socket Unix (endereço = caminho)
+ * Cada conexão é atendida por uma thread virtual, e as requisições de uma conexão são atendidas em
+ * ordem. Os codecs (HuffmanCodec, com as tabelas já alocadas) ficam em um conjunto compartilhado:
+ * cada requisição pega um codec livre e o devolve ao terminar. Os vetores do tamanho das requisições
+ * vêm de um conjunto de buffers (PoolBuffers) com limite e voltam para ele ao fim de cada requisição
+ *
+ * A memória das requisições em andamento também tem limite (metade do heap, ver LimiteMemoria): cada
+ * vetor é reservado antes de ser alocado, e as requisições que não cabem esperam as outras terminarem.
+ * O vetor dos dados recebidos cresce conforme os bytes chegam, e não pelo tamanho anunciado no início
+ * da requisição. Assim o heap fica abaixo dos dois limites, qualquer que seja a quantidade de conexões
+ *
+ * Protocolo (inteiros em big-endian, como o resto do formato):
+ * - Requisição: 1 byte de operação, 4 bytes de tamanho, dados
+ *   COMPRIMIR / DESCOMPRIMIR: os dados são o conteúdo a ser processado
+ *   COMPRIMIR_ARQUIVO / DESCOMPRIMIR_ARQUIVO: os dados são os caminhos de entrada e de saída em UTF-8,
+ *   separados por um byte 0 (o servidor lê e grava os arquivos)
+ *   ESTATISTICAS: sem dados
+ * - Resposta: 1 byte de situação (OK ou ERRO), 4 bytes de tamanho, dados
+ *   OK: o resultado; nas operações com arquivos, os bytes lidos e gravados (dois longs);
+ *   nas estatísticas, uma linha JSON. ERRO: a mensagem em UTF-8
+ */
+public class ServidorHuffman implements Closeable {
+
+    static final byte COMPRIMIR = 'c';
+    static final byte DESCOMPRIMIR = 'd';
+    static final byte COMPRIMIR_ARQUIVO = 'C';
+    static final byte DESCOMPRIMIR_ARQUIVO = 'D';
+    static final byte ESTATISTICAS = 'e';
+
+    static final byte OK = 0;
+    static final byte ERRO = 1;
+
+    // Maior requisição aceita (dados de um quadro), para uma requisição inválida não esgotar a memória
+    static final int MAIOR_QUADRO = 1 << 30;
+    static final int TAMANHO_BUFFER = 1 << 16;
+
+    private final String endereco;
+    private final ServerSocketChannel canal;
+    private final Path arquivoSocket; // Caminho do socket Unix, apagado ao fechar (null em TCP)
+    private final int maxBits;
+    private final PoolBuffers pool;
+    private final LimiteMemoria memoria;
+    private final ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentLinkedQueue<HuffmanCodec> codecs = new ConcurrentLinkedQueue<>();
+    private final long inicio = System.nanoTime();
+
+    private final Latencias latenciasCompressao = new Latencias();
+    private final Latencias latenciasDescompressao = new Latencias();
+    private final LongAdder conexoes = new LongAdder();
+    private final LongAdder codecsCriados = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final LongAdder bytesEntrada = new LongAdder();
+    private final LongAdder bytesSaida = new LongAdder();
+
+    /**
+     * Abre o servidor (ainda sem atender), com o limite padrão do conjunto de buffers
+     * @param endereco Uma porta de localhost (ex.: "7070") ou o caminho de um socket Unix
+     * @param maxBits O maior comprimento de código permitido nas compressões
+     */
+    public ServidorHuffman(String endereco, int maxBits) throws IOException {
+        this(endereco, maxBits, PoolBuffers.LIMITE_PADRAO);
+    }
+
+    /**
+     * Abre o servidor (ainda sem atender)
+     * @param endereco Uma porta de localhost (ex.: "7070") ou o caminho de um socket Unix
+     * @param maxBits O maior comprimento de código permitido nas compressões
+     * @param limitePool O maior total, em bytes, de vetores guardados entre as requisições (PoolBuffers)
+     */
+    public ServidorHuffman(String endereco, int maxBits, long limitePool) throws IOException {
+        this.endereco = endereco;
+        this.maxBits = maxBits;
+        this.pool = new PoolBuffers(limitePool);
+        this.memoria = new LimiteMemoria(Runtime.getRuntime().maxMemory() / 2);
+        SocketAddress local = resolver(endereco);
+        if (local instanceof UnixDomainSocketAddress unix) {
+            arquivoSocket = unix.getPath();
+            if (Files.exists(arquivoSocket)) {
+                throw new IOException("O socket " + arquivoSocket + " já existe (outro servidor aberto?): apague o arquivo");
+            }
+            canal = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        } else {
+            arquivoSocket = null;
+            canal = ServerSocketChannel.open();
+        }
+        canal.bind(local);
+    }
+
+    /**
+     * Converte o endereço da linha de comando: só dígitos é uma porta de localhost, e o resto é um socket Unix
+     * @param endereco A porta ou o caminho
+     * @return O endereço do socket
+     */
+    static SocketAddress resolver(String endereco) {
+        if (endereco.matches("\\d{1,5}")) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(endereco));
+        }
+        return UnixDomainSocketAddress.of(endereco);
+    }
+
+    /**
+     * Conecta a um servidor (usado por ClienteHuffman)
+     * @param endereco A porta de localhost ou o caminho do socket Unix
+     * @return O canal conectado, em modo bloqueante
+     */
+    static SocketChannel conectar(String endereco) throws IOException {
+        SocketAddress remoto = resolver(endereco);
+        SocketChannel cliente = SocketChannel.open(remoto instanceof UnixDomainSocketAddress
+                ? StandardProtocolFamily.UNIX : StandardProtocolFamily.INET);
+        cliente.connect(remoto);
+        return cliente;
+    }
+
+    /**
+     * Executa o modo --serve: abre o servidor e atende até o processo ser encerrado (Ctrl+C ou kill)
+     * Imprime uma linha JSON quando está pronto e outra, com as estatísticas, ao encerrar
+     * @param endereco A porta de localhost ou o caminho do socket Unix
+     * @param maxBits O maior comprimento de código permitido nas compressões
+     * @param limitePool O maior total, em bytes, de vetores guardados entre as requisições (--pool)
+     */
+    public static void executar(String endereco, int maxBits, long limitePool) throws IOException {
+        ServidorHuffman servidor = new ServidorHuffman(endereco, maxBits, limitePool);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                servidor.close();
+            } catch (IOException e) {
+                System.err.println("Erro ao fechar o servidor: " + e.getMessage());
+            }
+            System.out.println(servidor.estatisticasJson());
+        }));
+        System.out.println("{\"servidor\":\"" + textoJson(endereco) + "\",\"estado\":\"pronto\"}");
+        System.out.flush();
+        servidor.atender();
+    }
+
+    /**
+     * Aceita conexões até o servidor ser fechado, cada uma em uma thread virtual
+     */
+    public void atender() throws IOException {
+        try {
+            while (true) {
+                SocketChannel cliente = canal.accept();
+                conexoes.increment();
+                threads.execute(() -> atenderConexao(cliente));
+            }
+        } catch (AsynchronousCloseException e) {
+            // close() chamado: fim normal
+        }
+    }
+
+    // Lê as requisições de uma conexão até o cliente fechá-la
+    private void atenderConexao(SocketChannel cliente) {
+        try (cliente;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(cliente), TAMANHO_BUFFER));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(cliente), TAMANHO_BUFFER))) {
+            int operacao;
+            while ((operacao = in.read()) >= 0) {
+                long inicioRequisicao = System.nanoTime();
+                int tamanho = in.readInt();
+                if (tamanho < 0 || tamanho > MAIOR_QUADRO) {
+                    // Sem saber onde termina a requisição, não há como continuar lendo a conexão
+                    responderErro(out, "Tamanho de requisição inválido: " + tamanho);
+                    return;
+                }
+                HuffmanCodec codec = emprestarCodec();
+                try (Requisicao requisicao = new Requisicao()) {
+                    atenderRequisicao((byte) operacao, tamanho, in, out, codec, requisicao);
+                } finally {
+                    codec.liberarBuffers();
+                    codecs.offer(codec);
+                }
+                out.flush();
+                long nanos = System.nanoTime() - inicioRequisicao;
+                if (operacao == COMPRIMIR || operacao == COMPRIMIR_ARQUIVO) latenciasCompressao.registrar(nanos);
+                else if (operacao == DESCOMPRIMIR || operacao == DESCOMPRIMIR_ARQUIVO) latenciasDescompressao.registrar(nanos);
+            }
+        } catch (IOException e) {
+            // O cliente fechou a conexão no meio de uma requisição: não há a quem responder
+        }
+    }
+
+    /**
+     * Lê os dados de uma requisição, executa a operação e grava a resposta
+     * Erros nos dados (arquivo corrompido, caminho inexistente) e falta de memória viram uma resposta ERRO,
+     * e a conexão continua
+     */
+    private void atenderRequisicao(byte operacao, int tamanho, DataInputStream in, DataOutputStream out,
+                                   HuffmanCodec codec, Requisicao requisicao) throws IOException {
+        byte[] dados;
+        String erroRecebimento;
+        try {
+            dados = requisicao.ler(in, tamanho, false);
+            erroRecebimento = null;
+        } catch (EOFException e) {
+            throw e;
+        } catch (IOException e) {
+            dados = null;
+            erroRecebimento = e.getMessage();
+        } catch (OutOfMemoryError e) {
+            dados = null;
+            erroRecebimento = "Memória insuficiente para receber a requisição";
+        }
+        bytesEntrada.add(requisicao.getLidos());
+        if (erroRecebimento != null) {
+            // O resto da requisição é descartado sem ser guardado, e a conexão continua na próxima
+            requisicao.close();
+            in.skipNBytes(tamanho - requisicao.getLidos());
+            bytesEntrada.add(tamanho - requisicao.getLidos());
+            responderErro(out, erroRecebimento);
+            return;
+        }
+        try {
+            switch (operacao) {
+                case COMPRIMIR -> {
+                    byte[] saida = requisicao.vetor(HuffmanCodec.tamanhoMaximoComprimido(tamanho));
+                    responder(out, saida, codec.comprimir(dados, 0, tamanho, saida, 0));
+                }
+                case DESCOMPRIMIR -> descomprimir(dados, tamanho, out, codec, requisicao);
+                case COMPRIMIR_ARQUIVO, DESCOMPRIMIR_ARQUIVO ->
+                        processarArquivo(operacao, dados, tamanho, out, codec, requisicao);
+                case ESTATISTICAS -> {
+                    byte[] json = estatisticasJson().getBytes(StandardCharsets.UTF_8);
+                    responder(out, json, json.length);
+                }
+                default -> responderErro(out, "Operação desconhecida: " + operacao);
+            }
+        } catch (IOException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            responderErro(out, e.getMessage());
+        } catch (OutOfMemoryError e) {
+            responderErro(out, "Memória insuficiente para atender a requisição");
+        }
+    }
+
+    // Descomprime os dados recebidos; o modo adaptativo, sem tamanho no cabeçalho, passa por HuffmanInputStream
+    // (com um codec próprio: a janela do stream usaria o buffer onde estão os dados recebidos)
+    private void descomprimir(byte[] dados, int tamanho, DataOutputStream out, HuffmanCodec codec,
+                              Requisicao requisicao) throws IOException {
+        long tamanhoOriginal = HuffmanCodec.tamanhoOriginal(dados, 0, tamanho);
+        if (tamanhoOriginal == FormatoHuff.TAMANHO_DESCONHECIDO) {
+            byte[] restaurados = requisicao.ler(new HuffmanInputStream(new ByteArrayInputStream(dados, 0, tamanho)),
+                    MAIOR_QUADRO, true);
+            responder(out, restaurados, requisicao.getLidos());
+            return;
+        }
+        if (tamanhoOriginal > MAIOR_QUADRO) {
+            throw new IOException("Os dados originais passam do limite de uma resposta (" + MAIOR_QUADRO + " bytes)");
+        }
+        // Um cabeçalho corrompido não reserva nem aloca um tamanho que os dados não comportam
+        codec.verificarTamanhoOriginal(dados, 0, tamanho, tamanhoOriginal);
+        byte[] saida = requisicao.vetor((int) tamanhoOriginal);
+        responder(out, saida, codec.descomprimir(dados, 0, tamanho, saida, 0));
+    }
+
+    // Operações com caminhos: o servidor lê o arquivo de entrada e grava o de saída
+    private void processarArquivo(byte operacao, byte[] dados, int tamanho, DataOutputStream out,
+                                  HuffmanCodec codec, Requisicao requisicao) throws IOException {
+        String caminhos = new String(dados, 0, tamanho, StandardCharsets.UTF_8);
+        int separador = caminhos.indexOf('\0');
+        if (separador < 0) throw new IOException("Informe os caminhos de entrada e de saída separados por um byte 0");
+        Path entrada = Path.of(caminhos.substring(0, separador));
+        Path saida = Path.of(caminhos.substring(separador + 1));
+
+        long lidos;
+        long gravados;
+        if (operacao == COMPRIMIR_ARQUIVO) {
+            if (Files.size(entrada) > MAIOR_QUADRO) {
+                throw new IOException("Arquivos acima de " + (MAIOR_QUADRO >> 20) + " MB devem ser comprimidos por -c");
+            }
+            // O arquivo é lido em um vetor do conjunto de buffers, sem um vetor novo por arquivo
+            byte[] original;
+            int tamanhoOriginal;
+            try (FileChannel arquivo = FileChannel.open(entrada, StandardOpenOption.READ)) {
+                tamanhoOriginal = (int) arquivo.size();
+                original = requisicao.vetor(tamanhoOriginal);
+                IndiceBlocos.lerCompleto(arquivo, ByteBuffer.wrap(original, 0, tamanhoOriginal), 0);
+            }
+            byte[] comprimido = requisicao.vetor(HuffmanCodec.tamanhoMaximoComprimido(tamanhoOriginal));
+            int n = codec.comprimir(original, 0, tamanhoOriginal, comprimido, 0);
+            try (OutputStream arquivo = Files.newOutputStream(saida)) {
+                arquivo.write(comprimido, 0, n);
+            }
+            lidos = tamanhoOriginal;
+            gravados = n;
+        } else {
+            try (HuffmanInputStream arquivo = new HuffmanInputStream(
+                    new BufferedInputStream(Files.newInputStream(entrada), TAMANHO_BUFFER), codec);
+                 OutputStream restaurado = new BufferedOutputStream(Files.newOutputStream(saida), TAMANHO_BUFFER)) {
+                gravados = arquivo.transferTo(restaurado);
+                lidos = arquivo.getBytesLidos();
+            }
+        }
+        out.writeByte(OK);
+        out.writeInt(16);
+        out.writeLong(lidos);
+        out.writeLong(gravados);
+        bytesSaida.add(16);
+    }
+
+    private void responder(DataOutputStream out, byte[] dados, int tamanho) throws IOException {
+        out.writeByte(OK);
+        out.writeInt(tamanho);
+        out.write(dados, 0, tamanho);
+        bytesSaida.add(tamanho);
+    }
+
+    private void responderErro(DataOutputStream out, String mensagem) throws IOException {
+        erros.increment();
+        byte[] texto = String.valueOf(mensagem).getBytes(StandardCharsets.UTF_8);
+        out.writeByte(ERRO);
+        out.writeInt(texto.length);
+        out.write(texto);
+    }
+
+    /**
+     * Os vetores de uma requisição, emprestados do conjunto de buffers, e a memória reservada para eles
+     * Cada vetor é reservado (em LimiteMemoria) antes de ser alocado; close() devolve os vetores e libera
+     * a reserva
+     */
+    private final class Requisicao implements Closeable {
+        private final ArrayList<byte[]> vetores = new ArrayList<>();
+        private long reservados; // Bytes reservados pelos vetores em uso
+        private int lidos;       // Bytes lidos pela última chamada de ler() (até agora, se ela falhou)
+
+        /**
+         * Um vetor com pelo menos "tamanho" bytes, depois de reservar a memória dele
+         * @param tamanho O tamanho mínimo
+         * @return O vetor (o conteúdo não é definido)
+         */
+        byte[] vetor(int tamanho) throws IOException {
+            int capacidade = PoolBuffers.capacidade(tamanho);
+            memoria.reservar(capacidade, reservados);
+            reservados += capacidade;
+            byte[] vetor;
+            try {
+                vetor = pool.emprestar(tamanho);
+            } catch (OutOfMemoryError e) {
+                liberar(capacidade);
+                throw e;
+            }
+            vetores.add(vetor);
+            return vetor;
+        }
+
+        /**
+         * Lê "maximo" bytes (ou, com ateOFim, até o fim do fluxo) em um vetor que dobra de tamanho conforme os
+         * dados chegam: um tamanho anunciado e não enviado não reserva nem aloca nada
+         * @param in O fluxo de entrada
+         * @param maximo A quantidade de bytes a ler (o limite, com ateOFim)
+         * @param ateOFim Se true, o fim do fluxo termina a leitura; se false, o fim antes de "maximo" é um erro
+         * @return O vetor com os dados (a quantidade lida fica em getLidos())
+         */
+        byte[] ler(InputStream in, int maximo, boolean ateOFim) throws IOException {
+            lidos = 0;
+            byte[] dados = vetor(Math.min(maximo, TAMANHO_BUFFER));
+            int n = 0;
+            while (n < maximo) {
+                if (n == dados.length) {
+                    byte[] maior = vetor((int) Math.min(2L * n, maximo));
+                    System.arraycopy(dados, 0, maior, 0, n);
+                    devolver(dados);
+                    dados = maior;
+                }
+                int lidosAgora = in.read(dados, n, Math.min(dados.length, maximo) - n);
+                if (lidosAgora < 0) {
+                    if (ateOFim) break;
+                    throw new EOFException("A conexão terminou no meio de uma requisição");
+                }
+                n += lidosAgora;
+                lidos = n;
+            }
+            if (ateOFim && n == maximo && in.read() >= 0) {
+                throw new IOException("Os dados originais passam do limite de uma resposta (" + MAIOR_QUADRO + " bytes)");
+            }
+            return dados;
+        }
+
+        int getLidos() {
+            return lidos;
+        }
+
+        // Devolve um vetor antes do fim da requisição (ex.: o menor, depois de copiado para um maior)
+        private void devolver(byte[] vetor) {
+            for (int i = vetores.size() - 1; i >= 0; i--) {
+                if (vetores.get(i) == vetor) {
+                    vetores.remove(i);
+                    break;
+                }
+            }
+            pool.devolver(vetor);
+            liberar(vetor.length);
+        }
+
+        private void liberar(int bytes) {
+            reservados -= bytes;
+            memoria.liberar(bytes, reservados == 0);
+        }
+
+        @Override
+        public void close() {
+            for (byte[] vetor : vetores) {
+                pool.devolver(vetor);
+                liberar(vetor.length);
+            }
+            vetores.clear();
+        }
+    }
+
+    /**
+     * Limite da memória reservada pelas requisições em andamento
+     *
+     * Uma requisição que ainda não reservou nada espera a memória livre sem atrapalhar as outras. Uma que
+     * já reservou (ex.: os dados recebidos, esperando o vetor da resposta) só espera se outra requisição
+     * com reserva ainda estiver andando: se todas as que têm reserva estivessem esperando, ninguém mais
+     * liberaria memória, e a que chegou por último desiste com IOException (e libera a sua parte)
+     *
+     * Usa ReentrantLock, e não synchronized, para não prender a thread do sistema das threads virtuais
+     */
+    private static final class LimiteMemoria {
+        private final long limite;
+        private final ReentrantLock trava = new ReentrantLock();
+        private final Condition liberada = trava.newCondition();
+        private long emUso;
+        private int comReserva; // Requisições com alguma memória reservada
+        private int esperando;  // Delas, as que esperam mais memória
+
+        LimiteMemoria(long limite) {
+            this.limite = limite;
+        }
+
+        /**
+         * Reserva memória, esperando as outras requisições liberarem se for preciso
+         * @param bytes A quantidade a reservar
+         * @param reservados A quantidade que a requisição já tem reservada
+         */
+        void reservar(long bytes, long reservados) throws IOException {
+            boolean jaReservou = reservados > 0;
+            trava.lock();
+            try {
+                if (reservados + bytes > limite) {
+                    throw new IOException("A requisição precisa de mais memória que o limite do servidor ("
+                            + (limite >> 20) + " MB)");
+                }
+                while (emUso + bytes > limite) {
+                    if (jaReservou && esperando + 1 == comReserva) {
+                        throw new IOException("Servidor sem memória livre para a requisição (tente de novo)");
+                    }
+                    if (jaReservou) esperando++;
+                    try {
+                        liberada.await();
+                    } finally {
+                        if (jaReservou) esperando--;
+                    }
+                }
+                emUso += bytes;
+                if (!jaReservou) comReserva++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Requisição interrompida");
+            } finally {
+                trava.unlock();
+            }
+        }
+
+        /**
+         * Libera memória reservada por reservar()
+         * @param bytes A quantidade a liberar
+         * @param ultima Se a requisição não tem mais memória reservada
+         */
+        void liberar(long bytes, boolean ultima) {
+            trava.lock();
+            try {
+                emUso -= bytes;
+                if (ultima) comReserva--;
+                liberada.signalAll();
+            } finally {
+                trava.unlock();
+            }
+        }
+
+        long getEmUso() {
+            trava.lock();
+            try {
+                return emUso;
+            } finally {
+                trava.unlock();
+            }
+        }
+
+        long getLimite() {
+            return limite;
+        }
+    }
+
+    // Um codec livre do conjunto, ou um novo se todos estão em uso (o conjunto cresce até o pico de requisições)
+    private HuffmanCodec emprestarCodec() {
+        HuffmanCodec codec = codecs.poll();
+        if (codec != null) return codec;
+        codecsCriados.increment();
+        codec = new HuffmanCodec(maxBits);
+        codec.setPool(pool);
+        return codec;
+    }
+
+    /**
+     * Estatísticas desde a abertura do servidor, em uma linha JSON:
+     * {"servidor":"7070","segundos":12.3,"conexoes":8,"erros":0,"bytes_entrada":...,"bytes_saida":...,
+     *  "codecs":4,"memoria":{"em_uso":...,"limite":...},"pool":{contadores},"compressao":{latências},
+     *  "descompressao":{latências}}
+     * (ver PoolBuffers e Latencias)
+     * @return A linha JSON
+     */
+    public String estatisticasJson() {
+        StringBuilder sb = new StringBuilder(512);
+        sb.append("{\"servidor\":\"").append(textoJson(endereco)).append('"');
+        sb.append(",\"segundos\":").append(String.format(Locale.ROOT, "%.1f", (System.nanoTime() - inicio) / 1e9));
+        sb.append(",\"conexoes\":").append(conexoes.sum());
+        sb.append(",\"erros\":").append(erros.sum());
+        sb.append(",\"bytes_entrada\":").append(bytesEntrada.sum());
+        sb.append(",\"bytes_saida\":").append(bytesSaida.sum());
+        sb.append(",\"codecs\":").append(codecsCriados.sum());
+        sb.append(",\"memoria\":{\"em_uso\":").append(memoria.getEmUso())
+                .append(",\"limite\":").append(memoria.getLimite()).append('}');
+        sb.append(",\"pool\":").append(pool.comoJson());
+        sb.append(",\"compressao\":").append(latenciasCompressao.comoJson());
+        sb.append(",\"descompressao\":").append(latenciasDescompressao.comoJson());
+        sb.append('}');
+        return sb.toString();
+    }
+
+    // Escapa as barras e as aspas de um texto para colocá-lo entre aspas em JSON (ex.: o caminho do socket)
+    private static String textoJson(String texto) {
+        return texto.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    // Para de aceitar conexões e apaga o arquivo do socket Unix (as conexões abertas terminam sozinhas)
+    @Override
+    public void close() throws IOException {
+        canal.close();
+        threads.shutdown();
+        if (arquivoSocket != null) Files.deleteIfExists(arquivoSocket);
+    }
+}
@@ -0,0 +1,833 @@
+/*
+ * Projeto 1 | Compressão de Arquivos com o Algoritmo de Huffman
+ * Prof. Dr. Jean M. Laine
+ * Turma 04N
+ *
+ * Bruna Amorim Maia (RA 10431883)
+ * Rafael Araujo Cabral Moreira (RA 10441919)
+ * Rute Willemann (RA 10436781)
+ */
+
+// TabelaDecodificacao.java
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Decodificador de Huffman baseado em tabelas de consulta
+ * Em vez de descer a árvore um bit por vez, os próximos LARGURA_PRIMARIA bits do fluxo são usados
+ * como índice de uma tabela que devolve diretamente o caractere e o tamanho do seu código
+ * Códigos maiores que a tabela primária apontam para subtabelas (segundo nível em diante)
+ *
+ * Cada entrada da tabela é um int:
+ * - Folha (bit 31 = 0): (caractere << 8) | comprimento total do código
+ * - Ponteiro (bit 31 = 1): (posição da subtabela << 5) | largura da subtabela, em bits
+ *
+ * Para trechos grandes há também uma tabela de vários caracteres por consulta: os próximos
+ * LARGURA_MULTI bits devolvem todos os códigos (até MAX_MULTI) que cabem inteiros nesses bits.
+ * Com códigos curtos (3 a 5 bits, comuns em texto) cada consulta grava 2 ou 3 caracteres
+ * Cada entrada é um int: (caracteres, o primeiro no bit 8 << 8) | (quantidade << 4) | bits consumidos
+ * Quantidade 0 indica que o primeiro código não cabe e a consulta volta para a tabela normal
+ */
+public class TabelaDecodificacao {
+
+    // Largura (em bits) da tabela primária: 2^11 entradas = 8 KB, cabe folgado no cache L1
+    private static final int LARGURA_PRIMARIA = 11;
+    // Largura máxima de cada subtabela; códigos ainda maiores geram um novo nível
+    private static final int LARGURA_SUBTABELA = 11;
+    private static final int PONTEIRO = 0x80000000;
+    // Tabela de vários caracteres: 2^12 entradas = 16 KB, junto com a primária ainda cabe no cache L1
+    private static final int LARGURA_MULTI = 12;
+    private static final int MAX_MULTI = 3;
+    // Trechos menores que isso não pagam a montagem da tabela de vários caracteres
+    private static final int MINIMO_MULTI = 1 << 15;
+    // Média de caracteres por entrada abaixo da qual a tabela de vários caracteres não é usada: com
+    // códigos longos (dados aleatórios, 8 bits) quase toda consulta rende 1 caractere e o laço normal é mais rápido
+    private static final double MEDIA_MINIMA_MULTI = 1.5;
+
+    // Lê 8 bytes de uma vez de um vetor de bytes, na ordem big-endian (primeiro bit do fluxo = bit 63)
+    private static final VarHandle LONG_BE = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    // O mesmo, para ByteBuffers (inclusive os mapeados em memória)
+    private static final VarHandle LONG_BE_BUFFER = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    // Grava 4 bytes de uma vez, o byte menos significativo primeiro (os caracteres de uma entrada multi)
+    private static final VarHandle INT_LE = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE_BUFFER = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private int[] tabela = new int[1 << LARGURA_PRIMARIA]; // Tabela primária seguida de todas as subtabelas
+    private int tamanhoTabela;      // Quantidade de posições ocupadas em "tabela"
+    private int larguraPrimaria;
+    private int maiorComprimento;
+    private int simboloUnico = -1;  // Caractere do arquivo quando só existe um (código de 0 bits), ou -1
+    // Caracteres com código, agrupados durante a montagem: cada tabela usa um trecho contíguo do vetor
+    private final int[] ordem = new int[256];
+    // Tabela de vários caracteres por consulta, montada no primeiro trecho grande (ver montarMulti)
+    private int[] multi;
+    private boolean multiCompensa;
+    // Volátil porque uma tabela de modelo (ModeloHuffman) pode ser usada por várias threads ao mesmo tempo
+    private volatile boolean multiPronta;
+    private boolean usarMulti = true;
+
+    /**
+     * Cria um decodificador vazio, a ser montado por reconstruir() ou reconstruirParaSimboloUnico()
+     * O mesmo objeto pode ser remontado várias vezes: o vetor de tabelas só cresce quando não comporta
+     * os códigos novos (ver HuffmanCodec)
+     */
+    public TabelaDecodificacao() {
+    }
+
+    /**
+     * Monta as tabelas de consulta a partir dos códigos de cada caractere
+     * @param codigos Os bits do código de cada caractere, alinhados à direita
+     * @param comprimentos O tamanho (em bits) do código de cada caractere; 0 indica caractere ausente
+     */
+    public TabelaDecodificacao(long[] codigos, int[] comprimentos) {
+        reconstruir(codigos, comprimentos);
+    }
+
+    /**
+     * Cria a "tabela" de um arquivo com um único caractere, que não ocupa nenhum bit
+     * @param caractere O único caractere presente no arquivo
+     * @return Um decodificador que apenas repete o caractere
+     */
+    public static TabelaDecodificacao paraSimboloUnico(int caractere) {
+        TabelaDecodificacao tabela = new TabelaDecodificacao();
+        tabela.reconstruirParaSimboloUnico(caractere);
+        return tabela;
+    }
+
+    /**
+     * Descarta as tabelas atuais e monta as tabelas de consulta para outros códigos
+     * @param codigos Os bits do código de cada caractere, alinhados à direita
+     * @param comprimentos O tamanho (em bits) do código de cada caractere; 0 indica caractere ausente
+     */
+    public final void reconstruir(long[] codigos, int[] comprimentos) {
+        int quantidade = 0;
+        int maiorComprimento = 0;
+        for (int i = 0; i < comprimentos.length; i++) {
+            if (comprimentos[i] > 0) {
+                ordem[quantidade++] = i;
+                maiorComprimento = Math.max(maiorComprimento, comprimentos[i]);
+            }
+        }
+        if (quantidade == 0) {
+            throw new IllegalArgumentException("Nenhum código para decodificar");
+        }
+
+        this.simboloUnico = -1;
+        this.multiPronta = false;
+        this.maiorComprimento = maiorComprimento;
+        this.larguraPrimaria = Math.min(LARGURA_PRIMARIA, maiorComprimento);
+        tamanhoTabela = 0;
+        construirTabela(0, quantidade, 0, larguraPrimaria, codigos, comprimentos);
+    }
+
+    /**
+     * Monta o decodificador de um arquivo com um único caractere
+     * Nesse caso a raiz da árvore é uma folha e o código do caractere tem 0 bits
+     * @param caractere O único caractere presente no arquivo
+     */
+    public void reconstruirParaSimboloUnico(int caractere) {
+        this.simboloUnico = caractere;
+        this.maiorComprimento = 0;
+        this.larguraPrimaria = 0;
+        this.tamanhoTabela = 0;
+    }
+
+    // O maior comprimento de código (0 quando há um único caractere)
+    int getMaiorComprimento() {
+        return maiorComprimento;
+    }
+
+    /**
+     * Liga ou desliga a tabela de vários caracteres por consulta (ligada por padrão)
+     * Desligada, todo trecho é decodificado um caractere por consulta (usado pelo BenchmarkHuffman)
+     * @param usarMulti true para usar a tabela de vários caracteres nos trechos grandes
+     */
+    public void setUsarMulti(boolean usarMulti) {
+        this.usarMulti = usarMulti;
+    }
+
+    /**
+     * Monta, se ainda não existir, a tabela de vários caracteres a partir da tabela normal
+     * Cada índice é decodificado código a código enquanto o próximo código couber inteiro nos bits restantes
+     * Os bits de um fluxo comprimido são quase uniformes, então a média de caracteres das entradas
+     * estima quantos caracteres cada consulta vai render (ver multiCompensa)
+     * @return A tabela de vários caracteres
+     */
+    private int[] montarMulti() {
+        if (multiPronta) return multi;
+        if (multi == null) multi = new int[1 << LARGURA_MULTI];
+        final int[] m = multi;
+        long total = 0;
+        for (int x = 0; x < m.length; x++) {
+            long janela = (long) x << (64 - LARGURA_MULTI);
+            int consumido = 0;
+            int quantidade = 0;
+            int caracteres = 0;
+            while (quantidade < MAX_MULTI) {
+                int e = consultar(janela << consumido);
+                int comprimento = e & 0xFF;
+                if (consumido + comprimento > LARGURA_MULTI) break;
+                caracteres |= ((e >>> 8) & 0xFF) << (8 * quantidade);
+                consumido += comprimento;
+                quantidade++;
+            }
+            m[x] = (caracteres << 8) | (quantidade << 4) | consumido;
+            total += Math.max(quantidade, 1);
+        }
+        multiCompensa = total >= MEDIA_MINIMA_MULTI * m.length;
+        multiPronta = true;
+        return m;
+    }
+
+    // Monta a tabela de vários caracteres, se preciso, e diz se ela rende o suficiente para ser usada
+    private boolean compensaMulti() {
+        montarMulti();
+        return multiCompensa;
+    }
+
+    // A folha do código que começa no bit 63 de "buffer", seguindo os ponteiros das subtabelas
+    private int consultar(long buffer) {
+        final int[] t = tabela;
+        int e = t[(int) (buffer >>> (64 - larguraPrimaria))];
+        int consumido = larguraPrimaria;
+        while (e < 0) {
+            int largura = e & 0x1F;
+            int sub = (e >>> 5) & 0x3FFFFFF;
+            e = t[sub + (int) ((buffer << consumido) >>> (64 - largura))];
+            consumido += largura;
+        }
+        return e;
+    }
+
+    /**
+     * Quantos caracteres cada consulta decodifica, em média, em um trecho comprimido grande
+     * (com a tabela de vários caracteres; sem ela, é sempre 1). Percorre os códigos sem gravar a saída
+     * @param dados O vetor com os bits comprimidos (dados alinhados ao byte, completados com zeros)
+     * @param inicio A posição do primeiro byte de dados
+     * @param quantidade Quantos caracteres o trecho tem
+     * @return Caracteres por consulta
+     */
+    public double caracteresPorConsulta(byte[] dados, int inicio, int quantidade) {
+        if (simboloUnico >= 0 || quantidade == 0 || !usarMulti || !compensaMulti()) return 1;
+        final int[] m = multi;
+        long bit = (long) inicio << 3;
+        long consultas = 0;
+        int decodificados = 0;
+        while (decodificados < quantidade) {
+            long janela = 0;
+            int byteAtual = (int) (bit >>> 3);
+            for (int k = 0; k < 8; k++) {
+                int b = byteAtual + k < dados.length ? dados[byteAtual + k] & 0xFF : 0;
+                janela = (janela << 8) | b;
+            }
+            janela <<= bit & 7;
+            int e = m[(int) (janela >>> (64 - LARGURA_MULTI))];
+            int n = (e >>> 4) & 0x3;
+            if (n > 0) {
+                decodificados += Math.min(n, quantidade - decodificados);
+                bit += e & 0xF;
+            } else {
+                decodificados++;
+                bit += consultar(janela) & 0xFF;
+            }
+            consultas++;
+        }
+        return (double) quantidade / consultas;
+    }
+
+    /**
+     * Reserva e preenche uma tabela (primária ou subtabela) para os caracteres de ordem[de..ate)
+     * Todos esses caracteres compartilham os mesmos "consumido" primeiros bits do código
+     * Os caracteres que precisam de subtabelas são reagrupados dentro do próprio trecho, um grupo
+     * contíguo por subtabela, então a montagem não aloca vetores auxiliares
+     * @param de A posição do primeiro caractere em "ordem"
+     * @param ate A posição seguinte ao último caractere em "ordem"
+     * @param consumido Quantos bits do código já foram resolvidos pelas tabelas anteriores
+     * @param largura Quantos bits esta tabela resolve
+     * @return A posição da tabela criada dentro do vetor "tabela"
+     */
+    private int construirTabela(int de, int ate, int consumido, int largura, long[] codigos, int[] comprimentos) {
+        int inicio = reservar(1 << largura);
+
+        // Caracteres cujo código não cabe nesta tabela vão para o final do trecho: ordem[longos..ate)
+        int longos = ate;
+        for (int k = de; k < longos; ) {
+            int s = ordem[k];
+            int restante = comprimentos[s] - consumido;
+            if (restante <= largura) {
+                // O código termina nesta tabela: replica a folha em todas as entradas com esse prefixo
+                long bitsRestantes = codigos[s] & ((1L << restante) - 1);
+                int primeiro = (int) (bitsRestantes << (largura - restante));
+                int repeticoes = 1 << (largura - restante);
+                Arrays.fill(tabela, inicio + primeiro, inicio + primeiro + repeticoes, (s << 8) | comprimentos[s]);
+                k++;
+            } else {
+                trocarOrdem(k, --longos);
+            }
+        }
+
+        // Cria uma subtabela para cada índice usado por códigos longos
+        int k = longos;
+        while (k < ate) {
+            int indice = indiceNaTabela(ordem[k], consumido, largura, codigos, comprimentos);
+            int fimGrupo = k + 1;
+            int maior = comprimentos[ordem[k]];
+            for (int j = k + 1; j < ate; j++) {
+                if (indiceNaTabela(ordem[j], consumido, largura, codigos, comprimentos) == indice) {
+                    // Move o elemento para o final do grupo, para não ser visitado de novo
+                    maior = Math.max(maior, comprimentos[ordem[j]]);
+                    trocarOrdem(j, fimGrupo++);
+                }
+            }
+
+            int novoConsumido = consumido + largura;
+            int larguraSub = Math.min(LARGURA_SUBTABELA, maior - novoConsumido);
+            int sub = construirTabela(k, fimGrupo, novoConsumido, larguraSub, codigos, comprimentos);
+            tabela[inicio + indice] = PONTEIRO | (sub << 5) | larguraSub;
+            k = fimGrupo;
+        }
+        return inicio;
+    }
+
+    private void trocarOrdem(int i, int j) {
+        int temp = ordem[i];
+        ordem[i] = ordem[j];
+        ordem[j] = temp;
+    }
+
+    // Índice (os "largura" bits seguintes aos já consumidos) de um código longo dentro de uma tabela
+    private static int indiceNaTabela(int s, int consumido, int largura, long[] codigos, int[] comprimentos) {
+        int restante = comprimentos[s] - consumido;
+        return (int) ((codigos[s] >>> (restante - largura)) & ((1L << largura) - 1));
+    }
+
+    // Reserva "tamanho" posições zeradas no final do vetor de tabelas, aumentando-o se necessário
+    private int reservar(int tamanho) {
+        if (tamanhoTabela + tamanho > tabela.length) {
+            tabela = Arrays.copyOf(tabela, Math.max(tabela.length * 2, tamanhoTabela + tamanho));
+        }
+        int inicio = tamanhoTabela;
+        tamanhoTabela += tamanho;
+        Arrays.fill(tabela, inicio, tamanhoTabela, 0);
+        return inicio;
+    }
+
+    /**
+     * Decodifica uma quantidade conhecida de caracteres, lendo os bits direto do vetor comprimido
+     * @param dados O vetor com os bits comprimidos
+     * @param inicio A posição do primeiro byte de dados
+     * @param fim A posição seguinte ao último byte de dados
+     * @param bitsUltimoByte Quantos bits do último byte são úteis (alinhados à direita, de 1 a 8)
+     * @param saida O vetor onde os caracteres decodificados são gravados
+     * @param inicioSaida A primeira posição de "saida" a ser preenchida
+     * @param quantidade Quantos caracteres devem ser decodificados
+     */
+    public void decodificar(byte[] dados, int inicio, int fim, int bitsUltimoByte, byte[] saida, int inicioSaida, int quantidade) {
+        decodificarTrecho(dados, (long) inicio << 3, fim, bitsUltimoByte, saida, inicioSaida, quantidade);
+    }
+
+    /**
+     * Decodifica uma quantidade conhecida de caracteres a partir de um bit qualquer do vetor
+     * Permite continuar a decodificação de onde o trecho anterior parou (decodificação por streams)
+     * @param dados O vetor com os bits comprimidos
+     * @param bitInicial A posição, em bits, do primeiro bit a ser decodificado
+     * @param fim A posição seguinte ao último byte de dados
+     * @param bitsUltimoByte Quantos bits do último byte são úteis (alinhados à direita, de 1 a 8)
+     * @param saida O vetor onde os caracteres decodificados são gravados
+     * @param inicioSaida A primeira posição de "saida" a ser preenchida
+     * @param quantidade Quantos caracteres devem ser decodificados
+     * @return A posição, em bits, logo após o último código decodificado
+     */
+    public long decodificarTrecho(byte[] dados, long bitInicial, int fim, int bitsUltimoByte, byte[] saida,
+                                  int inicioSaida, int quantidade) {
+        if (simboloUnico >= 0) {
+            Arrays.fill(saida, inicioSaida, inicioSaida + quantidade, (byte) simboloUnico);
+            return bitInicial;
+        }
+        if (quantidade == 0) return bitInicial;
+
+        final int[] t = tabela;
+        final int deslocPrimario = 64 - larguraPrimaria;
+        final int inicio = (int) (bitInicial >>> 3);
+        final int ultimo = fim - 1;
+        // O último byte guarda seus bits úteis à direita; realinha à esquerda para leitura contínua
+        final int ultimoAlinhado = fim > inicio ? ((dados[ultimo] & 0xFF) << (8 - bitsUltimoByte)) & 0xFF : 0;
+
+        long buffer = 0;  // Próximos bits do fluxo, começando pelo bit 63
+        int bits = 0;     // Quantos bits válidos existem em "buffer"
+        int pos = inicio; // Próximo byte de "dados" a ser carregado
+        int fimSaida = inicioSaida + quantidade;
+        int i = inicioSaida;
+
+        // Começando no meio de um byte, carrega esse byte sem os bits que já foram consumidos
+        int descartados = (int) (bitInicial & 7);
+        if (descartados > 0) {
+            int b = pos < ultimo ? dados[pos] & 0xFF : ultimoAlinhado;
+            buffer = ((long) b << 56) << descartados;
+            bits = 8 - descartados;
+            pos++;
+        }
+
+        if (usarMulti && quantidade >= MINIMO_MULTI && compensaMulti()) {
+            // Vários caracteres por consulta enquanto os dados permitem ler 8 bytes de uma vez e
+            // a saída tem espaço para gravar 4 bytes (os caracteres além da quantidade são sobrescritos)
+            final int[] m = multi;
+            while (i + 4 <= fimSaida && pos + 8 <= ultimo) {
+                if (bits < EscritorBits.MAX_BITS_CODIGO) {
+                    buffer |= ((long) LONG_BE.get(dados, pos)) >>> bits;
+                    pos += (63 - bits) >>> 3;
+                    bits |= 56;
+                }
+                int e = m[(int) (buffer >>> (64 - LARGURA_MULTI))];
+                int n = (e >>> 4) & 0x3;
+                if (n > 0) {
+                    INT_LE.set(saida, i, e >>> 8);
+                    i += n;
+                    int comprimento = e & 0xF;
+                    buffer <<= comprimento;
+                    bits -= comprimento;
+                } else {
+                    e = consultar(buffer);
+                    saida[i++] = (byte) (e >>> 8);
+                    int comprimento = e & 0xFF;
+                    buffer <<= comprimento;
+                    bits -= comprimento;
+                }
+            }
+        }
+
+        for (; i < fimSaida; i++) {
+            // Recarrega o buffer para ter pelo menos 56 bits (o maior código possível)
+            if (bits < EscritorBits.MAX_BITS_CODIGO) {
+                if (pos + 8 <= ultimo) {
+                    // Caminho rápido: lê 8 bytes e aproveita quantos bytes inteiros couberem
+                    buffer |= ((long) LONG_BE.get(dados, pos)) >>> bits;
+                    pos += (63 - bits) >>> 3;
+                    bits |= 56;
+                } else {
+                    // Perto do fim: byte a byte, tratando o último byte e completando com zeros
+                    while (bits <= 56) {
+                        int b;
+                        if (pos < ultimo) b = dados[pos] & 0xFF;
+                        else if (pos == ultimo) b = ultimoAlinhado;
+                        else b = 0;
+                        pos++;
+                        buffer |= ((long) b) << (56 - bits);
+                        bits += 8;
+                    }
+                }
+            }
+
+            int e = t[(int) (buffer >>> deslocPrimario)];
+            if (e < 0) {
+                // Código longo: segue os ponteiros até chegar a uma folha
+                int consumido = larguraPrimaria;
+                do {
+                    int largura = e & 0x1F;
+                    int sub = (e >>> 5) & 0x3FFFFFF;
+                    e = t[sub + (int) ((buffer << consumido) >>> (64 - largura))];
+                    consumido += largura;
+                } while (e < 0);
+            }
+
+            saida[i] = (byte) (e >>> 8);
+            int comprimento = e & 0xFF;
+            buffer <<= comprimento;
+            bits -= comprimento;
+        }
+        return ((long) pos << 3) - bits;
+    }
+
+    /**
+     * Decodifica os fluxos intercalados de FLAG_INTERCALADO: o caractere i está no fluxo i % 4
+     * Os quatro fluxos avançam juntos, uma consulta de cada por volta do laço. Cada consulta depende só
+     * do buffer do próprio fluxo, então as quatro não esperam umas pelas outras e o processador as
+     * executa em paralelo (em um fluxo só, cada consulta espera o comprimento do código anterior)
+     * As recargas dos buffers não têm desvios: os 8 bytes seguintes são lidos a toda volta
+     * Cada fluxo termina em um byte completado com zeros
+     * @param dados O vetor com os bits comprimidos
+     * @param limites As posições do início de cada fluxo e, na última posição, o fim do último
+     *                (o fluxo k vai de limites[k] até limites[k + 1])
+     * @param saida O vetor onde os caracteres decodificados são gravados
+     * @param inicioSaida A primeira posição de "saida" a ser preenchida
+     * @param quantidade Quantos caracteres devem ser decodificados (dos quatro fluxos juntos)
+     * @return false se algum fluxo precisou de bits além do seu fim (dados corrompidos)
+     */
+    public boolean decodificarIntercalado(byte[] dados, int[] limites, byte[] saida, int inicioSaida, int quantidade) {
+        if (simboloUnico >= 0) {
+            Arrays.fill(saida, inicioSaida, inicioSaida + quantidade, (byte) simboloUnico);
+            return true;
+        }
+
+        final int[] t = tabela;
+        final int deslocPrimario = 64 - larguraPrimaria;
+        final int fimSaida = inicioSaida + quantidade;
+        // Leituras de 8 bytes de uma vez enquanto todos os fluxos estiverem a 8 bytes ou mais do seu fim
+        final int limite0 = limites[1] - 8;
+        final int limite1 = limites[2] - 8;
+        final int limite2 = limites[3] - 8;
+        final int limite3 = limites[4] - 8;
+        int pos0 = limites[0], pos1 = limites[1], pos2 = limites[2], pos3 = limites[3];
+        long buffer0 = 0, buffer1 = 0, buffer2 = 0, buffer3 = 0;
+        int bits0 = 0, bits1 = 0, bits2 = 0, bits3 = 0;
+        // Próxima posição da saída de cada fluxo (os fluxos andam de 4 em 4)
+        int saida0 = inicioSaida, saida1 = inicioSaida + 1, saida2 = inicioSaida + 2, saida3 = inicioSaida + 3;
+
+        if (usarMulti && quantidade >= MINIMO_MULTI && compensaMulti()) {
+            // Vários caracteres por consulta em cada fluxo: os fluxos avançam em ritmos diferentes,
+            // e cada consulta grava até 3 caracteres do fluxo (s, s + 4 e s + 8)
+            final int[] m = multi;
+            final int limiteSaida = fimSaida - 8;
+            while (saida0 < limiteSaida && saida1 < limiteSaida && saida2 < limiteSaida && saida3 < limiteSaida
+                    && pos0 <= limite0 && pos1 <= limite1 && pos2 <= limite2 && pos3 <= limite3) {
+                buffer0 |= ((long) LONG_BE.get(dados, pos0)) >>> bits0;
+                pos0 += (63 - bits0) >>> 3;
+                bits0 |= 56;
+                buffer1 |= ((long) LONG_BE.get(dados, pos1)) >>> bits1;
+                pos1 += (63 - bits1) >>> 3;
+                bits1 |= 56;
+                buffer2 |= ((long) LONG_BE.get(dados, pos2)) >>> bits2;
+                pos2 += (63 - bits2) >>> 3;
+                bits2 |= 56;
+                buffer3 |= ((long) LONG_BE.get(dados, pos3)) >>> bits3;
+                pos3 += (63 - bits3) >>> 3;
+                bits3 |= 56;
+
+                int e0 = m[(int) (buffer0 >>> (64 - LARGURA_MULTI))];
+                int e1 = m[(int) (buffer1 >>> (64 - LARGURA_MULTI))];
+                int e2 = m[(int) (buffer2 >>> (64 - LARGURA_MULTI))];
+                int e3 = m[(int) (buffer3 >>> (64 - LARGURA_MULTI))];
+                int c0, c1, c2, c3; // Bits consumidos por fluxo
+                if ((e0 & 0x30) != 0) {
+                    saida[saida0] = (byte) (e0 >>> 8);
+                    saida[saida0 + 4] = (byte) (e0 >>> 16);
+                    saida[saida0 + 8] = (byte) (e0 >>> 24);
+                    saida0 += (e0 >>> 2) & 0xC;
+                    c0 = e0 & 0xF;
+                } else {
+                    e0 = consultar(buffer0);
+                    saida[saida0] = (byte) (e0 >>> 8);
+                    saida0 += 4;
+                    c0 = e0 & 0xFF;
+                }
+                if ((e1 & 0x30) != 0) {
+                    saida[saida1] = (byte) (e1 >>> 8);
+                    saida[saida1 + 4] = (byte) (e1 >>> 16);
+                    saida[saida1 + 8] = (byte) (e1 >>> 24);
+                    saida1 += (e1 >>> 2) & 0xC;
+                    c1 = e1 & 0xF;
+                } else {
+                    e1 = consultar(buffer1);
+                    saida[saida1] = (byte) (e1 >>> 8);
+                    saida1 += 4;
+                    c1 = e1 & 0xFF;
+                }
+                if ((e2 & 0x30) != 0) {
+                    saida[saida2] = (byte) (e2 >>> 8);
+                    saida[saida2 + 4] = (byte) (e2 >>> 16);
+                    saida[saida2 + 8] = (byte) (e2 >>> 24);
+                    saida2 += (e2 >>> 2) & 0xC;
+                    c2 = e2 & 0xF;
+                } else {
+                    e2 = consultar(buffer2);
+                    saida[saida2] = (byte) (e2 >>> 8);
+                    saida2 += 4;
+                    c2 = e2 & 0xFF;
+                }
+                if ((e3 & 0x30) != 0) {
+                    saida[saida3] = (byte) (e3 >>> 8);
+                    saida[saida3 + 4] = (byte) (e3 >>> 16);
+                    saida[saida3 + 8] = (byte) (e3 >>> 24);
+                    saida3 += (e3 >>> 2) & 0xC;
+                    c3 = e3 & 0xF;
+                } else {
+                    e3 = consultar(buffer3);
+                    saida[saida3] = (byte) (e3 >>> 8);
+                    saida3 += 4;
+                    c3 = e3 & 0xFF;
+                }
+                buffer0 <<= c0;
+                bits0 -= c0;
+                buffer1 <<= c1;
+                bits1 -= c1;
+                buffer2 <<= c2;
+                bits2 -= c2;
+                buffer3 <<= c3;
+                bits3 -= c3;
+            }
+        } else {
+            // Um caractere por fluxo a cada volta: os quatro fluxos andam juntos
+            while (saida3 < fimSaida && pos0 <= limite0 && pos1 <= limite1 && pos2 <= limite2 && pos3 <= limite3) {
+                buffer0 |= ((long) LONG_BE.get(dados, pos0)) >>> bits0;
+                pos0 += (63 - bits0) >>> 3;
+                bits0 |= 56;
+                buffer1 |= ((long) LONG_BE.get(dados, pos1)) >>> bits1;
+                pos1 += (63 - bits1) >>> 3;
+                bits1 |= 56;
+                buffer2 |= ((long) LONG_BE.get(dados, pos2)) >>> bits2;
+                pos2 += (63 - bits2) >>> 3;
+                bits2 |= 56;
+                buffer3 |= ((long) LONG_BE.get(dados, pos3)) >>> bits3;
+                pos3 += (63 - bits3) >>> 3;
+                bits3 |= 56;
+
+                int e0 = t[(int) (buffer0 >>> deslocPrimario)];
+                int e1 = t[(int) (buffer1 >>> deslocPrimario)];
+                int e2 = t[(int) (buffer2 >>> deslocPrimario)];
+                int e3 = t[(int) (buffer3 >>> deslocPrimario)];
+                // Códigos longos: segue os ponteiros das subtabelas
+                if ((e0 | e1 | e2 | e3) < 0) {
+                    if (e0 < 0) e0 = consultar(buffer0);
+                    if (e1 < 0) e1 = consultar(buffer1);
+                    if (e2 < 0) e2 = consultar(buffer2);
+                    if (e3 < 0) e3 = consultar(buffer3);
+                }
+
+                saida[saida0] = (byte) (e0 >>> 8);
+                saida[saida1] = (byte) (e1 >>> 8);
+                saida[saida2] = (byte) (e2 >>> 8);
+                saida[saida3] = (byte) (e3 >>> 8);
+                saida0 += 4;
+                saida1 += 4;
+                saida2 += 4;
+                saida3 += 4;
+                buffer0 <<= e0 & 0xFF;
+                bits0 -= e0 & 0xFF;
+                buffer1 <<= e1 & 0xFF;
+                bits1 -= e1 & 0xFF;
+                buffer2 <<= e2 & 0xFF;
+                bits2 -= e2 & 0xFF;
+                buffer3 <<= e3 & 0xFF;
+                bits3 -= e3 & 0xFF;
+            }
+        }
+
+        // Perto do fim da saída ou de algum fluxo: o restante de cada fluxo é decodificado separadamente
+        return decodificarFluxo(dados, ((long) pos0 << 3) - bits0, limites[1], saida, saida0, fimSaida)
+                & decodificarFluxo(dados, ((long) pos1 << 3) - bits1, limites[2], saida, saida1, fimSaida)
+                & decodificarFluxo(dados, ((long) pos2 << 3) - bits2, limites[3], saida, saida2, fimSaida)
+                & decodificarFluxo(dados, ((long) pos3 << 3) - bits3, limites[4], saida, saida3, fimSaida);
+    }
+
+    /**
+     * Decodifica o restante de um dos fluxos intercalados, gravando um caractere a cada 4 posições da saída
+     * É o caminho lento de decodificarTrecho(), com o último byte completado com zeros
+     * @param bitInicial A posição, em bits, do próximo código do fluxo
+     * @param fim A posição seguinte ao último byte do fluxo
+     * @param inicioSaida A posição da saída do próximo caractere do fluxo
+     * @param fimSaida A posição seguinte à última da saída
+     * @return false se o fluxo precisou de bits além do seu fim
+     */
+    private boolean decodificarFluxo(byte[] dados, long bitInicial, int fim, byte[] saida, int inicioSaida,
+                                     int fimSaida) {
+        int pos = (int) (bitInicial >>> 3);
+        int descartados = (int) (bitInicial & 7);
+        long buffer = 0;
+        int bits = 0;
+        if (descartados > 0) {
+            int b = pos < fim ? dados[pos] & 0xFF : 0;
+            buffer = ((long) b << 56) << descartados;
+            bits = 8 - descartados;
+            pos++;
+        }
+        for (int i = inicioSaida; i < fimSaida; i += 4) {
+            while (bits <= 56) {
+                int b = pos < fim ? dados[pos] & 0xFF : 0;
+                pos++;
+                buffer |= ((long) b) << (56 - bits);
+                bits += 8;
+            }
+            int e = consultar(buffer);
+            saida[i] = (byte) (e >>> 8);
+            buffer <<= e & 0xFF;
+            bits -= e & 0xFF;
+        }
+        return ((long) pos << 3) - bits <= (long) fim << 3;
+    }
+
+    /**
+     * Decodifica caracteres do modo de contexto de ordem 1 (ModoContexto): a tabela de cada código é
+     * a do caractere decodificado antes dele. É o laço de decodificarTrecho(), com a tabela trocada a
+     * cada caractere; os dados terminam sempre em um byte completado com zeros (bitsUltimoByte = 8)
+     * @param porContexto A tabela de cada contexto, indexada pelo caractere anterior (256 posições)
+     * @param anterior O caractere anterior ao primeiro a ser decodificado (0 no início do arquivo)
+     * @param dados O vetor com os bits comprimidos
+     * @param bitInicial A posição, em bits, do primeiro bit a ser decodificado
+     * @param fim A posição seguinte ao último byte de dados
+     * @param saida O vetor onde os caracteres decodificados são gravados
+     * @param inicioSaida A primeira posição de "saida" a ser preenchida
+     * @param quantidade Quantos caracteres devem ser decodificados
+     * @return A posição, em bits, logo após o último código decodificado
+     */
+    public static long decodificarContexto(TabelaDecodificacao[] porContexto, int anterior, byte[] dados,
+                                           long bitInicial, int fim, byte[] saida, int inicioSaida, int quantidade) {
+        if (quantidade == 0) return bitInicial;
+
+        final int inicio = (int) (bitInicial >>> 3);
+        final int ultimo = fim - 1;
+        final int ultimoAlinhado = fim > inicio ? dados[ultimo] & 0xFF : 0;
+
+        long buffer = 0;
+        int bits = 0;
+        int pos = inicio;
+        int fimSaida = inicioSaida + quantidade;
+
+        int descartados = (int) (bitInicial & 7);
+        if (descartados > 0) {
+            int b = pos < ultimo ? dados[pos] & 0xFF : ultimoAlinhado;
+            buffer = ((long) b << 56) << descartados;
+            bits = 8 - descartados;
+            pos++;
+        }
+
+        for (int i = inicioSaida; i < fimSaida; i++) {
+            if (bits < EscritorBits.MAX_BITS_CODIGO) {
+                if (pos + 8 <= ultimo) {
+                    buffer |= ((long) LONG_BE.get(dados, pos)) >>> bits;
+                    pos += (63 - bits) >>> 3;
+                    bits |= 56;
+                } else {
+                    while (bits <= 56) {
+                        int b;
+                        if (pos < ultimo) b = dados[pos] & 0xFF;
+                        else if (pos == ultimo) b = ultimoAlinhado;
+                        else b = 0;
+                        pos++;
+                        buffer |= ((long) b) << (56 - bits);
+                        bits += 8;
+                    }
+                }
+            }
+
+            TabelaDecodificacao d = porContexto[anterior];
+            int e;
+            if (d.simboloUnico >= 0) {
+                e = d.simboloUnico << 8; // Código de 0 bits
+            } else {
+                final int[] t = d.tabela;
+                e = t[(int) (buffer >>> (64 - d.larguraPrimaria))];
+                if (e < 0) {
+                    int consumido = d.larguraPrimaria;
+                    do {
+                        int largura = e & 0x1F;
+                        int sub = (e >>> 5) & 0x3FFFFFF;
+                        e = t[sub + (int) ((buffer << consumido) >>> (64 - largura))];
+                        consumido += largura;
+                    } while (e < 0);
+                }
+            }
+
+            anterior = (e >>> 8) & 0xFF;
+            saida[i] = (byte) anterior;
+            int comprimento = e & 0xFF;
+            buffer <<= comprimento;
+            bits -= comprimento;
+        }
+        return ((long) pos << 3) - bits;
+    }
+
+    /**
+     * Decodifica uma quantidade conhecida de caracteres entre dois ByteBuffers
+     * Usado com buffers mapeados em memória (FileChannel.map): decodifica direto de um arquivo
+     * mapeado para outro, sem cópias intermediárias em vetores
+     * É o mesmo laço da versão com vetores, que foi mantida separada por ser mais rápida com byte[]
+     * As posições são absolutas: a posição e o limite atuais dos buffers não são alterados
+     * @param dados O buffer com os bits comprimidos
+     * @param inicio A posição do primeiro byte de dados
+     * @param fim A posição seguinte ao último byte de dados
+     * @param bitsUltimoByte Quantos bits do último byte são úteis (alinhados à direita, de 1 a 8)
+     * @param saida O buffer onde os caracteres decodificados são gravados
+     * @param inicioSaida A primeira posição de "saida" a ser preenchida
+     * @param quantidade Quantos caracteres devem ser decodificados
+     */
+    public void decodificar(ByteBuffer dados, int inicio, int fim, int bitsUltimoByte, ByteBuffer saida, int inicioSaida, int quantidade) {
+        int fimSaida = inicioSaida + quantidade;
+        if (simboloUnico >= 0) {
+            for (int i = inicioSaida; i < fimSaida; i++) {
+                saida.put(i, (byte) simboloUnico);
+            }
+            return;
+        }
+
+        final int[] t = tabela;
+        final int deslocPrimario = 64 - larguraPrimaria;
+        final int ultimo = fim - 1;
+        // O último byte guarda seus bits úteis à direita; realinha à esquerda para leitura contínua
+        final int ultimoAlinhado = fim > inicio ? ((dados.get(ultimo) & 0xFF) << (8 - bitsUltimoByte)) & 0xFF : 0;
+
+        long buffer = 0;  // Próximos bits do fluxo, começando pelo bit 63
+        int bits = 0;     // Quantos bits válidos existem em "buffer"
+        int pos = inicio; // Próximo byte de "dados" a ser carregado
+        int i = inicioSaida;
+
+        if (usarMulti && quantidade >= MINIMO_MULTI && compensaMulti()) {
+            final int[] m = multi;
+            while (i + 4 <= fimSaida && pos + 8 <= ultimo) {
+                if (bits < EscritorBits.MAX_BITS_CODIGO) {
+                    buffer |= ((long) LONG_BE_BUFFER.get(dados, pos)) >>> bits;
+                    pos += (63 - bits) >>> 3;
+                    bits |= 56;
+                }
+                int e = m[(int) (buffer >>> (64 - LARGURA_MULTI))];
+                int n = (e >>> 4) & 0x3;
+                if (n > 0) {
+                    INT_LE_BUFFER.set(saida, i, e >>> 8);
+                    i += n;
+                    int comprimento = e & 0xF;
+                    buffer <<= comprimento;
+                    bits -= comprimento;
+                } else {
+                    e = consultar(buffer);
+                    saida.put(i++, (byte) (e >>> 8));
+                    int comprimento = e & 0xFF;
+                    buffer <<= comprimento;
+                    bits -= comprimento;
+                }
+            }
+        }
+
+        for (; i < fimSaida; i++) {
+            // Recarrega o buffer para ter pelo menos 56 bits (o maior código possível)
+            if (bits < EscritorBits.MAX_BITS_CODIGO) {
+                if (pos + 8 <= ultimo) {
+                    // Caminho rápido: lê 8 bytes e aproveita quantos bytes inteiros couberem
+                    buffer |= ((long) LONG_BE_BUFFER.get(dados, pos)) >>> bits;
+                    pos += (63 - bits) >>> 3;
+                    bits |= 56;
+                } else {
+                    // Perto do fim: byte a byte, tratando o último byte e completando com zeros
+                    while (bits <= 56) {
+                        int b;
+                        if (pos < ultimo) b = dados.get(pos) & 0xFF;
+                        else if (pos == ultimo) b = ultimoAlinhado;
+                        else b = 0;
+                        pos++;
+                        buffer |= ((long) b) << (56 - bits);
+                        bits += 8;
+                    }
+                }
+            }
+
+            int e = t[(int) (buffer >>> deslocPrimario)];
+            if (e < 0) {
+                // Código longo: segue os ponteiros até chegar a uma folha
+                int consumido = larguraPrimaria;
+                do {
+                    int largura = e & 0x1F;
+                    int sub = (e >>> 5) & 0x3FFFFFF;
+                    e = t[sub + (int) ((buffer << consumido) >>> (64 - largura))];
+                    consumido += largura;
+                } while (e < 0);
+            }
+
+            saida.put(i, (byte) (e >>> 8));
+            int comprimento = e & 0xFF;
+            buffer <<= comprimento;
+            bits -= comprimento;
+        }
+    }
+}
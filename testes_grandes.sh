@@ -0,0 +1,96 @@
+#!/bin/bash
+############################################################################
+#                                                                          #
+#        TESTES COM ARQUIVOS MAIORES QUE 2 GB (ver comandos.txt, Parte D)  #
+#                                                                          #
+############################################################################
+#
+# Gera dois arquivos esparsos (quase não ocupam o disco) e faz a ida e volta de cada um
+# em todos os modos que tratam arquivos grandes, conferindo o resultado com cmp:
+# - grande.bin: 3 GB de zeros com texto e bytes aleatórios espalhados (o byte 0 aparece
+#   mais de 2^31 vezes, então as contagens precisam de 64 bits)
+# - unico.bin: 2,6 GB de zeros (um único símbolo)
+# Modos: normal (passa para stream sozinho), --stream, --mmap, --blocos 65536 com
+# descompressão paralela (--threads N) e --blocos com uma thread
+#
+# Cada arquivo restaurado ocupa o tamanho real no disco: é preciso ter uns 7 GB livres
+# Termina com código 1 se alguma ida e volta falhar
+#
+# Uso: ./testes_grandes.sh [pasta_de_trabalho]
+# Variáveis: HUFFMAN (padrão: "java -jar huffman.jar"), THREADS (padrão: 4),
+#            TEXTO (arquivo de texto espalhado no arquivo de 3 GB, padrão: texto_10mb.txt)
+
+HUFFMAN=${HUFFMAN:-java -jar huffman.jar}
+THREADS=${THREADS:-4}
+TEXTO=${TEXTO:-texto_10mb.txt}
+PASTA=${1:-.}
+falhas=0
+
+GRANDE="$PASTA/grande.bin"
+UNICO="$PASTA/unico.bin"
+COMPRIMIDO="$PASTA/grande_teste.huff"
+RESTAURADO="$PASTA/grande_teste_restaurado.bin"
+LOG="$PASTA/grande_teste.log"
+
+limpar() {
+    rm -f "$GRANDE" "$UNICO" "$COMPRIMIDO" "$RESTAURADO" "$LOG"
+}
+trap limpar EXIT
+
+# --- Geração dos arquivos ---
+if [ ! -f "$TEXTO" ]; then
+    echo "Arquivo de texto não encontrado: $TEXTO (gere-o com os comandos da Parte A de comandos.txt)"
+    exit 1
+fi
+echo "Gerando $GRANDE (3 GB) e $UNICO (2,6 GB)..."
+rm -f "$GRANDE" "$UNICO"
+truncate -s 3G "$GRANDE" || exit 1
+for pos in 0 700 1500 2100 3000; do
+    dd if="$TEXTO" of="$GRANDE" bs=1M seek=$pos conv=notrunc status=none || exit 1
+done
+for pos in 1000 2500; do
+    head -c 8M /dev/urandom | dd of="$GRANDE" bs=1M seek=$pos conv=notrunc status=none || exit 1
+done
+truncate -s 2600M "$UNICO" || exit 1
+
+# Executa o programa; o sucesso é a linha JSON das métricas (os erros são impressos, mas o código de
+# saída continua 0), e a mensagem de erro fica em $LOG
+# Uso: executar <opções...>
+executar() {
+    $HUFFMAN "$@" > "$LOG" 2>&1 && grep -q '^{"operacao"' "$LOG"
+}
+
+# Comprime com as opções de -c, descomprime com as de -d e compara com o original
+# Uso: ida_e_volta <arquivo> <nome do modo> "<opções -c>" "<opções -d>"
+ida_e_volta() {
+    local arquivo=$1 nome=$2 opcoesC=$3 opcoesD=$4
+    local inicio=$SECONDS
+    if ! executar -c $opcoesC "$arquivo" "$COMPRIMIDO"; then
+        echo "FALHA  $(basename "$arquivo") $nome: erro na compressão: $(grep -v '^\s*at ' "$LOG" | head -2)"
+        falhas=$((falhas + 1))
+    elif ! executar -d $opcoesD "$COMPRIMIDO" "$RESTAURADO"; then
+        echo "FALHA  $(basename "$arquivo") $nome: erro na descompressão: $(grep -v '^\s*at ' "$LOG" | head -2)"
+        falhas=$((falhas + 1))
+    elif ! cmp -s "$arquivo" "$RESTAURADO"; then
+        echo "FALHA  $(basename "$arquivo") $nome: o arquivo restaurado é diferente do original"
+        falhas=$((falhas + 1))
+    else
+        echo "ok     $(basename "$arquivo") $nome: $(stat -c%s "$COMPRIMIDO") bytes comprimidos ($((SECONDS - inicio)) s)"
+    fi
+    rm -f "$COMPRIMIDO" "$RESTAURADO"
+}
+
+# --- Idas e voltas ---
+for arquivo in "$GRANDE" "$UNICO"; do
+    ida_e_volta "$arquivo" "normal" "" ""
+    ida_e_volta "$arquivo" "stream" "--stream" ""
+    ida_e_volta "$arquivo" "mmap" "--mmap" "--mmap"
+    ida_e_volta "$arquivo" "blocos/paralelo" "--blocos 65536" "--threads $THREADS"
+    ida_e_volta "$arquivo" "blocos/1 thread" "--blocos 65536" "--threads 1"
+done
+
+if [ $falhas -gt 0 ]; then
+    echo "$falhas ida(s) e volta(s) com falha"
+    exit 1
+fi
+echo "Todas as idas e voltas restauraram os arquivos originais"